@@ -1,9 +1,123 @@
 package com.mk.docclassifier.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableAsync
+@Slf4j
 public class AsyncConfig {
+
+    // One executor per pipeline stage so CPU-bound OCR and I/O-bound persistence never compete
+    // for the same threads; the memory-bound classification stage is a MicroBatcher with its own workers
+    public static final String EXTRACTION_EXECUTOR = "extractionExecutor";
+    public static final String PERSISTENCE_EXECUTOR = "persistenceExecutor";
+
+    @Value("${app.pipeline.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    // How long a producer waits for room in a full stage queue before giving up
+    @Value("${app.pipeline.block-timeout-ms:30000}")
+    private long blockTimeoutMs;
+
+    // Policy applied when intake (the extraction queue) is full; inner stages always block
+    @Value("${app.pipeline.intake.rejection-policy:BLOCK}")
+    private RejectionPolicy intakePolicy;
+
+    @Bean(name = EXTRACTION_EXECUTOR)
+    public ThreadPoolTaskExecutor extractionExecutor(MeterRegistry meterRegistry,
+            @Value("${app.pipeline.extraction.workers:4}") int workers,
+            @Value("${app.pipeline.extraction.queue-capacity:200}") int queueCapacity) {
+        return stageExecutor(EXTRACTION_EXECUTOR, workers, queueCapacity, intakePolicy, meterRegistry);
+    }
+
+    @Bean(name = PERSISTENCE_EXECUTOR)
+    public ThreadPoolTaskExecutor persistenceExecutor(MeterRegistry meterRegistry,
+            @Value("${app.pipeline.persistence.workers:4}") int workers,
+            @Value("${app.pipeline.persistence.queue-capacity:100}") int queueCapacity) {
+        return stageExecutor(PERSISTENCE_EXECUTOR, workers, queueCapacity, RejectionPolicy.BLOCK, meterRegistry);
+    }
+
+    private ThreadPoolTaskExecutor stageExecutor(String name, int workers, int queueCapacity,
+            RejectionPolicy policy, MeterRegistry meterRegistry) {
+        Counter rejected = Counter.builder("pipeline.executor.rejected")
+                .description("Pipeline tasks rejected because the stage queue stayed full")
+                .tag("name", name)
+                .tag("policy", policy.name())
+                .register(meterRegistry);
+        Counter blocked = Counter.builder("pipeline.executor.blocked")
+                .description("Submissions that had to wait for room in a full stage queue")
+                .tag("name", name)
+                .register(meterRegistry);
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setPrestartAllCoreThreads(true);
+        executor.setThreadNamePrefix(name.replace("Executor", "") + "-");
+        executor.setRejectedExecutionHandler(countingHandler(policy.handler(blockTimeoutMs, blocked), rejected));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        if (virtualThreads) {
+            // Virtual threads keep blocking I/O cheap; the worker count still caps DB connection demand
+            executor.setThreadFactory(Thread.ofVirtual().name(name.replace("Executor", "") + "-vt-", 0).factory());
+        }
+        executor.initialize();
+
+        // Queue depth and active workers are published by Spring Boot as executor.* metrics (name=<bean name>)
+        log.info("Pipeline stage {}: {} workers, queue capacity {}, rejection policy {}, virtual threads {}",
+                name, workers, queueCapacity, policy, virtualThreads);
+        return executor;
+    }
+
+    private RejectedExecutionHandler countingHandler(RejectedExecutionHandler delegate, Counter rejected) {
+        return (task, executor) -> {
+            try {
+                delegate.rejectedExecution(task, executor);
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                throw e;
+            }
+        };
+    }
+
+    public enum RejectionPolicy {
+        // Wait for room in the queue, so a slow stage throttles the one feeding it
+        BLOCK,
+        CALLER_RUNS,
+        ABORT;
+
+        RejectedExecutionHandler handler(long blockTimeoutMs, Counter blocked) {
+            return switch (this) {
+                case BLOCK -> (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Executor has been shut down");
+                    }
+                    blocked.increment();
+                    try {
+                        if (!executor.getQueue().offer(task, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                            throw new RejectedExecutionException("Stage queue still full after " + blockTimeoutMs + " ms");
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for stage queue", e);
+                    }
+                };
+                case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+                case ABORT -> new ThreadPoolExecutor.AbortPolicy();
+            };
+        }
+    }
 }
@@ -40,6 +40,13 @@ public class SecurityConfig {
                                                 .requestMatchers("/v3/api-docs/**").permitAll()
                                                 .requestMatchers("/swagger-resources/**").permitAll()
                                                 .requestMatchers("/webjars/**").permitAll()
+                                                // Classifier training, model deployment and benchmarks
+                                                .requestMatchers("/api/admin/classifier/**", "/api/admin/models/**",
+                                                                "/api/admin/preprocess/**")
+                                                .hasAuthority("ADMIN")
+                                                // Executor, pipeline and model internals
+                                                .requestMatchers("/actuator/metrics", "/actuator/metrics/**")
+                                                .hasAuthority("ADMIN")
                                                 .anyRequest().authenticated())
                                 .exceptionHandling(
                                                 e -> e.authenticationEntryPoint((request, response, authException) -> {
@@ -1,10 +1,17 @@
 package com.mk.docclassifier.controller;
 
 import com.mk.docclassifier.service.DataSeederService;
+import com.mk.docclassifier.service.classifier.ModelRegistry;
+import com.mk.docclassifier.service.classifier.NaiveBayesClassifier;
+import com.mk.docclassifier.service.extraction.preprocess.PreprocessBenchmark;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Map;
@@ -15,6 +22,9 @@ import java.util.Map;
 public class AdminController {
 
     private final DataSeederService dataSeederService;
+    private final NaiveBayesClassifier naiveBayesClassifier;
+    private final ModelRegistry modelRegistry;
+    private final PreprocessBenchmark preprocessBenchmark;
 
     @PostMapping("/seed-data")
     public ResponseEntity<Map<String, String>> seedData() {
@@ -31,4 +41,79 @@ public class AdminController {
             ));
         }
     }
+
+    @PostMapping("/classifier/train")
+    public ResponseEntity<Map<String, String>> trainClassifier() {
+        try {
+            long examples = naiveBayesClassifier.train();
+            return ResponseEntity.ok(Map.of(
+                "status", "success",
+                "message", "Local classifier trained on " + examples + " examples"
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of(
+                "status", "error",
+                "message", "Failed to train classifier: " + e.getMessage()
+            ));
+        }
+    }
+
+    @GetMapping("/models")
+    public ResponseEntity<Map<String, Object>> models() throws java.io.IOException {
+        return ResponseEntity.ok(modelRegistry.status());
+    }
+
+    @PostMapping("/models/publish")
+    public ResponseEntity<Map<String, String>> publishModel() {
+        return modelAction(() -> "Published model version " + modelRegistry.publishActive());
+    }
+
+    @PostMapping("/models/{version}/activate")
+    public ResponseEntity<Map<String, String>> activateModel(@PathVariable String version) {
+        return modelAction(() -> {
+            modelRegistry.activate(version);
+            return "Model version " + version + " is now live";
+        });
+    }
+
+    @PostMapping("/models/{version}/shadow")
+    public ResponseEntity<Map<String, String>> shadowModel(@PathVariable String version) {
+        return modelAction(() -> {
+            modelRegistry.startShadow(version);
+            return "Model version " + version + " is running in shadow";
+        });
+    }
+
+    @DeleteMapping("/models/shadow")
+    public ResponseEntity<Map<String, String>> stopShadow() {
+        return modelAction(() -> {
+            modelRegistry.stopShadow();
+            return "Shadow evaluation stopped";
+        });
+    }
+
+    // Scalar vs Vector API image preprocessing on a synthetic 300-dpi A4 scan; CPU heavy, run on an idle instance
+    @PostMapping("/preprocess/benchmark")
+    public ResponseEntity<Map<String, Object>> benchmarkPreprocessing(@RequestParam(defaultValue = "5") int iterations) {
+        if (iterations < 1 || iterations > 50) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "status", "error",
+                "message", "iterations must be between 1 and 50"
+            ));
+        }
+        return ResponseEntity.ok(preprocessBenchmark.run(iterations));
+    }
+
+    private ResponseEntity<Map<String, String>> modelAction(java.util.concurrent.Callable<String> action) {
+        try {
+            return ResponseEntity.ok(Map.of("status", "success", "message", action.call()));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("status", "error", "message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of(
+                "status", "error",
+                "message", "Model operation failed: " + e.getMessage()
+            ));
+        }
+    }
 }
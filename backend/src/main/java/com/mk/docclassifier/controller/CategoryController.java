@@ -43,6 +43,7 @@ public class CategoryController {
     @Operation(summary = "Create category", description = "Create a new document category")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Category created successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid rule pattern"),
             @ApiResponse(responseCode = "403", description = "Access denied"),
             @ApiResponse(responseCode = "409", description = "Category name already exists")
     })
@@ -53,6 +54,8 @@ public class CategoryController {
             return ResponseEntity.ok(categoryService.createCategory(request, user));
         } catch (org.springframework.security.access.AccessDeniedException ex) {
             return ResponseEntity.status(org.springframework.http.HttpStatus.FORBIDDEN).body(ex.getMessage());
+        } catch (java.util.regex.PatternSyntaxException ex) {
+            return ResponseEntity.badRequest().body("Invalid pattern: " + ex.getDescription() + " in " + ex.getPattern());
         } catch (IllegalArgumentException ex) {
             return ResponseEntity.status(org.springframework.http.HttpStatus.CONFLICT).body(ex.getMessage());
         }
@@ -61,6 +64,7 @@ public class CategoryController {
     @Operation(summary = "Update category", description = "Update an existing category")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Category updated successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid rule pattern"),
             @ApiResponse(responseCode = "403", description = "Access denied"),
             @ApiResponse(responseCode = "404", description = "Category not found"),
             @ApiResponse(responseCode = "409", description = "Category name already exists")
@@ -74,6 +78,8 @@ public class CategoryController {
             return ResponseEntity.ok(categoryService.updateCategory(id, request, user));
         } catch (org.springframework.security.access.AccessDeniedException ex) {
             return ResponseEntity.status(org.springframework.http.HttpStatus.FORBIDDEN).body(ex.getMessage());
+        } catch (java.util.regex.PatternSyntaxException ex) {
+            return ResponseEntity.badRequest().body("Invalid pattern: " + ex.getDescription() + " in " + ex.getPattern());
         } catch (IllegalArgumentException ex) {
             return ResponseEntity.status(org.springframework.http.HttpStatus.CONFLICT).body(ex.getMessage());
         } catch (RuntimeException ex) {
@@ -1,9 +1,12 @@
 package com.mk.docclassifier.controller;
 
 import com.mk.docclassifier.domain.entity.Document;
+import com.mk.docclassifier.domain.entity.DocumentText;
 import com.mk.docclassifier.domain.entity.User;
 import com.mk.docclassifier.service.DocumentService;
 import com.mk.docclassifier.service.StorageService;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import com.mk.docclassifier.service.text.TextRange;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -21,11 +24,16 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/documents")
@@ -33,8 +41,13 @@ import java.util.List;
 @Tag(name = "Documents", description = "Document management APIs - Upload, search, classify and manage documents")
 public class DocumentController {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    // Tells search clients whether q matched the full text or only filenames and excerpts
+    private static final String SEARCH_SCOPE = "X-Search-Scope";
+
     private final DocumentService documentService;
     private final StorageService storageService;
+    private final DocumentTextStore textStore;
 
     @Operation(
             summary = "Upload a document",
@@ -54,14 +67,22 @@ public class DocumentController {
         return ResponseEntity.ok(documentService.uploadDocument(file, user.getId()));
     }
 
-    @Operation(summary = "Get all documents", description = "Retrieve all documents for the authenticated user (admins see all)")
+    @Operation(summary = "Get all documents", description = "Retrieve all documents for the authenticated user (admins see all). "
+            + "With size or cursor, returns one page, newest first, and a cursor for the next")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Documents retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor"),
             @ApiResponse(responseCode = "401", description = "Unauthorized")
     })
     @GetMapping
-    public ResponseEntity<List<Document>> getAllDocuments(@AuthenticationPrincipal User user) {
-        return ResponseEntity.ok(documentService.getDocumentsForUser(user));
+    public ResponseEntity<?> getAllDocuments(
+            @Parameter(description = "Page size") @RequestParam(required = false) Integer size,
+            @Parameter(description = "nextCursor of the previous page") @RequestParam(required = false) String cursor,
+            @AuthenticationPrincipal User user) {
+        if (size == null && cursor == null) {
+            return ResponseEntity.ok(documentService.getDocumentsForUser(user));
+        }
+        return ResponseEntity.ok(documentService.getDocumentsForUser(user, cursor, size != null ? size : DEFAULT_PAGE_SIZE));
     }
 
     @Operation(summary = "Get document by ID", description = "Retrieve a specific document by its ID")
@@ -114,22 +135,99 @@ public class DocumentController {
         }
     }
 
+    @Operation(
+            summary = "Get document text",
+            description = "Stream the extracted text as UTF-8 plain text, decompressed on the fly. A single Range is "
+                    + "supported in chars (UTF-16 code units, e.g. Range: chars=0-9999) or in bytes of the UTF-8 text"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Full text"),
+            @ApiResponse(responseCode = "206", description = "Requested range of the text"),
+            @ApiResponse(responseCode = "403", description = "Access denied"),
+            @ApiResponse(responseCode = "404", description = "Document not found or no text extracted yet"),
+            @ApiResponse(responseCode = "416", description = "Range outside the text")
+    })
+    @GetMapping("/{id}/text")
+    public ResponseEntity<StreamingResponseBody> getDocumentText(
+            @Parameter(description = "Document ID", required = true) @PathVariable Long id,
+            @Parameter(description = "Optional range, e.g. chars=0-9999, chars=-5000 or bytes=1024-")
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @AuthenticationPrincipal User user) {
+        try {
+            documentService.getDocumentForUser(id, user);
+        } catch (org.springframework.security.access.AccessDeniedException ex) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (RuntimeException ex) {
+            return ResponseEntity.notFound().build();
+        }
+        DocumentText text = textStore.header(id).orElse(null);
+        if (text == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Optional<TextRange> range = TextRange.parse(rangeHeader, text.getCharLength(), text.getByteLength());
+        if (range.isPresent() && !range.get().satisfiable()) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, range.get().contentRange())
+                    .build();
+        }
+        long start = range.map(TextRange::start).orElse(0L);
+        long end = range.map(TextRange::end).orElse(text.getCharLength());
+        boolean bytes = range.isPresent() && TextRange.BYTES.equals(range.get().unit());
+
+        // No Content-Length except for byte ranges: the body goes out chunked, a chunk of text at a time
+        ResponseEntity.BodyBuilder response = range.isPresent()
+                ? ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).header(HttpHeaders.CONTENT_RANGE, range.get().contentRange())
+                : ResponseEntity.ok();
+        if (bytes) {
+            response.contentLength(range.get().length());
+        }
+        StreamingResponseBody body = bytes
+                ? out -> textStore.writeBytes(id, start, end, out)
+                : out -> {
+                    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                    textStore.writeChars(id, start, end, writer);
+                    writer.flush();
+                };
+        return response
+                .header(HttpHeaders.ACCEPT_RANGES, text.getByteLength() != null ? "chars, bytes" : "chars")
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(body);
+    }
+
     @Operation(
             summary = "Search documents",
-            description = "Search documents by content, filename, category or status with pagination"
+            description = "Search documents by content, filename, category, status or tags with pagination. With q, the "
+                    + "X-Search-Scope header is full-text when the index answered it, or filename-and-excerpt when it "
+                    + "fell back to a substring match on filenames and the first part of each text"
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Search results returned"),
             @ApiResponse(responseCode = "401", description = "Unauthorized")
     })
     @GetMapping("/search")
-    public ResponseEntity<org.springframework.data.domain.Page<Document>> searchDocuments(
+    public ResponseEntity<?> searchDocuments(
             @Parameter(description = "Search query (searches in filename and OCR text)") @RequestParam(required = false) String q,
             @Parameter(description = "Filter by category name") @RequestParam(required = false) String category,
             @Parameter(description = "Filter by status (UPLOADED, PROCESSING, PROCESSED, ERROR)") @RequestParam(required = false) String status,
+            @Parameter(description = "Tag ids the document must all have") @RequestParam(required = false) List<Long> tags,
+            @Parameter(description = "Tag ids the document must have at least one of") @RequestParam(required = false) List<Long> anyTags,
+            @Parameter(description = "Tag ids the document must not have") @RequestParam(required = false) List<Long> excludeTags,
+            @Parameter(description = "Also return result counts per category, status and tag") @RequestParam(defaultValue = "false") boolean facets,
+            @Parameter(description = "Return a slice without total counts, continued by cursor") @RequestParam(defaultValue = "false") boolean slice,
+            @Parameter(description = "nextCursor of the previous slice") @RequestParam(required = false) String cursor,
             @Parameter(description = "Pagination parameters") org.springframework.data.domain.Pageable pageable,
             @AuthenticationPrincipal User user) {
-        return ResponseEntity.ok(documentService.searchDocuments(q, category, status, user, pageable));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (q != null && !q.isBlank()) {
+            response.header(SEARCH_SCOPE, documentService.isFullTextQuery(q) ? "full-text" : "filename-and-excerpt");
+        }
+        if (slice || cursor != null) {
+            return response.body(documentService.searchDocumentSlice(q, category, status, tags, anyTags, excludeTags, facets,
+                    cursor, pageable.getPageSize(), user));
+        }
+        return response.body(documentService.searchDocuments(q, category, status, tags, anyTags, excludeTags, facets, user,
+                pageable));
     }
 
     @Operation(summary = "Reclassify document", description = "Manually change the category of a document")
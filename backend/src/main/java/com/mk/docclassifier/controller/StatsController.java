@@ -3,11 +3,9 @@ package com.mk.docclassifier.controller;
 import com.mk.docclassifier.domain.entity.DocumentStatus;
 import com.mk.docclassifier.domain.entity.Role;
 import com.mk.docclassifier.domain.entity.User;
-import com.mk.docclassifier.repository.CategoryRepository;
-import com.mk.docclassifier.repository.DocumentRepository;
-import com.mk.docclassifier.repository.TagRepository;
-import lombok.Builder;
-import lombok.Data;
+import com.mk.docclassifier.service.LabelDictionary;
+import com.mk.docclassifier.service.stats.DocumentStatistics;
+import com.mk.docclassifier.service.stats.StatsSnapshot;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -15,74 +13,73 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/stats")
 @RequiredArgsConstructor
 public class StatsController {
 
-    private final DocumentRepository documentRepository;
-    private final CategoryRepository categoryRepository;
-    private final TagRepository tagRepository;
+    private final DocumentStatistics statistics;
+    private final LabelDictionary labels;
 
     @GetMapping("/overview")
     public ResponseEntity<Map<String, Object>> getOverview(@AuthenticationPrincipal User user) {
         Map<String, Object> stats = new HashMap<>();
-        
+        StatsSnapshot counters = statistics.visibleTo(user);
+
+        stats.put("totalDocuments", counters.total());
+        stats.put("processedDocuments", counters.count(DocumentStatus.PROCESSED));
+        stats.put("errorDocuments", counters.count(DocumentStatus.ERROR));
         if (user.getRole() == Role.ADMIN) {
-            // Admin sees global stats
-            stats.put("totalDocuments", documentRepository.count());
-            stats.put("processedDocuments", documentRepository.countByStatus(DocumentStatus.PROCESSED));
-            stats.put("errorDocuments", documentRepository.countByStatus(DocumentStatus.ERROR));
-            stats.put("totalCategories", categoryRepository.count());
-            stats.put("totalTags", tagRepository.count());
-            Double avgConfidence = documentRepository.averageConfidence();
-            stats.put("averageConfidence", avgConfidence != null ? avgConfidence : 0.0);
+            // Admin sees every category and tag
+            stats.put("totalCategories", labels.categoryCount());
+            stats.put("totalTags", labels.tagCount());
         } else {
-            // Normal user sees only their own stats
-            Long userId = user.getId();
-            stats.put("totalDocuments", documentRepository.countByUserId(userId));
-            stats.put("processedDocuments", documentRepository.countByUserIdAndStatus(userId, DocumentStatus.PROCESSED));
-            stats.put("errorDocuments", documentRepository.countByUserIdAndStatus(userId, DocumentStatus.ERROR));
-            stats.put("totalCategories", documentRepository.countDistinctCategoriesByUserId(userId));
-            stats.put("totalTags", documentRepository.countDistinctTagsByUserId(userId));
-            Double avgConfidence = documentRepository.averageConfidenceByUserId(userId);
-            stats.put("averageConfidence", avgConfidence != null ? avgConfidence : 0.0);
+            // Normal user sees the ones their documents use
+            stats.put("totalCategories", counters.categories().size());
+            stats.put("totalTags", counters.tags().size());
         }
-        
+        stats.put("averageConfidence", counters.averageConfidence());
+
         return ResponseEntity.ok(stats);
     }
 
     @GetMapping("/categories")
     public ResponseEntity<List<Map<String, Object>>> getCategoryStats(@AuthenticationPrincipal User user) {
-        Map<String, Long> categoryCounts = new HashMap<>();
-        
-        if (user.getRole() == Role.ADMIN) {
-            // Admin sees all documents
-            documentRepository.findAll().forEach(doc -> {
-                String category = doc.getCategory() != null ? doc.getCategory().getName() : "Uncategorized";
-                categoryCounts.put(category, categoryCounts.getOrDefault(category, 0L) + 1);
-            });
-        } else {
-            // Normal user sees only their own documents
-            documentRepository.findByUserId(user.getId()).forEach(doc -> {
-                String category = doc.getCategory() != null ? doc.getCategory().getName() : "Uncategorized";
-                categoryCounts.put(category, categoryCounts.getOrDefault(category, 0L) + 1);
-            });
+        StatsSnapshot counters = statistics.visibleTo(user);
+        List<Map<String, Object>> result = counts(counters.categories(), id -> labels.category(id).name());
+        if (counters.uncategorized() > 0) {
+            result.add(count("Uncategorized", counters.uncategorized()));
         }
+        return ResponseEntity.ok(result);
+    }
 
-        List<Map<String, Object>> result = categoryCounts.entrySet().stream()
-                .map(entry -> {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("name", entry.getKey());
-                    map.put("count", entry.getValue());
-                    return map;
-                })
-                .toList();
+    @GetMapping("/tags")
+    public ResponseEntity<List<Map<String, Object>>> getTagStats(@AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(counts(statistics.visibleTo(user).tags(), id -> labels.tag(id).name()));
+    }
 
-        return ResponseEntity.ok(result);
+    // Ids deleted since they were counted have no name and are left out
+    private static List<Map<String, Object>> counts(Map<Long, Long> counts, Function<Long, String> names) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        counts.forEach((id, count) -> {
+            String name = names.apply(id);
+            if (name != null) {
+                result.add(count(name, count));
+            }
+        });
+        return result;
+    }
+
+    private static Map<String, Object> count(String name, long count) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", name);
+        map.put("count", count);
+        return map;
     }
 }
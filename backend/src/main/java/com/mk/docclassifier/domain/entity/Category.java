@@ -17,7 +17,9 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @Entity
 @Table(name = "categories")
-@JsonIgnoreProperties({"createdBy", "hibernateLazyInitializer", "handler"})
+// Categories of a list of documents are loaded together, not one select per document
+@org.hibernate.annotations.BatchSize(size = 100)
+@JsonIgnoreProperties({"createdBy", "keywords", "patterns", "hibernateLazyInitializer", "handler"})
 public class Category {
 
     @Id
@@ -33,6 +35,14 @@ public class Category {
     @Column(length = 16)
     private String color;
 
+    // Rule-based classification: one keyword or phrase per line, matched as whole words ignoring case and accents
+    @Column(columnDefinition = "TEXT")
+    private String keywords;
+
+    // One regular expression per line, matched ignoring case
+    @Column(columnDefinition = "TEXT")
+    private String patterns;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by_user_id")
     private User createdBy;
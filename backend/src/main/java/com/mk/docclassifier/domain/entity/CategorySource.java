@@ -0,0 +1,7 @@
+package com.mk.docclassifier.domain.entity;
+
+// Who set a document's category: the pipeline's classifiers, or a person
+public enum CategorySource {
+    PREDICTED,
+    MANUAL
+}
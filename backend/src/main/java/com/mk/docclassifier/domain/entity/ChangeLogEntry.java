@@ -0,0 +1,60 @@
+package com.mk.docclassifier.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// One committed change, read back by the other instances to refresh their in-memory views
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "change_log", indexes = {
+        @Index(name = "idx_change_log_created", columnList = "created_at")
+})
+public class ChangeLogEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ChangedEntity entity;
+
+    // Null for bulk category and tag changes
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    // DocumentChangedEvent.Change for documents
+    @Column(name = "change_type", length = 16)
+    private String changeType;
+
+    // New and earlier manual category of a LABEL change
+    @Column(name = "category_id")
+    private Long categoryId;
+
+    @Column(name = "previous_category_id")
+    private Long previousCategoryId;
+
+    // CountedDocument of a DOCUMENT change, before and after it; null where the document did not exist
+    @Column(name = "counted_before", length = 4000)
+    private String countedBefore;
+
+    @Column(name = "counted_after", length = 4000)
+    private String countedAfter;
+
+    // Instance that made the change; it skips its own entries
+    @Column(nullable = false, length = 128)
+    private String origin;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
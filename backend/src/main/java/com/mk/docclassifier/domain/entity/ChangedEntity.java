@@ -0,0 +1,9 @@
+package com.mk.docclassifier.domain.entity;
+
+public enum ChangedEntity {
+    DOCUMENT,
+    CATEGORY,
+    TAG,
+    // A manual reclassification, replayed into the other instances' classifiers
+    LABEL
+}
@@ -17,7 +17,12 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+        @Index(name = "idx_documents_content_hash", columnList = "content_hash"),
+        // Keyset pagination, newest first (all documents, and per owner)
+        @Index(name = "idx_documents_uploaded", columnList = "uploaded_at, id"),
+        @Index(name = "idx_documents_user_uploaded", columnList = "user_id, uploaded_at, id")
+})
 public class Document {
 
     @Id
@@ -38,6 +43,10 @@ public class Document {
 
     private long size;
 
+    // SHA-256 of the stored bytes; identical uploads share the blob and the processing results
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Enumerated(EnumType.STRING)
     private DocumentStatus status;
 
@@ -45,14 +54,30 @@ public class Document {
     @JoinColumn(name = "category_id")
     private Category category;
 
+    // Only MANUAL categories are used as training labels, never the classifiers' own output
+    @Enumerated(EnumType.STRING)
+    @Column(name = "category_source", length = 16)
+    private CategorySource categorySource;
+
+    // When a user last set the category by hand; unlike processedAt, other edits leave it alone
+    @Column(name = "labeled_at")
+    private LocalDateTime labeledAt;
+
     private Double confidence;
 
-    @Column(columnDefinition = "TEXT")
-    private String ocrText;
+    // Extracted text length in chars; the text itself is in the compressed text store
+    private Long textLength;
+
+    // Start of the extracted text, carried through the pipeline for classification only
+    @Transient
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private String textExcerpt;
 
     private String errorMessage;
 
+    // Entity lists load the tags of up to 100 documents per query instead of one query per document
     @Builder.Default
+    @org.hibernate.annotations.BatchSize(size = 100)
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(name = "document_tags", joinColumns = @JoinColumn(name = "document_id"), inverseJoinColumns = @JoinColumn(name = "tag_id"))
     private Set<Tag> tags = new HashSet<>();
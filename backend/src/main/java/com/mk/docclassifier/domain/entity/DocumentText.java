@@ -0,0 +1,39 @@
+package com.mk.docclassifier.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Header of a document's extracted text; the text itself lives compressed in
+ * {@link DocumentTextChunk}s. The excerpt is the uncompressed start of the text, the part the
+ * classifier sees.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "document_texts")
+public class DocumentText {
+
+    @Id
+    @Column(name = "document_id")
+    private Long documentId;
+
+    // In chars
+    @Column(name = "char_length", nullable = false)
+    private long charLength;
+
+    // UTF-8 encoded size
+    @Column(name = "byte_length")
+    private Long byteLength;
+
+    @Column(name = "chunk_count", nullable = false)
+    private int chunkCount;
+
+    @Column(columnDefinition = "TEXT")
+    private String excerpt;
+}
@@ -0,0 +1,45 @@
+package com.mk.docclassifier.domain.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One Deflate-compressed UTF-8 slice of a document's text, covering chars [charStart, charStart + charCount)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "document_text_chunks", uniqueConstraints = @UniqueConstraint(
+        name = "uk_document_text_chunks_seq", columnNames = {"document_id", "seq"}))
+public class DocumentTextChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(nullable = false)
+    private int seq;
+
+    @Column(name = "char_start", nullable = false)
+    private long charStart;
+
+    @Column(name = "char_count", nullable = false)
+    private int charCount;
+
+    // Offsets of the chunk in the UTF-8 encoded text
+    @Column(name = "byte_start")
+    private Long byteStart;
+
+    @Column(name = "byte_count")
+    private Integer byteCount;
+
+    // Sized for a mediumblob on MySQL, bytea on PostgreSQL
+    @Column(nullable = false, length = 16_777_215)
+    private byte[] data;
+}
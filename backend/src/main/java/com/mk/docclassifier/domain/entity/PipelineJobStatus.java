@@ -0,0 +1,8 @@
+package com.mk.docclassifier.domain.entity;
+
+public enum PipelineJobStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED
+}
@@ -0,0 +1,17 @@
+package com.mk.docclassifier.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiClassificationRequest {
+
+    // Category names the remote model must choose from
+    private List<String> categories;
+    private List<String> documents;
+}
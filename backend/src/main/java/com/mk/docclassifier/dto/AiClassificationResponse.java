@@ -0,0 +1,25 @@
+package com.mk.docclassifier.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiClassificationResponse {
+
+    private List<Result> results;
+
+    // index refers to the position of the document in the request
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private int index;
+        private String category;
+        private double confidence;
+    }
+}
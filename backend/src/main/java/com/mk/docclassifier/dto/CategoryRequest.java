@@ -4,6 +4,8 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class CategoryRequest {
 
@@ -16,4 +18,11 @@ public class CategoryRequest {
 
     @Size(max = 16, message = "Color must be at most 16 characters")
     private String color;
+
+    // Rule-based classification: keywords/phrases and regular expressions that identify the category
+    @Size(max = 500, message = "At most 500 keywords")
+    private List<@Size(max = 255, message = "Keywords must be at most 255 characters") String> keywords;
+
+    @Size(max = 100, message = "At most 100 patterns")
+    private List<@Size(max = 1024, message = "Patterns must be at most 1024 characters") String> patterns;
 }
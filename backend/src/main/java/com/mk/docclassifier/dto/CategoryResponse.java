@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Value;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Value
 @Builder
@@ -14,6 +15,8 @@ public class CategoryResponse {
     String name;
     String description;
     String color;
+    List<String> keywords;
+    List<String> patterns;
     long documentCount;
     String createdByUsername;
     Long createdByUserId;
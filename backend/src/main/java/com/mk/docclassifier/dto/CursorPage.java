@@ -0,0 +1,19 @@
+package com.mk.docclassifier.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+import java.util.List;
+
+// A page found by seeking from the previous one's cursor; there is no total, so no count query
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CursorPage<T> {
+    List<T> content;
+    int size;
+    boolean hasNext;
+    // Pass back as cursor for the next page; null on the last one
+    String nextCursor;
+    // Only when requested from search
+    SearchFacets facets;
+}
@@ -0,0 +1,31 @@
+package com.mk.docclassifier.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A document as listed and searched: no storage details and no entity graph. Read with a
+ * constructor expression carrying only the category id; the tags of a whole page come from one
+ * extra query, and both are named from the shared label dictionary.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record DocumentSummary(Long id, String originalFilename, String contentType, long size, DocumentStatus status,
+        Label category, Double confidence, List<Label> tags, String errorMessage, LocalDateTime uploadedAt,
+        LocalDateTime processedAt) {
+
+    // Constructor expression form, before labels are attached
+    public DocumentSummary(Long id, String originalFilename, String contentType, long size, DocumentStatus status,
+            Long categoryId, Double confidence, String errorMessage, LocalDateTime uploadedAt,
+            LocalDateTime processedAt) {
+        this(id, originalFilename, contentType, size, status, categoryId == null ? null : new Label(categoryId, null, null),
+                confidence, List.of(), errorMessage, uploadedAt, processedAt);
+    }
+
+    public DocumentSummary withLabels(Label category, List<Label> tags) {
+        return new DocumentSummary(id, originalFilename, contentType, size, status, category, confidence, tags,
+                errorMessage, uploadedAt, processedAt);
+    }
+}
@@ -0,0 +1,15 @@
+package com.mk.docclassifier.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FacetValue {
+    // Category or tag id; statuses only have a name
+    Long id;
+    String name;
+    long count;
+}
@@ -0,0 +1,8 @@
+package com.mk.docclassifier.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// A category or tag as shown next to a document
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record Label(Long id, String name, String color) {
+}
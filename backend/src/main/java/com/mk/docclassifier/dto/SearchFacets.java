@@ -0,0 +1,15 @@
+package com.mk.docclassifier.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+// Result counts per value for the current query and filters, most frequent first
+@Value
+@Builder
+public class SearchFacets {
+    List<FacetValue> categories;
+    List<FacetValue> statuses;
+    List<FacetValue> tags;
+}
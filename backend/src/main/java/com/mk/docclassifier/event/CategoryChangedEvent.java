@@ -0,0 +1,5 @@
+package com.mk.docclassifier.event;
+
+// Published when categories are created, updated, deleted or seeded; categoryId is null for bulk changes
+public record CategoryChangedEvent(Long categoryId) {
+}
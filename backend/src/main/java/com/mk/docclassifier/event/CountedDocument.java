@@ -0,0 +1,36 @@
+package com.mk.docclassifier.event;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+
+import java.util.Arrays;
+import java.util.List;
+
+// What one document adds to the statistics counters, as a logged change found or left it
+public record CountedDocument(Long userId, Long categoryId, DocumentStatus status, Double confidence,
+        List<Long> tagIds) {
+
+    // One change log column: "userId;categoryId;status;confidence;tagId,tagId", empty fields for nulls
+    public String encode() {
+        return field(userId) + ";" + field(categoryId) + ";" + field(status) + ";" + field(confidence) + ";"
+                + String.join(",", tagIds.stream().map(String::valueOf).toList());
+    }
+
+    public static CountedDocument decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] fields = encoded.split(";", -1);
+        List<Long> tagIds = fields[4].isEmpty() ? List.of()
+                : Arrays.stream(fields[4].split(",")).map(Long::valueOf).toList();
+        return new CountedDocument(
+                fields[0].isEmpty() ? null : Long.valueOf(fields[0]),
+                fields[1].isEmpty() ? null : Long.valueOf(fields[1]),
+                fields[2].isEmpty() ? null : DocumentStatus.valueOf(fields[2]),
+                fields[3].isEmpty() ? null : Double.valueOf(fields[3]),
+                tagIds);
+    }
+
+    private static String field(Object value) {
+        return value == null ? "" : value.toString();
+    }
+}
@@ -0,0 +1,11 @@
+package com.mk.docclassifier.event;
+
+/**
+ * Published by the change feed for every logged document change: right after commit on the instance
+ * that made it, and when another instance reads it from the log. Carries what the document counted
+ * for before and after the change; either is null when the document did not exist, and both are when
+ * the change was logged without them.
+ */
+public record DocumentChangeLoggedEvent(Long documentId, DocumentChangedEvent.Change change, CountedDocument before,
+        CountedDocument after) {
+}
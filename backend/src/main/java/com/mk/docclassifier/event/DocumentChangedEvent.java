@@ -0,0 +1,13 @@
+package com.mk.docclassifier.event;
+
+// Published after a change to a document is committed; listeners reload what they need
+public record DocumentChangedEvent(Long documentId, Change change) {
+
+    public enum Change {
+        // Text and everything else, e.g. after processing
+        CONTENT,
+        // Status, category or tags only
+        METADATA,
+        DELETED
+    }
+}
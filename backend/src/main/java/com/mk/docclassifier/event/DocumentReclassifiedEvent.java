@@ -0,0 +1,12 @@
+package com.mk.docclassifier.event;
+
+import java.time.LocalDateTime;
+
+// Published when a user corrects a document's category; carries the text so listeners need no reload,
+// except when replayed from another instance, where the text is null.
+// previousCategoryId is the document's earlier manual category, which the classifier has already
+// counted; null when the earlier category was predicted or missing. categoryId is null when a manually
+// labeled document is deleted and its label goes with it
+public record DocumentReclassifiedEvent(Long documentId, Long categoryId, Long previousCategoryId, String text,
+        LocalDateTime labeledAt) {
+}
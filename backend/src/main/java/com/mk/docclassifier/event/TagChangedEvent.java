@@ -0,0 +1,5 @@
+package com.mk.docclassifier.event;
+
+// Published when tags are created, updated, deleted or seeded; tagId is null for bulk changes
+public record TagChangedEvent(Long tagId) {
+}
@@ -7,4 +7,6 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
 	boolean existsByNameIgnoreCase(String name);
+
+	java.util.Optional<Category> findByName(String name);
 }
@@ -1,44 +1,210 @@
 package com.mk.docclassifier.repository;
 
+import com.mk.docclassifier.domain.entity.Category;
+import com.mk.docclassifier.domain.entity.CategorySource;
 import com.mk.docclassifier.domain.entity.Document;
 import com.mk.docclassifier.domain.entity.DocumentStatus;
 import com.mk.docclassifier.domain.entity.Tag;
+import com.mk.docclassifier.dto.DocumentSummary;
+import com.mk.docclassifier.service.classifier.TrainingExample;
+import com.mk.docclassifier.service.search.DocumentAttributes;
+import com.mk.docclassifier.service.search.DocumentTagLink;
+import com.mk.docclassifier.service.search.IndexedDocument;
+import com.mk.docclassifier.service.stats.DocumentGroupCount;
+import com.mk.docclassifier.service.stats.LabelCount;
+import com.mk.docclassifier.service.stats.TagGroupCount;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
+        // List and search rows: scalar columns and the category id only, never the entity graph. The
+        // outer join is what sorting on category.name binds to
+        String SUMMARY_SELECT = "SELECT new com.mk.docclassifier.dto.DocumentSummary(d.id, d.originalFilename, "
+                        + "d.contentType, d.size, d.status, c.id, d.confidence, d.errorMessage, d.uploadedAt, "
+                        + "d.processedAt) FROM Document d LEFT JOIN d.category c ";
+
         List<Document> findByStatus(DocumentStatus status);
 
-        List<Document> findByUserId(Long userId);
+        @Query("SELECT d FROM Document d LEFT JOIN FETCH d.user WHERE d.id = :id")
+        Optional<Document> findWithUserById(@Param("id") Long id);
 
-        List<Document> findByCategoryId(Long categoryId);
+        Optional<Document> findFirstByContentHashAndStatusAndIdNotOrderByProcessedAtDesc(String contentHash,
+                        DocumentStatus status, Long id);
 
-        long countByCategoryId(Long categoryId);
+        boolean existsByFilenameAndIdNot(String filename, Long id);
 
-        List<Document> findByTagsContaining(Tag tag);
+        // One row per category or tag in use, over one owner's documents or all of them (null)
+        @Query("SELECT new com.mk.docclassifier.service.stats.LabelCount(d.category.id, COUNT(d)) FROM Document d "
+                        + "WHERE d.category IS NOT NULL AND (:userId IS NULL OR d.user.id = :userId) "
+                        + "GROUP BY d.category.id")
+        List<LabelCount> countByCategory(@Param("userId") Long userId);
 
-        long countByTagsContaining(Tag tag);
+        @Query("SELECT new com.mk.docclassifier.service.stats.LabelCount(t.id, COUNT(d)) FROM Document d JOIN d.tags t "
+                        + "WHERE (:userId IS NULL OR d.user.id = :userId) GROUP BY t.id")
+        List<LabelCount> countByTag(@Param("userId") Long userId);
+
+        // A single row's count, for the response to a create or update
+        long countByCategoryId(Long categoryId);
 
         long countByCategoryIdAndUserId(Long categoryId, Long userId);
 
+        long countByTagsContaining(Tag tag);
+
         long countByTagsContainingAndUserId(Tag tag, Long userId);
 
+        // Row locks on every document sharing a blob, held until commit by uploads and deletes of that content
+        @Lock(LockModeType.PESSIMISTIC_WRITE)
+        @Query("SELECT d FROM Document d WHERE d.contentHash = :contentHash")
+        List<Document> lockByContentHash(@Param("contentHash") String contentHash);
+
+        // Targeted pipeline updates: no entity merge, so no reload of tags and category
+        @Modifying
+        @Query("UPDATE Document d SET d.status = :status, d.textLength = :textLength, d.category = :category, "
+                        + "d.categorySource = :categorySource, d.confidence = :confidence, d.errorMessage = NULL, "
+                        + "d.processedAt = :processedAt WHERE d.id = :id")
+        int markProcessed(@Param("id") Long id, @Param("status") DocumentStatus status,
+                        @Param("textLength") Long textLength, @Param("category") Category category,
+                        @Param("categorySource") CategorySource categorySource, @Param("confidence") Double confidence,
+                        @Param("processedAt") LocalDateTime processedAt);
+
+        @Modifying
+        @Query("UPDATE Document d SET d.status = :status, d.errorMessage = :errorMessage, d.processedAt = :processedAt "
+                        + "WHERE d.id = :id")
+        int markFailed(@Param("id") Long id, @Param("status") DocumentStatus status,
+                        @Param("errorMessage") String errorMessage, @Param("processedAt") LocalDateTime processedAt);
+
+        // Manually labeled text excerpts for the local classifier; predicted categories are left out so the
+        // model never learns from its own output. Streamed so training never holds every document at once;
+        // the label times tell which online corrections a retrain has already read
+        @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "200"))
+        @Query("SELECT new com.mk.docclassifier.service.classifier.TrainingExample(d.category.id, t.excerpt, "
+                        + "d.labeledAt) FROM Document d, DocumentText t "
+                        + "WHERE t.documentId = d.id AND d.category IS NOT NULL "
+                        + "AND d.categorySource = com.mk.docclassifier.domain.entity.CategorySource.MANUAL "
+                        + "AND t.excerpt IS NOT NULL")
+        Stream<TrainingExample> streamTrainingExamples();
+
+        @Query("SELECT MAX(d.labeledAt) FROM Document d "
+                        + "WHERE d.categorySource = com.mk.docclassifier.domain.entity.CategorySource.MANUAL")
+        LocalDateTime findLatestManualLabelAt();
+
+        @Query("SELECT new com.mk.docclassifier.service.search.IndexedDocument(d.id, u.id, d.originalFilename) "
+                        + "FROM Document d LEFT JOIN d.user u WHERE d.id = :id")
+        Optional<IndexedDocument> findIndexedDocument(@Param("id") Long id);
+
+        List<Document> findByUserId(Long userId);
+
+        // All documents of an owner, or every document when userId is null
+        @Query(SUMMARY_SELECT + "WHERE :userId IS NULL OR d.user.id = :userId ORDER BY d.id")
+        List<DocumentSummary> findSummariesByOwner(@Param("userId") Long userId);
+
+        @Query("SELECT new com.mk.docclassifier.service.search.DocumentTagLink(d.id, t.id) FROM Document d JOIN d.tags t "
+                        + "WHERE :userId IS NULL OR d.user.id = :userId ORDER BY t.id")
+        List<DocumentTagLink> findTagLinksByOwner(@Param("userId") Long userId);
+
+        @Query(SUMMARY_SELECT + "WHERE d.id IN :ids")
+        List<DocumentSummary> findSummaries(@Param("ids") Collection<Long> ids);
+
+        // Search filters as SQL, for sorts the filter index cannot provide. A null filter is not applied; tag
+        // lists are never empty (pass a non-existent id instead) and the counts say how many ids are real
+        String FILTER_WHERE = "WHERE (:userId IS NULL OR d.user.id = :userId) "
+                        + "AND (:categoryId IS NULL OR c.id = :categoryId) "
+                        + "AND (:status IS NULL OR d.status = :status) "
+                        + "AND (SELECT COUNT(t) FROM Document d2 JOIN d2.tags t WHERE d2 = d AND t.id IN :allTags) = :allTagCount "
+                        + "AND (:anyTagCount = 0 OR EXISTS (SELECT 1 FROM Document d2 JOIN d2.tags t "
+                        + "WHERE d2 = d AND t.id IN :anyTags)) "
+                        + "AND NOT EXISTS (SELECT 1 FROM Document d2 JOIN d2.tags t WHERE d2 = d AND t.id IN :noTags) "
+                        + "AND (:query IS NULL OR LOWER(d.originalFilename) LIKE LOWER(CONCAT('%', :query, '%')) "
+                        + "OR EXISTS (SELECT 1 FROM DocumentText x WHERE x.documentId = d.id "
+                        + "AND LOWER(x.excerpt) LIKE LOWER(CONCAT('%', :query, '%'))))";
+
+        @Query(value = SUMMARY_SELECT + FILTER_WHERE,
+                        countQuery = "SELECT COUNT(d) FROM Document d LEFT JOIN d.category c " + FILTER_WHERE)
+        Page<DocumentSummary> findSummariesMatching(@Param("userId") Long userId,
+                        @Param("categoryId") Long categoryId, @Param("status") DocumentStatus status,
+                        @Param("allTags") Collection<Long> allTags, @Param("allTagCount") long allTagCount,
+                        @Param("anyTags") Collection<Long> anyTags, @Param("anyTagCount") long anyTagCount,
+                        @Param("noTags") Collection<Long> noTags, @Param("query") String query, Pageable pageable);
+
+        @Query("SELECT new com.mk.docclassifier.service.search.DocumentTagLink(d.id, t.id) FROM Document d JOIN d.tags t "
+                        + "WHERE d.id IN :ids ORDER BY t.id")
+        List<DocumentTagLink> findTagLinks(@Param("ids") Collection<Long> ids);
+
+        // Keyset pages, newest first: the limit comes from the Pageable and no count query is run
+        @Query(SUMMARY_SELECT + "ORDER BY d.uploadedAt DESC, d.id DESC")
+        List<DocumentSummary> findNewest(Pageable limit);
+
+        @Query(SUMMARY_SELECT + "WHERE d.uploadedAt < :uploadedAt OR (d.uploadedAt = :uploadedAt AND d.id < :id) "
+                        + "ORDER BY d.uploadedAt DESC, d.id DESC")
+        List<DocumentSummary> findNewestBefore(@Param("uploadedAt") LocalDateTime uploadedAt, @Param("id") Long id,
+                        Pageable limit);
+
+        @Query(SUMMARY_SELECT + "WHERE d.user.id = :userId ORDER BY d.uploadedAt DESC, d.id DESC")
+        List<DocumentSummary> findNewestByUser(@Param("userId") Long userId, Pageable limit);
+
+        @Query(SUMMARY_SELECT + "WHERE d.user.id = :userId AND "
+                        + "(d.uploadedAt < :uploadedAt OR (d.uploadedAt = :uploadedAt AND d.id < :id)) "
+                        + "ORDER BY d.uploadedAt DESC, d.id DESC")
+        List<DocumentSummary> findNewestByUserBefore(@Param("userId") Long userId,
+                        @Param("uploadedAt") LocalDateTime uploadedAt, @Param("id") Long id,
+                        Pageable limit);
+
+        List<Document> findByCategoryId(Long categoryId);
+
+        List<Document> findByTagsContaining(Tag tag);
+
         long countByStatus(DocumentStatus status);
 
-        @Query("SELECT d FROM Document d LEFT JOIN d.category c WHERE "
-                        + "(:query IS NULL OR :query = '' OR LOWER(d.originalFilename) LIKE LOWER(CONCAT('%', :query, '%')) OR LOWER(d.ocrText) LIKE LOWER(CONCAT('%', :query, '%'))) AND "
-                        + "(:category IS NULL OR :category = '' OR c.name = :category) AND "
-                        + "(:status IS NULL OR d.status = :status) AND "
+        // Substring fallback, used while the full-text index is being built
+        @Query("SELECT d.id FROM Document d WHERE "
+                        + "(LOWER(d.originalFilename) LIKE LOWER(CONCAT('%', :query, '%')) "
+                        + "OR EXISTS (SELECT 1 FROM DocumentText t WHERE t.documentId = d.id AND LOWER(t.excerpt) LIKE LOWER(CONCAT('%', :query, '%')))) AND "
                         + "(:userId IS NULL OR d.user.id = :userId)")
-        org.springframework.data.domain.Page<Document> searchDocuments(@Param("query") String query,
-                        @Param("category") String category, @Param("status") DocumentStatus status,
-                        @Param("userId") Long userId,
-                        org.springframework.data.domain.Pageable pageable);
+        List<Long> findIdsMatching(@Param("query") String query, @Param("userId") Long userId);
+
+        // Filter index rows, streamed at startup and reloaded per document on change; the change feed reads
+        // one document's to log what it counts for
+        @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+        @Query("SELECT new com.mk.docclassifier.service.search.DocumentAttributes(d.id, u.id, c.id, d.status, d.confidence) "
+                        + "FROM Document d LEFT JOIN d.user u LEFT JOIN d.category c")
+        Stream<DocumentAttributes> streamAttributes();
+
+        @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+        @Query("SELECT new com.mk.docclassifier.service.search.DocumentTagLink(d.id, t.id) FROM Document d JOIN d.tags t")
+        Stream<DocumentTagLink> streamTagLinks();
+
+        @Query("SELECT new com.mk.docclassifier.service.search.DocumentAttributes(d.id, u.id, c.id, d.status, d.confidence) "
+                        + "FROM Document d LEFT JOIN d.user u LEFT JOIN d.category c WHERE d.id = :id")
+        Optional<DocumentAttributes> findAttributes(@Param("id") Long id);
+
+        @Query("SELECT t.id FROM Document d JOIN d.tags t WHERE d.id = :id")
+        List<Long> findTagIds(@Param("id") Long id);
+
+        // Statistics counters, built and reconciled from totals per owner
+        @Query("SELECT new com.mk.docclassifier.service.stats.DocumentGroupCount(u.id, c.id, d.status, COUNT(d), "
+                        + "SUM(d.confidence), COUNT(d.confidence)) "
+                        + "FROM Document d LEFT JOIN d.user u LEFT JOIN d.category c GROUP BY u.id, c.id, d.status")
+        List<DocumentGroupCount> countGroups();
+
+        @Query("SELECT new com.mk.docclassifier.service.stats.TagGroupCount(u.id, t.id, COUNT(d)) "
+                        + "FROM Document d JOIN d.tags t LEFT JOIN d.user u GROUP BY u.id, t.id")
+        List<TagGroupCount> countTagGroups();
 
         @Query("SELECT AVG(d.confidence) FROM Document d WHERE d.confidence IS NOT NULL")
         Double averageConfidence();
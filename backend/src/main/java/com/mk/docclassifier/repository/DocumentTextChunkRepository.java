@@ -0,0 +1,34 @@
+package com.mk.docclassifier.repository;
+
+import com.mk.docclassifier.domain.entity.DocumentTextChunk;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+@Repository
+public interface DocumentTextChunkRepository extends JpaRepository<DocumentTextChunk, Long> {
+
+    // Streamed a few chunks at a time so a long text is never fully loaded
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "4"))
+    @Query("SELECT c FROM DocumentTextChunk c WHERE c.documentId = :documentId ORDER BY c.seq")
+    Stream<DocumentTextChunk> streamByDocumentId(@Param("documentId") Long documentId);
+
+    @Query("SELECT new com.mk.docclassifier.service.text.ChunkSpan(c.seq, c.charStart, c.charCount, c.byteStart, c.byteCount) "
+            + "FROM DocumentTextChunk c WHERE c.documentId = :documentId ORDER BY c.seq")
+    List<com.mk.docclassifier.service.text.ChunkSpan> findSpansByDocumentId(@Param("documentId") Long documentId);
+
+    @Query("SELECT c.data FROM DocumentTextChunk c WHERE c.documentId = :documentId AND c.seq = :seq")
+    Optional<byte[]> findData(@Param("documentId") Long documentId, @Param("seq") int seq);
+
+    @Modifying
+    @Query("DELETE FROM DocumentTextChunk c WHERE c.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") Long documentId);
+}
@@ -0,0 +1,25 @@
+package com.mk.docclassifier.repository;
+
+import com.mk.docclassifier.domain.entity.DocumentText;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DocumentTextRepository extends JpaRepository<DocumentText, Long> {
+
+    @Query("SELECT t.excerpt FROM DocumentText t WHERE t.documentId = :documentId")
+    Optional<String> findExcerptByDocumentId(@Param("documentId") Long documentId);
+
+    @Query("SELECT t.documentId FROM DocumentText t")
+    List<Long> findAllDocumentIds();
+
+    @Modifying
+    @Query("DELETE FROM DocumentText t WHERE t.documentId = :documentId")
+    int deleteByDocumentId(@Param("documentId") Long documentId);
+}
@@ -0,0 +1,57 @@
+package com.mk.docclassifier.repository;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.domain.entity.PipelineJob;
+import com.mk.docclassifier.domain.entity.PipelineJobStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PipelineJobRepository extends JpaRepository<PipelineJob, Long> {
+
+    Optional<PipelineJob> findByDocumentId(Long documentId);
+
+    void deleteByDocumentId(Long documentId);
+
+    long countByStatus(PipelineJobStatus status);
+
+    // Lock timeout -2 is Hibernate's SKIP LOCKED: rendered as FOR UPDATE SKIP LOCKED on PostgreSQL
+    // and MySQL 8, and degraded to a plain FOR UPDATE by dialects without it (H2)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT j FROM PipelineJob j WHERE (j.status = :pending AND j.availableAt <= :now) "
+            + "OR (j.status = :running AND j.leaseExpiresAt < :now) ORDER BY j.availableAt")
+    List<PipelineJob> findClaimable(@Param("pending") PipelineJobStatus pending,
+            @Param("running") PipelineJobStatus running,
+            @Param("now") LocalDateTime now,
+            Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE PipelineJob j SET j.leaseExpiresAt = :until, j.heartbeatAt = :now "
+            + "WHERE j.id IN :ids AND j.leaseOwner = :owner AND j.status = :running")
+    int extendLeases(@Param("ids") Collection<Long> ids, @Param("owner") String owner,
+            @Param("running") PipelineJobStatus running,
+            @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE PipelineJob j SET j.status = :done, j.leaseOwner = NULL, j.leaseExpiresAt = NULL, j.lastError = NULL "
+            + "WHERE j.id = :id AND j.leaseOwner = :owner")
+    int complete(@Param("id") Long id, @Param("owner") String owner, @Param("done") PipelineJobStatus done);
+
+    @Query("SELECT d.id FROM Document d WHERE d.status IN :statuses "
+            + "AND NOT EXISTS (SELECT 1 FROM PipelineJob j WHERE j.documentId = d.id)")
+    List<Long> findDocumentIdsWithoutJob(@Param("statuses") Collection<DocumentStatus> statuses);
+}
@@ -0,0 +1,11 @@
+package com.mk.docclassifier.service;
+
+import com.mk.docclassifier.dto.AiClassificationResponse;
+
+import java.util.List;
+
+public interface AiClassificationService {
+
+    // One remote call for the whole batch; results are missing for documents the model could not place
+    AiClassificationResponse classifyBatch(List<String> texts, List<String> categories);
+}
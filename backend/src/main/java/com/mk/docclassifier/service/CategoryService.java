@@ -5,14 +5,20 @@ import com.mk.docclassifier.domain.entity.Role;
 import com.mk.docclassifier.domain.entity.User;
 import com.mk.docclassifier.dto.CategoryRequest;
 import com.mk.docclassifier.dto.CategoryResponse;
+import com.mk.docclassifier.event.CategoryChangedEvent;
+import com.mk.docclassifier.event.DocumentChangedEvent;
 import com.mk.docclassifier.repository.CategoryRepository;
 import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.classifier.RuleClassifier;
+import com.mk.docclassifier.service.stats.DocumentCounts;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,12 +27,15 @@ public class CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final DocumentRepository documentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DocumentCounts documentCounts;
 
     @Transactional(readOnly = true)
     public List<CategoryResponse> getAllCategories(User user) {
         ensureAdmin(user);
+        Map<Long, Long> counts = documentCounts.byCategory(user);
         return categoryRepository.findAll().stream()
-                .map(category -> toResponse(category, user))
+                .map(category -> toResponse(category, counts))
                 .collect(Collectors.toList());
     }
 
@@ -36,20 +45,30 @@ public class CategoryService {
         if (user == null) {
             throw new AccessDeniedException("Authentication required to create categories");
         }
+        // Keyword and pattern rules run against every document, so only admins may set them
+        if ((joinLines(request.getKeywords()) != null || joinLines(request.getPatterns()) != null)
+                && user.getRole() != Role.ADMIN) {
+            throw new AccessDeniedException("Only administrators can set category rules");
+        }
 
         if (categoryRepository.existsByNameIgnoreCase(request.getName())) {
             throw new IllegalArgumentException("Category name already exists");
         }
+        RuleClassifier.validatePatterns(request.getPatterns());
 
         Category category = Category.builder()
                 .name(request.getName().trim())
                 .description(valueOrNull(request.getDescription()))
                 .color(valueOrNull(request.getColor()))
+                .keywords(joinLines(request.getKeywords()))
+                .patterns(joinLines(request.getPatterns()))
                 .createdBy(user)
                 .build();
 
         Category saved = categoryRepository.save(category);
-        return toResponse(saved, user);
+        eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId()));
+        // Nothing can be filed under a category that did not exist before this transaction
+        return toResponse(saved, Map.of());
     }
 
     @Transactional
@@ -63,13 +82,22 @@ public class CategoryService {
                 && categoryRepository.existsByNameIgnoreCase(request.getName())) {
             throw new IllegalArgumentException("Category name already exists");
         }
+        RuleClassifier.validatePatterns(request.getPatterns());
 
         category.setName(request.getName().trim());
         category.setDescription(valueOrNull(request.getDescription()));
         category.setColor(valueOrNull(request.getColor()));
+        // Omitted rule lists keep the current rules; an empty list clears them
+        if (request.getKeywords() != null) {
+            category.setKeywords(joinLines(request.getKeywords()));
+        }
+        if (request.getPatterns() != null) {
+            category.setPatterns(joinLines(request.getPatterns()));
+        }
 
         Category saved = categoryRepository.save(category);
-        return toResponse(saved, user);
+        eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId()));
+        return toResponse(saved, Map.of(saved.getId(), documentCounts.ofCategory(saved.getId(), user)));
     }
 
     @Transactional
@@ -81,30 +109,30 @@ public class CategoryService {
 
         // Optional: ensure no documents assigned? For now allow deletion; set category null in docs
         var documents = documentRepository.findByCategoryId(id);
-        documents.forEach(document -> document.setCategory(null));
+        documents.forEach(document -> {
+            document.setCategory(null);
+            document.setCategorySource(null);
+        });
         if (!documents.isEmpty()) {
             documentRepository.saveAll(documents);
         }
+        documents.forEach(document -> eventPublisher.publishEvent(
+                new DocumentChangedEvent(document.getId(), DocumentChangedEvent.Change.METADATA)));
 
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
     }
 
-    private CategoryResponse toResponse(Category category, User user) {
-        long docCount = 0;
-        if (category.getId() != null && user != null) {
-            // For regular users, count only their documents; for admins, count all
-            if (user.getRole() == Role.ADMIN) {
-                docCount = documentRepository.countByCategoryId(category.getId());
-            } else {
-                docCount = documentRepository.countByCategoryIdAndUserId(category.getId(), user.getId());
-            }
-        }
+    // Counts of the documents the user can see: one grouped query for a listing, a direct count for a single row
+    private CategoryResponse toResponse(Category category, Map<Long, Long> counts) {
         return CategoryResponse.builder()
                 .id(category.getId())
                 .name(category.getName())
                 .description(category.getDescription())
                 .color(category.getColor())
-                .documentCount(docCount)
+                .keywords(splitLines(category.getKeywords()))
+                .patterns(splitLines(category.getPatterns()))
+                .documentCount(counts.getOrDefault(category.getId(), 0L))
                 .createdByUsername(category.getCreatedBy() != null ? category.getCreatedBy().getUsername() : null)
                 .createdByUserId(category.getCreatedBy() != null ? category.getCreatedBy().getId() : null)
                 .createdAt(category.getCreatedAt())
@@ -118,6 +146,23 @@ public class CategoryService {
         }
     }
 
+    // Rules are stored one per line
+    private String joinLines(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        String joined = values.stream()
+                .map(this::valueOrNull)
+                .filter(java.util.Objects::nonNull)
+                .map(value -> value.replaceAll("[\\r\\n]+", " "))
+                .collect(Collectors.joining("\n"));
+        return joined.isEmpty() ? null : joined;
+    }
+
+    private List<String> splitLines(String value) {
+        return value == null ? List.of() : value.lines().filter(line -> !line.isBlank()).toList();
+    }
+
     private String valueOrNull(String value) {
         if (value == null) {
             return null;
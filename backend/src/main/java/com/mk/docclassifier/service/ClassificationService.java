@@ -2,6 +2,11 @@ package com.mk.docclassifier.service;
 
 import com.mk.docclassifier.domain.entity.Document;
 
+import java.util.List;
+
 public interface ClassificationService {
     void classify(Document document);
+
+    // Classifies documents together so lookups and model state are shared across the batch
+    void classifyBatch(List<Document> documents);
 }
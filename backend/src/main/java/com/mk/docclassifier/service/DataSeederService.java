@@ -2,15 +2,19 @@ package com.mk.docclassifier.service;
 
 import com.mk.docclassifier.domain.entity.Category;
 import com.mk.docclassifier.domain.entity.Tag;
+import com.mk.docclassifier.event.CategoryChangedEvent;
+import com.mk.docclassifier.event.TagChangedEvent;
 import com.mk.docclassifier.repository.CategoryRepository;
 import com.mk.docclassifier.repository.TagRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -19,6 +23,7 @@ public class DataSeederService {
 
     private final CategoryRepository categoryRepository;
     private final TagRepository tagRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public void seedCategoriesAndTags() {
@@ -32,6 +37,8 @@ public class DataSeederService {
         
         seedCategories();
         seedTags();
+        eventPublisher.publishEvent(new CategoryChangedEvent(null));
+        eventPublisher.publishEvent(new TagChangedEvent(null));
         
         log.info("Seeding completed successfully!");
     }
@@ -113,10 +120,48 @@ public class DataSeederService {
         categories.add(createCategory("Archives", "Documents archivés"));
         categories.add(createCategory("Documents personnels", "Documents personnels et divers"));
 
+        applyDefaultRules(categories);
         categoryRepository.saveAll(categories);
         log.info("Inserted {} categories", categories.size());
     }
 
+    // Starter keywords (one per line) and patterns for categories a few words identify reliably
+    private void applyDefaultRules(List<Category> categories) {
+        Map<String, String[]> rules = Map.ofEntries(
+                Map.entry("Factures", new String[] {
+                        "facture\nfacture n°\ninvoice\nmontant ttc\ntotal ttc\ntotal ht\ndate d'échéance",
+                        "factur[ea]\\s*(n°|no|num[ée]ro)\\s*[:#]?\\s*[a-z0-9][a-z0-9/-]{2,}" }),
+                Map.entry("Devis", new String[] {
+                        "devis\nquotation\nbon pour accord\nvalidité de l'offre\ndevis n°", null }),
+                Map.entry("Reçus", new String[] { "reçu\nreceipt\nticket de caisse\nreçu de paiement", null }),
+                Map.entry("NDA", new String[] {
+                        "accord de confidentialité\nnon-disclosure agreement\nnda\nengagement de confidentialité", null }),
+                Map.entry("Contrats", new String[] {
+                        "contrat\nentre les soussignés\nil a été convenu ce qui suit\nfait en deux exemplaires", null }),
+                Map.entry("Paie", new String[] {
+                        "bulletin de paie\nbulletin de salaire\nfiche de paie\nsalaire brut\ncotisations salariales\npayslip", null }),
+                Map.entry("Congés", new String[] { "demande de congé\ncongés payés\nrtt", null }),
+                Map.entry("Déclarations fiscales", new String[] {
+                        "déclaration de tva\navis d'imposition\nimpôt sur le revenu\nimpôt sur les sociétés",
+                        "cerfa\\s*n?°?\\s*\\d{5}" }),
+                Map.entry("Paiements", new String[] { "ordre de virement\nvirement bancaire\navis de paiement", null }),
+                Map.entry("Cahier des charges", new String[] { "cahier des charges\nexigences fonctionnelles", null }),
+                Map.entry("Comptes-rendus réunions", new String[] {
+                        "compte rendu\ncompte-rendu\nordre du jour\nrelevé de décisions", null }),
+                Map.entry("Certificats Clés", new String[] {
+                        "certificat ssl",
+                        "-----BEGIN (CERTIFICATE|[A-Z ]*PRIVATE KEY|PUBLIC KEY)-----" }),
+                Map.entry("API", new String[] { "endpoint\napi rest\nopenapi\nswagger", null }));
+
+        for (Category category : categories) {
+            String[] rule = rules.get(category.getName());
+            if (rule != null) {
+                category.setKeywords(rule[0]);
+                category.setPatterns(rule[1]);
+            }
+        }
+    }
+
     private void seedTags() {
         List<Tag> tags = new ArrayList<>();
 
@@ -2,6 +2,8 @@ package com.mk.docclassifier.service;
 
 import com.mk.docclassifier.domain.entity.Document;
 import com.mk.docclassifier.domain.entity.User;
+import com.mk.docclassifier.dto.CursorPage;
+import com.mk.docclassifier.dto.DocumentSummary;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.util.List;
@@ -10,7 +12,10 @@ import java.util.Optional;
 public interface DocumentService {
     Document uploadDocument(MultipartFile file, Long userId) throws IOException;
 
-        List<Document> getDocumentsForUser(User user);
+        List<DocumentSummary> getDocumentsForUser(User user);
+
+        // Newest first by (uploadedAt, id), continuing after cursor (null for the first page); no total count
+        CursorPage<DocumentSummary> getDocumentsForUser(User user, String cursor, int size);
 
         Optional<Document> getDocument(Long id);
 
@@ -18,8 +23,19 @@ public interface DocumentService {
 
     Document save(Document document);
 
-        org.springframework.data.domain.Page<Document> searchDocuments(String query, String category, String status,
-            User user, org.springframework.data.domain.Pageable pageable);
+        // Tags: all of tags, at least one of anyTags, none of excludeTags (each optional); with facets, the page
+        // is a FacetedPage
+        org.springframework.data.domain.Page<DocumentSummary> searchDocuments(String query, String category, String status,
+            List<Long> tags, List<Long> anyTags, List<Long> excludeTags, boolean facets, User user,
+            org.springframework.data.domain.Pageable pageable);
+
+        // Same search as a count-free slice: relevance order with a query the index answers, newest first otherwise
+        CursorPage<DocumentSummary> searchDocumentSlice(String query, String category, String status, List<Long> tags,
+            List<Long> anyTags, List<Long> excludeTags, boolean facets, String cursor, int size, User user);
+
+        // False when query would fall back to a substring match on filenames and text excerpts, because the
+        // full-text index is disabled, still building, or finds no searchable words in it
+        boolean isFullTextQuery(String query);
 
     Document reclassifyDocument(Long id, Long categoryId, User user);
 
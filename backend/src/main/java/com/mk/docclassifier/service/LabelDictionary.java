@@ -0,0 +1,92 @@
+package com.mk.docclassifier.service;
+
+import com.mk.docclassifier.dto.Label;
+import com.mk.docclassifier.event.CategoryChangedEvent;
+import com.mk.docclassifier.event.TagChangedEvent;
+import com.mk.docclassifier.repository.CategoryRepository;
+import com.mk.docclassifier.repository.TagRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Names and colors of every category and tag, so document rows only need to carry ids. Loaded
+ * on first use and dropped whenever a category or tag changes, here or on another instance; there
+ * are a few hundred at most.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LabelDictionary {
+
+    private final CategoryRepository categoryRepository;
+    private final TagRepository tagRepository;
+    // Bumped on every change; a snapshot loaded under an older generation is reloaded on next use
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    // Falls back to the bare id for a category deleted since the row was read
+    public Label category(Long id) {
+        return id == null ? null : current().categories().getOrDefault(id, new Label(id, null, null));
+    }
+
+    public Label tag(Long id) {
+        return current().tags().getOrDefault(id, new Label(id, null, null));
+    }
+
+    public Collection<Label> categories() {
+        return current().categories().values();
+    }
+
+    public int categoryCount() {
+        return current().categories().size();
+    }
+
+    public int tagCount() {
+        return current().tags().size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        invalidate();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTagChanged(TagChangedEvent event) {
+        invalidate();
+    }
+
+    // Also on a schedule, in case the change feed missed a change made on another instance
+    @Scheduled(initialDelayString = "${app.sync.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${app.sync.reconcile-interval-ms:3600000}")
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        long expected = generation.get();
+        if (current != null && current.generation() == expected) {
+            return current;
+        }
+        Map<Long, Label> categories = new HashMap<>();
+        categoryRepository.findAll().forEach(category -> categories.put(category.getId(),
+                new Label(category.getId(), category.getName(), category.getColor())));
+        Map<Long, Label> tags = new HashMap<>();
+        tagRepository.findAll().forEach(tag -> tags.put(tag.getId(), new Label(tag.getId(), tag.getName(), tag.getColor())));
+        current = new Snapshot(expected, Map.copyOf(categories), Map.copyOf(tags));
+        snapshot = current;
+        log.debug("Label dictionary loaded: {} categories, {} tags", categories.size(), tags.size());
+        return current;
+    }
+
+    private record Snapshot(long generation, Map<Long, Label> categories, Map<Long, Label> tags) {
+    }
+}
@@ -1,7 +1,21 @@
 package com.mk.docclassifier.service;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.Consumer;
 
 public interface OcrService {
     String extractText(File file);
+
+    // Streams the text out as it is extracted; preferred for large documents
+    void extractText(File file, Writer out) throws IOException;
+
+    // Reads the channel from its current position; the sink receives the text piece by piece, in order
+    void extractText(ReadableByteChannel channel, Consumer<CharSequence> sink) throws IOException;
+
+    // Content between position and limit, e.g. a memory-mapped file; the buffer itself is not modified
+    void extractText(ByteBuffer content, Consumer<CharSequence> sink) throws IOException;
 }
@@ -0,0 +1,52 @@
+package com.mk.docclassifier.service;
+
+import com.mk.docclassifier.dto.DocumentSummary;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position after the last item of a page, handed to clients as an opaque token. Listings are
+ * ordered by (uploadedAt, id), relevance-ranked search results by (score, id); exactly one of
+ * uploadedAt and score is set.
+ */
+public record PageCursor(LocalDateTime uploadedAt, Float score, long id) {
+
+    public static PageCursor after(DocumentSummary document) {
+        return new PageCursor(document.uploadedAt(), null, document.id());
+    }
+
+    public static PageCursor afterHit(float score, long id) {
+        return new PageCursor(null, score, id);
+    }
+
+    public boolean ranked() {
+        return score != null;
+    }
+
+    public String encode() {
+        String raw = ranked() ? "s|" + Float.floatToIntBits(score) + "|" + id : "u|" + uploadedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // null for a missing cursor (first page); IllegalArgumentException for one that was not issued here
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length == 3 && parts[0].equals("u")) {
+                return new PageCursor(LocalDateTime.parse(parts[1]), null, Long.parseLong(parts[2]));
+            }
+            if (parts.length == 3 && parts[0].equals("s")) {
+                return afterHit(Float.intBitsToFloat(Integer.parseInt(parts[1])), Long.parseLong(parts[2]));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+}
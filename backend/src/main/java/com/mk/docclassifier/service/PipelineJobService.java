@@ -0,0 +1,158 @@
+package com.mk.docclassifier.service;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.domain.entity.PipelineJob;
+import com.mk.docclassifier.domain.entity.PipelineJobStatus;
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.repository.PipelineJobRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PipelineJobService {
+
+    private final PipelineJobRepository pipelineJobRepository;
+    private final DocumentRepository documentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.pipeline.jobs.instance-id:}")
+    private String instanceId;
+
+    @Value("${app.pipeline.jobs.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${app.pipeline.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.pipeline.jobs.retry-backoff-seconds:10}")
+    private long retryBackoffSeconds;
+
+    @PostConstruct
+    public void init() {
+        if (instanceId == null || instanceId.isBlank()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = "unknown";
+            }
+            instanceId = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        log.info("Pipeline job worker instance id: {}", instanceId);
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public Duration getLeaseDuration() {
+        return Duration.ofSeconds(leaseSeconds);
+    }
+
+    // Joins the caller's transaction so the job row commits atomically with the document
+    @Transactional
+    public void enqueue(Long documentId) {
+        PipelineJob job = pipelineJobRepository.findByDocumentId(documentId)
+                .orElseGet(() -> PipelineJob.builder().documentId(documentId).build());
+        job.setStatus(PipelineJobStatus.PENDING);
+        job.setAttempts(0);
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+        job.setLastError(null);
+        job.setAvailableAt(LocalDateTime.now());
+        pipelineJobRepository.save(job);
+    }
+
+    @Transactional
+    public List<PipelineJob> claim(int max) {
+        if (max <= 0) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<PipelineJob> jobs = pipelineJobRepository.findClaimable(PipelineJobStatus.PENDING,
+                PipelineJobStatus.RUNNING, now, PageRequest.of(0, max));
+        for (PipelineJob job : jobs) {
+            if (job.getStatus() == PipelineJobStatus.RUNNING) {
+                log.warn("Reclaiming job {} for document {} after lease of {} expired",
+                        job.getId(), job.getDocumentId(), job.getLeaseOwner());
+            }
+            job.setStatus(PipelineJobStatus.RUNNING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLeaseOwner(instanceId);
+            job.setHeartbeatAt(now);
+            job.setLeaseExpiresAt(now.plusSeconds(leaseSeconds));
+        }
+        return jobs;
+    }
+
+    @Transactional
+    public int heartbeat(Collection<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        return pipelineJobRepository.extendLeases(jobIds, instanceId, PipelineJobStatus.RUNNING,
+                now, now.plusSeconds(leaseSeconds));
+    }
+
+    @Transactional
+    public void complete(Long jobId) {
+        if (pipelineJobRepository.complete(jobId, instanceId, PipelineJobStatus.DONE) == 0) {
+            log.warn("Job {} was no longer leased by {} when it completed", jobId, instanceId);
+        }
+    }
+
+    @Transactional
+    public void fail(Long jobId, String error) {
+        pipelineJobRepository.findById(jobId)
+                .filter(job -> instanceId.equals(job.getLeaseOwner()))
+                .ifPresent(job -> {
+                    job.setLastError(error);
+                    job.setLeaseOwner(null);
+                    job.setLeaseExpiresAt(null);
+                    if (job.getAttempts() >= maxAttempts) {
+                        job.setStatus(PipelineJobStatus.FAILED);
+                        log.error("Job {} for document {} failed permanently after {} attempts: {}",
+                                jobId, job.getDocumentId(), job.getAttempts(), error);
+                        // Nothing retries the document after this, so it must not stay in progress
+                        documentRepository.markFailed(job.getDocumentId(), DocumentStatus.ERROR, error, LocalDateTime.now());
+                        eventPublisher.publishEvent(new DocumentChangedEvent(job.getDocumentId(),
+                                DocumentChangedEvent.Change.METADATA));
+                    } else {
+                        job.setStatus(PipelineJobStatus.PENDING);
+                        // Linear backoff keeps a flapping dependency from being hammered
+                        job.setAvailableAt(LocalDateTime.now().plusSeconds(retryBackoffSeconds * job.getAttempts()));
+                    }
+                });
+    }
+
+    @Transactional
+    public void delete(Long documentId) {
+        pipelineJobRepository.deleteByDocumentId(documentId);
+    }
+
+    // Documents left behind by a crash before this queue existed, or uploaded without a job row
+    @Transactional
+    public int enqueueOrphans() {
+        List<Long> orphans = pipelineJobRepository.findDocumentIdsWithoutJob(
+                List.of(DocumentStatus.UPLOADED, DocumentStatus.PROCESSING));
+        orphans.forEach(this::enqueue);
+        return orphans.size();
+    }
+}
@@ -0,0 +1,102 @@
+package com.mk.docclassifier.service;
+
+import com.mk.docclassifier.domain.entity.PipelineJob;
+import com.mk.docclassifier.domain.entity.PipelineJobStatus;
+import com.mk.docclassifier.repository.PipelineJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Claims durable pipeline jobs and feeds them into the staged pipeline. Jobs stay leased
+ * while in flight; if this instance dies, the lease expires and another instance picks them up.
+ */
+@Component
+@Slf4j
+public class PipelineJobWorker {
+
+    private final PipelineJobService pipelineJobService;
+    private final PipelineService pipelineService;
+    private final Map<Long, Long> inFlight = new ConcurrentHashMap<>();
+    private final AtomicBoolean ready = new AtomicBoolean(false);
+    private final Counter completed;
+    private final Counter failed;
+
+    @Value("${app.pipeline.jobs.max-in-flight:50}")
+    private int maxInFlight;
+
+    public PipelineJobWorker(PipelineJobService pipelineJobService, PipelineService pipelineService,
+            PipelineJobRepository pipelineJobRepository, MeterRegistry meterRegistry) {
+        this.pipelineJobService = pipelineJobService;
+        this.pipelineService = pipelineService;
+        this.completed = meterRegistry.counter("pipeline.jobs.completed");
+        this.failed = meterRegistry.counter("pipeline.jobs.failed");
+        Gauge.builder("pipeline.jobs.in.flight", inFlight, Map::size).register(meterRegistry);
+        Gauge.builder("pipeline.jobs.pending", pipelineJobRepository,
+                repository -> repository.countByStatus(PipelineJobStatus.PENDING)).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        int orphans = pipelineJobService.enqueueOrphans();
+        if (orphans > 0) {
+            log.info("Enqueued {} unfinished documents left without a pipeline job", orphans);
+        }
+        ready.set(true);
+    }
+
+    @Scheduled(fixedDelayString = "${app.pipeline.jobs.poll-interval-ms:500}")
+    public void poll() {
+        if (!ready.get()) {
+            return;
+        }
+        List<PipelineJob> jobs = pipelineJobService.claim(maxInFlight - inFlight.size());
+        // The whole claim is heartbeated from here on: submitting one job can block on a full intake
+        // for a while, and the jobs still waiting behind it must not lose their leases meanwhile
+        jobs.forEach(job -> inFlight.put(job.getId(), job.getDocumentId()));
+        for (PipelineJob job : jobs) {
+            try {
+                pipelineService.processDocument(job.getDocumentId())
+                        .whenComplete((ignored, error) -> finish(job, error));
+            } catch (RuntimeException e) {
+                // Intake stayed full past the block timeout; the job goes back to the queue
+                finish(job, e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "#{${app.pipeline.jobs.lease-seconds:60} * 1000 / 3}")
+    public void heartbeat() {
+        if (!inFlight.isEmpty()) {
+            pipelineJobService.heartbeat(List.copyOf(inFlight.keySet()));
+        }
+    }
+
+    private void finish(PipelineJob job, Throwable error) {
+        inFlight.remove(job.getId());
+        try {
+            if (error == null) {
+                pipelineJobService.complete(job.getId());
+                completed.increment();
+            } else {
+                log.warn("Pipeline job {} for document {} failed: {}", job.getId(), job.getDocumentId(), error.getMessage());
+                pipelineJobService.fail(job.getId(), error.getMessage());
+                failed.increment();
+            }
+        } catch (Exception e) {
+            // The lease will expire and the job will be reclaimed
+            log.error("Could not record outcome of pipeline job {}", job.getId(), e);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.mk.docclassifier.service;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface PipelineService {
-    void processDocument(Long documentId);
+    // Completes once the document reached a terminal status (PROCESSED or ERROR) in the database
+    CompletableFuture<Void> processDocument(Long documentId);
 }
@@ -5,7 +5,15 @@ import java.io.IOException;
 import java.nio.file.Path;
 
 public interface StorageService {
-    String store(MultipartFile file) throws IOException;
+    // Hashes the upload into a staging file; nothing is visible under its filename until publish
+    StoredFile stage(MultipartFile file) throws IOException;
+
+    // Moves a staged upload to its content-addressed name, replacing an identical blob already there;
+    // true when no blob had that name before
+    boolean publish(StoredFile file) throws IOException;
+
+    // Removes the staging file if it was not published
+    void discard(StoredFile file);
 
     Path load(String filename);
 
@@ -0,0 +1,15 @@
+package com.mk.docclassifier.service;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class StoredFile {
+    String filename;
+    // Hex SHA-256 of the content, computed while the upload was written
+    String contentHash;
+    long size;
+    // Where the content waits until it is published
+    java.nio.file.Path stagedPath;
+}
@@ -5,14 +5,19 @@ import com.mk.docclassifier.domain.entity.Tag;
 import com.mk.docclassifier.domain.entity.User;
 import com.mk.docclassifier.dto.TagRequest;
 import com.mk.docclassifier.dto.TagResponse;
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.event.TagChangedEvent;
 import com.mk.docclassifier.repository.DocumentRepository;
 import com.mk.docclassifier.repository.TagRepository;
+import com.mk.docclassifier.service.stats.DocumentCounts;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,12 +26,15 @@ public class TagService {
 
     private final TagRepository tagRepository;
     private final DocumentRepository documentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DocumentCounts documentCounts;
 
     @Transactional(readOnly = true)
     public List<TagResponse> getAllTags(User user) {
         ensureAdmin(user);
+        Map<Long, Long> counts = documentCounts.byTag(user);
         return tagRepository.findAll().stream()
-                .map(tag -> toResponse(tag, user))
+                .map(tag -> toResponse(tag, counts))
                 .collect(Collectors.toList());
     }
 
@@ -48,7 +56,9 @@ public class TagService {
                 .build();
 
         Tag saved = tagRepository.save(tag);
-        return toResponse(saved, user);
+        eventPublisher.publishEvent(new TagChangedEvent(saved.getId()));
+        // Nothing can be filed under a tag that did not exist before this transaction
+        return toResponse(saved, Map.of());
     }
 
     @Transactional
@@ -67,7 +77,8 @@ public class TagService {
         tag.setColor(valueOrNull(request.getColor()));
 
         Tag saved = tagRepository.save(tag);
-        return toResponse(saved, user);
+        eventPublisher.publishEvent(new TagChangedEvent(saved.getId()));
+        return toResponse(saved, Map.of(saved.getId(), documentCounts.ofTag(saved, user)));
     }
 
     @Transactional
@@ -80,26 +91,20 @@ public class TagService {
         // Remove tag from all documents
         documentRepository.findByTagsContaining(tag).forEach(doc -> {
             doc.getTags().remove(tag);
+            eventPublisher.publishEvent(new DocumentChangedEvent(doc.getId(), DocumentChangedEvent.Change.METADATA));
         });
 
         tagRepository.delete(tag);
+        eventPublisher.publishEvent(new TagChangedEvent(id));
     }
 
-    private TagResponse toResponse(Tag tag, User user) {
-        long docCount = 0;
-        if (tag.getId() != null && user != null) {
-            // For regular users, count only their documents; for admins, count all
-            if (user.getRole() == Role.ADMIN) {
-                docCount = documentRepository.countByTagsContaining(tag);
-            } else {
-                docCount = documentRepository.countByTagsContainingAndUserId(tag, user.getId());
-            }
-        }
+    // Counts of the documents the user can see: one grouped query for a listing, a direct count for a single row
+    private TagResponse toResponse(Tag tag, Map<Long, Long> counts) {
         return TagResponse.builder()
                 .id(tag.getId())
                 .name(tag.getName())
                 .color(tag.getColor())
-                .documentCount(docCount)
+                .documentCount(counts.getOrDefault(tag.getId(), 0L))
                 .createdByUsername(tag.getCreatedBy() != null ? tag.getCreatedBy().getUsername() : null)
                 .createdByUserId(tag.getCreatedBy() != null ? tag.getCreatedBy().getId() : null)
                 .createdAt(tag.getCreatedAt())
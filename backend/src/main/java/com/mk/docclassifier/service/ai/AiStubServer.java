@@ -0,0 +1,127 @@
+package com.mk.docclassifier.service.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mk.docclassifier.dto.AiClassificationRequest;
+import com.mk.docclassifier.dto.AiClassificationResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stand-in for the remote inference backend, for local runs and tests. Listens on the loopback
+ * interface and answers {@code POST /classify} by picking the first category whose name appears in
+ * the text. {@code app.ai.stub.latency-ms} and {@code app.ai.stub.failure-rate} simulate a slow or
+ * unreliable backend; tests can change both while the stub runs.
+ */
+@Component
+@ConditionalOnProperty(name = "app.ai.stub.enabled", havingValue = "true")
+@Slf4j
+public class AiStubServer {
+
+    private final ObjectMapper objectMapper;
+    private final int port;
+    private volatile long latencyMs;
+    private volatile double failureRate;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public AiStubServer(ObjectMapper objectMapper,
+            @Value("${app.ai.stub.port:8090}") int port,
+            @Value("${app.ai.stub.latency-ms:0}") long latencyMs,
+            @Value("${app.ai.stub.failure-rate:0}") double failureRate) {
+        this.objectMapper = objectMapper;
+        this.port = port;
+        this.latencyMs = latencyMs;
+        this.failureRate = failureRate;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/classify", this::handle);
+        server.start();
+        log.info("AI stub server listening on {}", server.getAddress());
+    }
+
+    // The bound port, which differs from the configured one when that was 0
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            AiClassificationRequest request;
+            try (InputStream body = exchange.getRequestBody()) {
+                request = objectMapper.readValue(body, AiClassificationRequest.class);
+            }
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            if (Math.random() < failureRate) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            byte[] response = objectMapper.writeValueAsBytes(answer(request));
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static AiClassificationResponse answer(AiClassificationRequest request) {
+        List<AiClassificationResponse.Result> results = new ArrayList<>();
+        List<String> categories = request.getCategories() == null ? List.of() : request.getCategories();
+        List<String> documents = request.getDocuments() == null ? List.of() : request.getDocuments();
+        for (int i = 0; i < documents.size(); i++) {
+            String text = documents.get(i).toLowerCase(Locale.ROOT);
+            for (String category : categories) {
+                if (text.contains(category.toLowerCase(Locale.ROOT))) {
+                    results.add(new AiClassificationResponse.Result(i, category, 0.9));
+                    break;
+                }
+            }
+        }
+        return new AiClassificationResponse(results);
+    }
+}
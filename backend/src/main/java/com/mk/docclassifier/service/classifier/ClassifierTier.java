@@ -0,0 +1,15 @@
+package com.mk.docclassifier.service.classifier;
+
+import java.util.List;
+
+/**
+ * One stage of the classification cascade. Tiers are ordered with {@code @Order}, cheapest
+ * first; only documents a tier is not confident about reach the next one.
+ */
+public interface ClassifierTier {
+
+    String name();
+
+    // One prediction per text, in order; null where the tier has no answer
+    List<Prediction> classify(List<String> texts);
+}
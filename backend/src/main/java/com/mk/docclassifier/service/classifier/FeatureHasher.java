@@ -0,0 +1,81 @@
+package com.mk.docclassifier.service.classifier;
+
+import java.text.Normalizer;
+
+/**
+ * Turns text into hashed unigram and bigram feature indexes without building strings:
+ * tokens are runs of letters or digits, lower-cased and stripped of accents on the fly.
+ */
+public final class FeatureHasher {
+
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final int BIGRAM_SEED = 0x5bd1e995;
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final char[] FOLD = foldTable(0x250);
+
+    private final int mask;
+
+    public FeatureHasher(int featureBits) {
+        if (featureBits < 8 || featureBits > 24) {
+            throw new IllegalArgumentException("featureBits must be between 8 and 24");
+        }
+        this.mask = (1 << featureBits) - 1;
+    }
+
+    public int dimension() {
+        return mask + 1;
+    }
+
+    // Writes feature indexes for text into out and returns how many were written
+    public int hash(CharSequence text, int[] out) {
+        int count = 0;
+        int hash = FNV_OFFSET;
+        int length = 0;
+        int previous = 0;
+        boolean hasPrevious = false;
+        for (int i = 0, end = text.length(); i <= end && count < out.length; i++) {
+            char ch = i < end ? fold(text.charAt(i)) : ' ';
+            if (Character.isLetterOrDigit(ch)) {
+                hash = (hash ^ ch) * FNV_PRIME;
+                length++;
+                continue;
+            }
+            if (length >= MIN_TOKEN_LENGTH) {
+                out[count++] = mix(hash) & mask;
+                if (hasPrevious && count < out.length) {
+                    out[count++] = mix((previous * 31 + hash) ^ BIGRAM_SEED) & mask;
+                }
+                previous = hash;
+                hasPrevious = true;
+            }
+            hash = FNV_OFFSET;
+            length = 0;
+        }
+        return count;
+    }
+
+    // Lower-case, accent-free form of ch
+    public static char fold(char ch) {
+        return ch < FOLD.length ? FOLD[ch] : Character.toLowerCase(ch);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    // Lower-case, accent-free form of every Latin character, computed once
+    private static char[] foldTable(int size) {
+        char[] table = new char[size];
+        for (char c = 0; c < size; c++) {
+            String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            table[c] = Character.toLowerCase(decomposed.charAt(0));
+        }
+        return table;
+    }
+}
@@ -0,0 +1,200 @@
+package com.mk.docclassifier.service.classifier;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over every category keyword: one pass over the text finds all
+ * occurrences of all keywords, whatever their number. Keywords and text are compared after
+ * {@link #normalize}, and only whole-word occurrences count. Any run of whitespace in the text
+ * matches the single space a keyword's whitespace collapses to, so "invoice number" is found
+ * across a line break or a double space.
+ * <p>
+ * The trie is flattened into arrays: the edges of node n are edgeChars/edgeTargets in
+ * [edgeStart[n], edgeStart[n + 1]), sorted by char.
+ */
+final class KeywordAutomaton {
+
+    private final int[] edgeStart;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int[] fail;
+    // Keywords recognised at node n (its own and those reached through failure links)
+    private final int[] outputStart;
+    private final int[] outputs;
+    private final int[] keywordLengths;
+    private final int[] keywordCategories;
+    private final int longestKeyword;
+
+    private KeywordAutomaton(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int[] fail,
+            int[] outputStart, int[] outputs, int[] keywordLengths, int[] keywordCategories) {
+        this.edgeStart = edgeStart;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.outputStart = outputStart;
+        this.outputs = outputs;
+        this.keywordLengths = keywordLengths;
+        this.keywordCategories = keywordCategories;
+        int longest = 1;
+        for (int length : keywordLengths) {
+            longest = Math.max(longest, length);
+        }
+        this.longestKeyword = longest;
+    }
+
+    static char normalize(char ch) {
+        return Character.isWhitespace(ch) ? ' ' : FeatureHasher.fold(ch);
+    }
+
+    static String normalize(String keyword) {
+        String collapsed = keyword.trim().replaceAll("\\s+", " ");
+        char[] chars = collapsed.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = normalize(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    // keywords must already be normalized; categories[i] is the category index of keywords[i]
+    static KeywordAutomaton build(List<String> keywords, int[] categories) {
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> ownOutputs = new ArrayList<>();
+        children.add(new TreeMap<>());
+        ownOutputs.add(new ArrayList<>());
+        int[] lengths = new int[keywords.size()];
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            lengths[k] = keyword.length();
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                Integer next = children.get(node).get(keyword.charAt(i));
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(keyword.charAt(i), next);
+                    children.add(new TreeMap<>());
+                    ownOutputs.add(new ArrayList<>());
+                }
+                node = next;
+            }
+            ownOutputs.get(node).add(k);
+        }
+
+        int nodes = children.size();
+        int[] edgeStart = new int[nodes + 1];
+        for (int n = 0; n < nodes; n++) {
+            edgeStart[n + 1] = edgeStart[n] + children.get(n).size();
+        }
+        char[] edgeChars = new char[edgeStart[nodes]];
+        int[] edgeTargets = new int[edgeStart[nodes]];
+        for (int n = 0; n < nodes; n++) {
+            int at = edgeStart[n];
+            for (Map.Entry<Character, Integer> edge : children.get(n).entrySet()) {
+                edgeChars[at] = edge.getKey();
+                edgeTargets[at++] = edge.getValue();
+            }
+        }
+
+        // Breadth-first, so a node's failure target is complete before the node itself
+        int[] fail = new int[nodes];
+        List<List<Integer>> allOutputs = new ArrayList<>(ownOutputs);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : children.get(0).values()) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> edge : children.get(node).entrySet()) {
+                int child = edge.getValue();
+                int state = fail[node];
+                Integer target;
+                while ((target = children.get(state).get(edge.getKey())) == null && state != 0) {
+                    state = fail[state];
+                }
+                fail[child] = target != null && target != child ? target : 0;
+                if (!allOutputs.get(fail[child]).isEmpty()) {
+                    List<Integer> merged = new ArrayList<>(ownOutputs.get(child));
+                    merged.addAll(allOutputs.get(fail[child]));
+                    allOutputs.set(child, merged);
+                }
+                queue.add(child);
+            }
+        }
+
+        int[] outputStart = new int[nodes + 1];
+        for (int n = 0; n < nodes; n++) {
+            outputStart[n + 1] = outputStart[n] + allOutputs.get(n).size();
+        }
+        int[] outputs = new int[outputStart[nodes]];
+        for (int n = 0; n < nodes; n++) {
+            int at = outputStart[n];
+            for (int keyword : allOutputs.get(n)) {
+                outputs[at++] = keyword;
+            }
+        }
+        return new KeywordAutomaton(edgeStart, edgeChars, edgeTargets, fail, outputStart, outputs,
+                lengths, categories.clone());
+    }
+
+    // Adds one to hits[category] per whole-word keyword occurrence; returns the total number of hits
+    int count(CharSequence text, int[] hits) {
+        // Text index of each of the last chars fed to the automaton: collapsed whitespace makes a
+        // match span more of the text than the keyword's length
+        int[] fed = new int[longestKeyword];
+        int fedCount = 0;
+        boolean afterSpace = false;
+        int total = 0;
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char ch = normalize(text.charAt(i));
+            if (ch == ' ') {
+                if (afterSpace) {
+                    continue;
+                }
+                afterSpace = true;
+            } else {
+                afterSpace = false;
+            }
+            fed[fedCount++ % fed.length] = i;
+            state = next(state, ch);
+            for (int o = outputStart[state]; o < outputStart[state + 1]; o++) {
+                int keyword = outputs[o];
+                int start = fed[(fedCount - keywordLengths[keyword]) % fed.length];
+                if (isBoundary(text, start - 1) && isBoundary(text, i + 1)) {
+                    hits[keywordCategories[keyword]]++;
+                    total++;
+                }
+            }
+        }
+        return total;
+    }
+
+    private int next(int state, char ch) {
+        while (true) {
+            int from = edgeStart[state];
+            int to = edgeStart[state + 1] - 1;
+            while (from <= to) {
+                int mid = (from + to) >>> 1;
+                if (edgeChars[mid] < ch) {
+                    from = mid + 1;
+                } else if (edgeChars[mid] > ch) {
+                    to = mid - 1;
+                } else {
+                    return edgeTargets[mid];
+                }
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    private static boolean isBoundary(CharSequence text, int index) {
+        return index < 0 || index >= text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+}
@@ -0,0 +1,248 @@
+package com.mk.docclassifier.service.classifier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Versions of the local classifier model kept on disk as {@code <model-dir>/versions/<version>.bin}.
+ * A version can be activated (atomic swap of the live model) or run in shadow: the candidate then
+ * scores every batch the live model scores, on its own thread and off the critical path, and the
+ * two are compared for agreement and latency. Shadow work is dropped rather than queued without
+ * bound when the shadow thread falls behind.
+ */
+@Component
+@Slf4j
+public class ModelRegistry {
+
+    private static final Pattern VERSION_NAME = Pattern.compile("[A-Za-z0-9._-]{1,100}");
+    private static final String EXTENSION = ".bin";
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final NaiveBayesClassifier classifier;
+    private final Path versionsDir;
+    private final ThreadPoolExecutor shadowExecutor;
+    private final Timer liveLatency;
+    private final Timer candidateLatency;
+    private final Counter agreed;
+    private final Counter disagreed;
+    private final Counter droppedBatches;
+    private final ShadowStats stats = new ShadowStats();
+    private volatile Shadow shadow;
+
+    public ModelRegistry(NaiveBayesClassifier classifier, MeterRegistry meterRegistry,
+            @Value("${app.classifier.model-dir:./models}") String modelDir,
+            @Value("${app.classifier.shadow.queue-capacity:100}") int shadowQueueCapacity) {
+        this.classifier = classifier;
+        this.versionsDir = Paths.get(modelDir).resolve("versions");
+        this.droppedBatches = Counter.builder("classifier.shadow.dropped")
+                .description("Batches not shadow-scored because the shadow thread was behind")
+                .register(meterRegistry);
+        this.shadowExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(shadowQueueCapacity),
+                Thread.ofPlatform().name("classifier-shadow-", 0).daemon(true).factory(),
+                (task, executor) -> droppedBatches.increment());
+        this.liveLatency = latency(meterRegistry, "live");
+        this.candidateLatency = latency(meterRegistry, "candidate");
+        this.agreed = Counter.builder("classifier.shadow.comparisons").tag("result", "agree").register(meterRegistry);
+        this.disagreed = Counter.builder("classifier.shadow.comparisons").tag("result", "disagree").register(meterRegistry);
+        Gauge.builder("classifier.shadow.agreement", stats, ShadowStats::agreement).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        classifier.setShadowObserver(this::observe);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shadowExecutor.shutdownNow();
+    }
+
+    public List<String> versions() throws IOException {
+        if (!Files.isDirectory(versionsDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(versionsDir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(EXTENSION))
+                    .map(name -> name.substring(0, name.length() - EXTENSION.length()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Saves a copy of the live model (including online updates so far) as a new, never overwritten version
+    public String publishActive() throws IOException {
+        if (classifier.activeModel() == null) {
+            throw new IllegalStateException("No active model to publish");
+        }
+        String version = "published-" + LocalDateTime.now().format(VERSION_FORMAT);
+        NaiveBayesModel copy = classifier.copyActive(version);
+        try {
+            copy.saveNew(pathOf(version));
+        } catch (FileAlreadyExistsException e) {
+            throw new IllegalStateException("Model version " + version + " already exists");
+        }
+        log.info("Published classifier model version {}", version);
+        return version;
+    }
+
+    public void activate(String version) throws IOException {
+        NaiveBayesModel loaded = load(version);
+        classifier.activate(loaded);
+        Shadow current = shadow;
+        if (current != null && current.version.equals(version)) {
+            // The candidate is live now; nothing left to compare it with
+            stopShadow();
+        }
+    }
+
+    public void startShadow(String version) throws IOException {
+        NaiveBayesModel candidate = load(version);
+        classifier.checkCompatible(candidate);
+        stats.reset();
+        shadow = new Shadow(version, candidate);
+        log.info("Classifier model {} running in shadow", version);
+    }
+
+    public void stopShadow() {
+        if (shadow != null) {
+            log.info("Classifier model {} no longer in shadow", shadow.version);
+        }
+        shadow = null;
+    }
+
+    public Map<String, Object> status() throws IOException {
+        NaiveBayesModel active = classifier.activeModel();
+        Shadow current = shadow;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("active", active != null ? active.version() : null);
+        status.put("versions", versions());
+        status.put("shadow", current != null ? current.version : null);
+        if (current != null) {
+            status.put("shadowStats", stats.snapshot());
+        }
+        return status;
+    }
+
+    private void observe(List<String> texts, List<Prediction> livePredictions) {
+        Shadow current = shadow;
+        NaiveBayesModel live = classifier.activeModel();
+        if (current == null || live == null) {
+            return;
+        }
+        shadowExecutor.execute(() -> compare(current, live, texts, livePredictions));
+    }
+
+    // Runs on the shadow thread; both models are timed here so their latencies are comparable
+    private void compare(Shadow current, NaiveBayesModel live, List<String> texts, List<Prediction> livePredictions) {
+        if (shadow != current) {
+            return;
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            long started = System.nanoTime();
+            classifier.predict(live, text);
+            long liveNanos = System.nanoTime() - started;
+            started = System.nanoTime();
+            Prediction candidate = classifier.predict(current.model, text);
+            long candidateNanos = System.nanoTime() - started;
+
+            Prediction served = livePredictions.get(i);
+            boolean agree = served == null ? candidate == null
+                    : candidate != null && candidate.categoryId() == served.categoryId();
+            (agree ? agreed : disagreed).increment();
+            liveLatency.record(liveNanos, TimeUnit.NANOSECONDS);
+            candidateLatency.record(candidateNanos, TimeUnit.NANOSECONDS);
+            stats.record(agree, liveNanos, candidateNanos);
+        }
+    }
+
+    private NaiveBayesModel load(String version) throws IOException {
+        Path path = pathOf(version);
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("Unknown model version " + version);
+        }
+        return NaiveBayesModel.load(path);
+    }
+
+    private Path pathOf(String version) {
+        if (version == null || !VERSION_NAME.matcher(version).matches()) {
+            throw new IllegalArgumentException("Invalid model version " + version);
+        }
+        return versionsDir.resolve(version + EXTENSION);
+    }
+
+    private static Timer latency(MeterRegistry meterRegistry, String model) {
+        return Timer.builder("classifier.shadow.latency")
+                .description("Per-document scoring time of the live and candidate models in shadow mode")
+                .tag("model", model)
+                .register(meterRegistry);
+    }
+
+    private record Shadow(String version, NaiveBayesModel model) {
+    }
+
+    // Totals for the current candidate only; reset whenever a new shadow starts
+    private static final class ShadowStats {
+        private final LongAdder compared = new LongAdder();
+        private final LongAdder agreements = new LongAdder();
+        private final LongAdder liveNanos = new LongAdder();
+        private final LongAdder candidateNanos = new LongAdder();
+
+        private void record(boolean agree, long live, long candidate) {
+            compared.increment();
+            if (agree) {
+                agreements.increment();
+            }
+            liveNanos.add(live);
+            candidateNanos.add(candidate);
+        }
+
+        private void reset() {
+            compared.reset();
+            agreements.reset();
+            liveNanos.reset();
+            candidateNanos.reset();
+        }
+
+        private double agreement() {
+            long total = compared.sum();
+            return total == 0 ? Double.NaN : (double) agreements.sum() / total;
+        }
+
+        private Map<String, Object> snapshot() {
+            long total = compared.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("compared", total);
+            snapshot.put("agreement", total == 0 ? null : agreement());
+            snapshot.put("liveMeanMicros", total == 0 ? null : liveNanos.sum() / 1_000.0 / total);
+            snapshot.put("candidateMeanMicros", total == 0 ? null : candidateNanos.sum() / 1_000.0 / total);
+            return snapshot;
+        }
+    }
+}
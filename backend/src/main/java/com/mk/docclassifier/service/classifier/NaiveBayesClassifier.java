@@ -0,0 +1,540 @@
+package com.mk.docclassifier.service.classifier;
+
+import com.mk.docclassifier.domain.entity.Category;
+import com.mk.docclassifier.event.DocumentReclassifiedEvent;
+import com.mk.docclassifier.repository.CategoryRepository;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Local text classifier: a naive Bayes model trained from the categories themselves (name and
+ * description) and from every document whose category was set by hand. Scoring reuses per-thread
+ * buffers, so predicting allocates nothing but the result.
+ * <p>
+ * Manual reclassifications, including those replayed from other instances by the change feed, are
+ * folded into the live model by a single updater thread, which also writes periodic snapshots so a
+ * restart loads the model instead of retraining it; a snapshot older than the latest manual label
+ * is retrained instead. Deleting a manually labeled document takes its text back out. The live
+ * model is a single volatile reference: swapping in another version never pauses in-flight scoring.
+ * <p>
+ * A retrain reads the database while the updater keeps correcting the old model. The retrained model
+ * is swapped in on the updater thread, after the corrections already queued, and the corrections
+ * labeled after the newest label the retrain read are applied to it again, so none is lost or
+ * counted twice.
+ */
+@Component
+@Order(2)
+@Slf4j
+public class NaiveBayesClassifier implements ClassifierTier {
+
+    private static final String SNAPSHOT_FILE = "naive-bayes.bin";
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final DocumentRepository documentRepository;
+    private final CategoryRepository categoryRepository;
+    private final DocumentTextStore textStore;
+    private final TransactionTemplate readOnlyTransaction;
+    private final FeatureHasher hasher;
+    private final int maxFeatures;
+    private final float smoothing;
+    private final Path snapshotPath;
+    private final ThreadLocal<Scratch> scratch;
+    private final BlockingQueue<Runnable> updates;
+    private final Thread updater;
+    private final ExecutorService retrainer;
+    private final AtomicBoolean retrainQueued = new AtomicBoolean();
+    // Corrections applied while a retrain reads the database; updater thread only
+    private final List<Correction> sinceRetrainStarted = new ArrayList<>();
+    private volatile boolean retraining;
+    private final int[] updaterFeatures;
+    private final Counter appliedUpdates;
+    private final Counter droppedUpdates;
+    private volatile NaiveBayesModel model;
+    private volatile boolean dirty;
+    private volatile boolean running = true;
+    private volatile BiConsumer<List<String>, List<Prediction>> shadowObserver;
+
+    public NaiveBayesClassifier(DocumentRepository documentRepository,
+            CategoryRepository categoryRepository,
+            DocumentTextStore textStore,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.classifier.feature-bits:16}") int featureBits,
+            @Value("${app.classifier.max-features:20000}") int maxFeatures,
+            @Value("${app.classifier.smoothing:0.1}") float smoothing,
+            @Value("${app.classifier.model-dir:./models}") String modelDir,
+            @Value("${app.classifier.update-queue-capacity:10000}") int updateQueueCapacity) {
+        this.documentRepository = documentRepository;
+        this.categoryRepository = categoryRepository;
+        this.textStore = textStore;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.hasher = new FeatureHasher(featureBits);
+        this.maxFeatures = maxFeatures;
+        this.smoothing = smoothing;
+        this.snapshotPath = Paths.get(modelDir).resolve(SNAPSHOT_FILE);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(maxFeatures));
+        this.updates = new LinkedBlockingQueue<>(updateQueueCapacity);
+        this.updaterFeatures = new int[maxFeatures];
+        this.appliedUpdates = Counter.builder("classifier.updates").tag("result", "applied").register(meterRegistry);
+        this.droppedUpdates = Counter.builder("classifier.updates").tag("result", "dropped").register(meterRegistry);
+        Gauge.builder("classifier.updates.queued", updates, BlockingQueue::size).register(meterRegistry);
+        this.updater = Thread.ofPlatform().name("classifier-updater").daemon(true).start(this::applyUpdates);
+        this.retrainer = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("classifier-retrain").daemon(true).factory());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            if (!loadSnapshot()) {
+                train();
+            }
+        } catch (Exception e) {
+            log.error("Could not load or train the local classifier", e);
+        }
+    }
+
+    // Rebuilds the model from scratch and swaps it in; returns the number of training examples
+    public synchronized long train() {
+        long started = System.nanoTime();
+        List<Category> categories = categoryRepository.findAll();
+        if (categories.isEmpty()) {
+            model = null;
+            log.info("No categories defined: local classifier disabled");
+            return 0;
+        }
+
+        long[] categoryIds = new long[categories.size()];
+        Map<Long, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < categories.size(); i++) {
+            categoryIds[i] = categories.get(i).getId();
+            indexes.put(categoryIds[i], i);
+        }
+
+        String version = "trained-" + LocalDateTime.now().format(VERSION_FORMAT);
+        NaiveBayesModel next = new NaiveBayesModel(version, categoryIds, hasher.dimension(), smoothing);
+        int[] features = new int[maxFeatures];
+        for (int i = 0; i < categories.size(); i++) {
+            Category category = categories.get(i);
+            String text = category.getDescription() == null
+                    ? category.getName()
+                    : category.getName() + " " + category.getDescription();
+            next.add(i, features, hasher.hash(text, features));
+        }
+
+        AtomicLong skipped = new AtomicLong();
+        // Newest label read: corrections after it are not in the examples
+        AtomicReference<LocalDateTime> watermark = new AtomicReference<>();
+        retraining = true;
+        try {
+            readOnlyTransaction.executeWithoutResult(
+                    status -> streamExamples(indexes, features, next, skipped, watermark));
+        } catch (RuntimeException e) {
+            updates.offer(this::stopRecording);
+            throw e;
+        }
+
+        NaiveBayesModel sealed = next.seal();
+        try {
+            onUpdater(() -> {
+                swapIn(sealed, watermark.get());
+                return null;
+            }, "swap in the retrained model");
+        } catch (RuntimeException e) {
+            updates.offer(this::stopRecording);
+            throw e;
+        }
+        log.info("Local classifier {} trained on {} examples ({} skipped) over {} categories in {} ms", version,
+                next.documentCount(), skipped.get(), categoryIds.length, (System.nanoTime() - started) / 1_000_000);
+        return next.documentCount();
+    }
+
+    private void streamExamples(Map<Long, Integer> indexes, int[] features, NaiveBayesModel next, AtomicLong skipped,
+            AtomicReference<LocalDateTime> watermark) {
+        try (Stream<TrainingExample> examples = documentRepository.streamTrainingExamples()) {
+            examples.forEach(example -> {
+                if (example.labeledAt() != null) {
+                    watermark.accumulateAndGet(example.labeledAt(), (a, b) -> a == null || b.isAfter(a) ? b : a);
+                }
+                Integer index = indexes.get(example.categoryId());
+                int count = index == null ? 0 : hasher.hash(example.text(), features);
+                if (count == 0) {
+                    skipped.incrementAndGet();
+                    return;
+                }
+                next.add(index, features, count);
+            });
+        }
+    }
+
+    // Returns null when there is no model or the text has no usable tokens
+    public Prediction predict(CharSequence text) {
+        return predict(model, text);
+    }
+
+    // Scores with any model using this classifier's features, e.g. a candidate version in shadow mode
+    public Prediction predict(NaiveBayesModel current, CharSequence text) {
+        if (current == null || text == null) {
+            return null;
+        }
+        Scratch buffers = scratch.get();
+        int count = hasher.hash(text, buffers.features);
+        if (count == 0) {
+            return null;
+        }
+        double[] scores = buffers.scores(current.categoryCount());
+        int best = current.score(buffers.features, count, scores);
+        return new Prediction(current.categoryId(best), current.confidence(scores, best, count));
+    }
+
+    @Override
+    public String name() {
+        return "naive-bayes";
+    }
+
+    @Override
+    public List<Prediction> classify(List<String> texts) {
+        Prediction[] predictions = new Prediction[texts.size()];
+        for (int i = 0; i < predictions.length; i++) {
+            predictions[i] = predict(texts.get(i));
+        }
+        List<Prediction> results = Arrays.asList(predictions);
+        BiConsumer<List<String>, List<Prediction>> observer = shadowObserver;
+        if (observer != null) {
+            observer.accept(texts, results);
+        }
+        return results;
+    }
+
+    public NaiveBayesModel activeModel() {
+        return model;
+    }
+
+    // Copies the live model on the updater thread, so the copy holds no half-applied update
+    public NaiveBayesModel copyActive(String version) {
+        return onUpdater(() -> {
+            NaiveBayesModel current = model;
+            if (current == null) {
+                throw new IllegalStateException("No active model to copy");
+            }
+            return current.copy(version);
+        }, "copy the live model");
+    }
+
+    // Runs the task after the updates already queued and waits for its result
+    private <T> T onUpdater(Callable<T> task, String action) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable update = () -> {
+            try {
+                result.complete(task.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        };
+        try {
+            if (!updates.offer(update, 5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Classifier update queue is full, try again later");
+            }
+            return result.get(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to " + action, e);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("The classifier updater did not " + action + " in time", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Swaps the live model; in-flight predictions finish on the model they started with
+    public void activate(NaiveBayesModel next) {
+        checkCompatible(next);
+        if (!coversCurrentCategories(next)) {
+            throw new IllegalArgumentException("Model " + next.version()
+                    + " was trained for another set of categories; retrain and publish a new version");
+        }
+        model = next;
+        dirty = true;
+        log.info("Local classifier model {} activated", next.version());
+    }
+
+    public void checkCompatible(NaiveBayesModel candidate) {
+        if (candidate.dimension() != hasher.dimension()) {
+            throw new IllegalArgumentException("Model " + candidate.version() + " uses " + candidate.dimension()
+                    + " features, this classifier hashes into " + hasher.dimension());
+        }
+    }
+
+    // Sees every batch this tier scores, with the live predictions; must hand work off quickly
+    public void setShadowObserver(BiConsumer<List<String>, List<Prediction>> observer) {
+        this.shadowObserver = observer;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReclassified(DocumentReclassifiedEvent event) {
+        if (event.text() != null && event.text().isBlank()) {
+            return;
+        }
+        if (Objects.equals(event.categoryId(), event.previousCategoryId())) {
+            return;
+        }
+        // Replayed corrections come without text; the updater reads it rather than the change feed. A document
+        // deleted on another instance has no text left to forget: the database, which no longer holds it, retrains
+        Runnable update = event.text() != null
+                ? () -> apply(new Correction(event.categoryId(), event.previousCategoryId(), event.text(),
+                        event.labeledAt()))
+                : () -> textStore.excerpt(event.documentId()).filter(text -> !text.isBlank()).ifPresentOrElse(
+                        text -> apply(new Correction(event.categoryId(), event.previousCategoryId(), text,
+                                event.labeledAt())),
+                        () -> {
+                            if (event.categoryId() == null) {
+                                scheduleRetrain();
+                            }
+                        });
+        if (!updates.offer(update)) {
+            // The next full training picks the correction up from the database
+            droppedUpdates.increment();
+            long dropped = (long) droppedUpdates.count();
+            if (dropped == 1 || dropped % 100 == 0) {
+                log.warn("Classifier update queue full: dropped the correction of document {} ({} dropped so far); "
+                        + "it is only learned at the next training", event.documentId(), dropped);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.classifier.snapshot-interval-ms:300000}")
+    public void scheduleSnapshot() {
+        if (dirty) {
+            updates.offer(this::writeSnapshot);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduleSnapshot();
+        retrainer.shutdownNow();
+        running = false;
+        try {
+            updater.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void applyUpdates() {
+        while (running || !updates.isEmpty()) {
+            try {
+                Runnable update = updates.poll(100, TimeUnit.MILLISECONDS);
+                if (update != null) {
+                    update.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Classifier update failed", e);
+            }
+        }
+    }
+
+    // Runs on the updater thread only; a retrain in progress gets the correction again when it is swapped in
+    private void apply(Correction correction) {
+        if (retraining) {
+            sinceRetrainStarted.add(correction);
+        }
+        learn(model, correction);
+    }
+
+    // Runs on the updater thread only. The text was counted under previousCategoryId (if any); it moves to
+    // categoryId, or out of the model when categoryId is null
+    private void learn(NaiveBayesModel current, Correction correction) {
+        if (current == null) {
+            return;
+        }
+        int index = correction.categoryId() == null ? -1 : current.indexOf(correction.categoryId());
+        if (correction.categoryId() != null && index < 0) {
+            // A category created after the last training needs its own column: retrain from the database,
+            // which already holds this label, without holding up the other updates meanwhile
+            scheduleRetrain();
+            return;
+        }
+        int count = hasher.hash(correction.text(), updaterFeatures);
+        if (count > 0) {
+            Long previousCategoryId = correction.previousCategoryId();
+            int previous = previousCategoryId == null ? -1 : current.indexOf(previousCategoryId);
+            if (previous >= 0) {
+                current.forget(previous, updaterFeatures, count);
+            }
+            if (index >= 0) {
+                current.learn(index, updaterFeatures, count);
+            }
+            dirty = true;
+            appliedUpdates.increment();
+        }
+    }
+
+    // Runs on the updater thread only. Corrections labeled after the newest label the retrain read are missing
+    // from it; a removal cannot tell whether the retrain still read the document, so it retrains once more
+    private void swapIn(NaiveBayesModel next, LocalDateTime watermark) {
+        boolean removed = false;
+        for (Correction correction : sinceRetrainStarted) {
+            if (correction.categoryId() == null) {
+                removed = true;
+            } else if (watermark == null || correction.labeledAt() == null
+                    || correction.labeledAt().isAfter(watermark)) {
+                learn(next, correction);
+            }
+        }
+        stopRecording();
+        model = next;
+        dirty = true;
+        if (removed) {
+            scheduleRetrain();
+        }
+    }
+
+    // Runs on the updater thread only
+    private void stopRecording() {
+        sinceRetrainStarted.clear();
+        retraining = false;
+    }
+
+    // Corrections arriving while a retrain runs queue one more, so none committed after its read is missed
+    private void scheduleRetrain() {
+        if (retrainQueued.compareAndSet(false, true)) {
+            retrainer.execute(() -> {
+                retrainQueued.set(false);
+                try {
+                    train();
+                } catch (RuntimeException e) {
+                    log.error("Background retraining of the local classifier failed", e);
+                }
+            });
+        }
+    }
+
+    // Runs on the updater thread only, so no update lands halfway through the file
+    private void writeSnapshot() {
+        NaiveBayesModel current = model;
+        if (current == null) {
+            return;
+        }
+        dirty = false;
+        long started = System.nanoTime();
+        try {
+            current.save(snapshotPath);
+            log.info("Local classifier snapshot written to {} in {} ms", snapshotPath,
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("Could not write classifier snapshot to {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    private boolean loadSnapshot() {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return false;
+        }
+        NaiveBayesModel loaded;
+        try {
+            loaded = NaiveBayesModel.load(snapshotPath);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable classifier snapshot {}: {}", snapshotPath, e.getMessage());
+            return false;
+        }
+
+        if (loaded.dimension() != hasher.dimension() || !coversCurrentCategories(loaded)) {
+            log.info("Classifier snapshot {} is stale (categories or feature size changed); retraining", snapshotPath);
+            return false;
+        }
+        // Corrections made on other instances, or while this one was down, are only in the database
+        LocalDateTime latestLabel = documentRepository.findLatestManualLabelAt();
+        if (latestLabel != null && latestLabel.isAfter(snapshotTime())) {
+            log.info("Classifier snapshot {} predates the latest manual label ({}); retraining", snapshotPath, latestLabel);
+            return false;
+        }
+        model = loaded;
+        log.info("Local classifier {} loaded from {} ({} examples)", loaded.version(), snapshotPath, loaded.documentCount());
+        return true;
+    }
+
+    private LocalDateTime snapshotTime() {
+        try {
+            return LocalDateTime.ofInstant(Files.getLastModifiedTime(snapshotPath).toInstant(), ZoneId.systemDefault());
+        } catch (IOException e) {
+            return LocalDateTime.MIN;
+        }
+    }
+
+    // True when the model has exactly one column per current category
+    private boolean coversCurrentCategories(NaiveBayesModel candidate) {
+        Set<Long> categoryIds = categoryRepository.findAll().stream().map(Category::getId).collect(Collectors.toSet());
+        Set<Long> modelIds = LongStream.range(0, candidate.categoryCount())
+                .mapToObj(i -> candidate.categoryId((int) i)).collect(Collectors.toSet());
+        return categoryIds.equals(modelIds);
+    }
+
+    private record Correction(Long categoryId, Long previousCategoryId, String text, LocalDateTime labeledAt) {}
+
+    private static final class Scratch {
+        private final int[] features;
+        private double[] scores = new double[0];
+
+        private Scratch(int maxFeatures) {
+            this.features = new int[maxFeatures];
+        }
+
+        private double[] scores(int categories) {
+            if (scores.length < categories) {
+                scores = new double[categories];
+            }
+            return scores;
+        }
+    }
+}
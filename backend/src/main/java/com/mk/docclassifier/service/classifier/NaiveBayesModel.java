@@ -0,0 +1,281 @@
+package com.mk.docclassifier.service.classifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Multinomial naive Bayes over hashed features. The weight matrix is feature-major so that
+ * scoring one feature reads the weights of every category from one contiguous run of floats.
+ * Counts are accumulated with {@link #add} and turned into log weights by {@link #seal}; after
+ * that {@link #learn} folds in single examples and {@link #forget} takes them back out. Updates
+ * must come from one writer thread at a time. Readers are not locked out: a concurrent score may
+ * see a half-applied example, which only nudges that one score.
+ */
+public final class NaiveBayesModel {
+
+    private static final int SNAPSHOT_MAGIC = 0x4e424d32;
+
+    private final String version;
+    private final long[] categoryIds;
+    private final int categories;
+    private final int dimension;
+    private final float alpha;
+    // Raw feature counts until sealed, log(count + alpha) afterwards
+    private final float[] weights;
+    private final double[] tokenTotals;
+    private final long[] documentCounts;
+    private final double[] logDenominators;
+    private final double[] logPriors;
+    private long documents;
+    private boolean sealed;
+
+    public NaiveBayesModel(String version, long[] categoryIds, int dimension, float alpha) {
+        this.version = version;
+        this.categoryIds = categoryIds.clone();
+        this.categories = categoryIds.length;
+        this.dimension = dimension;
+        this.alpha = alpha;
+        this.weights = new float[Math.multiplyExact(dimension, categories)];
+        this.tokenTotals = new double[categories];
+        this.documentCounts = new long[categories];
+        this.logDenominators = new double[categories];
+        this.logPriors = new double[categories];
+    }
+
+    public void add(int category, int[] features, int count) {
+        if (sealed) {
+            throw new IllegalStateException("Model is already sealed");
+        }
+        for (int i = 0; i < count; i++) {
+            weights[features[i] * categories + category] += 1f;
+        }
+        tokenTotals[category] += count;
+        documentCounts[category]++;
+        documents++;
+    }
+
+    public NaiveBayesModel seal() {
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (float) Math.log(weights[i] + alpha);
+        }
+        for (int c = 0; c < categories; c++) {
+            logDenominators[c] = Math.log(tokenTotals[c] + (double) alpha * dimension);
+        }
+        updatePriors();
+        sealed = true;
+        return this;
+    }
+
+    // Folds one labeled example into a sealed model: log(count + alpha) becomes log(count + 1 + alpha)
+    public void learn(int category, int[] features, int count) {
+        if (!sealed) {
+            add(category, features, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int at = features[i] * categories + category;
+            weights[at] = (float) Math.log(Math.exp(weights[at]) + 1.0);
+        }
+        tokenTotals[category] += count;
+        documentCounts[category]++;
+        documents++;
+        logDenominators[category] = Math.log(tokenTotals[category] + (double) alpha * dimension);
+        updatePriors();
+    }
+
+    // Takes back one example passed to add or learn earlier, e.g. when its label was corrected
+    public void forget(int category, int[] features, int count) {
+        for (int i = 0; i < count; i++) {
+            int at = features[i] * categories + category;
+            // Never below the smoothing floor, whatever rounding the weight went through
+            weights[at] = sealed ? (float) Math.log(Math.max(Math.exp(weights[at]) - 1.0, alpha))
+                    : Math.max(weights[at] - 1f, 0f);
+        }
+        tokenTotals[category] = Math.max(tokenTotals[category] - count, 0);
+        documentCounts[category] = Math.max(documentCounts[category] - 1, 0);
+        documents = Math.max(documents - 1, 0);
+        if (sealed) {
+            logDenominators[category] = Math.log(tokenTotals[category] + (double) alpha * dimension);
+            updatePriors();
+        }
+    }
+
+    private void updatePriors() {
+        for (int c = 0; c < categories; c++) {
+            logPriors[c] = Math.log((documentCounts[c] + 1.0) / (documents + categories));
+        }
+    }
+
+    // Fills scores with per-category log posteriors (unnormalised) and returns the best category index
+    public int score(int[] features, int count, double[] scores) {
+        for (int c = 0; c < categories; c++) {
+            scores[c] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            int base = features[i] * categories;
+            for (int c = 0; c < categories; c++) {
+                scores[c] += weights[base + c];
+            }
+        }
+        int best = 0;
+        for (int c = 0; c < categories; c++) {
+            scores[c] += logPriors[c] - count * logDenominators[c];
+            if (scores[c] > scores[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Confidence in the best category given the scores score() filled in for count features. Raw
+     * scores are sums over every token, so their gaps grow with the length of the text and a plain
+     * softmax over them is close to 1.0 for anything but a few words. The gaps are divided by the
+     * token count first: the softmax then reflects how strongly the average token prefers the best
+     * category, and text made of features the model never saw stays near a uniform guess.
+     */
+    public double confidence(double[] scores, int best, int count) {
+        double tokens = Math.max(count, 1);
+        double sum = 0;
+        for (int c = 0; c < categories; c++) {
+            sum += Math.exp((scores[c] - scores[best]) / tokens);
+        }
+        return 1.0 / sum;
+    }
+
+    public int indexOf(long categoryId) {
+        for (int c = 0; c < categories; c++) {
+            if (categoryIds[c] == categoryId) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    public String version() {
+        return version;
+    }
+
+    public int categoryCount() {
+        return categories;
+    }
+
+    public long categoryId(int index) {
+        return categoryIds[index];
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public long documentCount() {
+        return documents;
+    }
+
+    // Written to a temp file and moved into place, so readers never see a partial model
+    public void save(Path target) throws IOException {
+        Path temp = writeTemp(target);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Like save, but never replaces an existing file: throws FileAlreadyExistsException instead
+    public void saveNew(Path target) throws IOException {
+        Path temp = writeTemp(target);
+        try {
+            // Linking is atomic and fails when the name is taken, unlike a rename
+            Files.createLink(target, temp);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // A private copy under another version name; call from the writer thread so no update is half-applied
+    public NaiveBayesModel copy(String newVersion) {
+        NaiveBayesModel copy = new NaiveBayesModel(newVersion, categoryIds, dimension, alpha);
+        System.arraycopy(weights, 0, copy.weights, 0, weights.length);
+        System.arraycopy(tokenTotals, 0, copy.tokenTotals, 0, categories);
+        System.arraycopy(documentCounts, 0, copy.documentCounts, 0, categories);
+        System.arraycopy(logDenominators, 0, copy.logDenominators, 0, categories);
+        System.arraycopy(logPriors, 0, copy.logPriors, 0, categories);
+        copy.documents = documents;
+        copy.sealed = sealed;
+        return copy;
+    }
+
+    private Path writeTemp(Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            writeTo(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    public static NaiveBayesModel load(Path source) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source), 1 << 16))) {
+            return readFrom(in);
+        }
+    }
+
+    private void writeTo(DataOutputStream out) throws IOException {
+        if (!sealed) {
+            throw new IllegalStateException("Only sealed models can be written");
+        }
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeUTF(version);
+        out.writeInt(dimension);
+        out.writeInt(categories);
+        out.writeFloat(alpha);
+        out.writeLong(documents);
+        for (int c = 0; c < categories; c++) {
+            out.writeLong(categoryIds[c]);
+            out.writeDouble(tokenTotals[c]);
+            out.writeLong(documentCounts[c]);
+        }
+        for (float weight : weights) {
+            out.writeFloat(weight);
+        }
+    }
+
+    private static NaiveBayesModel readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a naive Bayes model snapshot");
+        }
+        String version = in.readUTF();
+        int dimension = in.readInt();
+        int categories = in.readInt();
+        float alpha = in.readFloat();
+        long documents = in.readLong();
+        long[] categoryIds = new long[categories];
+        double[] tokenTotals = new double[categories];
+        long[] documentCounts = new long[categories];
+        for (int c = 0; c < categories; c++) {
+            categoryIds[c] = in.readLong();
+            tokenTotals[c] = in.readDouble();
+            documentCounts[c] = in.readLong();
+        }
+
+        NaiveBayesModel model = new NaiveBayesModel(version, categoryIds, dimension, alpha);
+        for (int i = 0; i < model.weights.length; i++) {
+            model.weights[i] = in.readFloat();
+        }
+        System.arraycopy(tokenTotals, 0, model.tokenTotals, 0, categories);
+        System.arraycopy(documentCounts, 0, model.documentCounts, 0, categories);
+        model.documents = documents;
+        for (int c = 0; c < categories; c++) {
+            model.logDenominators[c] = Math.log(tokenTotals[c] + (double) alpha * dimension);
+        }
+        model.updatePriors();
+        model.sealed = true;
+        return model;
+    }
+}
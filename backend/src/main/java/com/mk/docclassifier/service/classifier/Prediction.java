@@ -0,0 +1,4 @@
+package com.mk.docclassifier.service.classifier;
+
+public record Prediction(long categoryId, double confidence) {
+}
@@ -0,0 +1,264 @@
+package com.mk.docclassifier.service.classifier;
+
+import com.mk.docclassifier.domain.entity.Category;
+import com.mk.docclassifier.event.CategoryChangedEvent;
+import com.mk.docclassifier.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
+
+/**
+ * Cheap first-tier classifier driven by the keywords and patterns configured on each category.
+ * All keywords of all categories live in one Aho-Corasick automaton and all patterns in one
+ * alternation, so the cost per document depends on the text, not on the number of categories.
+ * The compiled rules are rebuilt off to the side and swapped in atomically when categories change.
+ */
+@Component
+@Order(1)
+@RequiredArgsConstructor
+@Slf4j
+public class RuleClassifier implements ClassifierTier {
+
+    private static final int PATTERN_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+    private static final int MAX_PATTERN_LENGTH = 500;
+    // Patterns only see the start of long texts; keywords still scan all of it
+    private static final int MAX_PATTERN_INPUT = 100_000;
+
+    private final CategoryRepository categoryRepository;
+    private final AtomicReference<CompiledRules> rules = new AtomicReference<>(CompiledRules.EMPTY);
+
+    // Time the patterns may spend on one document before matching is abandoned for it
+    @Value("${app.classifier.rules.pattern-timeout-ms:50}")
+    private long patternTimeoutMs;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        CompiledRules compiled = compile(categoryRepository.findAll());
+        rules.set(compiled);
+        log.info("Category rules compiled: {} keywords, {} patterns over {} categories in {} ms",
+                compiled.keywordCount, compiled.patternCategories.length, compiled.categoryIds.length,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Override
+    public String name() {
+        return "rules";
+    }
+
+    @Override
+    public List<Prediction> classify(List<String> texts) {
+        CompiledRules current = rules.get();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(patternTimeoutMs);
+        Prediction[] predictions = new Prediction[texts.size()];
+        for (int i = 0; i < predictions.length; i++) {
+            String text = texts.get(i);
+            predictions[i] = text == null ? null : current.match(text, timeout);
+        }
+        return Arrays.asList(predictions);
+    }
+
+    // Throws PatternSyntaxException for the first pattern that is too long or does not compile
+    public static void validatePatterns(List<String> patterns) {
+        if (patterns != null) {
+            patterns.forEach(pattern -> {
+                if (pattern.length() > MAX_PATTERN_LENGTH) {
+                    throw new PatternSyntaxException("Longer than " + MAX_PATTERN_LENGTH + " characters", pattern, -1);
+                }
+                Pattern.compile(pattern, PATTERN_FLAGS);
+            });
+        }
+    }
+
+    private static CompiledRules compile(List<Category> categories) {
+        long[] categoryIds = new long[categories.size()];
+        List<String> keywords = new ArrayList<>();
+        List<Integer> keywordCategories = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        List<Integer> patternCategories = new ArrayList<>();
+        for (int c = 0; c < categories.size(); c++) {
+            Category category = categories.get(c);
+            categoryIds[c] = category.getId();
+            for (String keyword : lines(category.getKeywords()).toList()) {
+                keywords.add(KeywordAutomaton.normalize(keyword));
+                keywordCategories.add(c);
+            }
+            for (String pattern : lines(category.getPatterns()).toList()) {
+                if (pattern.length() > MAX_PATTERN_LENGTH) {
+                    log.warn("Skipping overlong pattern for category {}", category.getName());
+                    continue;
+                }
+                try {
+                    Pattern.compile(pattern, PATTERN_FLAGS);
+                    patterns.add(pattern);
+                    patternCategories.add(c);
+                } catch (PatternSyntaxException e) {
+                    log.warn("Skipping invalid pattern for category {}: {}", category.getName(), e.getDescription());
+                }
+            }
+        }
+
+        KeywordAutomaton automaton = keywords.isEmpty() ? null
+                : KeywordAutomaton.build(keywords, keywordCategories.stream().mapToInt(Integer::intValue).toArray());
+
+        // One capturing group around each pattern; a pattern's own groups shift the numbering of the next ones
+        Pattern combined = null;
+        int[] patternGroups = new int[patterns.size()];
+        if (!patterns.isEmpty()) {
+            StringBuilder alternation = new StringBuilder();
+            int group = 1;
+            for (int r = 0; r < patterns.size(); r++) {
+                String pattern = patterns.get(r);
+                patternGroups[r] = group;
+                group += 1 + Pattern.compile(pattern, PATTERN_FLAGS).matcher("").groupCount();
+                alternation.append(r == 0 ? "" : "|").append('(').append(pattern).append(')');
+            }
+            try {
+                combined = Pattern.compile(alternation.toString(), PATTERN_FLAGS);
+            } catch (PatternSyntaxException e) {
+                // e.g. two patterns declaring the same named group
+                log.error("Category patterns cannot be combined, pattern rules disabled: {}", e.getDescription());
+                patternGroups = new int[0];
+                patternCategories.clear();
+            }
+        }
+        return new CompiledRules(categoryIds, keywords.size(), automaton, combined, patternGroups,
+                patternCategories.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static Stream<String> lines(String value) {
+        return value == null ? Stream.empty() : value.lines().map(String::trim).filter(line -> !line.isEmpty());
+    }
+
+    private static final class CompiledRules {
+
+        private static final CompiledRules EMPTY = new CompiledRules(new long[0], 0, null, null, new int[0], new int[0]);
+
+        private final long[] categoryIds;
+        private final int keywordCount;
+        private final KeywordAutomaton keywords;
+        private final Pattern patterns;
+        private final int[] patternGroups;
+        private final int[] patternCategories;
+
+        private CompiledRules(long[] categoryIds, int keywordCount, KeywordAutomaton keywords, Pattern patterns,
+                int[] patternGroups, int[] patternCategories) {
+            this.categoryIds = categoryIds;
+            this.keywordCount = keywordCount;
+            this.keywords = keywords;
+            this.patterns = patterns;
+            this.patternGroups = patternGroups;
+            this.patternCategories = patternCategories;
+        }
+
+        // Returns null when no rule matches
+        private Prediction match(CharSequence text, long patternTimeoutNanos) {
+            if (keywords == null && patterns == null) {
+                return null;
+            }
+            int[] hits = new int[categoryIds.length];
+            int total = keywords == null ? 0 : keywords.count(text, hits);
+            if (patterns != null) {
+                CharSequence input = text.length() > MAX_PATTERN_INPUT ? text.subSequence(0, MAX_PATTERN_INPUT) : text;
+                Matcher matcher = patterns.matcher(new DeadlineText(input, System.nanoTime() + patternTimeoutNanos));
+                try {
+                    while (matcher.find()) {
+                        for (int r = 0; r < patternGroups.length; r++) {
+                            if (matcher.start(patternGroups[r]) >= 0) {
+                                hits[patternCategories[r]]++;
+                                total++;
+                                break;
+                            }
+                        }
+                    }
+                } catch (PatternTimeoutException e) {
+                    // Most likely a backtracking pattern; the hits found so far still count
+                    log.warn("Category patterns ran out of time on a {}-character text; remaining matches skipped",
+                            input.length());
+                }
+            }
+            if (total == 0) {
+                return null;
+            }
+            int best = 0;
+            for (int c = 1; c < hits.length; c++) {
+                if (hits[c] > hits[best]) {
+                    best = c;
+                }
+            }
+            // Share of all hits, discounted while the winner has only one or two of them
+            double share = (double) hits[best] / total;
+            return new Prediction(categoryIds[best], share * (1 - Math.pow(0.5, hits[best] + 1)));
+        }
+    }
+
+    /**
+     * The text as the pattern matcher sees it: every character is read through charAt, so checking
+     * the clock there (every few thousand reads) stops a pattern that backtracks without end.
+     */
+    private static final class DeadlineText implements CharSequence {
+
+        private final CharSequence text;
+        private final long deadline;
+        private int reads;
+
+        private DeadlineText(CharSequence text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & 0xFFF) == 0 && System.nanoTime() > deadline) {
+                throw new PatternTimeoutException();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new DeadlineText(text.subSequence(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    private static final class PatternTimeoutException extends RuntimeException {
+
+        private PatternTimeoutException() {
+            super(null, null, false, false);
+        }
+    }
+}
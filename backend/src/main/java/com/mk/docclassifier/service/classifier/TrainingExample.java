@@ -0,0 +1,6 @@
+package com.mk.docclassifier.service.classifier;
+
+import java.time.LocalDateTime;
+
+public record TrainingExample(Long categoryId, String text, LocalDateTime labeledAt) {
+}
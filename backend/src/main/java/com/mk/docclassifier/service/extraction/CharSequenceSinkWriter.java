@@ -0,0 +1,64 @@
+package com.mk.docclassifier.service.extraction;
+
+import java.io.Writer;
+import java.util.function.Consumer;
+
+/**
+ * Writer that hands text to a sink in pieces of about {@code pieceSize} chars. Each piece is a new
+ * String, so the sink may keep it. {@link #flush()} hands over whatever is buffered.
+ */
+public class CharSequenceSinkWriter extends Writer {
+
+    public static final int DEFAULT_PIECE_SIZE = 8192;
+
+    private final Consumer<CharSequence> sink;
+    private final int pieceSize;
+    private final StringBuilder buffer;
+
+    public CharSequenceSinkWriter(Consumer<CharSequence> sink) {
+        this(sink, DEFAULT_PIECE_SIZE);
+    }
+
+    public CharSequenceSinkWriter(Consumer<CharSequence> sink, int pieceSize) {
+        this.sink = sink;
+        this.pieceSize = pieceSize;
+        this.buffer = new StringBuilder(pieceSize);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        buffer.append(chars, offset, length);
+        if (buffer.length() >= pieceSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) {
+        buffer.append(text, offset, offset + length);
+        if (buffer.length() >= pieceSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void write(int c) {
+        buffer.append((char) c);
+        if (buffer.length() >= pieceSize) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (!buffer.isEmpty()) {
+            sink.accept(buffer.toString());
+            buffer.setLength(0);
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
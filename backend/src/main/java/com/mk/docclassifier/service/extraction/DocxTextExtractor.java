@@ -0,0 +1,157 @@
+package com.mk.docclassifier.service.extraction;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Body text of Word (.docx) files, read with StAX straight from the zip entry: paragraphs,
+ * tabs and line breaks are kept, formatting and deleted (tracked) text are dropped. The entry is
+ * located through the zip central directory and inflated in place, without reading the rest of
+ * the archive.
+ */
+@Component
+@Order(2)
+public class DocxTextExtractor implements TextExtractor {
+
+    private static final byte[] BODY = "word/document.xml".getBytes(StandardCharsets.US_ASCII);
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final String WORD_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    private final XMLInputFactory xmlInputFactory;
+
+    public DocxTextExtractor() {
+        xmlInputFactory = XMLInputFactory.newFactory();
+        // Untrusted input: no DTDs, no external entities
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @Override
+    public boolean supports(ByteBuffer content) {
+        return TextExtractor.startsWith(content, 'P', 'K', 3, 4) && findBody(content) != null;
+    }
+
+    @Override
+    public void extract(ByteBuffer content, Writer out) throws IOException {
+        Entry body = findBody(content);
+        if (body == null) {
+            throw new UnreadableContentException("Malformed DOCX: no readable word/document.xml");
+        }
+        Inflater inflater = new Inflater(true);
+        try (InputStream in = switch (body.method) {
+            case STORED -> new ByteBufferInputStream(body.data);
+            case DEFLATED -> new InflaterInputStream(new ByteBufferInputStream(body.data), inflater, 8192);
+            default -> throw new UnreadableContentException("Unsupported DOCX compression method " + body.method);
+        }) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+            try {
+                copyText(reader, out);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new UnreadableContentException("Malformed DOCX: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Returns null when the archive is truncated, not a zip, or has no document body
+    private static Entry findBody(ByteBuffer content) {
+        ByteBuffer zip = content.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = zip.limit();
+        int end = -1;
+        // The end record sits in the last 22 bytes plus at most a 64 KiB archive comment
+        for (int i = limit - 22; i >= Math.max(0, limit - 22 - 0xFFFF); i--) {
+            if (zip.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            return null;
+        }
+        int entries = Short.toUnsignedInt(zip.getShort(end + 10));
+        long position = Integer.toUnsignedLong(zip.getInt(end + 16));
+        for (int e = 0; e < entries; e++) {
+            if (position + 46 > limit || zip.getInt((int) position) != CENTRAL_HEADER) {
+                return null;
+            }
+            int at = (int) position;
+            int nameLength = Short.toUnsignedInt(zip.getShort(at + 28));
+            if (at + 46L + nameLength > limit) {
+                return null;
+            }
+            if (nameLength == BODY.length && zip.slice(at + 46, nameLength).equals(ByteBuffer.wrap(BODY))) {
+                int method = Short.toUnsignedInt(zip.getShort(at + 10));
+                long compressedSize = Integer.toUnsignedLong(zip.getInt(at + 20));
+                long local = Integer.toUnsignedLong(zip.getInt(at + 42));
+                if (local + 30 > limit || zip.getInt((int) local) != LOCAL_HEADER) {
+                    return null;
+                }
+                long data = local + 30 + Short.toUnsignedInt(zip.getShort((int) local + 26))
+                        + Short.toUnsignedInt(zip.getShort((int) local + 28));
+                if (data + compressedSize > limit) {
+                    return null;
+                }
+                return new Entry(method, zip.slice((int) data, (int) compressedSize));
+            }
+            position += 46L + nameLength + Short.toUnsignedInt(zip.getShort(at + 30))
+                    + Short.toUnsignedInt(zip.getShort(at + 32));
+        }
+        return null;
+    }
+
+    private static void copyText(XMLStreamReader reader, Writer out) throws XMLStreamException, IOException {
+        boolean inText = false;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    if (WORD_NS.equals(reader.getNamespaceURI())) {
+                        switch (reader.getLocalName()) {
+                            case "t" -> inText = true;
+                            case "tab" -> out.write('\t');
+                            case "br", "cr" -> out.write('\n');
+                            default -> { }
+                        }
+                    }
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (WORD_NS.equals(reader.getNamespaceURI())) {
+                        switch (reader.getLocalName()) {
+                            case "t" -> inText = false;
+                            case "p" -> out.write('\n');
+                            default -> { }
+                        }
+                    }
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                    if (inText) {
+                        out.write(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                }
+                default -> { }
+            }
+        }
+    }
+
+    private record Entry(int method, ByteBuffer data) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.mk.docclassifier.service.extraction;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * In-process OCR for images and for PDF pages without a text layer. {@link TesseractOcrEngine} is
+ * registered when app.extraction.ocr.engine=tesseract, as in the Docker image; without an engine,
+ * image documents fail as unreadable and scanned PDF pages yield no text.
+ */
+public interface ImageOcrEngine {
+
+    void recognize(BufferedImage image, Writer out) throws IOException;
+}
@@ -0,0 +1,148 @@
+package com.mk.docclassifier.service.extraction;
+
+import com.mk.docclassifier.service.extraction.preprocess.ImagePreprocessor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Text layer of PDF files, page by page. Documents longer than one chunk of pages are split into
+ * chunks extracted in parallel on a dedicated ForkJoin pool, each task parsing its own view of
+ * the shared buffer (PDFBox documents are not thread-safe), and written out in page order. Only a
+ * bounded window of chunks is in flight per document, so memory does not grow with the page count.
+ * Pages without a text layer go through the OCR engine when one is registered.
+ */
+@Component
+@Order(1)
+@Slf4j
+public class PdfTextExtractor implements TextExtractor {
+
+    private final ObjectProvider<ImageOcrEngine> ocrEngine;
+    private final ImagePreprocessor preprocessor;
+    private final int pagesPerTask;
+    private final int maxChunksInFlight;
+    private final float ocrDpi;
+    private final ForkJoinPool pool;
+
+    public PdfTextExtractor(ObjectProvider<ImageOcrEngine> ocrEngine,
+            ImagePreprocessor preprocessor,
+            @Value("${app.extraction.pdf.pages-per-task:16}") int pagesPerTask,
+            @Value("${app.extraction.pdf.parallelism:0}") int parallelism,
+            @Value("${app.extraction.ocr-dpi:300}") float ocrDpi) {
+        this.ocrEngine = ocrEngine;
+        this.preprocessor = preprocessor;
+        this.pagesPerTask = Math.max(1, pagesPerTask);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.maxChunksInFlight = threads * 2;
+        this.ocrDpi = ocrDpi;
+        this.pool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("pdf-extract-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Override
+    public boolean supports(ByteBuffer content) {
+        return TextExtractor.startsWith(content, '%', 'P', 'D', 'F', '-');
+    }
+
+    @Override
+    public void extract(ByteBuffer content, Writer out) throws IOException {
+        int pages;
+        try (PDDocument document = load(content)) {
+            pages = document.getNumberOfPages();
+            if (pages <= pagesPerTask) {
+                writePages(document, 1, pages, out);
+                return;
+            }
+        }
+
+        Deque<ForkJoinTask<String>> inFlight = new ArrayDeque<>();
+        int nextPage = 1;
+        try {
+            while (nextPage <= pages || !inFlight.isEmpty()) {
+                while (nextPage <= pages && inFlight.size() < maxChunksInFlight) {
+                    int first = nextPage;
+                    int last = Math.min(pages, first + pagesPerTask - 1);
+                    inFlight.add(pool.submit(() -> extractChunk(content, first, last)));
+                    nextPage = last + 1;
+                }
+                out.write(inFlight.poll().get());
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("PDF extraction failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("PDF extraction interrupted", e);
+        } finally {
+            inFlight.forEach(task -> task.cancel(true));
+        }
+        log.debug("Extracted {} PDF pages in chunks of {}", pages, pagesPerTask);
+    }
+
+    private String extractChunk(ByteBuffer content, int first, int last) throws IOException {
+        try (PDDocument document = load(content)) {
+            StringWriter chunk = new StringWriter();
+            writePages(document, first, last, chunk);
+            return chunk.toString();
+        }
+    }
+
+    // Wraps a view of the buffer, no copy; the bytes are already in memory, so a parse failure is the file's
+    private static PDDocument load(ByteBuffer content) throws IOException {
+        try {
+            return Loader.loadPDF(new RandomAccessReadBuffer(content.slice()));
+        } catch (IOException e) {
+            throw new UnreadableContentException("Malformed or encrypted PDF: " + e.getMessage(), e);
+        }
+    }
+
+    private void writePages(PDDocument document, int first, int last, Writer out) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        ImageOcrEngine engine = ocrEngine.getIfAvailable();
+        PDFRenderer renderer = engine != null ? new PDFRenderer(document) : null;
+        for (int page = first; page <= last; page++) {
+            stripper.setStartPage(page);
+            stripper.setEndPage(page);
+            String text = stripper.getText(document);
+            if (text.isBlank() && engine != null) {
+                // Scanned page: no text layer to read
+                BufferedImage scan = renderer.renderImageWithDPI(page - 1, ocrDpi, ImageType.GRAY);
+                engine.recognize(preprocessor.prepare(scan), out);
+                out.write('\n');
+            } else {
+                out.write(text);
+            }
+        }
+    }
+}
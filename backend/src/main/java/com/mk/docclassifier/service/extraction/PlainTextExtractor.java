@@ -0,0 +1,110 @@
+package com.mk.docclassifier.service.extraction;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Plain text files. The encoding is taken from a byte order mark, otherwise UTF-8 when the first
+ * block decodes cleanly as UTF-8, otherwise windows-1252 (common for older French documents).
+ * Anything with NUL bytes and no UTF-16 mark is treated as binary and left to other extractors.
+ */
+@Component
+@Order(4)
+public class PlainTextExtractor implements TextExtractor {
+
+    private static final int HEADER_BYTES = 16;
+    private static final int SNIFF_BYTES = 8192;
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    @Override
+    public boolean supports(ByteBuffer content) {
+        if (utf16(content) != null) {
+            return true;
+        }
+        int end = content.position() + Math.min(content.remaining(), HEADER_BYTES);
+        for (int i = content.position(); i < end; i++) {
+            if (content.get(i) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void extract(ByteBuffer content, Writer out) throws IOException {
+        ByteBuffer in = content.slice();
+        Charset charset = utf16(in);
+        if (charset != null) {
+            in.position(2);
+        } else if (TextExtractor.startsWith(in, 0xEF, 0xBB, 0xBF)) {
+            in.position(3);
+            charset = StandardCharsets.UTF_8;
+        } else {
+            ByteBuffer head = in.slice(0, Math.min(in.remaining(), SNIFF_BYTES));
+            charset = isUtf8(head) ? StandardCharsets.UTF_8 : WINDOWS_1252;
+        }
+
+        // Decoded a block at a time: the text never exists as a whole in memory
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer block = CharBuffer.allocate(SNIFF_BYTES);
+        CoderResult result;
+        do {
+            result = decoder.decode(in, block, true);
+            write(block, out);
+        } while (result.isOverflow());
+        do {
+            result = decoder.flush(block);
+            write(block, out);
+        } while (result.isOverflow());
+    }
+
+    private static void write(CharBuffer block, Writer out) throws IOException {
+        block.flip();
+        out.write(block.array(), block.arrayOffset() + block.position(), block.remaining());
+        block.clear();
+    }
+
+    private static Charset utf16(ByteBuffer content) {
+        if (TextExtractor.startsWith(content, 0xFE, 0xFF)) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (TextExtractor.startsWith(content, 0xFF, 0xFE)) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return null;
+    }
+
+    private static boolean isUtf8(ByteBuffer head) {
+        // Ignore a multi-byte sequence cut off by the end of the sniffed block
+        int end = head.limit();
+        int back = 0;
+        while (back < 3 && end - back - 1 >= 0 && (head.get(end - back - 1) & 0xC0) == 0x80) {
+            back++;
+        }
+        if (end - back - 1 >= 0 && (head.get(end - back - 1) & 0xC0) == 0xC0) {
+            end = end - back - 1;
+        }
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(head.slice(0, end));
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+}
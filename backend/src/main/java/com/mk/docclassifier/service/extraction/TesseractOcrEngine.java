@@ -0,0 +1,65 @@
+package com.mk.docclassifier.service.extraction;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.tess4j.ITesseract;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Tesseract through Tess4J, enabled with app.extraction.ocr.engine=tesseract. The native library
+ * and the tessdata for the configured languages must be installed on the host; the Docker image
+ * installs both and enables this engine. A Tesseract handle is not thread-safe, so each
+ * extraction thread gets its own.
+ */
+@Component
+@ConditionalOnProperty(name = "app.extraction.ocr.engine", havingValue = "tesseract")
+@Slf4j
+public class TesseractOcrEngine implements ImageOcrEngine {
+
+    private final String tessdataPath;
+    private final String language;
+    private final ThreadLocal<ITesseract> tesseract;
+
+    public TesseractOcrEngine(@Value("${app.extraction.ocr.tessdata-path}") String tessdataPath,
+            @Value("${app.extraction.ocr.language:eng}") String language) {
+        this.tessdataPath = tessdataPath;
+        this.language = language;
+        this.tesseract = ThreadLocal.withInitial(this::newTesseract);
+    }
+
+    // Fails startup when the native library or tessdata is missing, rather than every image later
+    @PostConstruct
+    public void probe() {
+        try {
+            recognize(new BufferedImage(8, 8, BufferedImage.TYPE_BYTE_GRAY), Writer.nullWriter());
+        } catch (IOException | LinkageError e) {
+            throw new IllegalStateException("Tesseract OCR is enabled but not usable (tessdata " + tessdataPath
+                    + ", language " + language + "): " + e.getMessage(), e);
+        }
+        log.info("Tesseract OCR engine ready (tessdata {}, language {})", tessdataPath, language);
+    }
+
+    @Override
+    public void recognize(BufferedImage image, Writer out) throws IOException {
+        try {
+            out.write(tesseract.get().doOCR(image));
+        } catch (TesseractException e) {
+            throw new IOException("Tesseract failed: " + e.getMessage(), e);
+        }
+    }
+
+    private ITesseract newTesseract() {
+        Tesseract instance = new Tesseract();
+        instance.setDatapath(tessdataPath);
+        instance.setLanguage(language);
+        return instance;
+    }
+}
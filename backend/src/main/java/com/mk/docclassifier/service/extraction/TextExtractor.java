@@ -0,0 +1,31 @@
+package com.mk.docclassifier.service.extraction;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * Extracts the text of one kind of file. The content is the whole file from the buffer's
+ * position to its limit, usually a memory-mapped file; implementations read it through
+ * duplicates or absolute gets and leave the buffer untouched. Text is written to the writer as
+ * it is extracted rather than built up in memory.
+ */
+public interface TextExtractor {
+
+    boolean supports(ByteBuffer content);
+
+    void extract(ByteBuffer content, Writer out) throws IOException;
+
+    static boolean startsWith(ByteBuffer content, int... magic) {
+        if (content.remaining() < magic.length) {
+            return false;
+        }
+        int start = content.position();
+        for (int i = 0; i < magic.length; i++) {
+            if ((content.get(start + i) & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
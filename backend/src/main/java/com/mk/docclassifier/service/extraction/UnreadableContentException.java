@@ -0,0 +1,18 @@
+package com.mk.docclassifier.service.extraction;
+
+import java.io.IOException;
+
+/**
+ * The file itself cannot be turned into text: an unsupported format, or a corrupt or encrypted
+ * one. Retrying cannot help, unlike other I/O failures during extraction.
+ */
+public class UnreadableContentException extends IOException {
+
+    public UnreadableContentException(String message) {
+        super(message);
+    }
+
+    public UnreadableContentException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
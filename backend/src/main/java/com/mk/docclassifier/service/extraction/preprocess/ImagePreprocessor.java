@@ -0,0 +1,293 @@
+package com.mk.docclassifier.service.extraction.preprocess;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Cleans up scanned pages before OCR: grayscale, Otsu binarization, 3x3 majority denoise and
+ * deskew. The image is cut into bands of rows processed in parallel as ForkJoin tasks (in the
+ * caller's pool when called from one, e.g. PDF page extraction, otherwise the common pool).
+ * Pixel kernels use the Vector API when jdk.incubator.vector is available, scalar code otherwise.
+ */
+@Component
+@Slf4j
+public class ImagePreprocessor {
+
+    private static final double SKEW_STEP_DEGREES = 0.2;
+    private static final double MIN_CORRECTED_SKEW_DEGREES = 0.1;
+    private static final int MAX_SKEW_SAMPLES = 50_000;
+
+    private final boolean enabled;
+    private final double maxSkewDegrees;
+    private final int tileRows;
+    private final PixelKernels scalarKernels = new ScalarPixelKernels();
+    private final PixelKernels vectorKernels;
+    private final PixelKernels kernels;
+
+    public ImagePreprocessor(@Value("${app.extraction.preprocess.enabled:true}") boolean enabled,
+            @Value("${app.extraction.preprocess.vector:true}") boolean useVector,
+            @Value("${app.extraction.preprocess.max-skew-degrees:5}") double maxSkewDegrees,
+            @Value("${app.extraction.preprocess.tile-rows:64}") int tileRows) {
+        this.enabled = enabled;
+        this.maxSkewDegrees = maxSkewDegrees;
+        this.tileRows = Math.max(1, tileRows);
+        this.vectorKernels = loadVectorKernels();
+        this.kernels = useVector && vectorKernels != null ? vectorKernels : scalarKernels;
+        log.info("Image preprocessing {} with {} kernels", enabled ? "enabled" : "disabled", kernels.name());
+    }
+
+    // Returns a black on white TYPE_BYTE_GRAY page, or the image itself when preprocessing is disabled
+    public BufferedImage prepare(BufferedImage image) {
+        return enabled ? process(image, kernels, null).toImage(kernels, this) : image;
+    }
+
+    PixelKernels scalarKernels() {
+        return scalarKernels;
+    }
+
+    // null when the Vector API is not available in this JVM
+    PixelKernels vectorKernels() {
+        return vectorKernels;
+    }
+
+    // stageNanos, when given, accumulates grayscale/threshold/binarize/denoise/deskew times
+    Page process(BufferedImage image, PixelKernels k, long[] stageNanos) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int pixels = width * height;
+
+        long started = System.nanoTime();
+        byte[] gray = grayPixels(image);
+        if (gray == null) {
+            int[] rgb = rgbPixels(image);
+            byte[] out = new byte[pixels];
+            forEachBand(height, (from, to) -> k.grayscale(rgb, out, from * width, to * width));
+            gray = out;
+        }
+        started = lap(stageNanos, 0, started);
+
+        int threshold = otsuThreshold(gray, width, height);
+        started = lap(stageNanos, 1, started);
+        byte[] ink = new byte[pixels];
+        byte[] source = gray;
+        forEachBand(height, (from, to) -> k.binarize(source, ink, threshold, from * width, to * width));
+        started = lap(stageNanos, 2, started);
+
+        byte[] clean = new byte[pixels];
+        forEachBand(height, (from, to) -> k.denoise(ink, clean, width, height, from, to));
+        started = lap(stageNanos, 3, started);
+
+        double skew = estimateSkew(clean, width, height);
+        byte[] straight = Math.abs(skew) < MIN_CORRECTED_SKEW_DEGREES ? clean : shear(clean, width, height, skew);
+        lap(stageNanos, 4, started);
+        return new Page(straight, width, height, threshold, skew);
+    }
+
+    // Projection profile: text lines give the sharpest row histogram at the true skew angle
+    private double estimateSkew(byte[] ink, int width, int height) {
+        int inkPixels = 0;
+        for (byte b : ink) {
+            inkPixels += b;
+        }
+        if (inkPixels == 0 || maxSkewDegrees <= 0) {
+            return 0;
+        }
+        int stride = Math.max(1, inkPixels / MAX_SKEW_SAMPLES);
+        int count = Math.min(inkPixels, (inkPixels + stride - 1) / stride);
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        int n = 0;
+        int skip = 0;
+        for (int y = 0; y < height && n < count; y++) {
+            for (int x = 0, i = y * width; x < width && n < count; x++, i++) {
+                if (ink[i] != 0 && --skip < 0) {
+                    xs[n] = x;
+                    ys[n] = y;
+                    n++;
+                    skip = stride - 1;
+                }
+            }
+        }
+        int samples = n;
+
+        int steps = (int) Math.round(maxSkewDegrees / SKEW_STEP_DEGREES);
+        double[] scores = new double[2 * steps + 1];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(scores.length);
+        for (int s = 0; s < scores.length; s++) {
+            int step = s;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                double tan = Math.tan(Math.toRadians((step - steps) * SKEW_STEP_DEGREES));
+                int margin = (int) Math.ceil(Math.abs(tan) * width);
+                int[] rows = new int[height + 2 * margin + 1];
+                for (int p = 0; p < samples; p++) {
+                    rows[(int) Math.round(ys[p] - xs[p] * tan) + margin]++;
+                }
+                double score = 0;
+                for (int r : rows) {
+                    score += (double) r * r;
+                }
+                scores[step] = score;
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        int best = steps;
+        for (int s = 0; s < scores.length; s++) {
+            if (scores[s] > scores[best]) {
+                best = s;
+            }
+        }
+        return (best - steps) * SKEW_STEP_DEGREES;
+    }
+
+    // Vertical shear undoing a small rotation: column x moves by (x - centre) * tan(skew) rows
+    private byte[] shear(byte[] ink, int width, int height, double skewDegrees) {
+        double tan = Math.tan(Math.toRadians(skewDegrees));
+        int centre = width / 2;
+        byte[] out = new byte[ink.length];
+        forEachBand(height, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int x = 0;
+                while (x < width) {
+                    int shift = (int) Math.round((x - centre) * tan);
+                    // Extend the span of columns sharing this shift and copy it in one go
+                    int end = x + 1;
+                    while (end < width && (int) Math.round((end - centre) * tan) == shift) {
+                        end++;
+                    }
+                    int sourceRow = y + shift;
+                    if (sourceRow >= 0 && sourceRow < height) {
+                        System.arraycopy(ink, sourceRow * width + x, out, y * width + x, end - x);
+                    }
+                    x = end;
+                }
+            }
+        });
+        return out;
+    }
+
+    private int otsuThreshold(byte[] gray, int width, int height) {
+        int bands = (height + tileRows - 1) / tileRows;
+        long[][] partial = new long[bands][];
+        forEachBand(height, (from, to) -> {
+            long[] histogram = new long[256];
+            for (int i = from * width, end = to * width; i < end; i++) {
+                histogram[gray[i] & 0xFF]++;
+            }
+            partial[from / tileRows] = histogram;
+        });
+        long[] histogram = new long[256];
+        for (long[] band : partial) {
+            for (int v = 0; v < 256; v++) {
+                histogram[v] += band[v];
+            }
+        }
+
+        long total = (long) width * height;
+        double sum = 0;
+        for (int v = 0; v < 256; v++) {
+            sum += (double) v * histogram[v];
+        }
+        double sumBackground = 0;
+        long weightBackground = 0;
+        double bestVariance = -1;
+        int threshold = 127;
+        for (int v = 0; v < 256; v++) {
+            weightBackground += histogram[v];
+            if (weightBackground == 0) {
+                continue;
+            }
+            long weightForeground = total - weightBackground;
+            if (weightForeground == 0) {
+                break;
+            }
+            sumBackground += (double) v * histogram[v];
+            double meanBackground = sumBackground / weightBackground;
+            double meanForeground = (sum - sumBackground) / weightForeground;
+            double variance = (double) weightBackground * weightForeground
+                    * (meanBackground - meanForeground) * (meanBackground - meanForeground);
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                threshold = v;
+            }
+        }
+        return threshold;
+    }
+
+    void forEachBand(int height, RowBand body) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>((height + tileRows - 1) / tileRows);
+        for (int from = 0; from < height; from += tileRows) {
+            int start = from;
+            int end = Math.min(height, from + tileRows);
+            tasks.add(ForkJoinTask.adapt(() -> body.apply(start, end)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    // The pixel array itself when the image is already 8-bit gray, otherwise null
+    private static byte[] grayPixels(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY
+                && image.getRaster().getDataBuffer() instanceof DataBufferByte data
+                && data.getNumBanks() == 1 && data.getOffset() == 0
+                && data.getData().length == image.getWidth() * image.getHeight()) {
+            return data.getData();
+        }
+        return null;
+    }
+
+    private static int[] rgbPixels(BufferedImage image) {
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt data
+                && data.getNumBanks() == 1 && data.getOffset() == 0
+                && data.getData().length == image.getWidth() * image.getHeight()) {
+            return data.getData();
+        }
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static long lap(long[] stageNanos, int stage, long started) {
+        long now = System.nanoTime();
+        if (stageNanos != null) {
+            stageNanos[stage] += now - started;
+        }
+        return now;
+    }
+
+    private static PixelKernels loadVectorKernels() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            // Loaded by name so this class never links against the incubator module when it is absent
+            return (PixelKernels) Class.forName(ImagePreprocessor.class.getPackageName() + ".VectorPixelKernels")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Vector API present but unusable, using scalar image kernels: {}", e.toString());
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    interface RowBand {
+        void apply(int fromRow, int toRow);
+    }
+
+    record Page(byte[] ink, int width, int height, int threshold, double skewDegrees) {
+
+        BufferedImage toImage(PixelKernels k, ImagePreprocessor preprocessor) {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            byte[] gray = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            preprocessor.forEachBand(height, (from, to) -> k.render(ink, gray, from * width, to * width));
+            return image;
+        }
+    }
+}
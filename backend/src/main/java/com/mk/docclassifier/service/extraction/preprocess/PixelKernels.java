@@ -0,0 +1,22 @@
+package com.mk.docclassifier.service.extraction.preprocess;
+
+/**
+ * Per-pixel operations of the preprocessing stage. Each call covers a range of pixels or rows so
+ * that tiles can be processed in parallel. Ink buffers hold 1 for ink and 0 for background.
+ */
+interface PixelKernels {
+
+    String name();
+
+    // Packed (A)RGB to 8-bit luma for pixels [from, to)
+    void grayscale(int[] rgb, byte[] gray, int from, int to);
+
+    // 1 where the luma is at or below the threshold, for pixels [from, to)
+    void binarize(byte[] gray, byte[] ink, int threshold, int from, int to);
+
+    // 3x3 majority vote for rows [fromRow, toRow): removes specks and fills pinholes; image borders are copied
+    void denoise(byte[] ink, byte[] out, int width, int height, int fromRow, int toRow);
+
+    // Ink to black on white 8-bit gray, for pixels [from, to)
+    void render(byte[] ink, byte[] gray, int from, int to);
+}
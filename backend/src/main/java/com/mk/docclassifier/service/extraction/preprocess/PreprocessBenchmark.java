@@ -0,0 +1,107 @@
+package com.mk.docclassifier.service.extraction.preprocess;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times the scalar and vector kernels on the same synthetic scan: an A4 page at 300 dpi
+ * (2480x3508) of text lines, slightly rotated and sprinkled with noise.
+ */
+@Component
+@RequiredArgsConstructor
+public class PreprocessBenchmark {
+
+    private static final int A4_WIDTH_300_DPI = 2480;
+    private static final int A4_HEIGHT_300_DPI = 3508;
+    private static final double SCAN_SKEW_DEGREES = 1.5;
+    private static final int WARM_UP_RUNS = 3;
+    private static final String[] STAGES = {"grayscale", "threshold", "binarize", "denoise", "deskew"};
+
+    private final ImagePreprocessor preprocessor;
+
+    public Map<String, Object> run(int iterations) {
+        BufferedImage scan = syntheticScan();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("image", A4_WIDTH_300_DPI + "x" + A4_HEIGHT_300_DPI);
+        report.put("iterations", iterations);
+        report.put("parallelism", ForkJoinPool.getCommonPoolParallelism());
+
+        Map<String, Object> scalar = measure(scan, preprocessor.scalarKernels(), iterations);
+        report.put("scalar", scalar);
+        PixelKernels vector = preprocessor.vectorKernels();
+        if (vector == null) {
+            report.put("vector", "unavailable (start the JVM with --add-modules jdk.incubator.vector)");
+        } else {
+            Map<String, Object> vectorResult = measure(scan, vector, iterations);
+            report.put("vector", vectorResult);
+            report.put("speedup", round((double) scalar.get("totalMs") / (double) vectorResult.get("totalMs")));
+        }
+        return report;
+    }
+
+    private Map<String, Object> measure(BufferedImage scan, PixelKernels kernels, int iterations) {
+        // Vector code is only fast once C2 has intrinsified it: never time the first runs
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            preprocessor.process(scan, kernels, null);
+        }
+        long[] stageNanos = new long[STAGES.length];
+        ImagePreprocessor.Page page = null;
+        for (int i = 0; i < iterations; i++) {
+            page = preprocessor.process(scan, kernels, stageNanos);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("kernels", kernels.name());
+        double total = 0;
+        for (int s = 0; s < STAGES.length; s++) {
+            double ms = stageNanos[s] / 1_000_000.0 / iterations;
+            total += ms;
+            result.put(STAGES[s] + "Ms", round(ms));
+        }
+        result.put("totalMs", round(total));
+        result.put("threshold", page.threshold());
+        result.put("detectedSkewDegrees", round(page.skewDegrees()));
+        return result;
+    }
+
+    private static BufferedImage syntheticScan() {
+        BufferedImage image = new BufferedImage(A4_WIDTH_300_DPI, A4_HEIGHT_300_DPI, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(new Color(245, 242, 235));
+            g.fillRect(0, 0, A4_WIDTH_300_DPI, A4_HEIGHT_300_DPI);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.rotate(Math.toRadians(SCAN_SKEW_DEGREES), A4_WIDTH_300_DPI / 2.0, A4_HEIGHT_300_DPI / 2.0);
+            g.setColor(new Color(30, 30, 40));
+            // 11 pt at 300 dpi
+            g.setFont(new Font(Font.SERIF, Font.PLAIN, 46));
+            String line = "FACTURE N° 2024-0042 — Montant HT 1 250,00 EUR — TVA 20 % — Total TTC 1 500,00 EUR";
+            for (int y = 300; y < A4_HEIGHT_300_DPI - 300; y += 70) {
+                g.drawString(line, 200, y);
+            }
+        } finally {
+            g.dispose();
+        }
+        // Scanner noise: isolated dark and light specks
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < A4_WIDTH_300_DPI * A4_HEIGHT_300_DPI / 200; i++) {
+            image.setRGB(random.nextInt(A4_WIDTH_300_DPI), random.nextInt(A4_HEIGHT_300_DPI),
+                    random.nextBoolean() ? 0x202020 : 0xF8F8F8);
+        }
+        return image;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
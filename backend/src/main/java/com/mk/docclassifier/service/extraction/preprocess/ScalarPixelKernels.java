@@ -0,0 +1,56 @@
+package com.mk.docclassifier.service.extraction.preprocess;
+
+final class ScalarPixelKernels implements PixelKernels {
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void grayscale(int[] rgb, byte[] gray, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int p = rgb[i];
+            gray[i] = (byte) ((77 * ((p >>> 16) & 0xFF) + 150 * ((p >>> 8) & 0xFF) + 29 * (p & 0xFF)) >>> 8);
+        }
+    }
+
+    @Override
+    public void binarize(byte[] gray, byte[] ink, int threshold, int from, int to) {
+        for (int i = from; i < to; i++) {
+            ink[i] = (byte) ((gray[i] & 0xFF) <= threshold ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void denoise(byte[] ink, byte[] out, int width, int height, int fromRow, int toRow) {
+        for (int y = fromRow; y < toRow; y++) {
+            int row = y * width;
+            if (y == 0 || y == height - 1 || width < 3) {
+                System.arraycopy(ink, row, out, row, width);
+                continue;
+            }
+            out[row] = ink[row];
+            out[row + width - 1] = ink[row + width - 1];
+            denoiseRow(ink, out, width, row, 1, width - 1);
+        }
+    }
+
+    // Interior pixels [fromX, toX) of one row; shared with the vector kernels for their tails
+    static void denoiseRow(byte[] ink, byte[] out, int width, int row, int fromX, int toX) {
+        for (int x = fromX; x < toX; x++) {
+            int i = row + x;
+            int sum = ink[i - width - 1] + ink[i - width] + ink[i - width + 1]
+                    + ink[i - 1] + ink[i] + ink[i + 1]
+                    + ink[i + width - 1] + ink[i + width] + ink[i + width + 1];
+            out[i] = (byte) (sum >= 5 ? 1 : 0);
+        }
+    }
+
+    @Override
+    public void render(byte[] ink, byte[] gray, int from, int to) {
+        for (int i = from; i < to; i++) {
+            gray[i] = (byte) (ink[i] != 0 ? 0 : 255);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.mk.docclassifier.service.extraction.preprocess;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD versions of the kernels (jdk.incubator.vector). Only loaded when the module is present at
+ * run time (--add-modules jdk.incubator.vector); tails shorter than a vector use scalar code.
+ */
+final class VectorPixelKernels implements PixelKernels {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    // Luma is computed in int lanes and narrowed to a byte vector with the same lane count
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED.length() >= 8
+            ? IntVector.SPECIES_PREFERRED : IntVector.SPECIES_256;
+    private static final VectorSpecies<Byte> NARROW_BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(INTS.length() * Byte.SIZE));
+
+    private final ScalarPixelKernels scalar = new ScalarPixelKernels();
+
+    @Override
+    public String name() {
+        return "vector-" + BYTES.vectorBitSize();
+    }
+
+    @Override
+    public void grayscale(int[] rgb, byte[] gray, int from, int to) {
+        int i = from;
+        for (int bound = from + INTS.loopBound(to - from); i < bound; i += INTS.length()) {
+            IntVector p = IntVector.fromArray(INTS, rgb, i);
+            IntVector r = p.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+            IntVector g = p.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+            IntVector b = p.and(0xFF);
+            IntVector luma = r.mul(77).add(g.mul(150)).add(b.mul(29)).lanewise(VectorOperators.LSHR, 8);
+            luma.convertShape(VectorOperators.I2B, NARROW_BYTES, 0).reinterpretAsBytes().intoArray(gray, i);
+        }
+        scalar.grayscale(rgb, gray, i, to);
+    }
+
+    @Override
+    public void binarize(byte[] gray, byte[] ink, int threshold, int from, int to) {
+        ByteVector zero = ByteVector.zero(BYTES);
+        int i = from;
+        for (int bound = from + BYTES.loopBound(to - from); i < bound; i += BYTES.length()) {
+            VectorMask<Byte> dark = ByteVector.fromArray(BYTES, gray, i)
+                    .compare(VectorOperators.UNSIGNED_LE, (byte) threshold);
+            zero.blend((byte) 1, dark).intoArray(ink, i);
+        }
+        scalar.binarize(gray, ink, threshold, i, to);
+    }
+
+    @Override
+    public void denoise(byte[] ink, byte[] out, int width, int height, int fromRow, int toRow) {
+        ByteVector zero = ByteVector.zero(BYTES);
+        for (int y = fromRow; y < toRow; y++) {
+            int row = y * width;
+            if (y == 0 || y == height - 1 || width < 3) {
+                System.arraycopy(ink, row, out, row, width);
+                continue;
+            }
+            out[row] = ink[row];
+            out[row + width - 1] = ink[row + width - 1];
+            int x = 1;
+            for (int bound = 1 + BYTES.loopBound(width - 2); x < bound; x += BYTES.length()) {
+                int i = row + x;
+                ByteVector sum = ByteVector.fromArray(BYTES, ink, i - width - 1)
+                        .add(ByteVector.fromArray(BYTES, ink, i - width))
+                        .add(ByteVector.fromArray(BYTES, ink, i - width + 1))
+                        .add(ByteVector.fromArray(BYTES, ink, i - 1))
+                        .add(ByteVector.fromArray(BYTES, ink, i))
+                        .add(ByteVector.fromArray(BYTES, ink, i + 1))
+                        .add(ByteVector.fromArray(BYTES, ink, i + width - 1))
+                        .add(ByteVector.fromArray(BYTES, ink, i + width))
+                        .add(ByteVector.fromArray(BYTES, ink, i + width + 1));
+                zero.blend((byte) 1, sum.compare(VectorOperators.GE, (byte) 5)).intoArray(out, i);
+            }
+            ScalarPixelKernels.denoiseRow(ink, out, width, row, x, width - 1);
+        }
+    }
+
+    @Override
+    public void render(byte[] ink, byte[] gray, int from, int to) {
+        ByteVector white = ByteVector.broadcast(BYTES, (byte) 255);
+        int i = from;
+        for (int bound = from + BYTES.loopBound(to - from); i < bound; i += BYTES.length()) {
+            VectorMask<Byte> isInk = ByteVector.fromArray(BYTES, ink, i).compare(VectorOperators.NE, (byte) 0);
+            white.blend((byte) 0, isInk).intoArray(gray, i);
+        }
+        scalar.render(ink, gray, i, to);
+    }
+}
@@ -0,0 +1,245 @@
+package com.mk.docclassifier.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mk.docclassifier.dto.AiClassificationRequest;
+import com.mk.docclassifier.dto.AiClassificationResponse;
+import com.mk.docclassifier.dto.Label;
+import com.mk.docclassifier.service.AiClassificationService;
+import com.mk.docclassifier.service.LabelDictionary;
+import com.mk.docclassifier.service.ai.CircuitBreaker;
+import com.mk.docclassifier.service.classifier.ClassifierTier;
+import com.mk.docclassifier.service.classifier.Prediction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Last cascade tier: a remote inference backend reached over HTTP. Documents that escalate this
+ * far are sent in as few requests as possible, at most {@code max-concurrent-requests} in flight
+ * across all pipeline threads, and every call has a hard deadline. When the backend is saturated,
+ * slow or failing, the tier answers nothing and the cascade keeps the local classifiers' answers;
+ * after repeated failures the circuit breaker stops calling it until the cooldown has passed.
+ */
+@Service
+@Order(3)
+@ConditionalOnProperty(name = "app.ai.enabled", havingValue = "true")
+@Slf4j
+public class AiClassificationServiceImpl implements AiClassificationService, ClassifierTier {
+
+    private final LabelDictionary labels;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final int maxBatchSize;
+    private final int maxTextChars;
+    private final Duration deadline;
+    private final Semaphore permits;
+    private final CircuitBreaker circuitBreaker;
+    private final Timer latency;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter saturated;
+    private final Counter shortCircuited;
+
+    public AiClassificationServiceImpl(LabelDictionary labels,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.ai.url}") String url,
+            @Value("${app.ai.max-batch-size:16}") int maxBatchSize,
+            @Value("${app.ai.max-text-chars:8000}") int maxTextChars,
+            @Value("${app.ai.max-concurrent-requests:4}") int maxConcurrentRequests,
+            @Value("${app.ai.deadline-ms:2000}") long deadlineMs,
+            @Value("${app.ai.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${app.ai.circuit.open-seconds:30}") long openSeconds) {
+        this.labels = labels;
+        this.objectMapper = objectMapper;
+        this.endpoint = URI.create(url);
+        this.maxBatchSize = maxBatchSize;
+        this.maxTextChars = maxTextChars;
+        this.deadline = Duration.ofMillis(deadlineMs);
+        this.permits = new Semaphore(maxConcurrentRequests);
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, Duration.ofSeconds(openSeconds));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(deadline)
+                .build();
+
+        this.latency = Timer.builder("ai.client.latency")
+                .description("Round trip of one remote classification request")
+                .register(meterRegistry);
+        this.succeeded = calls(meterRegistry, "success");
+        this.failed = calls(meterRegistry, "failure");
+        this.saturated = calls(meterRegistry, "saturated");
+        this.shortCircuited = calls(meterRegistry, "short_circuited");
+        Gauge.builder("ai.client.in_flight", permits, p -> maxConcurrentRequests - p.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("ai.client.circuit.open", circuitBreaker,
+                        breaker -> breaker.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .register(meterRegistry);
+        log.info("Remote AI classifier enabled at {} (deadline {} ms, {} concurrent requests)",
+                url, deadlineMs, maxConcurrentRequests);
+    }
+
+    @Override
+    public String name() {
+        return "remote-ai";
+    }
+
+    @Override
+    public List<Prediction> classify(List<String> texts) {
+        Prediction[] predictions = new Prediction[texts.size()];
+        List<Integer> sent = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            if (texts.get(i) != null) {
+                sent.add(i);
+            }
+        }
+        if (sent.isEmpty()) {
+            return Arrays.asList(predictions);
+        }
+
+        Map<String, Long> categoryIds = new HashMap<>();
+        List<String> categoryNames = new ArrayList<>();
+        for (Label category : labels.categories()) {
+            categoryIds.put(category.name().toLowerCase(Locale.ROOT), category.id());
+            categoryNames.add(category.name());
+        }
+
+        AiClassificationResponse response = classifyBatch(sent.stream().map(texts::get).toList(), categoryNames);
+        for (AiClassificationResponse.Result result : response.getResults()) {
+            Long categoryId = result.getCategory() == null ? null
+                    : categoryIds.get(result.getCategory().toLowerCase(Locale.ROOT));
+            if (categoryId != null && result.getIndex() >= 0 && result.getIndex() < sent.size()) {
+                predictions[sent.get(result.getIndex())] = new Prediction(categoryId,
+                        Math.max(0.0, Math.min(1.0, result.getConfidence())));
+            }
+        }
+        return Arrays.asList(predictions);
+    }
+
+    @Override
+    public AiClassificationResponse classifyBatch(List<String> texts, List<String> categories) {
+        long deadlineAt = System.nanoTime() + deadline.toNanos();
+        List<Call> calls = new ArrayList<>();
+        for (int from = 0; from < texts.size(); from += maxBatchSize) {
+            int to = Math.min(from + maxBatchSize, texts.size());
+            // Never wait for a permit: a busy backend means the local answer is kept
+            if (!permits.tryAcquire()) {
+                saturated.increment();
+                continue;
+            }
+            if (!circuitBreaker.tryAcquire()) {
+                permits.release();
+                shortCircuited.increment();
+                continue;
+            }
+            calls.add(new Call(from, send(texts.subList(from, to), categories)));
+        }
+
+        List<AiClassificationResponse.Result> results = new ArrayList<>();
+        for (Call call : calls) {
+            try {
+                long remaining = Math.max(0, deadlineAt - System.nanoTime());
+                AiClassificationResponse response = call.response.get(remaining, TimeUnit.NANOSECONDS);
+                if (response.getResults() == null) {
+                    continue;
+                }
+                for (AiClassificationResponse.Result result : response.getResults()) {
+                    result.setIndex(call.offset + result.getIndex());
+                    results.add(result);
+                }
+            } catch (TimeoutException | ExecutionException e) {
+                // Already counted against the circuit breaker when the call completed
+                log.debug("Remote classification for {} documents gave no answer: {}", texts.size(), e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return new AiClassificationResponse(results);
+    }
+
+    private CompletableFuture<AiClassificationResponse> send(List<String> texts, List<String> categories) {
+        long started = System.nanoTime();
+        CompletableFuture<AiClassificationResponse> response;
+        try {
+            List<String> documents = texts.stream()
+                    .map(text -> text == null ? "" : text.length() > maxTextChars ? text.substring(0, maxTextChars) : text)
+                    .toList();
+            HttpRequest request = HttpRequest.newBuilder(endpoint)
+                    .timeout(deadline)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(
+                            objectMapper.writeValueAsBytes(new AiClassificationRequest(categories, documents))))
+                    .build();
+            CompletableFuture<HttpResponse<byte[]>> exchange =
+                    httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+            // The request timeout stops at the response headers; cancelling aborts a body that trickles in too
+            CompletableFuture.delayedExecutor(deadline.toMillis(), TimeUnit.MILLISECONDS)
+                    .execute(() -> exchange.cancel(true));
+            response = exchange.thenApply(this::parse);
+        } catch (IOException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        // The permit is released once the exchange has completed or been aborted at the deadline
+        return response.whenComplete((result, error) -> {
+            permits.release();
+            latency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            if (error == null) {
+                succeeded.increment();
+                circuitBreaker.onSuccess();
+            } else {
+                failed.increment();
+                circuitBreaker.onFailure();
+                if (circuitBreaker.state() == CircuitBreaker.State.OPEN) {
+                    log.warn("Remote AI classifier circuit open after: {}", error.toString());
+                }
+            }
+        });
+    }
+
+    private AiClassificationResponse parse(HttpResponse<byte[]> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Remote classifier returned HTTP " + response.statusCode());
+        }
+        try {
+            return objectMapper.readValue(response.body(), AiClassificationResponse.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Counter calls(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("ai.client.calls")
+                .description("Remote classification requests, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record Call(int offset, CompletableFuture<AiClassificationResponse> response) {
+    }
+}
@@ -1,26 +1,161 @@
 package com.mk.docclassifier.service.impl;
 
+import com.mk.docclassifier.domain.entity.Category;
 import com.mk.docclassifier.domain.entity.Document;
+import com.mk.docclassifier.repository.CategoryRepository;
 import com.mk.docclassifier.service.ClassificationService;
+import com.mk.docclassifier.service.classifier.ClassifierTier;
+import com.mk.docclassifier.service.classifier.Prediction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Confidence cascade over the classifier tiers, cheapest first. A document leaves the cascade at
+ * the first tier whose prediction reaches that tier's threshold; the rest escalate. If no tier is
+ * confident, the deepest tier that answered wins, falling back to the best earlier answer.
+ */
 @Service
-@lombok.RequiredArgsConstructor
+@Slf4j
 public class ClassificationServiceImpl implements ClassificationService {
 
-    private final com.mk.docclassifier.repository.CategoryRepository categoryRepository;
+    private final CategoryRepository categoryRepository;
+    private final List<Stage> stages = new ArrayList<>();
+
+    public ClassificationServiceImpl(CategoryRepository categoryRepository,
+            List<ClassifierTier> tiers,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${app.classifier.cascade.threshold:0.7}") double defaultThreshold) {
+        this.categoryRepository = categoryRepository;
+        for (ClassifierTier tier : tiers) {
+            double threshold = environment.getProperty("app.classifier.cascade.threshold." + tier.name(),
+                    Double.class, defaultThreshold);
+            stages.add(new Stage(tier, threshold, meterRegistry));
+        }
+        log.info("Classification cascade: {}", stages.stream()
+                .map(stage -> stage.tier.name() + " (>= " + stage.threshold + ")")
+                .collect(Collectors.joining(" -> ")));
+    }
 
     @Override
     public void classify(Document document) {
-        // Mock classification
-        String categoryName = "INVOICE";
-        com.mk.docclassifier.domain.entity.Category category = categoryRepository.findAll().stream()
-                .filter(c -> c.getName().equalsIgnoreCase(categoryName))
-                .findFirst()
-                .orElseGet(() -> categoryRepository
-                        .save(com.mk.docclassifier.domain.entity.Category.builder().name(categoryName).build()));
-
-        document.setCategory(category);
-        document.setConfidence(0.95);
+        classifyBatch(List.of(document));
+    }
+
+    @Override
+    public void classifyBatch(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        Prediction[] decided = new Prediction[documents.size()];
+        Prediction[] fallback = new Prediction[documents.size()];
+        List<Integer> pending = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            pending.add(i);
+        }
+
+        for (Stage stage : stages) {
+            if (pending.isEmpty()) {
+                break;
+            }
+            List<String> texts = pending.stream().map(i -> documents.get(i).getTextExcerpt()).toList();
+            long started = System.nanoTime();
+            List<Prediction> predictions;
+            try {
+                predictions = stage.tier.classify(texts);
+            } catch (RuntimeException e) {
+                // A broken tier degrades the cascade instead of failing the batch
+                log.warn("Classifier tier {} failed for {} documents: {}", stage.tier.name(), texts.size(), e.getMessage());
+                stage.errors.increment(texts.size());
+                continue;
+            } finally {
+                stage.latency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+
+            List<Integer> escalated = new ArrayList<>();
+            for (int p = 0; p < pending.size(); p++) {
+                int index = pending.get(p);
+                Prediction prediction = predictions.get(p);
+                if (prediction == null) {
+                    stage.noAnswer.increment();
+                    escalated.add(index);
+                } else if (prediction.confidence() >= stage.threshold) {
+                    stage.accepted.increment();
+                    decided[index] = prediction;
+                } else {
+                    stage.escalated.increment();
+                    // A deeper tier's answer replaces a shallower one: later tiers are the more expensive, better ones
+                    fallback[index] = prediction;
+                    escalated.add(index);
+                }
+            }
+            pending = escalated;
+        }
+
+        Set<Long> categoryIds = new HashSet<>();
+        for (int i = 0; i < decided.length; i++) {
+            if (decided[i] == null) {
+                decided[i] = fallback[i];
+            }
+            if (decided[i] != null) {
+                categoryIds.add(decided[i].categoryId());
+            }
+        }
+
+        // One category lookup for the whole batch
+        Map<Long, Category> categories = categoryIds.isEmpty() ? Map.of()
+                : categoryRepository.findAllById(categoryIds).stream()
+                        .collect(Collectors.toMap(Category::getId, Function.identity()));
+
+        for (int i = 0; i < documents.size(); i++) {
+            Category category = decided[i] == null ? null : categories.get(decided[i].categoryId());
+            documents.get(i).setCategory(category);
+            documents.get(i).setConfidence(category == null ? null : decided[i].confidence());
+        }
+    }
+
+    private static final class Stage {
+        private final ClassifierTier tier;
+        private final double threshold;
+        private final Timer latency;
+        private final Counter accepted;
+        private final Counter escalated;
+        private final Counter noAnswer;
+        private final Counter errors;
+
+        private Stage(ClassifierTier tier, double threshold, MeterRegistry meterRegistry) {
+            this.tier = tier;
+            this.threshold = threshold;
+            this.latency = Timer.builder("classifier.tier.latency")
+                    .description("Time a classifier tier takes per batch")
+                    .tag("tier", tier.name())
+                    .register(meterRegistry);
+            this.accepted = outcome(meterRegistry, "accepted");
+            this.escalated = outcome(meterRegistry, "escalated");
+            this.noAnswer = outcome(meterRegistry, "no_answer");
+            this.errors = outcome(meterRegistry, "error");
+        }
+
+        private Counter outcome(MeterRegistry meterRegistry, String outcome) {
+            return Counter.builder("classifier.tier.documents")
+                    .description("Documents seen by a classifier tier, by outcome")
+                    .tag("tier", tier.name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
     }
 }
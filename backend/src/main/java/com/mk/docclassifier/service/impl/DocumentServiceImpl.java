@@ -1,68 +1,155 @@
 package com.mk.docclassifier.service.impl;
 
+import com.mk.docclassifier.domain.entity.Category;
+import com.mk.docclassifier.domain.entity.CategorySource;
 import com.mk.docclassifier.domain.entity.Document;
 import com.mk.docclassifier.domain.entity.DocumentStatus;
 import com.mk.docclassifier.domain.entity.Role;
 import com.mk.docclassifier.domain.entity.Tag;
 import com.mk.docclassifier.domain.entity.User;
+import com.mk.docclassifier.dto.CursorPage;
+import com.mk.docclassifier.dto.DocumentSummary;
+import com.mk.docclassifier.dto.FacetValue;
+import com.mk.docclassifier.dto.FacetedPage;
+import com.mk.docclassifier.dto.Label;
+import com.mk.docclassifier.dto.SearchFacets;
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.event.DocumentReclassifiedEvent;
+import com.mk.docclassifier.repository.CategoryRepository;
 import com.mk.docclassifier.repository.DocumentRepository;
 import com.mk.docclassifier.repository.TagRepository;
 import com.mk.docclassifier.repository.UserRepository;
 import com.mk.docclassifier.service.DocumentService;
-import com.mk.docclassifier.service.PipelineService;
+import com.mk.docclassifier.service.LabelDictionary;
+import com.mk.docclassifier.service.PageCursor;
+import com.mk.docclassifier.service.PipelineJobService;
 import com.mk.docclassifier.service.StorageService;
+import com.mk.docclassifier.service.StoredFile;
+import com.mk.docclassifier.service.search.DocIdBitmap;
+import com.mk.docclassifier.service.search.DocumentFilter;
+import com.mk.docclassifier.service.search.DocumentFilterIndex;
+import com.mk.docclassifier.service.search.DocumentSearchIndex;
+import com.mk.docclassifier.service.search.DocumentTagLink;
+import com.mk.docclassifier.service.search.FacetCounts;
+import com.mk.docclassifier.service.search.SearchHit;
+import com.mk.docclassifier.service.text.DocumentTextStore;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class DocumentServiceImpl implements DocumentService {
 
+    private static final int MAX_SLICE_SIZE = 1000;
+    // Sort properties that follow id order
+    private static final Set<String> UPLOAD_ORDER = Set.of("id", "uploadedAt");
+    private static final Comparator<FacetValue> FACET_ORDER = Comparator.comparingLong(FacetValue::getCount).reversed()
+            .thenComparing(FacetValue::getName);
+
     private final DocumentRepository documentRepository;
     private final StorageService storageService;
     private final UserRepository userRepository;
-    private final PipelineService pipelineService;
-    private final com.mk.docclassifier.repository.CategoryRepository categoryRepository;
+    private final PipelineJobService pipelineJobService;
+    private final CategoryRepository categoryRepository;
     private final TagRepository tagRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DocumentTextStore textStore;
+    private final DocumentSearchIndex searchIndex;
+    private final DocumentFilterIndex filterIndex;
+    private final LabelDictionary labels;
 
     @Override
+    @org.springframework.transaction.annotation.Transactional
     public Document uploadDocument(MultipartFile file, Long userId) throws IOException {
-        String filename = storageService.store(file);
+        StoredFile stored = storageService.stage(file);
+        try {
+            return saveUpload(file, stored, userId);
+        } finally {
+            storageService.discard(stored);
+        }
+    }
 
+    private Document saveUpload(MultipartFile file, StoredFile stored, Long userId) throws IOException {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
+        // A delete of the last document with this content holds these locks until its blob is gone,
+        // so the blob published here cannot be removed from under the new document
+        documentRepository.lockByContentHash(stored.getContentHash());
+        if (storageService.publish(stored)) {
+            deleteOnRollback(stored.getFilename());
+        }
+
         Document document = Document.builder()
-                .filename(filename)
+                .filename(stored.getFilename())
                 .originalFilename(file.getOriginalFilename())
                 .contentType(file.getContentType())
-                .size(file.getSize())
-                .storagePath(storageService.load(filename).toString())
+                .size(stored.getSize())
+                .contentHash(stored.getContentHash())
+                .storagePath(storageService.load(stored.getFilename()).toString())
                 .status(DocumentStatus.UPLOADED)
                 .user(user)
                 .build();
 
         document = documentRepository.save(document);
 
-        // Trigger pipeline
-        pipelineService.processDocument(document.getId());
+        // Durable job, committed with the document; a PipelineJobWorker picks it up
+        pipelineJobService.enqueue(document.getId());
+        eventPublisher.publishEvent(new DocumentChangedEvent(document.getId(), DocumentChangedEvent.Change.METADATA));
 
         return document;
     }
 
+    // A rolled-back upload leaves no document pointing at a blob it created, so nothing would ever delete it
+    private void deleteOnRollback(String filename) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    try {
+                        storageService.delete(filename);
+                    } catch (IOException e) {
+                        log.warn("Failed to delete blob {} of a rolled-back upload: {}", filename, e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
     @Override
     @org.springframework.transaction.annotation.Transactional(readOnly = true)
-    public List<Document> getDocumentsForUser(User user) {
-        if (isAdmin(user)) {
-            return documentRepository.findAll();
-        }
-        return documentRepository.findByUserId(user.getId());
+    public List<DocumentSummary> getDocumentsForUser(User user) {
+        Long userId = isAdmin(user) ? null : user.getId();
+        return withTags(documentRepository.findSummariesByOwner(userId), documentRepository.findTagLinksByOwner(userId));
     }
 
     @Override
@@ -91,8 +178,79 @@ public class DocumentServiceImpl implements DocumentService {
 
     @Override
     @org.springframework.transaction.annotation.Transactional(readOnly = true)
-    public org.springframework.data.domain.Page<Document> searchDocuments(String query, String category, String status,
-            User user, org.springframework.data.domain.Pageable pageable) {
+    public Page<DocumentSummary> searchDocuments(String query, String category, String status, List<Long> tags,
+            List<Long> anyTags, List<Long> excludeTags, boolean facets, User user, Pageable pageable) {
+        SearchResults results = resolve(query, category, status, tags, anyTags, excludeTags, user);
+        Page<DocumentSummary> page = results.ranked() != null
+                ? rankedPage(results.ranked(), pageable)
+                : sortedPage(results, pageable);
+        return facets
+                ? new FacetedPage<>(page.getContent(), page.getPageable(), page.getTotalElements(), facets(results.documents()))
+                : page;
+    }
+
+    @Override
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public CursorPage<DocumentSummary> searchDocumentSlice(String query, String category, String status, List<Long> tags,
+            List<Long> anyTags, List<Long> excludeTags, boolean facets, String cursor, int size, User user) {
+        PageCursor after = PageCursor.decode(cursor);
+        int limit = sliceSize(size);
+        SearchResults results = resolve(query, category, status, tags, anyTags, excludeTags, user);
+        if (after != null && after.ranked() != (results.ranked() != null)) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        SearchFacets searchFacets = facets ? facets(results.documents()) : null;
+
+        if (results.ranked() != null) {
+            List<SearchHit> ranked = results.ranked();
+            int from = after == null ? 0 : firstAfter(ranked, after);
+            List<SearchHit> window = ranked.subList(from, Math.min(ranked.size(), from + limit + 1));
+            boolean hasNext = window.size() > limit;
+            window = window.subList(0, Math.min(limit, window.size()));
+            SearchHit last = window.isEmpty() ? null : window.get(window.size() - 1);
+            return new CursorPage<>(withTags(loadInOrder(window.stream().map(SearchHit::documentId).toList())), limit, hasNext,
+                    hasNext ? PageCursor.afterHit(last.score(), last.documentId()).encode() : null, searchFacets);
+        }
+        // Newest first; id order is upload order, so the bitmap seeks straight to the cursor
+        long[] ids = after == null
+                ? results.documents().page(0, limit + 1, true)
+                : results.documents().pageAfter(after.id(), limit + 1, true);
+        return slice(loadInOrder(Arrays.stream(ids).boxed().toList()), limit, searchFacets);
+    }
+
+    @Override
+    @org.springframework.transaction.annotation.Transactional(readOnly = true)
+    public CursorPage<DocumentSummary> getDocumentsForUser(User user, String cursor, int size) {
+        PageCursor after = PageCursor.decode(cursor);
+        if (after != null && after.ranked()) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        int limit = sliceSize(size);
+        // One extra row tells whether another page follows
+        Pageable rows = PageRequest.ofSize(limit + 1);
+        List<DocumentSummary> documents;
+        if (isAdmin(user)) {
+            documents = after == null ? documentRepository.findNewest(rows)
+                    : documentRepository.findNewestBefore(after.uploadedAt(), after.id(), rows);
+        } else {
+            documents = after == null ? documentRepository.findNewestByUser(user.getId(), rows)
+                    : documentRepository.findNewestByUserBefore(user.getId(), after.uploadedAt(), after.id(), rows);
+        }
+        return slice(documents, limit, null);
+    }
+
+    @Override
+    public boolean isFullTextQuery(String query) {
+        return query == null || query.isBlank() || searchIndex.canAnswer(query);
+    }
+
+    // Documents matching the query and filters; ranked holds them in relevance order when the full-text index answered.
+    // filter and query are kept for sorts that must run in SQL; filter is null when nothing can match
+    private record SearchResults(DocIdBitmap documents, List<SearchHit> ranked, DocumentFilter filter, String query) {
+    }
+
+    private SearchResults resolve(String query, String category, String status, List<Long> tags, List<Long> anyTags,
+            List<Long> excludeTags, User user) {
         Long userId = isAdmin(user) ? null : user.getId();
         DocumentStatus docStatus = null;
         if (status != null && !status.isBlank()) {
@@ -102,34 +260,206 @@ public class DocumentServiceImpl implements DocumentService {
                 // Invalid status, ignore filter
             }
         }
-        return documentRepository.searchDocuments(query, category, docStatus, userId, pageable);
+        Long categoryId = null;
+        if (category != null && !category.isBlank()) {
+            Optional<Category> match = categoryRepository.findByName(category);
+            if (match.isEmpty()) {
+                return new SearchResults(new DocIdBitmap(), null, null, null);
+            }
+            categoryId = match.get().getId();
+        }
+        DocumentFilter filter = new DocumentFilter(userId, categoryId, docStatus, tags, anyTags, excludeTags);
+        DocIdBitmap matching = filterIndex.match(filter);
+        if (query == null || query.isBlank()) {
+            return new SearchResults(matching, null, filter, null);
+        }
+
+        Optional<List<SearchHit>> hits = searchIndex.search(query, userId);
+        if (hits.isPresent()) {
+            List<SearchHit> ranked = hits.get().stream().filter(hit -> matching.contains(hit.documentId())).toList();
+            DocIdBitmap documents = new DocIdBitmap();
+            ranked.forEach(hit -> documents.add(hit.documentId()));
+            return new SearchResults(documents, ranked, filter, query);
+        }
+        DocIdBitmap found = new DocIdBitmap();
+        documentRepository.findIdsMatching(query, userId).forEach(found::add);
+        return new SearchResults(matching.and(found), null, filter, query);
+    }
+
+    // Relevance order is (score desc, id asc), so the hits that follow the cursor form a suffix: seek to its start
+    private static int firstAfter(List<SearchHit> ranked, PageCursor after) {
+        int low = 0;
+        int high = ranked.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (follows(ranked.get(mid), after)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean follows(SearchHit hit, PageCursor after) {
+        return hit.score() < after.score() || (hit.score() == after.score() && hit.documentId() > after.id());
+    }
+
+    private static int sliceSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SLICE_SIZE));
+    }
+
+    // rows holds up to limit + 1 documents in page order
+    private CursorPage<DocumentSummary> slice(List<DocumentSummary> rows, int limit, SearchFacets facets) {
+        boolean hasNext = rows.size() > limit;
+        List<DocumentSummary> content = hasNext ? rows.subList(0, limit) : rows;
+        String next = hasNext ? PageCursor.after(content.get(content.size() - 1)).encode() : null;
+        return new CursorPage<>(withTags(content), limit, hasNext, next, facets);
+    }
+
+    // Counted over the whole result set, not just the page
+    private SearchFacets facets(DocIdBitmap results) {
+        FacetCounts counts = filterIndex.facets(results);
+        return SearchFacets.builder()
+                .categories(facetValues(counts.categories(), labels::category))
+                .statuses(counts.statuses().entrySet().stream()
+                        .map(e -> FacetValue.builder().name(e.getKey().name()).count(e.getValue()).build())
+                        .sorted(FACET_ORDER).toList())
+                .tags(facetValues(counts.tags(), labels::tag))
+                .build();
+    }
+
+    // Ids deleted since they were counted have no name and are left out
+    private static List<FacetValue> facetValues(Map<Long, Integer> counts, Function<Long, Label> labels) {
+        return counts.entrySet().stream()
+                .map(e -> FacetValue.builder().id(e.getKey()).name(labels.apply(e.getKey()).name()).count(e.getValue()).build())
+                .filter(value -> value.getName() != null)
+                .sorted(FACET_ORDER)
+                .toList();
+    }
+
+    // Full-text hits in relevance order (the page's sort does not apply) that pass the filters
+    private Page<DocumentSummary> rankedPage(List<SearchHit> hits, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        List<Long> pageIds = hits.subList(from, Math.min(hits.size(), from + pageable.getPageSize())).stream()
+                .map(SearchHit::documentId).toList();
+        return new PageImpl<>(withTags(loadInOrder(pageIds)), pageable, hits.size());
+    }
+
+    // Ids are assigned at upload, so id order is upload order and pages come straight off the bitmap.
+    // Any other sort runs the filters again in SQL rather than sending every matching id to the database
+    private Page<DocumentSummary> sortedPage(SearchResults results, Pageable pageable) {
+        DocIdBitmap ids = results.documents();
+        Sort sort = pageable.getSort();
+        boolean byUpload = sort.stream().allMatch(order -> UPLOAD_ORDER.contains(order.getProperty()));
+        if (!byUpload || sort.stream().map(Sort.Order::getDirection).distinct().count() > 1) {
+            DocumentFilter filter = results.filter();
+            if (filter == null || ids.isEmpty()) {
+                return new PageImpl<>(List.of(), pageable, 0);
+            }
+            Page<DocumentSummary> page = documentRepository.findSummariesMatching(
+                    filter.userId(), filter.categoryId(), filter.status(),
+                    tagParameter(filter.allTags()), Set.copyOf(filter.allTags()).size(),
+                    tagParameter(filter.anyTags()), filter.anyTags().size(),
+                    tagParameter(filter.noTags()), results.query(), pageable);
+            return new PageImpl<>(withTags(page.getContent()), pageable, page.getTotalElements());
+        }
+        boolean descending = sort.isSorted() && sort.iterator().next().isDescending();
+        long[] page = ids.page(pageable.getOffset(), pageable.getPageSize(), descending);
+        List<Long> pageIds = Arrays.stream(page).boxed().toList();
+        return new PageImpl<>(withTags(loadInOrder(pageIds)), pageable, ids.cardinality());
+    }
+
+    // IN () is not valid SQL everywhere: an empty tag filter becomes an id no tag has
+    private static Collection<Long> tagParameter(Collection<Long> tagIds) {
+        return tagIds.isEmpty() ? List.of(-1L) : Set.copyOf(tagIds);
+    }
+
+    private List<DocumentSummary> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, DocumentSummary> byId = new HashMap<>();
+        documentRepository.findSummaries(ids).forEach(summary -> byId.put(summary.id(), summary));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    // Tags of every row from one query, rather than a tag collection loaded per document
+    private List<DocumentSummary> withTags(List<DocumentSummary> rows) {
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        return withTags(rows, documentRepository.findTagLinks(rows.stream().map(DocumentSummary::id).toList()));
+    }
+
+    // Names come from the label dictionary, not from joins
+    private List<DocumentSummary> withTags(List<DocumentSummary> rows, List<DocumentTagLink> links) {
+        Map<Long, List<Label>> tags = new HashMap<>();
+        links.forEach(link -> tags.computeIfAbsent(link.documentId(), id -> new ArrayList<>())
+                .add(labels.tag(link.tagId())));
+        return rows.stream()
+                .map(row -> row.withLabels(row.category() == null ? null : labels.category(row.category().id()),
+                        tags.getOrDefault(row.id(), List.of())))
+                .toList();
     }
 
     @Override
+    @org.springframework.transaction.annotation.Transactional
     public Document reclassifyDocument(Long id, Long categoryId, User user) {
         Document document = getDocumentForUser(id, user);
 
-        com.mk.docclassifier.domain.entity.Category category = categoryRepository.findById(categoryId)
+        Category category = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new RuntimeException("Category not found"));
 
+        Long previousCategoryId = document.getCategorySource() == CategorySource.MANUAL && document.getCategory() != null
+                ? document.getCategory().getId() : null;
         document.setCategory(category);
-        return documentRepository.save(document);
+        document.setCategorySource(CategorySource.MANUAL);
+        document.setLabeledAt(LocalDateTime.now());
+        document = documentRepository.save(document);
+
+        // Manual corrections feed the local classifier's online updates
+        eventPublisher.publishEvent(new DocumentReclassifiedEvent(document.getId(), categoryId, previousCategoryId,
+                textStore.excerpt(document.getId()).orElse(null), document.getLabeledAt()));
+        eventPublisher.publishEvent(new DocumentChangedEvent(document.getId(), DocumentChangedEvent.Change.METADATA));
+        return document;
     }
 
     @Override
+    @org.springframework.transaction.annotation.Transactional
     public void deleteDocument(Long id, User user) {
         Document document = getDocumentForUser(id, user);
 
-        // Delete physical file
-        try {
-            storageService.delete(document.getFilename());
-        } catch (Exception e) {
-            // Log error but continue with database deletion
-            System.err.println("Failed to delete file: " + e.getMessage());
+        // Uploads of the same content wait on these locks until this transaction ends, so the
+        // decision to drop the blob and the drop itself cannot interleave with one of them. The blob
+        // name carries the upload's extension, so only documents with the same name share it
+        boolean shared = document.getContentHash() != null
+                ? documentRepository.lockByContentHash(document.getContentHash()).stream()
+                        .anyMatch(other -> !other.getId().equals(id) && other.getFilename().equals(document.getFilename()))
+                : documentRepository.existsByFilenameAndIdNot(document.getFilename(), id);
+
+        // The classifier counted a manual label's text: it forgets it from the text read before the delete
+        if (document.getCategorySource() == CategorySource.MANUAL && document.getCategory() != null) {
+            eventPublisher.publishEvent(new DocumentReclassifiedEvent(id, null, document.getCategory().getId(),
+                    textStore.excerpt(id).orElse(null), LocalDateTime.now()));
         }
 
         // Delete from database
+        pipelineJobService.delete(id);
+        textStore.delete(id);
         documentRepository.deleteById(id);
+        documentRepository.flush();
+        eventPublisher.publishEvent(new DocumentChangedEvent(id, DocumentChangedEvent.Change.DELETED));
+
+        // Delete physical file last, still under the locks, unless an identical upload shares the blob
+        if (!shared) {
+            try {
+                storageService.delete(document.getFilename());
+            } catch (Exception e) {
+                // Log error but keep the database deletion
+                log.warn("Failed to delete file {}", document.getFilename(), e);
+            }
+        }
     }
 
     @Override
@@ -142,6 +472,7 @@ public class DocumentServiceImpl implements DocumentService {
         if (!document.getTags().contains(tag)) {
             document.getTags().add(tag);
             document = documentRepository.save(document);
+            eventPublisher.publishEvent(new DocumentChangedEvent(documentId, DocumentChangedEvent.Change.METADATA));
         }
 
         return document;
@@ -155,7 +486,9 @@ public class DocumentServiceImpl implements DocumentService {
                 .orElseThrow(() -> new RuntimeException("Tag not found"));
 
         document.getTags().remove(tag);
-        return documentRepository.save(document);
+        document = documentRepository.save(document);
+        eventPublisher.publishEvent(new DocumentChangedEvent(documentId, DocumentChangedEvent.Change.METADATA));
+        return document;
     }
 
     private boolean isAdmin(User user) {
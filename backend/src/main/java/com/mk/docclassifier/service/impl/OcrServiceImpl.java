@@ -1,15 +1,94 @@
 package com.mk.docclassifier.service.impl;
 
 import com.mk.docclassifier.service.OcrService;
+import com.mk.docclassifier.service.extraction.CharSequenceSinkWriter;
+import com.mk.docclassifier.service.extraction.TextExtractor;
+import com.mk.docclassifier.service.extraction.UnreadableContentException;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
 
+/**
+ * Picks the extractor from the file's leading bytes rather than its name or declared content type.
+ * Files are memory-mapped, so extractors read them in place instead of through heap copies.
+ */
 @Service
+@RequiredArgsConstructor
 public class OcrServiceImpl implements OcrService {
+
+    private final List<TextExtractor> extractors;
+
     @Override
     public String extractText(File file) {
-        // Mock OCR implementation
-        return "Extracted text content from " + file.getName();
+        StringWriter text = new StringWriter();
+        try {
+            extractText(file, text);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Text extraction failed for " + file.getName(), e);
+        }
+        return text.toString();
+    }
+
+    @Override
+    public void extractText(File file, Writer out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            extract(map(channel), out, file.getName());
+        }
+    }
+
+    @Override
+    public void extractText(ReadableByteChannel channel, Consumer<CharSequence> sink) throws IOException {
+        CharSequenceSinkWriter out = new CharSequenceSinkWriter(sink);
+        if (channel instanceof FileChannel file) {
+            extract(map(file), out, "channel");
+        } else {
+            // PDF cross-reference tables and zip directories need random access: spool to a temp file first
+            Path spool = Files.createTempFile("extract-", ".tmp");
+            try (FileChannel file = FileChannel.open(spool, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = 0;
+                for (long copied; (copied = file.transferFrom(channel, size, Long.MAX_VALUE)) > 0; ) {
+                    size += copied;
+                }
+                extract(file.map(FileChannel.MapMode.READ_ONLY, 0, size), out, "channel");
+            } finally {
+                Files.deleteIfExists(spool);
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public void extractText(ByteBuffer content, Consumer<CharSequence> sink) throws IOException {
+        CharSequenceSinkWriter out = new CharSequenceSinkWriter(sink);
+        extract(content, out, "buffer");
+        out.flush();
+    }
+
+    private void extract(ByteBuffer content, Writer out, String source) throws IOException {
+        for (TextExtractor extractor : extractors) {
+            if (extractor.supports(content)) {
+                extractor.extract(content, out);
+                return;
+            }
+        }
+        throw new UnreadableContentException("Unsupported file format: " + source);
+    }
+
+    private static ByteBuffer map(FileChannel channel) throws IOException {
+        long position = channel.position();
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
     }
 }
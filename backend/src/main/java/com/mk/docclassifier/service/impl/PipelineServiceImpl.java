@@ -1,8 +1,11 @@
 package com.mk.docclassifier.service.impl;
 
+import com.mk.docclassifier.config.AsyncConfig;
 import com.mk.docclassifier.domain.entity.AuditLog;
+import com.mk.docclassifier.domain.entity.CategorySource;
 import com.mk.docclassifier.domain.entity.Document;
 import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.event.DocumentChangedEvent;
 import com.mk.docclassifier.repository.AuditLogRepository;
 import com.mk.docclassifier.repository.DocumentRepository;
 import com.mk.docclassifier.service.ClassificationService;
@@ -10,74 +13,327 @@ import com.mk.docclassifier.service.OcrService;
 import com.mk.docclassifier.service.PipelineService;
 import com.mk.docclassifier.service.SseService;
 import com.mk.docclassifier.service.StorageService;
-import lombok.RequiredArgsConstructor;
-import org.springframework.scheduling.annotation.Async;
+import com.mk.docclassifier.service.extraction.UnreadableContentException;
+import com.mk.docclassifier.service.pipeline.MicroBatcher;
+import com.mk.docclassifier.service.text.CompressedText;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.File;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Staged (SEDA) pipeline: extraction -> classification -> persistence, each stage with its own
+ * bounded queue and workers; classification is micro-batched. Hand-offs block when the next stage
+ * is full, so backpressure reaches intake. OCR and classification run outside any transaction;
+ * database writes are grouped into one short transaction when a run starts and one when it ends.
+ * Byte-identical uploads reuse the results of an earlier processed copy and skip extraction and
+ * classification. Extracted text is compressed as it streams out of the extractor and only its
+ * excerpt travels on to classification.
+ * <p>
+ * Only a file that cannot be read fails its document on the spot. Any other failure (database,
+ * locks, a saturated stage) fails the run's future instead, so the job queue retries it with
+ * backoff and marks the document ERROR once the attempts run out.
+ */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class PipelineServiceImpl implements PipelineService {
 
     private final DocumentRepository documentRepository;
     private final StorageService storageService;
     private final OcrService ocrService;
+    private final DocumentTextStore textStore;
     private final ClassificationService classificationService;
     private final AuditLogRepository auditLogRepository;
     private final SseService sseService;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskExecutor extractionExecutor;
+    private final MicroBatcher<PipelineRun> classificationBatcher;
+    private final TaskExecutor persistenceExecutor;
+    private final LongAdder dedupHits = new LongAdder();
+    private final LongAdder dedupMisses = new LongAdder();
+
+    public PipelineServiceImpl(DocumentRepository documentRepository,
+            StorageService storageService,
+            OcrService ocrService,
+            DocumentTextStore textStore,
+            ClassificationService classificationService,
+            AuditLogRepository auditLogRepository,
+            SseService sseService,
+            TransactionTemplate transactionTemplate,
+            ApplicationEventPublisher eventPublisher,
+            @Qualifier(AsyncConfig.EXTRACTION_EXECUTOR) TaskExecutor extractionExecutor,
+            @Qualifier(AsyncConfig.PERSISTENCE_EXECUTOR) TaskExecutor persistenceExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${app.pipeline.classification.workers:2}") int classificationWorkers,
+            @Value("${app.pipeline.classification.queue-capacity:100}") int classificationQueueCapacity,
+            @Value("${app.pipeline.classification.batch-size:32}") int classificationBatchSize,
+            @Value("${app.pipeline.classification.batch-max-wait-ms:50}") long classificationBatchWaitMs,
+            @Value("${app.pipeline.block-timeout-ms:30000}") long blockTimeoutMs,
+            @Value("${app.pipeline.virtual-threads:false}") boolean virtualThreads) {
+        this.documentRepository = documentRepository;
+        this.storageService = storageService;
+        this.ocrService = ocrService;
+        this.textStore = textStore;
+        this.classificationService = classificationService;
+        this.auditLogRepository = auditLogRepository;
+        this.sseService = sseService;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.extractionExecutor = extractionExecutor;
+        this.persistenceExecutor = persistenceExecutor;
+        this.classificationBatcher = new MicroBatcher<>("classificationBatcher", classificationWorkers,
+                classificationQueueCapacity, classificationBatchSize, classificationBatchWaitMs, blockTimeoutMs,
+                virtualThreads, this::classify, meterRegistry);
+
+        FunctionCounter.builder("pipeline.dedup", dedupHits, LongAdder::doubleValue)
+                .description("Documents whose results were reused from an identical upload")
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("pipeline.dedup", dedupMisses, LongAdder::doubleValue)
+                .description("Documents that needed full extraction and classification")
+                .tag("result", "miss").register(meterRegistry);
+        Gauge.builder("pipeline.dedup.hit.ratio", this, PipelineServiceImpl::dedupHitRatio)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        classificationBatcher.shutdown();
+    }
 
-    @Async
     @Override
-    @org.springframework.transaction.annotation.Transactional
-    public void processDocument(Long documentId) {
-        Document document = documentRepository.findById(documentId)
-                .orElseThrow(() -> new RuntimeException("Document not found"));
+    public CompletableFuture<Void> processDocument(Long documentId) {
+        PipelineRun run = new PipelineRun(documentId);
+        // Blocks the caller while the extraction queue is full (TaskRejectedException once the wait times out)
+        extractionExecutor.execute(() -> extract(run));
+        return run.done;
+    }
 
+    private void extract(PipelineRun run) {
         try {
-            updateStatus(document, DocumentStatus.PROCESSING);
-            logAction(document, "PROCESS_START", "Started processing document");
-            sseService.sendEvent(documentId, "PROCESSING_STARTED", "Processing started");
+            if (!start(run)) {
+                // Deleted while queued: nothing left to process
+                run.done.complete(null);
+                return;
+            }
+            sseService.sendEvent(run.documentId, "PROCESSING_STARTED", "Processing started");
 
-            Path filePath = storageService.load(document.getFilename());
-            File file = filePath.toFile();
+            if (run.duplicateOf != null) {
+                reuseResults(run);
+                return;
+            }
 
-            // OCR
-            String text = ocrService.extractText(file);
-            document.setOcrText(text);
-            logAction(document, "OCR_DONE", "OCR completed");
-            sseService.sendEvent(documentId, "OCR_DONE", "OCR completed");
+            Path filePath = storageService.load(run.document.getFilename());
 
-            // Classification
-            classificationService.classify(document);
-            logAction(document, "CLASSIFIED", "Classified as " + document.getCategory());
-            sseService.sendEvent(documentId, "CLASSIFIED", "Classified as " + document.getCategory());
+            // OCR: the file is mapped and the text arrives in pieces, compressed as it comes
+            CompressedText.Builder text = textStore.newText();
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                ocrService.extractText(channel, text);
+            }
+            run.text = text.finish();
+            run.document.setTextLength(run.text.length());
+            run.document.setTextExcerpt(run.text.excerpt());
+            run.audit("OCR_DONE", "OCR completed");
+            sseService.sendEvent(run.documentId, "OCR_DONE", "OCR completed");
 
-            updateStatus(document, DocumentStatus.PROCESSED);
-            logAction(document, "PROCESS_COMPLETE", "Processing completed successfully");
-            sseService.sendEvent(documentId, "COMPLETED", "Processing completed");
+            classificationBatcher.submit(run);
+        } catch (Exception e) {
+            fail(run, e);
+        }
+    }
 
+    private void classify(List<PipelineRun> runs) {
+        List<PipelineRun> classified = runs;
+        try {
+            classificationService.classifyBatch(runs.stream().map(run -> run.document).toList());
         } catch (Exception e) {
-            document.setErrorMessage(e.getMessage());
-            updateStatus(document, DocumentStatus.ERROR);
-            logAction(document, "PROCESS_ERROR", "Error: " + e.getMessage());
-            sseService.sendEvent(documentId, "ERROR", "Error: " + e.getMessage());
+            if (runs.size() == 1) {
+                fail(runs.get(0), e);
+                return;
+            }
+            // One bad document must not take the rest of the batch down with it: retry them one by one
+            log.warn("Classification of a batch of {} documents failed, classifying them one by one: {}", runs.size(),
+                    e.getMessage());
+            classified = new ArrayList<>(runs.size());
+            for (PipelineRun run : runs) {
+                try {
+                    classificationService.classify(run.document);
+                    classified.add(run);
+                } catch (Exception single) {
+                    fail(run, single);
+                }
+            }
+        }
+        for (PipelineRun run : classified) {
+            try {
+                run.audit("CLASSIFIED", "Classified as " + categoryName(run.document));
+                sseService.sendEvent(run.documentId, "CLASSIFIED", "Classified as " + categoryName(run.document));
+
+                persistenceExecutor.execute(() -> persist(run));
+            } catch (Exception e) {
+                fail(run, e);
+            }
+        }
+    }
+
+    private void persist(PipelineRun run) {
+        try {
+            Document document = run.document;
+            run.audit("PROCESS_COMPLETE", "Processing completed successfully");
+            Boolean stored = transactionTemplate.execute(status -> {
+                // Zero rows: the document was deleted mid-run, so there is nothing to attach the text to
+                if (documentRepository.markProcessed(document.getId(), DocumentStatus.PROCESSED, document.getTextLength(),
+                        document.getCategory(), document.getCategory() != null ? CategorySource.PREDICTED : null,
+                        document.getConfidence(), LocalDateTime.now()) == 0) {
+                    return false;
+                }
+                if (run.text != null) {
+                    textStore.save(document.getId(), run.text);
+                } else if (run.duplicateOf != null) {
+                    textStore.copy(run.duplicateOf.getId(), document.getId());
+                }
+                auditLogRepository.saveAll(run.drainAudits());
+                // Indexed for search and filtering once this commits
+                eventPublisher.publishEvent(new DocumentChangedEvent(document.getId(), DocumentChangedEvent.Change.CONTENT));
+                return true;
+            });
+            if (!Boolean.TRUE.equals(stored)) {
+                log.info("Document {} was deleted while it was processed; results discarded", run.documentId);
+                run.done.complete(null);
+                return;
+            }
+            document.setStatus(DocumentStatus.PROCESSED);
+            sseService.sendEvent(run.documentId, "COMPLETED", "Processing completed");
+            run.done.complete(null);
+        } catch (Exception e) {
+            fail(run, e);
+        }
+    }
+
+    private void reuseResults(PipelineRun run) {
+        Document source = run.duplicateOf;
+        run.document.setTextLength(source.getTextLength());
+        run.document.setCategory(source.getCategory());
+        run.document.setConfidence(source.getConfidence());
+        run.audit("RESULTS_REUSED", "Identical content already processed as document " + source.getId());
+        run.audit("CLASSIFIED", "Classified as " + categoryName(run.document));
+        sseService.sendEvent(run.documentId, "CLASSIFIED", "Classified as " + categoryName(run.document));
+
+        persistenceExecutor.execute(() -> persist(run));
+    }
+
+    // Name only: Category.toString() would touch its lazy creator outside any session
+    private static String categoryName(Document document) {
+        return document.getCategory() != null ? document.getCategory().getName() : "no category";
+    }
+
+    private double dedupHitRatio() {
+        double hits = dedupHits.sum();
+        double total = hits + dedupMisses.sum();
+        return total == 0 ? 0.0 : hits / total;
+    }
+
+    // First write boundary: load the document and flag it PROCESSING in one short transaction
+    private boolean start(PipelineRun run) {
+        Boolean found = transactionTemplate.execute(status -> {
+            Document document = documentRepository.findWithUserById(run.documentId).orElse(null);
+            if (document == null) {
+                return false;
+            }
+            run.document = document;
+            run.username = document.getUser() != null ? document.getUser().getEmail() : "SYSTEM";
+            if (document.getContentHash() != null) {
+                run.duplicateOf = documentRepository.findFirstByContentHashAndStatusAndIdNotOrderByProcessedAtDesc(
+                        document.getContentHash(), DocumentStatus.PROCESSED, document.getId()).orElse(null);
+            }
+            (run.duplicateOf != null ? dedupHits : dedupMisses).increment();
+            document.setStatus(DocumentStatus.PROCESSING);
+            run.audit("PROCESS_START", "Started processing document");
+            auditLogRepository.saveAll(run.drainAudits());
+            eventPublisher.publishEvent(new DocumentChangedEvent(document.getId(), DocumentChangedEvent.Change.METADATA));
+            return true;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+
+    private void fail(PipelineRun run, Exception e) {
+        if (run.document == null || !isContentFault(e)) {
+            log.warn("Pipeline run for document {} failed, left to the job queue to retry: {}", run.documentId,
+                    e.getMessage());
+            run.done.completeExceptionally(e);
+            return;
         }
+        log.warn("Pipeline failed for document {}: {}", run.documentId, e.getMessage());
+        try {
+            run.audit("PROCESS_ERROR", "Error: " + e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> {
+                documentRepository.markFailed(run.documentId, DocumentStatus.ERROR, e.getMessage(), LocalDateTime.now());
+                auditLogRepository.saveAll(run.drainAudits());
+                eventPublisher.publishEvent(new DocumentChangedEvent(run.documentId, DocumentChangedEvent.Change.METADATA));
+            });
+            run.document.setStatus(DocumentStatus.ERROR);
+            run.done.complete(null);
+        } catch (Exception persistFailure) {
+            // ERROR could not be recorded either: let the job queue retry the document
+            log.error("Could not record pipeline failure for document {}", run.documentId, persistFailure);
+            run.done.completeExceptionally(persistFailure);
+        }
+        sseService.sendEvent(run.documentId, "ERROR", "Error: " + e.getMessage());
     }
 
-    private void updateStatus(Document document, DocumentStatus status) {
-        document.setStatus(status);
-        documentRepository.save(document);
+    private static boolean isContentFault(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UnreadableContentException) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private void logAction(Document document, String action, String details) {
-        AuditLog log = AuditLog.builder()
-                .documentId(document.getId())
-                .action(action)
-                .details(details)
-                .username(document.getUser() != null ? document.getUser().getEmail() : "SYSTEM")
-                .build();
-        auditLogRepository.save(log);
+    // State carried from stage to stage; audit entries are buffered until the next write boundary
+    private static final class PipelineRun {
+        private final Long documentId;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final List<AuditLog> pendingAudits = new ArrayList<>();
+        private Document document;
+        private Document duplicateOf;
+        private CompressedText text;
+        private String username;
+
+        private PipelineRun(Long documentId) {
+            this.documentId = documentId;
+        }
+
+        private void audit(String action, String details) {
+            pendingAudits.add(AuditLog.builder()
+                    .documentId(documentId)
+                    .action(action)
+                    .details(details)
+                    .username(username)
+                    .build());
+        }
+
+        private List<AuditLog> drainAudits() {
+            List<AuditLog> audits = new ArrayList<>(pendingAudits);
+            pendingAudits.clear();
+            return audits;
+        }
     }
 }
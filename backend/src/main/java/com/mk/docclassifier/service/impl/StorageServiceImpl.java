@@ -1,6 +1,7 @@
 package com.mk.docclassifier.service.impl;
 
 import com.mk.docclassifier.service.StorageService;
+import com.mk.docclassifier.service.StoredFile;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -12,7 +13,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.util.UUID;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
 
 @Service
 public class StorageServiceImpl implements StorageService {
@@ -33,13 +38,41 @@ public class StorageServiceImpl implements StorageService {
     }
 
     @Override
-    public String store(MultipartFile file) throws IOException {
-        String filename = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, this.rootLocation.resolve(filename),
-                    StandardCopyOption.REPLACE_EXISTING);
+    public StoredFile stage(MultipartFile file) throws IOException {
+        // Hash while streaming to a temp file; it gets its content-addressed name on publish
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(rootLocation, ".upload-", ".tmp");
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            long size = Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            return StoredFile.builder()
+                    .filename(contentHash + extension(file.getOriginalFilename()))
+                    .contentHash(contentHash)
+                    .size(size)
+                    .stagedPath(temp)
+                    .build();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean publish(StoredFile file) throws IOException {
+        // A rename replaces an existing target, which can only hold the same bytes
+        Path target = rootLocation.resolve(file.getFilename());
+        boolean created = !Files.exists(target);
+        Files.move(file.getStagedPath(), target, StandardCopyOption.ATOMIC_MOVE);
+        return created;
+    }
+
+    @Override
+    public void discard(StoredFile file) {
+        try {
+            Files.deleteIfExists(file.getStagedPath());
+        } catch (IOException e) {
+            // Only a stray temp file is left behind
         }
-        return filename;
     }
 
     @Override
@@ -51,4 +84,24 @@ public class StorageServiceImpl implements StorageService {
     public void delete(String filename) throws IOException {
         Files.deleteIfExists(rootLocation.resolve(filename));
     }
+
+    private String extension(String originalFilename) {
+        if (originalFilename == null) {
+            return "";
+        }
+        int dot = originalFilename.lastIndexOf('.');
+        if (dot < 0 || dot == originalFilename.length() - 1) {
+            return "";
+        }
+        String extension = originalFilename.substring(dot).toLowerCase(Locale.ROOT);
+        return extension.matches("\\.[a-z0-9]{1,10}") ? extension : "";
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
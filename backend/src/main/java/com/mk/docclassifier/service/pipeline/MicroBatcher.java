@@ -0,0 +1,129 @@
+package com.mk.docclassifier.service.pipeline;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue drained by a few worker threads in batches of up to {@code maxBatchSize}
+ * items, waiting at most {@code maxWaitMs} after the first item for a batch to fill up.
+ * {@link #submit} blocks while the queue is full, like the other pipeline stages.
+ */
+@Slf4j
+public class MicroBatcher<T> {
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long blockTimeoutMs;
+    private final Consumer<List<T>> handler;
+    private final List<Thread> workers = new ArrayList<>();
+    private final DistributionSummary batchSizes;
+    private final Counter blocked;
+    private final Counter rejected;
+    private volatile boolean running = true;
+
+    public MicroBatcher(String name, int workerCount, int queueCapacity, int maxBatchSize, long maxWaitMs,
+            long blockTimeoutMs, boolean virtualThreads, Consumer<List<T>> handler, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.handler = handler;
+        this.batchSizes = DistributionSummary.builder("pipeline.batch.size")
+                .description("Items handed to the batch handler per call")
+                .tag("name", name)
+                .register(meterRegistry);
+        this.blocked = Counter.builder("pipeline.executor.blocked").tag("name", name).register(meterRegistry);
+        this.rejected = Counter.builder("pipeline.executor.rejected").tag("name", name).tag("policy", "BLOCK")
+                .register(meterRegistry);
+        Gauge.builder("executor.queued", queue, BlockingQueue::size).tag("name", name).register(meterRegistry);
+
+        Thread.Builder threads = virtualThreads
+                ? Thread.ofVirtual().name(name + "-vt-", 0)
+                : Thread.ofPlatform().name(name + "-", 0).daemon(true);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(threads.start(this::drainLoop));
+        }
+        log.info("Pipeline stage {}: {} workers, queue capacity {}, batches of up to {} items / {} ms",
+                name, workerCount, queueCapacity, maxBatchSize, maxWaitMs);
+    }
+
+    public void submit(T item) {
+        if (!running) {
+            throw new TaskRejectedException(name + " is shut down");
+        }
+        if (queue.offer(item)) {
+            return;
+        }
+        blocked.increment();
+        try {
+            if (!queue.offer(item, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new TaskRejectedException(name + " queue still full after " + blockTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskRejectedException("Interrupted while waiting for " + name + " queue");
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void drainLoop() {
+        List<T> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                batchSizes.record(batch.size());
+                handler.accept(List.copyOf(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("{} batch handler failed for {} items", name, batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
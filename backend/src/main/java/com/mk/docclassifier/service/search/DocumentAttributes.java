@@ -0,0 +1,7 @@
+package com.mk.docclassifier.service.search;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+
+// The columns of a documents row kept by the filter index and counted by the statistics; tags come separately
+public record DocumentAttributes(Long documentId, Long userId, Long categoryId, DocumentStatus status, Double confidence) {
+}
@@ -0,0 +1,20 @@
+package com.mk.docclassifier.service.search;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Filters combined with AND; a null field or empty tag list is not applied. Documents must carry
+ * every tag of allTags, at least one of anyTags and none of noTags.
+ */
+public record DocumentFilter(Long userId, Long categoryId, DocumentStatus status,
+        Collection<Long> allTags, Collection<Long> anyTags, Collection<Long> noTags) {
+
+    public DocumentFilter {
+        allTags = allTags != null ? allTags : List.of();
+        anyTags = anyTags != null ? anyTags : List.of();
+        noTags = noTags != null ? noTags : List.of();
+    }
+}
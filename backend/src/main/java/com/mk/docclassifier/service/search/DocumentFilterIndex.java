@@ -0,0 +1,329 @@
+package com.mk.docclassifier.service.search;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.sync.ChangeFeed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory bitmaps of document ids per owner, category, status and tag, so any filter
+ * combination is a handful of bitmap intersections instead of a scan. Built from two streamed
+ * projections before the application serves requests, then kept current from
+ * {@link DocumentChangedEvent}s by reloading the changed document's row, including events replayed
+ * from other instances by the {@link ChangeFeed}.
+ */
+@Component
+@DependsOn("changeFeed")
+@Slf4j
+public class DocumentFilterIndex {
+
+    private static final DocIdBitmap EMPTY = new DocIdBitmap();
+
+    private final DocumentRepository documentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Timer matchTimer;
+    private final Timer facetTimer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes reloads, so the last one applied always read the latest committed row
+    private final Object reloadLock = new Object();
+    private final DocIdBitmap all = new DocIdBitmap();
+    private final Map<Long, DocIdBitmap> byUser = new HashMap<>();
+    private final Map<Long, DocIdBitmap> byCategory = new HashMap<>();
+    private final Map<DocumentStatus, DocIdBitmap> byStatus = new EnumMap<>(DocumentStatus.class);
+    private final Map<Long, DocIdBitmap> byTag = new HashMap<>();
+    // What each document is currently filed under, to unfile it on change
+    private final Map<Long, Entry> entries = new HashMap<>();
+    // Documents reloaded while a reconcile reads the table; guarded by reloadLock
+    private Set<Long> changedDuringReconcile;
+
+    public DocumentFilterIndex(DocumentRepository documentRepository, TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        this.documentRepository = documentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.matchTimer = Timer.builder("search.filter").description("Filter bitmap evaluation latency")
+                .register(meterRegistry);
+        this.facetTimer = Timer.builder("search.facets").description("Facet counting latency")
+                .register(meterRegistry);
+        Gauge.builder("search.filter.documents", this, index -> index.read(() -> (double) index.entries.size()))
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        long started = System.nanoTime();
+        Map<Long, Entry> loaded = load();
+        write(() -> loaded.forEach(this::file));
+        log.info("Filter index built in {} ms: {} documents, {} tags, {} categories",
+                (System.nanoTime() - started) / 1_000_000, entries.size(), byTag.size(), byCategory.size());
+    }
+
+    /**
+     * Compares the index with the table and refiles the documents that differ, catching up on
+     * changes made by other instances that the change feed missed. Documents changed while the
+     * table is read are skipped; their own reload already has a newer row than the scan.
+     */
+    @Scheduled(initialDelayString = "${app.sync.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${app.sync.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        synchronized (reloadLock) {
+            changedDuringReconcile = new HashSet<>();
+        }
+        Map<Long, Entry> loaded;
+        try {
+            loaded = load();
+        } catch (RuntimeException e) {
+            synchronized (reloadLock) {
+                changedDuringReconcile = null;
+            }
+            throw e;
+        }
+        int corrected;
+        synchronized (reloadLock) {
+            Set<Long> skipped = changedDuringReconcile;
+            changedDuringReconcile = null;
+            corrected = read(() -> countDifferences(loaded, skipped)) == 0 ? 0 : correct(loaded, skipped);
+        }
+        if (corrected > 0) {
+            log.warn("Filter index reconcile corrected {} documents", corrected);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChanged(DocumentChangedEvent event) {
+        Long documentId = event.documentId();
+        synchronized (reloadLock) {
+            DocumentAttributes row = event.change() == DocumentChangedEvent.Change.DELETED ? null
+                    : documentRepository.findAttributes(documentId).orElse(null);
+            long[] tagIds = row == null ? null
+                    : documentRepository.findTagIds(documentId).stream().mapToLong(Long::longValue).sorted().toArray();
+            if (changedDuringReconcile != null) {
+                changedDuringReconcile.add(documentId);
+            }
+            write(() -> {
+                Entry previous = entries.get(documentId);
+                if (previous != null) {
+                    unfile(documentId, previous);
+                }
+                if (row != null) {
+                    file(documentId, new Entry(row, tagIds));
+                }
+            });
+        }
+    }
+
+    /**
+     * Ids of the documents passing every part of the filter. The result is the caller's own
+     * copy and can be combined further without locking.
+     */
+    public DocIdBitmap match(DocumentFilter filter) {
+        return matchTimer.record(() -> read(() -> {
+            DocIdBitmap base = filter.userId() != null ? byUser.getOrDefault(filter.userId(), EMPTY) : all;
+            DocIdBitmap result = base;
+            if (filter.categoryId() != null) {
+                result = result.and(byCategory.getOrDefault(filter.categoryId(), EMPTY));
+            }
+            if (filter.status() != null) {
+                result = result.and(byStatus.getOrDefault(filter.status(), EMPTY));
+            }
+            for (Long tagId : filter.allTags()) {
+                result = result.and(byTag.getOrDefault(tagId, EMPTY));
+            }
+            if (!filter.anyTags().isEmpty()) {
+                DocIdBitmap any = new DocIdBitmap();
+                for (Long tagId : filter.anyTags()) {
+                    any = any.or(byTag.getOrDefault(tagId, EMPTY));
+                }
+                result = result.and(any);
+            }
+            for (Long tagId : filter.noTags()) {
+                result = result.andNot(byTag.getOrDefault(tagId, EMPTY));
+            }
+            // Every operation above returns a fresh bitmap; only an unfiltered result is still shared
+            return result == base ? base.copy() : result;
+        }));
+    }
+
+    /**
+     * How many of the given documents fall in each category, status and tag: one intersection
+     * count per bitmap, no intersection is materialized.
+     */
+    public FacetCounts facets(DocIdBitmap documents) {
+        return facetTimer.record(() -> read(() -> new FacetCounts(
+                counts(byCategory, documents), counts(byStatus, documents), counts(byTag, documents))));
+    }
+
+    private static <K> Map<K, Integer> counts(Map<K, DocIdBitmap> bitmaps, DocIdBitmap documents) {
+        Map<K, Integer> counts = new HashMap<>();
+        bitmaps.forEach((key, bitmap) -> {
+            int count = documents.andCardinality(bitmap);
+            if (count > 0) {
+                counts.put(key, count);
+            }
+        });
+        return counts;
+    }
+
+    // Documents with their tags, sorted so entries compare by value
+    private Map<Long, Entry> load() {
+        Map<Long, Entry> loaded = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            // One stream at a time: some drivers cannot keep two streaming results open on a connection
+            try (Stream<DocumentAttributes> rows = documentRepository.streamAttributes()) {
+                rows.forEach(row -> loaded.put(row.documentId(), new Entry(row, new long[0])));
+            }
+            try (Stream<DocumentTagLink> links = documentRepository.streamTagLinks()) {
+                links.forEach(link -> loaded.computeIfPresent(link.documentId(),
+                        (id, entry) -> entry.withTag(link.tagId())));
+            }
+        });
+        loaded.replaceAll((id, entry) -> entry.sorted());
+        return loaded;
+    }
+
+    // Under the read lock
+    private int countDifferences(Map<Long, Entry> loaded, Set<Long> skipped) {
+        int differences = 0;
+        for (Map.Entry<Long, Entry> current : entries.entrySet()) {
+            if (!skipped.contains(current.getKey()) && !current.getValue().sameAs(loaded.get(current.getKey()))) {
+                differences++;
+            }
+        }
+        for (Long id : loaded.keySet()) {
+            if (!skipped.contains(id) && !entries.containsKey(id)) {
+                differences++;
+            }
+        }
+        return differences;
+    }
+
+    private int correct(Map<Long, Entry> loaded, Set<Long> skipped) {
+        int[] corrected = {0};
+        write(() -> {
+            Set<Long> ids = new HashSet<>(entries.keySet());
+            ids.addAll(loaded.keySet());
+            ids.removeAll(skipped);
+            for (Long id : ids) {
+                Entry current = entries.get(id);
+                Entry fresh = loaded.get(id);
+                if (current != null && current.sameAs(fresh)) {
+                    continue;
+                }
+                if (current != null) {
+                    unfile(id, current);
+                }
+                if (fresh != null) {
+                    file(id, fresh);
+                }
+                corrected[0]++;
+            }
+        });
+        return corrected[0];
+    }
+
+    // Under the write lock
+
+    private void file(Long documentId, Entry entry) {
+        entries.put(documentId, entry);
+        all.add(documentId);
+        if (entry.userId() != null) {
+            byUser.computeIfAbsent(entry.userId(), id -> new DocIdBitmap()).add(documentId);
+        }
+        if (entry.categoryId() != null) {
+            byCategory.computeIfAbsent(entry.categoryId(), id -> new DocIdBitmap()).add(documentId);
+        }
+        if (entry.status() != null) {
+            byStatus.computeIfAbsent(entry.status(), s -> new DocIdBitmap()).add(documentId);
+        }
+        for (long tagId : entry.tagIds()) {
+            byTag.computeIfAbsent(tagId, id -> new DocIdBitmap()).add(documentId);
+        }
+    }
+
+    private void unfile(Long documentId, Entry entry) {
+        entries.remove(documentId);
+        all.remove(documentId);
+        remove(byUser, entry.userId(), documentId);
+        remove(byCategory, entry.categoryId(), documentId);
+        remove(byStatus, entry.status(), documentId);
+        for (long tagId : entry.tagIds()) {
+            remove(byTag, tagId, documentId);
+        }
+    }
+
+    // Empty bitmaps are dropped, so deleted tags and categories do not linger
+    private static <K> void remove(Map<K, DocIdBitmap> bitmaps, K key, Long documentId) {
+        if (key == null) {
+            return;
+        }
+        DocIdBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(documentId);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private <T> T read(java.util.function.Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private record Entry(Long userId, Long categoryId, DocumentStatus status, long[] tagIds) {
+
+        Entry(DocumentAttributes row, long[] tagIds) {
+            this(row.userId(), row.categoryId(), row.status(), tagIds);
+        }
+
+        Entry withTag(long tagId) {
+            long[] tags = Arrays.copyOf(tagIds, tagIds.length + 1);
+            tags[tagIds.length] = tagId;
+            return new Entry(userId, categoryId, status, tags);
+        }
+
+        Entry sorted() {
+            long[] tags = tagIds.clone();
+            Arrays.sort(tags);
+            return new Entry(userId, categoryId, status, tags);
+        }
+
+        boolean sameAs(Entry other) {
+            return other != null && Objects.equals(userId, other.userId) && Objects.equals(categoryId, other.categoryId)
+                    && status == other.status && Arrays.equals(tagIds, other.tagIds);
+        }
+    }
+}
@@ -0,0 +1,625 @@
+package com.mk.docclassifier.service.search;
+
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.repository.DocumentTextRepository;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Full-text index of document text and file names, ranked with BM25. Newly processed documents
+ * land in an in-memory buffer that is flushed every few seconds as an immutable, memory-mapped
+ * segment file; segments of similar size are merged in the background, dropping deleted
+ * documents. A commit file lists the live segments, so a restart maps them instead of
+ * reindexing, and startup and a periodic task reconcile the index with the database to pick up
+ * anything missed, including changes made on other instances.
+ * <p>
+ * All changes go through a single indexer thread; merges run on their own thread and are
+ * swapped in under the write lock. Searches take the read lock and never wait on I/O.
+ */
+@Component
+@Slf4j
+public class DocumentSearchIndex {
+
+    private static final String COMMIT_FILE = "segments";
+    private static final int COMMIT_MAGIC = 0x44435347;
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // A segment with more deleted than live documents is rewritten on its own
+    private static final double MAX_DELETED_RATIO = 0.5;
+
+    private final DocumentRepository documentRepository;
+    private final DocumentTextRepository textRepository;
+    private final DocumentTextStore textStore;
+    private final boolean enabled;
+    private final Path directory;
+    private final int maxBufferedDocs;
+    private final int mergeFactor;
+    private final long maxMergedBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExecutorService indexer;
+    private final ExecutorService merger;
+    private final AtomicBoolean merging = new AtomicBoolean();
+    private final Timer queryTimer;
+    private List<IndexSegment> segments = List.of();
+    private IndexBuffer buffer = new IndexBuffer();
+    private long nextSegment;
+    // Segment deletions not yet saved by a commit
+    private volatile boolean deletionsPending;
+    private volatile boolean ready;
+
+    public DocumentSearchIndex(DocumentRepository documentRepository,
+            DocumentTextRepository textRepository,
+            DocumentTextStore textStore,
+            MeterRegistry meterRegistry,
+            @Value("${app.search.enabled:true}") boolean enabled,
+            @Value("${app.search.index-dir:./search-index}") String indexDir,
+            @Value("${app.search.max-buffered-docs:500}") int maxBufferedDocs,
+            @Value("${app.search.merge-factor:10}") int mergeFactor,
+            @Value("${app.search.max-merged-segment-mb:1024}") long maxMergedSegmentMb) {
+        this.documentRepository = documentRepository;
+        this.textRepository = textRepository;
+        this.textStore = textStore;
+        this.enabled = enabled;
+        this.directory = Paths.get(indexDir);
+        this.maxBufferedDocs = Math.max(1, maxBufferedDocs);
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.maxMergedBytes = maxMergedSegmentMb << 20;
+        this.indexer = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("search-indexer").daemon(true).factory());
+        this.merger = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("search-merger").daemon(true).factory());
+        this.queryTimer = Timer.builder("search.query").description("Full-text search latency").register(meterRegistry);
+        Gauge.builder("search.index.documents", this, index -> index.read(() -> (double) index.liveCount()))
+                .register(meterRegistry);
+        Gauge.builder("search.index.segments", this, index -> index.read(() -> (double) index.segments.size()))
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            log.info("Full-text search index disabled: search falls back to database substring matching");
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            ready = loadCommit();
+            removeUnreferencedFiles();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Search index in {} is unreadable, rebuilding it: {}", directory, e.getMessage());
+            segments = List.of();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (enabled) {
+            indexer.execute(this::reconcile);
+        }
+    }
+
+    // Catches up on documents added or deleted by other instances that the change feed missed
+    @Scheduled(initialDelayString = "${app.sync.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${app.sync.reconcile-interval-ms:3600000}")
+    public void scheduleReconcile() {
+        if (enabled && !indexer.isShutdown()) {
+            indexer.execute(this::reconcile);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDocumentChanged(DocumentChangedEvent event) {
+        // Only the text and file name are indexed; filters live in DocumentFilterIndex
+        if (!enabled || indexer.isShutdown() || event.change() == DocumentChangedEvent.Change.METADATA) {
+            return;
+        }
+        indexer.execute(() -> {
+            try {
+                if (event.change() == DocumentChangedEvent.Change.DELETED) {
+                    remove(event.documentId());
+                } else {
+                    index(event.documentId());
+                }
+            } catch (Exception e) {
+                // Picked up again by the next reconciliation
+                log.warn("Could not index document {}: {}", event.documentId(), e.getMessage());
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.flush-interval-ms:5000}")
+    public void scheduleFlush() {
+        if (enabled && !indexer.isShutdown() && (deletionsPending || read(() -> buffer.docCount() > 0))) {
+            indexer.execute(this::flushQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        indexer.execute(this::flushQuietly);
+        indexer.shutdown();
+        merger.shutdown();
+        try {
+            indexer.awaitTermination(30, TimeUnit.SECONDS);
+            merger.awaitTermination(60, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Documents containing every term of the query, best first. Empty when the index cannot
+     * answer: disabled, still being built, or a query with no searchable terms (only stop
+     * words or punctuation).
+     */
+    public Optional<List<SearchHit>> search(String query, Long userId) {
+        if (!enabled || !ready || query == null) {
+            return Optional.empty();
+        }
+        List<String> terms = TextAnalyzer.queryTerms(query);
+        if (terms.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(queryTimer.record(() -> read(() -> score(terms, userId))));
+    }
+
+    // Whether search would answer this query rather than return empty
+    public boolean canAnswer(String query) {
+        return enabled && ready && query != null && !TextAnalyzer.queryTerms(query).isEmpty();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Under the read lock
+    private List<SearchHit> score(List<String> terms, Long userId) {
+        List<IndexPart> parts = new ArrayList<>(segments);
+        parts.add(buffer);
+        long liveDocs = 0;
+        long docs = 0;
+        long totalLength = 0;
+        for (IndexPart part : parts) {
+            liveDocs += part.liveCount();
+            docs += part.docCount();
+            totalLength += part.totalLength();
+        }
+        if (liveDocs == 0) {
+            return List.of();
+        }
+        double averageLength = Math.max(1.0, (double) totalLength / docs);
+
+        Map<String, Double> idf = new HashMap<>();
+        for (String term : terms) {
+            long docFreq = 0;
+            for (IndexPart part : parts) {
+                docFreq += part.docFreq(term);
+            }
+            if (docFreq == 0) {
+                // Every term must match
+                return List.of();
+            }
+            idf.put(term, Math.log(1 + (liveDocs - docFreq + 0.5) / (docFreq + 0.5)));
+        }
+        // Rarest term first keeps the candidate lists short
+        List<String> ordered = new ArrayList<>(terms);
+        ordered.sort(Comparator.comparingDouble(idf::get).reversed());
+
+        Map<Long, SearchHit> hits = new LinkedHashMap<>();
+        for (IndexPart part : parts) {
+            IndexPart.Postings first = part.postings(ordered.get(0));
+            if (first == null) {
+                continue;
+            }
+            int[] candidates = first.ordinals().clone();
+            double[] scores = new double[first.count()];
+            int count = first.count();
+            for (int i = 0; i < count; i++) {
+                scores[i] = bm25(idf.get(ordered.get(0)), first.frequencies()[i], part.length(candidates[i]), averageLength);
+            }
+            for (int t = 1; t < ordered.size() && count > 0; t++) {
+                IndexPart.Postings postings = part.postings(ordered.get(t));
+                if (postings == null) {
+                    count = 0;
+                    break;
+                }
+                double termIdf = idf.get(ordered.get(t));
+                // Both lists are sorted by ordinal: keep the candidates this term also matches
+                int kept = 0;
+                for (int i = 0, j = 0; i < count && j < postings.count(); ) {
+                    int a = candidates[i];
+                    int b = postings.ordinals()[j];
+                    if (a < b) {
+                        i++;
+                    } else if (a > b) {
+                        j++;
+                    } else {
+                        candidates[kept] = a;
+                        scores[kept++] = scores[i] + bm25(termIdf, postings.frequencies()[j], part.length(a), averageLength);
+                        i++;
+                        j++;
+                    }
+                }
+                count = kept;
+            }
+            for (int i = 0; i < count; i++) {
+                int ordinal = candidates[i];
+                if (part.isDeleted(ordinal) || (userId != null && part.userId(ordinal) != userId)) {
+                    continue;
+                }
+                long documentId = part.documentId(ordinal);
+                SearchHit hit = new SearchHit(documentId, (float) scores[i]);
+                // A document re-indexed before its old copy's deletion was committed: keep one
+                hits.merge(documentId, hit, (a, b) -> a.score() >= b.score() ? a : b);
+            }
+        }
+        List<SearchHit> ranked = new ArrayList<>(hits.values());
+        ranked.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                .thenComparingLong(SearchHit::documentId));
+        return ranked;
+    }
+
+    private static double bm25(double idf, int frequency, int length, double averageLength) {
+        return idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+
+    // Indexer thread only
+
+    private void index(Long documentId) throws IOException {
+        IndexedDocument document = documentRepository.findIndexedDocument(documentId).orElse(null);
+        if (document == null) {
+            remove(documentId);
+            return;
+        }
+        TextAnalyzer.TermCounter counter = new TextAnalyzer.TermCounter();
+        counter.write(document.originalFilename());
+        counter.write('\n');
+        textStore.writeChars(documentId, 0, Long.MAX_VALUE, counter);
+        counter.close();
+        long userId = document.userId() != null ? document.userId() : IndexPart.NO_OWNER;
+
+        write(() -> {
+            segments.forEach(segment -> deletionsPending |= segment.delete(documentId));
+            buffer.add(documentId, userId, counter.counts(), counter.length());
+        });
+        if (read(() -> buffer.docCount() >= maxBufferedDocs)) {
+            flush();
+        }
+    }
+
+    private void remove(Long documentId) {
+        write(() -> {
+            segments.forEach(segment -> deletionsPending |= segment.delete(documentId));
+            buffer.delete(documentId);
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Could not flush the search index buffer: {}", e.getMessage());
+        }
+    }
+
+    private void flush() throws IOException {
+        IndexBuffer current = read(() -> buffer);
+        if (current.docCount() == 0) {
+            if (deletionsPending) {
+                commit();
+                maybeMerge();
+            }
+            return;
+        }
+        IndexSegment segment = null;
+        if (!current.isEmpty()) {
+            String name = newSegmentName();
+            current.writeSegment(IndexSegment.file(directory, name));
+            segment = IndexSegment.open(directory, name);
+        }
+        IndexSegment flushed = segment;
+        write(() -> {
+            if (flushed != null) {
+                List<IndexSegment> next = new ArrayList<>(segments);
+                next.add(flushed);
+                segments = List.copyOf(next);
+            }
+            buffer = new IndexBuffer();
+        });
+        commit();
+        maybeMerge();
+    }
+
+    private void reconcile() {
+        long started = System.nanoTime();
+        try {
+            Set<Long> stored = new HashSet<>(textRepository.findAllDocumentIds());
+            Set<Long> indexed = read(this::liveDocumentIds);
+            int removed = 0;
+            for (Long documentId : indexed) {
+                if (!stored.contains(documentId)) {
+                    remove(documentId);
+                    removed++;
+                }
+            }
+            int added = 0;
+            for (Long documentId : stored) {
+                if (!indexed.contains(documentId)) {
+                    try {
+                        index(documentId);
+                        added++;
+                    } catch (Exception e) {
+                        log.warn("Could not index document {}: {}", documentId, e.getMessage());
+                    }
+                }
+            }
+            flush();
+            if (added > 0 || removed > 0) {
+                log.info("Search index reconciled in {} ms: {} documents added, {} removed",
+                        (System.nanoTime() - started) / 1_000_000, added, removed);
+            }
+        } catch (Exception e) {
+            log.error("Could not reconcile the search index", e);
+        }
+        ready = true;
+    }
+
+    // Merge thread
+
+    private void maybeMerge() {
+        List<IndexSegment> candidates = read(() -> pickMerge(segments));
+        if (!candidates.isEmpty() && !merger.isShutdown() && merging.compareAndSet(false, true)) {
+            merger.execute(this::merge);
+        }
+    }
+
+    /**
+     * Log-structured policy: segments are grouped by the order of magnitude (in merge-factor
+     * steps) of their document count, and a full group is merged into one segment of the next
+     * level. Segments already near the size cap are left alone except to purge deletions.
+     */
+    private List<IndexSegment> pickMerge(List<IndexSegment> current) {
+        for (IndexSegment segment : current) {
+            if (segment.docCount() > 0 && (segment.docCount() - segment.liveCount()) > MAX_DELETED_RATIO * segment.docCount()) {
+                return List.of(segment);
+            }
+        }
+        Map<Integer, List<IndexSegment>> levels = new TreeMap<>();
+        for (IndexSegment segment : current) {
+            if (segment.sizeInBytes() * mergeFactor <= maxMergedBytes) {
+                int level = (int) (Math.log(Math.max(1, segment.docCount())) / Math.log(mergeFactor));
+                levels.computeIfAbsent(level, l -> new ArrayList<>()).add(segment);
+            }
+        }
+        for (List<IndexSegment> level : levels.values()) {
+            if (level.size() >= mergeFactor) {
+                level.sort(Comparator.comparingLong(IndexSegment::sizeInBytes));
+                return List.copyOf(level.subList(0, mergeFactor));
+            }
+        }
+        return List.of();
+    }
+
+    private void merge() {
+        try {
+            List<IndexSegment> sources = read(() -> pickMerge(segments));
+            if (sources.isEmpty()) {
+                return;
+            }
+            List<BitSet> snapshot = read(() -> sources.stream().map(IndexSegment::deletedCopy).toList());
+            long started = System.nanoTime();
+            String name = newSegmentName();
+            int[][] remap = SegmentMerger.merge(sources, snapshot, IndexSegment.file(directory, name));
+            IndexSegment merged = remap != null ? IndexSegment.open(directory, name) : null;
+
+            write(() -> {
+                // Deletions that arrived while the merge ran
+                if (merged != null) {
+                    for (int s = 0; s < sources.size(); s++) {
+                        BitSet late = sources.get(s).deletedCopy();
+                        late.andNot(snapshot.get(s));
+                        for (int ord = late.nextSetBit(0); ord >= 0; ord = late.nextSetBit(ord + 1)) {
+                            if (remap[s][ord] >= 0) {
+                                merged.markDeleted(remap[s][ord]);
+                            }
+                        }
+                    }
+                }
+                List<IndexSegment> next = new ArrayList<>(segments);
+                int position = next.indexOf(sources.get(0));
+                next.removeAll(sources);
+                if (merged != null) {
+                    next.add(Math.min(position, next.size()), merged);
+                }
+                segments = List.copyOf(next);
+            });
+            commit();
+            for (IndexSegment source : sources) {
+                // Taking the write lock for the swap waited for every search still reading the sources
+                source.close();
+                IndexSegment.deleteFiles(directory, source.name());
+            }
+            log.info("Merged {} search index segments into {} in {} ms", sources.size(),
+                    merged != null ? merged : "nothing", (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("Search index merge failed: {}", e.getMessage());
+        } finally {
+            merging.set(false);
+        }
+        maybeMerge();
+    }
+
+    // Commit point
+
+    private synchronized void commit() throws IOException {
+        Map<String, BitSet> dirty = new HashMap<>();
+        List<IndexSegment> current = write(() -> {
+            deletionsPending = false;
+            for (IndexSegment segment : segments) {
+                BitSet deletions = segment.takeDirtyDeletions();
+                if (deletions != null) {
+                    dirty.put(segment.name(), deletions);
+                }
+            }
+            return segments;
+        });
+        for (Map.Entry<String, BitSet> entry : dirty.entrySet()) {
+            IndexSegment.writeDeletions(directory, entry.getKey(), entry.getValue());
+        }
+        Path temp = directory.resolve(COMMIT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(COMMIT_MAGIC);
+            out.writeInt(TextAnalyzer.VERSION);
+            out.writeLong(currentSegmentCounter());
+            out.writeInt(current.size());
+            for (IndexSegment segment : current) {
+                out.writeUTF(segment.name());
+            }
+        }
+        Files.move(temp, directory.resolve(COMMIT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns false when there is no usable commit and the index must be built from the database
+    private boolean loadCommit() throws IOException {
+        Path commit = directory.resolve(COMMIT_FILE);
+        if (!Files.isRegularFile(commit)) {
+            return false;
+        }
+        List<String> names = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(commit)))) {
+            if (in.readInt() != COMMIT_MAGIC) {
+                throw new IOException("Not a search index commit file");
+            }
+            if (in.readInt() != TextAnalyzer.VERSION) {
+                log.info("Search index was built with another text analysis; rebuilding it");
+                return false;
+            }
+            synchronized (this) {
+                nextSegment = in.readLong();
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                names.add(in.readUTF());
+            }
+        }
+        List<IndexSegment> opened = new ArrayList<>(names.size());
+        for (String name : names) {
+            opened.add(IndexSegment.open(directory, name));
+        }
+        segments = List.copyOf(opened);
+        log.info("Search index opened: {} documents in {} segments", liveCount(), segments.size());
+        return true;
+    }
+
+    // Leftovers of merges or flushes interrupted by a crash, or of a discarded index
+    private void removeUnreferencedFiles() throws IOException {
+        Set<String> live = new HashSet<>();
+        segments.forEach(segment -> live.add(segment.name()));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                int dot = fileName.indexOf('.');
+                if (!live.contains(dot < 0 ? fileName : fileName.substring(0, dot))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private synchronized String newSegmentName() {
+        return SEGMENT_PREFIX + nextSegment++;
+    }
+
+    private synchronized long currentSegmentCounter() {
+        return nextSegment;
+    }
+
+    private int liveCount() {
+        int count = buffer.liveCount();
+        for (IndexSegment segment : segments) {
+            count += segment.liveCount();
+        }
+        return count;
+    }
+
+    private Set<Long> liveDocumentIds() {
+        Set<Long> ids = new HashSet<>();
+        List<IndexPart> parts = new ArrayList<>(segments);
+        parts.add(buffer);
+        for (IndexPart part : parts) {
+            for (int ord = 0; ord < part.docCount(); ord++) {
+                if (!part.isDeleted(ord)) {
+                    ids.add(part.documentId(ord));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private <T> T read(java.util.function.Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        write(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private <T> T write(java.util.function.Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
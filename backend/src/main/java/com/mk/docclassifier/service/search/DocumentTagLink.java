@@ -0,0 +1,5 @@
+package com.mk.docclassifier.service.search;
+
+// One row of document_tags
+public record DocumentTagLink(Long documentId, Long tagId) {
+}
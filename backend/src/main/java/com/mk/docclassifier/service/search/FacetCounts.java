@@ -0,0 +1,10 @@
+package com.mk.docclassifier.service.search;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+
+import java.util.Map;
+
+// Matching documents per category id, status and tag id; values with no match are left out
+public record FacetCounts(Map<Long, Integer> categories, Map<DocumentStatus, Integer> statuses,
+        Map<Long, Integer> tags) {
+}
@@ -0,0 +1,152 @@
+package com.mk.docclassifier.service.search;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Documents indexed since the last flush, searched in place until they are written out as a
+ * segment. Small by construction (flushed every few seconds or every few hundred documents), so
+ * postings are found by scanning the documents' term counts. Guarded by the owning index's lock.
+ */
+final class IndexBuffer implements IndexPart {
+
+    private final List<Doc> docs = new ArrayList<>();
+    private final List<Map<String, int[]>> termCounts = new ArrayList<>();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private long totalLength;
+
+    void add(long documentId, long userId, Map<String, int[]> counts, int length) {
+        delete(documentId);
+        ordinals.put(documentId, docs.size());
+        docs.add(new Doc(documentId, userId, length));
+        termCounts.add(counts);
+        totalLength += length;
+    }
+
+    boolean isEmpty() {
+        return liveCount() == 0;
+    }
+
+    @Override
+    public int docCount() {
+        return docs.size();
+    }
+
+    @Override
+    public int liveCount() {
+        return docs.size() - deletedCount;
+    }
+
+    @Override
+    public long totalLength() {
+        return totalLength;
+    }
+
+    @Override
+    public long documentId(int ordinal) {
+        return docs.get(ordinal).documentId();
+    }
+
+    @Override
+    public long userId(int ordinal) {
+        return docs.get(ordinal).userId();
+    }
+
+    @Override
+    public int length(int ordinal) {
+        return docs.get(ordinal).length();
+    }
+
+    @Override
+    public boolean isDeleted(int ordinal) {
+        return deleted.get(ordinal);
+    }
+
+    @Override
+    public int docFreq(String term) {
+        int count = 0;
+        for (int ord = 0; ord < docs.size(); ord++) {
+            if (termCounts.get(ord).containsKey(term)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Postings postings(String term) {
+        int[] ords = new int[docs.size()];
+        int[] frequencies = new int[docs.size()];
+        int count = 0;
+        for (int ord = 0; ord < docs.size(); ord++) {
+            int[] frequency = termCounts.get(ord).get(term);
+            if (frequency != null) {
+                ords[count] = ord;
+                frequencies[count++] = frequency[0];
+            }
+        }
+        return count == 0 ? null : new Postings(ords, frequencies, count);
+    }
+
+    @Override
+    public boolean delete(long documentId) {
+        Integer ordinal = ordinals.remove(documentId);
+        if (ordinal == null) {
+            return false;
+        }
+        deleted.set(ordinal);
+        deletedCount++;
+        // The counts are no longer needed once the document is gone
+        termCounts.set(ordinal, Map.of());
+        return true;
+    }
+
+    // Writes the live documents as a segment, renumbered densely
+    Path writeSegment(Path target) throws IOException {
+        List<Doc> live = new ArrayList<>(liveCount());
+        long liveLength = 0;
+        Map<String, List<int[]>> postings = new HashMap<>();
+        for (int ord = 0; ord < docs.size(); ord++) {
+            if (deleted.get(ord)) {
+                continue;
+            }
+            int newOrdinal = live.size();
+            Doc doc = docs.get(ord);
+            live.add(doc);
+            liveLength += doc.length();
+            for (Map.Entry<String, int[]> entry : termCounts.get(ord).entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), t -> new ArrayList<>()).add(new int[] {newOrdinal, entry.getValue()[0]});
+            }
+        }
+
+        byte[][] terms = new byte[postings.size()][];
+        int t = 0;
+        for (String term : postings.keySet()) {
+            terms[t++] = term.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(terms, Arrays::compareUnsigned);
+
+        try (SegmentWriter writer = new SegmentWriter(target)) {
+            int[] ords = new int[live.size()];
+            int[] frequencies = new int[live.size()];
+            for (byte[] term : terms) {
+                List<int[]> list = postings.get(new String(term, StandardCharsets.UTF_8));
+                for (int i = 0; i < list.size(); i++) {
+                    ords[i] = list.get(i)[0];
+                    frequencies[i] = list.get(i)[1];
+                }
+                writer.addTerm(term, ords, frequencies, list.size());
+            }
+            return writer.finish(live, liveLength);
+        }
+    }
+}
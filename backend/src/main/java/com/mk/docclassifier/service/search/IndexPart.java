@@ -0,0 +1,37 @@
+package com.mk.docclassifier.service.search;
+
+// A searchable slice of the index: an on-disk segment or the in-memory buffer of recent documents
+interface IndexPart {
+
+    // Owner id of documents without one
+    long NO_OWNER = -1;
+
+    int docCount();
+
+    int liveCount();
+
+    // Sum of document lengths in terms, deleted documents included
+    long totalLength();
+
+    long documentId(int ordinal);
+
+    long userId(int ordinal);
+
+    int length(int ordinal);
+
+    boolean isDeleted(int ordinal);
+
+    int docFreq(String term);
+
+    // null when the term does not occur; ordinals ascending
+    Postings postings(String term);
+
+    // Marks the document deleted; false when it is not in this part
+    boolean delete(long documentId);
+
+    record Doc(long documentId, long userId, int length) {
+    }
+
+    record Postings(int[] ordinals, int[] frequencies, int count) {
+    }
+}
@@ -0,0 +1,320 @@
+package com.mk.docclassifier.service.search;
+
+import lombok.extern.slf4j.Slf4j;
+import sun.misc.Unsafe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable, memory-mapped segment file (see {@link SegmentWriter} for the layout) plus its
+ * deletions, which are kept in memory and saved beside it as a bitset. Reads use absolute
+ * positions only, so any number of searches can share the mapping. Deletions are guarded by the
+ * owning index's lock. A segment retired by a merge is unmapped with {@link #close} once no search
+ * can reach it; touching it afterwards would crash the JVM.
+ */
+@Slf4j
+final class IndexSegment implements IndexPart {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DELETIONS_SUFFIX = ".del";
+    private static final Unsafe UNSAFE = unsafe();
+
+    private final String name;
+    private final MappedByteBuffer data;
+    private final int docCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int dictStart;
+    private final int termBytesStart;
+    private final int postingsStart;
+    private final long[] sortedIds;
+    private final int[] sortedOrdinals;
+    private final BitSet deleted;
+    private int deletedCount;
+    private boolean deletionsDirty;
+
+    private IndexSegment(String name, MappedByteBuffer data, BitSet deleted) throws IOException {
+        this.name = name;
+        this.data = data;
+        if (data.getInt(0) != SegmentWriter.MAGIC || data.getInt(4) != SegmentWriter.FORMAT) {
+            throw new IOException("Not a search index segment: " + name);
+        }
+        this.docCount = data.getInt(8);
+        this.termCount = data.getInt(12);
+        this.totalLength = data.getLong(16);
+        this.postingsStart = (int) data.getLong(24);
+        this.dictStart = SegmentWriter.HEADER_BYTES + docCount * SegmentWriter.DOC_BYTES;
+        this.termBytesStart = dictStart + (termCount + 1) * SegmentWriter.DICT_ENTRY_BYTES;
+
+        // Document id -> ordinal lookup for deletes
+        Integer[] ordinals = new Integer[docCount];
+        for (int ord = 0; ord < docCount; ord++) {
+            ordinals[ord] = ord;
+        }
+        Arrays.sort(ordinals, (a, b) -> Long.compare(documentId(a), documentId(b)));
+        this.sortedIds = new long[docCount];
+        this.sortedOrdinals = new int[docCount];
+        for (int i = 0; i < docCount; i++) {
+            sortedOrdinals[i] = ordinals[i];
+            sortedIds[i] = documentId(ordinals[i]);
+        }
+        this.deleted = deleted;
+        this.deletedCount = deleted.cardinality();
+    }
+
+    static IndexSegment open(Path directory, String name) throws IOException {
+        Path file = directory.resolve(name + SEGMENT_SUFFIX);
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        BitSet deleted = new BitSet();
+        Path deletions = directory.resolve(name + DELETIONS_SUFFIX);
+        if (Files.isRegularFile(deletions)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(deletions)))) {
+                long[] words = new long[in.readInt()];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = in.readLong();
+                }
+                deleted = BitSet.valueOf(words);
+            }
+        }
+        return new IndexSegment(name, data, deleted);
+    }
+
+    /**
+     * Releases the mapping now instead of at some later GC, so the file can be deleted on Windows
+     * and its disk space is reclaimed at once on Linux. Falls back to the GC when the JVM does not
+     * offer an unmap.
+     */
+    void close() {
+        if (UNSAFE == null) {
+            return;
+        }
+        try {
+            UNSAFE.invokeCleaner(data);
+        } catch (RuntimeException e) {
+            log.debug("Could not unmap search index segment {}: {}", name, e.getMessage());
+        }
+    }
+
+    static Path file(Path directory, String name) {
+        return directory.resolve(name + SEGMENT_SUFFIX);
+    }
+
+    static void deleteFiles(Path directory, String name) throws IOException {
+        Files.deleteIfExists(directory.resolve(name + SEGMENT_SUFFIX));
+        Files.deleteIfExists(directory.resolve(name + DELETIONS_SUFFIX));
+    }
+
+    String name() {
+        return name;
+    }
+
+    long sizeInBytes() {
+        return data.capacity();
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public int liveCount() {
+        return docCount - deletedCount;
+    }
+
+    @Override
+    public long totalLength() {
+        return totalLength;
+    }
+
+    @Override
+    public long documentId(int ordinal) {
+        return data.getLong(SegmentWriter.HEADER_BYTES + ordinal * SegmentWriter.DOC_BYTES);
+    }
+
+    @Override
+    public long userId(int ordinal) {
+        return data.getLong(SegmentWriter.HEADER_BYTES + ordinal * SegmentWriter.DOC_BYTES + 8);
+    }
+
+    @Override
+    public int length(int ordinal) {
+        return data.getInt(SegmentWriter.HEADER_BYTES + ordinal * SegmentWriter.DOC_BYTES + 16);
+    }
+
+    @Override
+    public boolean isDeleted(int ordinal) {
+        return deleted.get(ordinal);
+    }
+
+    @Override
+    public int docFreq(String term) {
+        int index = find(term.getBytes(StandardCharsets.UTF_8));
+        return index < 0 ? 0 : docFreq(index);
+    }
+
+    @Override
+    public Postings postings(String term) {
+        int index = find(term.getBytes(StandardCharsets.UTF_8));
+        return index < 0 ? null : postings(index);
+    }
+
+    @Override
+    public boolean delete(long documentId) {
+        int i = Arrays.binarySearch(sortedIds, documentId);
+        if (i < 0 || deleted.get(sortedOrdinals[i])) {
+            return false;
+        }
+        deleted.set(sortedOrdinals[i]);
+        deletedCount++;
+        deletionsDirty = true;
+        return true;
+    }
+
+    BitSet deletedCopy() {
+        return (BitSet) deleted.clone();
+    }
+
+    void markDeleted(int ordinal) {
+        if (!deleted.get(ordinal)) {
+            deleted.set(ordinal);
+            deletedCount++;
+            deletionsDirty = true;
+        }
+    }
+
+    // Deletions to save at the next commit, or null when none changed since the last one
+    BitSet takeDirtyDeletions() {
+        if (!deletionsDirty) {
+            return null;
+        }
+        deletionsDirty = false;
+        return deletedCopy();
+    }
+
+    static void writeDeletions(Path directory, String name, BitSet deleted) throws IOException {
+        Path target = directory.resolve(name + DELETIONS_SUFFIX);
+        Path temp = directory.resolve(name + DELETIONS_SUFFIX + ".tmp");
+        long[] words = deleted.toLongArray();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(words.length);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Term dictionary access for merges, by index in byte order
+
+    int termCount() {
+        return termCount;
+    }
+
+    byte[] term(int index) {
+        int start = termBytesStart + data.getInt(dictStart + index * SegmentWriter.DICT_ENTRY_BYTES);
+        int end = termBytesStart + data.getInt(dictStart + (index + 1) * SegmentWriter.DICT_ENTRY_BYTES);
+        byte[] term = new byte[end - start];
+        data.get(start, term);
+        return term;
+    }
+
+    int docFreq(int index) {
+        return data.getInt(dictStart + index * SegmentWriter.DICT_ENTRY_BYTES + 4);
+    }
+
+    Postings postings(int index) {
+        int count = docFreq(index);
+        int position = postingsStart + (int) data.getLong(dictStart + index * SegmentWriter.DICT_ENTRY_BYTES + 8);
+        int[] ordinals = new int[count];
+        int[] frequencies = new int[count];
+        int ordinal = 0;
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            ordinal += value;
+            ordinals[i] = ordinal;
+
+            value = 0;
+            shift = 0;
+            do {
+                b = data.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            frequencies[i] = value;
+        }
+        return new Postings(ordinals, frequencies, count);
+    }
+
+    // Binary search of the dictionary, comparing unsigned bytes in place
+    private int find(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compareTerm(int index, byte[] term) {
+        int start = termBytesStart + data.getInt(dictStart + index * SegmentWriter.DICT_ENTRY_BYTES);
+        int end = termBytesStart + data.getInt(dictStart + (index + 1) * SegmentWriter.DICT_ENTRY_BYTES);
+        int length = end - start;
+        for (int i = 0, n = Math.min(length, term.length); i < n; i++) {
+            int cmp = Integer.compare(data.get(start + i) & 0xFF, term[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, term.length);
+    }
+
+    private static Unsafe unsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.info("Search index segments cannot be unmapped explicitly and are released by the GC: {}",
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + liveCount() + "/" + docCount + " documents)";
+    }
+}
@@ -0,0 +1,5 @@
+package com.mk.docclassifier.service.search;
+
+// What the index needs from the documents row besides the text
+public record IndexedDocument(Long documentId, Long userId, String originalFilename) {
+}
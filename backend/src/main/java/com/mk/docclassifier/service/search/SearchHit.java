@@ -0,0 +1,4 @@
+package com.mk.docclassifier.service.search;
+
+public record SearchHit(long documentId, float score) {
+}
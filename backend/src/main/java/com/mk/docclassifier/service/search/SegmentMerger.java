@@ -0,0 +1,92 @@
+package com.mk.docclassifier.service.search;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges segments into one, dropping deleted documents. Term dictionaries are walked together in
+ * byte order, so only one term's postings are in memory at a time.
+ */
+final class SegmentMerger {
+
+    private SegmentMerger() {
+    }
+
+    /**
+     * Writes the live documents of sources (deletions as given, a snapshot taken by the caller)
+     * to target, sources in order. Returns, per source, the new ordinal of every old one, -1 for
+     * dropped documents, or null when nothing was left to write.
+     */
+    static int[][] merge(List<IndexSegment> sources, List<BitSet> deletions, Path target) throws IOException {
+        int[][] remap = new int[sources.size()][];
+        List<IndexPart.Doc> docs = new ArrayList<>();
+        long totalLength = 0;
+        for (int s = 0; s < sources.size(); s++) {
+            IndexSegment source = sources.get(s);
+            remap[s] = new int[source.docCount()];
+            for (int ord = 0; ord < source.docCount(); ord++) {
+                if (deletions.get(s).get(ord)) {
+                    remap[s][ord] = -1;
+                    continue;
+                }
+                remap[s][ord] = docs.size();
+                docs.add(new IndexPart.Doc(source.documentId(ord), source.userId(ord), source.length(ord)));
+                totalLength += source.length(ord);
+            }
+        }
+        if (docs.isEmpty()) {
+            return null;
+        }
+
+        PriorityQueue<Cursor> queue = new PriorityQueue<>();
+        for (int s = 0; s < sources.size(); s++) {
+            if (sources.get(s).termCount() > 0) {
+                queue.add(new Cursor(s, 0, sources.get(s).term(0)));
+            }
+        }
+        int[] ordinals = new int[docs.size()];
+        int[] frequencies = new int[docs.size()];
+        try (SegmentWriter writer = new SegmentWriter(target)) {
+            while (!queue.isEmpty()) {
+                byte[] term = queue.peek().term;
+                int count = 0;
+                // Cursors on the same term come out in source order, so ordinals stay ascending
+                while (!queue.isEmpty() && Arrays.equals(queue.peek().term, term)) {
+                    Cursor cursor = queue.poll();
+                    IndexSegment source = sources.get(cursor.source);
+                    IndexPart.Postings postings = source.postings(cursor.index);
+                    for (int i = 0; i < postings.count(); i++) {
+                        int ordinal = remap[cursor.source][postings.ordinals()[i]];
+                        if (ordinal >= 0) {
+                            ordinals[count] = ordinal;
+                            frequencies[count++] = postings.frequencies()[i];
+                        }
+                    }
+                    if (cursor.index + 1 < source.termCount()) {
+                        queue.add(new Cursor(cursor.source, cursor.index + 1, source.term(cursor.index + 1)));
+                    }
+                }
+                // Terms only found in deleted documents disappear
+                if (count > 0) {
+                    writer.addTerm(term, ordinals, frequencies, count);
+                }
+            }
+            writer.finish(docs, totalLength);
+        }
+        return remap;
+    }
+
+    private record Cursor(int source, int index, byte[] term) implements Comparable<Cursor> {
+
+        @Override
+        public int compareTo(Cursor other) {
+            int cmp = Arrays.compareUnsigned(term, other.term);
+            return cmp != 0 ? cmp : Integer.compare(source, other.source);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.mk.docclassifier.service.search;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes one immutable segment file. Terms must be added in unsigned UTF-8 byte order, each with
+ * its postings in ascending ordinal order. Postings are streamed to a side file as they come, so
+ * only the term dictionary is held in memory.
+ * <p>
+ * Layout (big-endian): a 32-byte header (magic, format, document count, term count, total
+ * length, postings start), the documents (id, owner id, length: 20 bytes each), the dictionary
+ * (term count + 1 entries of term offset, document frequency, postings offset: 16 bytes each,
+ * the last one closing the final term), the term bytes, then the postings as varint pairs of
+ * ordinal delta and term frequency.
+ */
+final class SegmentWriter implements AutoCloseable {
+
+    static final int MAGIC = 0x44434958;
+    static final int FORMAT = 1;
+    static final int HEADER_BYTES = 32;
+    static final int DOC_BYTES = 20;
+    static final int DICT_ENTRY_BYTES = 16;
+
+    private final Path target;
+    private final Path postingsFile;
+    private final OutputStream postings;
+    private final ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+    private int[] termOffsets = new int[1024];
+    private int[] docFreqs = new int[1024];
+    private long[] postingsOffsets = new long[1024];
+    private int termCount;
+    private long postingsLength;
+    private byte[] lastTerm;
+
+    SegmentWriter(Path target) throws IOException {
+        this.target = target;
+        this.postingsFile = target.resolveSibling(target.getFileName() + ".postings.tmp");
+        this.postings = new BufferedOutputStream(Files.newOutputStream(postingsFile), 1 << 16);
+    }
+
+    void addTerm(byte[] term, int[] ordinals, int[] frequencies, int count) throws IOException {
+        if (lastTerm != null && Arrays.compareUnsigned(lastTerm, term) >= 0) {
+            throw new IllegalArgumentException("Terms must be added in increasing byte order");
+        }
+        if (termCount + 1 == termOffsets.length) {
+            termOffsets = Arrays.copyOf(termOffsets, termOffsets.length * 2);
+            docFreqs = Arrays.copyOf(docFreqs, docFreqs.length * 2);
+            postingsOffsets = Arrays.copyOf(postingsOffsets, postingsOffsets.length * 2);
+        }
+        termOffsets[termCount] = termBytes.size();
+        docFreqs[termCount] = count;
+        postingsOffsets[termCount] = postingsLength;
+        termBytes.write(term);
+        termCount++;
+        lastTerm = term;
+
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            postingsLength += writeVarInt(postings, ordinals[i] - previous);
+            postingsLength += writeVarInt(postings, frequencies[i]);
+            previous = ordinals[i];
+        }
+    }
+
+    // Returns the finished file; the caller maps it with IndexSegment.open
+    Path finish(List<IndexPart.Doc> docs, long totalLength) throws IOException {
+        postings.close();
+        termOffsets[termCount] = termBytes.size();
+        postingsOffsets[termCount] = postingsLength;
+
+        long postingsStart = HEADER_BYTES + (long) docs.size() * DOC_BYTES
+                + (long) (termCount + 1) * DICT_ENTRY_BYTES + termBytes.size();
+        if (postingsStart + postingsLength > Integer.MAX_VALUE) {
+            throw new IOException("Segment over 2 GiB cannot be mapped");
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeInt(docs.size());
+                out.writeInt(termCount);
+                out.writeLong(totalLength);
+                out.writeLong(postingsStart);
+                for (IndexPart.Doc doc : docs) {
+                    out.writeLong(doc.documentId());
+                    out.writeLong(doc.userId());
+                    out.writeInt(doc.length());
+                }
+                for (int t = 0; t <= termCount; t++) {
+                    out.writeInt(termOffsets[t]);
+                    out.writeInt(docFreqs[t]);
+                    out.writeLong(postingsOffsets[t]);
+                }
+                termBytes.writeTo(out);
+                Files.copy(postingsFile, out);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+            Files.deleteIfExists(postingsFile);
+        }
+        return target;
+    }
+
+    // Drops the partial output of an abandoned write
+    @Override
+    public void close() throws IOException {
+        postings.close();
+        Files.deleteIfExists(postingsFile);
+    }
+
+    private static int writeVarInt(OutputStream out, int value) throws IOException {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+            bytes++;
+        }
+        out.write(value);
+        return bytes;
+    }
+}
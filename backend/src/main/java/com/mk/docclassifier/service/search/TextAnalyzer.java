@@ -0,0 +1,163 @@
+package com.mk.docclassifier.service.search;
+
+import com.mk.docclassifier.service.classifier.FeatureHasher;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns text into index terms: runs of letters or digits, lower-cased and stripped of accents,
+ * French and English stop words dropped, then reduced by a light stemmer covering the common
+ * inflections of both languages (plurals, feminine and participle endings, -ment/-ing/-ed/-er).
+ * Documents and queries go through the same analysis, so a query for "factures" finds "facture".
+ */
+public final class TextAnalyzer {
+
+    // Bump when analysis changes: the index is rebuilt when its version differs
+    public static final int VERSION = 1;
+
+    private static final int MIN_TOKEN_LENGTH = 2;
+    private static final int MAX_TOKEN_LENGTH = 40;
+    private static final int MIN_STEM_LENGTH = 3;
+    private static final Set<String> STOP_WORDS = Set.of(
+            // French
+            "au", "aux", "avec", "ce", "ces", "dans", "de", "des", "du", "elle", "en", "et", "eux", "il", "je",
+            "la", "le", "les", "leur", "lui", "ma", "mais", "me", "meme", "mes", "moi", "mon", "ne", "nos",
+            "notre", "nous", "on", "ou", "par", "pas", "pour", "qu", "que", "qui", "sa", "se", "ses", "son",
+            "sur", "ta", "te", "tes", "toi", "ton", "tu", "un", "une", "vos", "votre", "vous", "est", "sont",
+            // English (words shared with French, such as "on", are listed once)
+            "an", "and", "are", "as", "at", "be", "but", "by", "for", "from", "has", "have", "if", "in", "into",
+            "is", "it", "its", "no", "not", "of", "or", "such", "that", "the", "their", "then", "there",
+            "these", "they", "this", "to", "was", "were", "will", "with");
+
+    private TextAnalyzer() {
+    }
+
+    // Distinct terms of a query
+    public static List<String> queryTerms(String query) {
+        TermCounter counter = new TermCounter();
+        counter.write(query, 0, query.length());
+        counter.close();
+        return new ArrayList<>(counter.counts().keySet());
+    }
+
+    static String term(char[] token, int length) {
+        String word = new String(token, 0, length);
+        if (STOP_WORDS.contains(word)) {
+            return null;
+        }
+        return stem(word);
+    }
+
+    static String stem(String word) {
+        int length = word.length();
+        if (length <= MIN_STEM_LENGTH || !Character.isLetter(word.charAt(length - 1))) {
+            return word;
+        }
+        // Plurals
+        if (word.endsWith("ies") && length > 4) {
+            word = word.substring(0, length - 3) + "y";
+        } else if (word.endsWith("aux") && length > 4) {
+            word = word.substring(0, length - 3) + "al";
+        } else if ((word.endsWith("s") && !word.endsWith("ss")) || word.endsWith("x")) {
+            word = word.substring(0, length - 1);
+        }
+        // Derivational and verb endings, longest first
+        word = strip(word, "ement");
+        word = strip(word, "ment");
+        word = strip(word, "ing");
+        word = strip(word, "ed");
+        word = strip(word, "er");
+        // French feminine and participle endings (accents are already folded: signée -> signee)
+        word = strip(word, "e");
+        word = strip(word, "e");
+        return word;
+    }
+
+    private static String strip(String word, String suffix) {
+        return word.endsWith(suffix) && word.length() - suffix.length() >= MIN_STEM_LENGTH
+                ? word.substring(0, word.length() - suffix.length())
+                : word;
+    }
+
+    /**
+     * Counts the terms of text written to it in any number of pieces; a token split across two
+     * writes is still seen whole.
+     */
+    public static final class TermCounter extends Writer {
+
+        private final Map<String, int[]> counts = new HashMap<>();
+        private final char[] token = new char[MAX_TOKEN_LENGTH];
+        private int tokenLength;
+        private boolean overlong;
+        private int length;
+
+        @Override
+        public void write(char[] buffer, int offset, int count) {
+            for (int i = offset, end = offset + count; i < end; i++) {
+                accept(buffer[i]);
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int count) {
+            for (int i = offset, end = offset + count; i < end; i++) {
+                accept(text.charAt(i));
+            }
+        }
+
+        @Override
+        public void write(int ch) {
+            accept((char) ch);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            endToken();
+        }
+
+        // Terms and their frequencies; complete once closed
+        public Map<String, int[]> counts() {
+            return counts;
+        }
+
+        // Number of terms seen, repeats included
+        public int length() {
+            return length;
+        }
+
+        private void accept(char ch) {
+            char folded = FeatureHasher.fold(ch);
+            if (Character.isLetterOrDigit(folded)) {
+                if (tokenLength < MAX_TOKEN_LENGTH) {
+                    token[tokenLength++] = folded;
+                } else {
+                    overlong = true;
+                }
+                return;
+            }
+            endToken();
+        }
+
+        private void endToken() {
+            // Overlong runs are identifiers, hashes or OCR noise, not words
+            if (tokenLength >= MIN_TOKEN_LENGTH && !overlong) {
+                String term = term(token, tokenLength);
+                if (term != null) {
+                    counts.computeIfAbsent(term, t -> new int[1])[0]++;
+                    length++;
+                }
+            }
+            tokenLength = 0;
+            overlong = false;
+        }
+    }
+}
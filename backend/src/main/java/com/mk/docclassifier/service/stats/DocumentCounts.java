@@ -0,0 +1,89 @@
+package com.mk.docclassifier.service.stats;
+
+import com.mk.docclassifier.domain.entity.Role;
+import com.mk.docclassifier.domain.entity.Tag;
+import com.mk.docclassifier.domain.entity.User;
+import com.mk.docclassifier.repository.DocumentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Documents per category and per tag for the category and tag listings, each read with one grouped
+ * query over the documents the user can see (every document for admins) rather than a count query
+ * per row. Results are kept per user for app.counts.cache-ttl-ms, so a page that lists categories
+ * and tags again soon after does not query again; 0 turns the cache off. A single created or
+ * updated row is counted directly instead.
+ */
+@Component
+public class DocumentCounts {
+
+    // Admins share the unscoped counts; user ids start at 1
+    private static final long ALL_DOCUMENTS = 0L;
+
+    private final DocumentRepository documentRepository;
+    private final long ttlNanos;
+    private final Map<Long, Cached> byCategory = new ConcurrentHashMap<>();
+    private final Map<Long, Cached> byTag = new ConcurrentHashMap<>();
+
+    public DocumentCounts(DocumentRepository documentRepository,
+            @Value("${app.counts.cache-ttl-ms:5000}") long ttlMillis) {
+        this.documentRepository = documentRepository;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    public Map<Long, Long> byCategory(User user) {
+        return lookup(byCategory, user, documentRepository::countByCategory);
+    }
+
+    public Map<Long, Long> byTag(User user) {
+        return lookup(byTag, user, documentRepository::countByTag);
+    }
+
+    // One category or tag, counted now: the cached maps may predate the change being answered
+    public long ofCategory(Long categoryId, User user) {
+        if (user == null) {
+            return 0;
+        }
+        return user.getRole() == Role.ADMIN ? documentRepository.countByCategoryId(categoryId)
+                : documentRepository.countByCategoryIdAndUserId(categoryId, user.getId());
+    }
+
+    public long ofTag(Tag tag, User user) {
+        if (user == null) {
+            return 0;
+        }
+        return user.getRole() == Role.ADMIN ? documentRepository.countByTagsContaining(tag)
+                : documentRepository.countByTagsContainingAndUserId(tag, user.getId());
+    }
+
+    private Map<Long, Long> lookup(Map<Long, Cached> cache, User user, Function<Long, List<LabelCount>> query) {
+        if (user == null) {
+            return Map.of();
+        }
+        Long userId = user.getRole() == Role.ADMIN ? null : user.getId();
+        long key = userId == null ? ALL_DOCUMENTS : userId;
+        long now = System.nanoTime();
+        Cached cached = cache.get(key);
+        if (cached != null && now - cached.loadedAt() < ttlNanos) {
+            return cached.counts();
+        }
+        Map<Long, Long> counts = query.apply(userId).stream()
+                .collect(Collectors.toUnmodifiableMap(LabelCount::id, LabelCount::count));
+        if (ttlNanos > 0) {
+            // Entries of users who stopped asking go once they expire
+            cache.values().removeIf(entry -> now - entry.loadedAt() >= ttlNanos);
+            cache.put(key, new Cached(counts, now));
+        }
+        return counts;
+    }
+
+    private record Cached(Map<Long, Long> counts, long loadedAt) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.mk.docclassifier.service.stats;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+
+// Documents of one owner with the same category and status, and their confidence total; a row of the statistics build
+public record DocumentGroupCount(Long userId, Long categoryId, DocumentStatus status, Long count, Double confidenceSum,
+        Long confidenceCount) {
+}
@@ -0,0 +1,311 @@
+package com.mk.docclassifier.service.stats;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.domain.entity.Role;
+import com.mk.docclassifier.domain.entity.User;
+import com.mk.docclassifier.event.CountedDocument;
+import com.mk.docclassifier.event.DocumentChangeLoggedEvent;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.sync.ChangeFeed;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Document counts per status, category and tag and confidence totals, for all documents and per
+ * owner. Built from grouped counts at startup, then adjusted from the {@link ChangeFeed}'s logged
+ * document changes, which carry what the document counted for before and after each change, so only
+ * the totals are kept and the dashboard reads counters instead of scanning documents. This instance's
+ * own changes are applied as soon as they commit, other instances' within a poll interval; a periodic
+ * reconcile corrects anything the feed missed.
+ */
+@Component
+@DependsOn("changeFeed")
+@Slf4j
+public class DocumentStatistics {
+
+    private final DocumentRepository documentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes changes with the end of a reconcile
+    private final Object reloadLock = new Object();
+    // Sum of the owners' counters, documents without an owner under the null key
+    private final Counters global = new Counters();
+    private final Map<Long, Counters> byUser = new HashMap<>();
+    // Owners changed while a reconcile reads the table; guarded by reloadLock
+    private Set<Long> changedDuringReconcile;
+
+    public DocumentStatistics(DocumentRepository documentRepository, TransactionTemplate transactionTemplate) {
+        this.documentRepository = documentRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        long started = System.nanoTime();
+        Map<Long, Counters> loaded = load();
+        write(() -> loaded.forEach((userId, counters) -> {
+            byUser.put(userId, counters);
+            global.add(counters, 1);
+        }));
+        log.info("Statistics counters built in {} ms: {} documents, {} owners",
+                (System.nanoTime() - started) / 1_000_000, global.total, byUser.size());
+    }
+
+    /**
+     * Compares each owner's counters with the table and replaces those that differ, catching up on
+     * changes the feed missed or logged without counts. Owners changed while the table is read are
+     * skipped; the scan may or may not include their change.
+     */
+    @Scheduled(initialDelayString = "${app.sync.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${app.sync.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        synchronized (reloadLock) {
+            changedDuringReconcile = new HashSet<>();
+        }
+        Map<Long, Counters> loaded;
+        try {
+            loaded = load();
+        } catch (RuntimeException e) {
+            synchronized (reloadLock) {
+                changedDuringReconcile = null;
+            }
+            throw e;
+        }
+        int corrected;
+        synchronized (reloadLock) {
+            Set<Long> skipped = changedDuringReconcile;
+            changedDuringReconcile = null;
+            corrected = read(() -> countDifferences(loaded, skipped)) == 0 ? 0 : correct(loaded, skipped);
+        }
+        if (corrected > 0) {
+            log.warn("Statistics reconcile corrected the counters of {} owners", corrected);
+        }
+    }
+
+    // After commit for this instance's changes, on the feed's polling thread for the others'
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChangeLogged(DocumentChangeLoggedEvent event) {
+        CountedDocument before = event.before();
+        CountedDocument after = event.after();
+        synchronized (reloadLock) {
+            if (changedDuringReconcile != null) {
+                if (before != null) {
+                    changedDuringReconcile.add(before.userId());
+                }
+                if (after != null) {
+                    changedDuringReconcile.add(after.userId());
+                }
+            }
+            write(() -> {
+                if (before != null) {
+                    apply(before, -1);
+                }
+                if (after != null) {
+                    apply(after, 1);
+                }
+            });
+        }
+    }
+
+    public StatsSnapshot global() {
+        return read(global::snapshot);
+    }
+
+    public StatsSnapshot forUser(Long userId) {
+        return read(() -> {
+            Counters counters = byUser.get(userId);
+            return counters == null ? StatsSnapshot.EMPTY : counters.snapshot();
+        });
+    }
+
+    // Admins see every document, other users only their own
+    public StatsSnapshot visibleTo(User user) {
+        if (user == null) {
+            return StatsSnapshot.EMPTY;
+        }
+        return user.getRole() == Role.ADMIN ? global() : forUser(user.getId());
+    }
+
+    // Counters per owner, totalled by the database
+    private Map<Long, Counters> load() {
+        Map<Long, Counters> loaded = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (DocumentGroupCount group : documentRepository.countGroups()) {
+                loaded.computeIfAbsent(group.userId(), id -> new Counters()).add(group);
+            }
+            for (TagGroupCount group : documentRepository.countTagGroups()) {
+                loaded.computeIfAbsent(group.userId(), id -> new Counters()).add(group);
+            }
+        });
+        return loaded;
+    }
+
+    // Under the write lock
+    private void apply(CountedDocument document, int sign) {
+        global.apply(document, sign);
+        Counters counters = byUser.computeIfAbsent(document.userId(), id -> new Counters());
+        counters.apply(document, sign);
+        if (counters.total == 0) {
+            byUser.remove(document.userId());
+        }
+    }
+
+    // Under the read lock
+    private int countDifferences(Map<Long, Counters> loaded, Set<Long> skipped) {
+        int differences = 0;
+        Set<Long> owners = new HashSet<>(byUser.keySet());
+        owners.addAll(loaded.keySet());
+        for (Long userId : owners) {
+            if (!skipped.contains(userId) && !Counters.same(byUser.get(userId), loaded.get(userId))) {
+                differences++;
+            }
+        }
+        return differences;
+    }
+
+    private int correct(Map<Long, Counters> loaded, Set<Long> skipped) {
+        int[] corrected = {0};
+        write(() -> {
+            Set<Long> owners = new HashSet<>(byUser.keySet());
+            owners.addAll(loaded.keySet());
+            for (Long userId : owners) {
+                Counters current = byUser.get(userId);
+                Counters fresh = loaded.get(userId);
+                if (skipped.contains(userId) || Counters.same(current, fresh)) {
+                    continue;
+                }
+                if (current != null) {
+                    global.add(current, -1);
+                    byUser.remove(userId);
+                }
+                if (fresh != null) {
+                    global.add(fresh, 1);
+                    byUser.put(userId, fresh);
+                }
+                corrected[0]++;
+            }
+        });
+        return corrected[0];
+    }
+
+    private <T> T read(java.util.function.Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class Counters {
+        private long total;
+        private final long[] statuses = new long[DocumentStatus.values().length];
+        private final Map<Long, Long> categories = new HashMap<>();
+        private long uncategorized;
+        private final Map<Long, Long> tags = new HashMap<>();
+        private double confidenceSum;
+        private long confidenceCount;
+
+        void apply(CountedDocument document, int sign) {
+            total += sign;
+            if (document.status() != null) {
+                statuses[document.status().ordinal()] += sign;
+            }
+            if (document.categoryId() != null) {
+                add(categories, document.categoryId(), sign);
+            } else {
+                uncategorized += sign;
+            }
+            for (Long tagId : document.tagIds()) {
+                add(tags, tagId, sign);
+            }
+            if (document.confidence() != null) {
+                confidenceSum += sign * document.confidence();
+                confidenceCount += sign;
+            }
+        }
+
+        void add(DocumentGroupCount group) {
+            total += group.count();
+            if (group.status() != null) {
+                statuses[group.status().ordinal()] += group.count();
+            }
+            if (group.categoryId() != null) {
+                add(categories, group.categoryId(), group.count());
+            } else {
+                uncategorized += group.count();
+            }
+            if (group.confidenceSum() != null) {
+                confidenceSum += group.confidenceSum();
+                confidenceCount += group.confidenceCount();
+            }
+        }
+
+        void add(TagGroupCount group) {
+            add(tags, group.tagId(), group.count());
+        }
+
+        void add(Counters other, int sign) {
+            total += sign * other.total;
+            for (int i = 0; i < statuses.length; i++) {
+                statuses[i] += sign * other.statuses[i];
+            }
+            other.categories.forEach((id, count) -> add(categories, id, sign * count));
+            uncategorized += sign * other.uncategorized;
+            other.tags.forEach((id, count) -> add(tags, id, sign * count));
+            confidenceSum += sign * other.confidenceSum;
+            confidenceCount += sign * other.confidenceCount;
+        }
+
+        // Zero counts are dropped, so deleted categories and tags do not linger
+        private static void add(Map<Long, Long> counts, Long key, long delta) {
+            counts.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+
+        // Confidence sums drift by rounding as documents come and go, so they only need to be close
+        static boolean same(Counters a, Counters b) {
+            if (a == null || b == null) {
+                return (a == null || a.total == 0) && (b == null || b.total == 0);
+            }
+            return a.total == b.total && Arrays.equals(a.statuses, b.statuses)
+                    && a.categories.equals(b.categories) && a.uncategorized == b.uncategorized
+                    && a.tags.equals(b.tags) && a.confidenceCount == b.confidenceCount
+                    && Math.abs(a.confidenceSum - b.confidenceSum) < 1e-6 * Math.max(1, a.confidenceCount);
+        }
+
+        StatsSnapshot snapshot() {
+            Map<DocumentStatus, Long> byStatus = new EnumMap<>(DocumentStatus.class);
+            for (DocumentStatus status : DocumentStatus.values()) {
+                if (statuses[status.ordinal()] != 0) {
+                    byStatus.put(status, statuses[status.ordinal()]);
+                }
+            }
+            // Sums drift by rounding as confidences come and go; none left means exactly zero
+            return new StatsSnapshot(total, byStatus, Map.copyOf(categories), uncategorized, Map.copyOf(tags),
+                    confidenceCount == 0 ? 0 : confidenceSum, confidenceCount);
+        }
+    }
+}
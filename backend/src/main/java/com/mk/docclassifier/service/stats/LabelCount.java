@@ -0,0 +1,5 @@
+package com.mk.docclassifier.service.stats;
+
+// Documents filed under one category or carrying one tag; a row of the grouped count queries
+public record LabelCount(Long id, Long count) {
+}
@@ -0,0 +1,20 @@
+package com.mk.docclassifier.service.stats;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+
+import java.util.Map;
+
+// Counters of one scope (all documents or one owner's) at a point in time; zero counts are left out of the maps
+public record StatsSnapshot(long total, Map<DocumentStatus, Long> statuses, Map<Long, Long> categories,
+        long uncategorized, Map<Long, Long> tags, double confidenceSum, long confidenceCount) {
+
+    static final StatsSnapshot EMPTY = new StatsSnapshot(0, Map.of(), Map.of(), 0, Map.of(), 0, 0);
+
+    public long count(DocumentStatus status) {
+        return statuses.getOrDefault(status, 0L);
+    }
+
+    public double averageConfidence() {
+        return confidenceCount == 0 ? 0.0 : confidenceSum / confidenceCount;
+    }
+}
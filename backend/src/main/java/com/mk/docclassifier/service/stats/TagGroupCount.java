@@ -0,0 +1,5 @@
+package com.mk.docclassifier.service.stats;
+
+// Documents of one owner carrying one tag; a row of the statistics build
+public record TagGroupCount(Long userId, Long tagId, Long count) {
+}
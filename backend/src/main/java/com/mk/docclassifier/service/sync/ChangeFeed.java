@@ -0,0 +1,265 @@
+package com.mk.docclassifier.service.sync;
+
+import com.mk.docclassifier.domain.entity.ChangeLogEntry;
+import com.mk.docclassifier.domain.entity.ChangedEntity;
+import com.mk.docclassifier.event.CategoryChangedEvent;
+import com.mk.docclassifier.event.CountedDocument;
+import com.mk.docclassifier.event.DocumentChangeLoggedEvent;
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.event.DocumentReclassifiedEvent;
+import com.mk.docclassifier.event.TagChangedEvent;
+import com.mk.docclassifier.repository.ChangeLogRepository;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.PipelineJobService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Carries document, category and tag changes and manual reclassifications between backend
+ * instances. Every change is written to the change_log table in the transaction that makes it;
+ * each instance polls the table and republishes the other instances' changes as local events, so
+ * the filter and search indexes, label dictionary and local classifier follow them within a poll
+ * interval. Every logged document change is also published as a {@link DocumentChangeLoggedEvent}
+ * carrying what the document counted for before and after it, so the statistics adjust their totals
+ * without keeping each document's row: the instance that made the change publishes it in the
+ * writing transaction, for its listeners to apply after commit, the others when they read it.
+ * <p>
+ * Ids are assigned at insert but rows become visible at commit, so an id skipped by a poll may
+ * still appear; skipped ids are looked up again until they show up or the gap expires. Ids below
+ * the starting point that are not committed yet at startup are tracked the same way.
+ */
+@Component
+@Slf4j
+public class ChangeFeed {
+
+    private static final int BATCH_SIZE = 500;
+    // Larger jumps come from pruning or a sequence cache, not from transactions still open
+    private static final int MAX_TRACKED_GAP = 1000;
+    // Length of the counted_before and counted_after columns
+    private static final int MAX_COUNTED_LENGTH = 4000;
+    private static final long GAP_EXPIRY_NANOS = 120_000_000_000L;
+
+    // Set while republishing, so the replayed events are not recorded again
+    private static final ThreadLocal<Boolean> REPLAYING = ThreadLocal.withInitial(() -> false);
+
+    private final ChangeLogRepository changeLogRepository;
+    private final DocumentRepository documentRepository;
+    private final PipelineJobService pipelineJobService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    // Reads the last committed row, beside the writing transaction
+    private final TransactionTemplate committedRead;
+
+    @Value("${app.sync.retention-hours:24}")
+    private long retentionHours;
+
+    private Counter replayed;
+    // Only touched by the polling task
+    private long lastSeen;
+    private final Map<Long, Long> gaps = new HashMap<>();
+
+    public ChangeFeed(ChangeLogRepository changeLogRepository, DocumentRepository documentRepository,
+            PipelineJobService pipelineJobService, ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry, PlatformTransactionManager transactionManager) {
+        this.changeLogRepository = changeLogRepository;
+        this.documentRepository = documentRepository;
+        this.pipelineJobService = pipelineJobService;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.committedRead = new TransactionTemplate(transactionManager);
+        this.committedRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.committedRead.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void init() {
+        // Views built after this point read the table, so earlier entries are already included; those
+        // still uncommitted are not, and are picked up as they commit
+        lastSeen = changeLogRepository.findMaxId();
+        long from = Math.max(lastSeen - MAX_TRACKED_GAP, 0);
+        Set<Long> committed = Set.copyOf(changeLogRepository.findIdsGreaterThan(from));
+        long now = System.nanoTime();
+        for (long id = from + 1; id < lastSeen; id++) {
+            if (!committed.contains(id)) {
+                gaps.put(id, now);
+            }
+        }
+        replayed = Counter.builder("sync.changes.replayed").description("Changes from other instances applied locally")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Logs the change with what the document counted for before it, read from the last committed
+     * row, and after it, read in the writing transaction. A change to the document row holds its lock
+     * until commit, so the committed row is the one the previous change left.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onDocumentChanged(DocumentChangedEvent event) {
+        if (REPLAYING.get()) {
+            return;
+        }
+        Long documentId = event.documentId();
+        CountedDocument after = event.change() == DocumentChangedEvent.Change.DELETED ? null : counted(documentId);
+        CountedDocument before;
+        try {
+            before = committedRead.execute(status -> counted(documentId));
+        } catch (RuntimeException e) {
+            // E.g. no connection to spare: the change itself goes ahead, the statistics reconcile corrects the counters
+            log.warn("Could not read what document {} counted for before the change: {}", documentId, e.getMessage());
+            before = after = null;
+        }
+        String countedBefore = before == null ? null : before.encode();
+        String countedAfter = after == null ? null : after.encode();
+        if (length(countedBefore) > MAX_COUNTED_LENGTH || length(countedAfter) > MAX_COUNTED_LENGTH) {
+            log.debug("Document {} has too many tags to log what it counts for", documentId);
+            before = after = null;
+            countedBefore = countedAfter = null;
+        }
+        changeLogRepository.save(ChangeLogEntry.builder()
+                .entity(ChangedEntity.DOCUMENT)
+                .entityId(documentId)
+                .changeType(event.change().name())
+                .countedBefore(countedBefore)
+                .countedAfter(countedAfter)
+                .origin(pipelineJobService.getInstanceId())
+                .build());
+        eventPublisher.publishEvent(new DocumentChangeLoggedEvent(documentId, event.change(), before, after));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        record(ChangedEntity.CATEGORY, event.categoryId(), null);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onTagChanged(TagChangedEvent event) {
+        record(ChangedEntity.TAG, event.tagId(), null);
+    }
+
+    // The text stays behind: the replaying instance reads it from the text store
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onReclassified(DocumentReclassifiedEvent event) {
+        if (REPLAYING.get()) {
+            return;
+        }
+        changeLogRepository.save(ChangeLogEntry.builder()
+                .entity(ChangedEntity.LABEL)
+                .entityId(event.documentId())
+                .categoryId(event.categoryId())
+                .previousCategoryId(event.previousCategoryId())
+                .origin(pipelineJobService.getInstanceId())
+                .build());
+    }
+
+    @Scheduled(fixedDelayString = "${app.sync.poll-interval-ms:2000}")
+    public void poll() {
+        if (!gaps.isEmpty()) {
+            for (ChangeLogEntry entry : changeLogRepository.findByIdIn(Set.copyOf(gaps.keySet()))) {
+                gaps.remove(entry.getId());
+                deliver(entry);
+            }
+            long now = System.nanoTime();
+            gaps.values().removeIf(noticed -> now - noticed > GAP_EXPIRY_NANOS);
+        }
+        List<ChangeLogEntry> entries;
+        do {
+            entries = changeLogRepository.findByIdGreaterThanOrderByIdAsc(lastSeen, PageRequest.of(0, BATCH_SIZE));
+            for (ChangeLogEntry entry : entries) {
+                if (entry.getId() - lastSeen <= MAX_TRACKED_GAP) {
+                    for (long id = lastSeen + 1; id < entry.getId(); id++) {
+                        gaps.put(id, System.nanoTime());
+                    }
+                }
+                lastSeen = entry.getId();
+                deliver(entry);
+            }
+        } while (entries.size() == BATCH_SIZE);
+    }
+
+    @Scheduled(fixedDelayString = "${app.sync.prune-interval-ms:3600000}")
+    public void prune() {
+        int deleted = changeLogRepository.deleteOlderThan(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            log.debug("Pruned {} change log entries", deleted);
+        }
+    }
+
+    private CountedDocument counted(Long documentId) {
+        return documentRepository.findAttributes(documentId)
+                .map(row -> new CountedDocument(row.userId(), row.categoryId(), row.status(), row.confidence(),
+                        documentRepository.findTagIds(documentId)))
+                .orElse(null);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    private void record(ChangedEntity entity, Long entityId, String changeType) {
+        if (REPLAYING.get()) {
+            return;
+        }
+        changeLogRepository.save(ChangeLogEntry.builder()
+                .entity(entity)
+                .entityId(entityId)
+                .changeType(changeType)
+                .origin(pipelineJobService.getInstanceId())
+                .build());
+    }
+
+    // This instance's own changes were published as they were made
+    private void deliver(ChangeLogEntry entry) {
+        if (pipelineJobService.getInstanceId().equals(entry.getOrigin())) {
+            return;
+        }
+        if (entry.getEntity() == ChangedEntity.DOCUMENT) {
+            try {
+                eventPublisher.publishEvent(new DocumentChangeLoggedEvent(entry.getEntityId(),
+                        DocumentChangedEvent.Change.valueOf(entry.getChangeType()),
+                        CountedDocument.decode(entry.getCountedBefore()),
+                        CountedDocument.decode(entry.getCountedAfter())));
+            } catch (RuntimeException e) {
+                log.warn("Could not apply logged change {}: {}", entry.getId(), e.getMessage());
+            }
+        }
+        replay(entry);
+    }
+
+    private void replay(ChangeLogEntry entry) {
+        REPLAYING.set(true);
+        try {
+            eventPublisher.publishEvent(switch (entry.getEntity()) {
+                case DOCUMENT -> new DocumentChangedEvent(entry.getEntityId(),
+                        DocumentChangedEvent.Change.valueOf(entry.getChangeType()));
+                case CATEGORY -> new CategoryChangedEvent(entry.getEntityId());
+                case TAG -> new TagChangedEvent(entry.getEntityId());
+                case LABEL -> new DocumentReclassifiedEvent(entry.getEntityId(), entry.getCategoryId(),
+                        entry.getPreviousCategoryId(), null, entry.getCreatedAt());
+            });
+            replayed.increment();
+        } catch (RuntimeException e) {
+            // The periodic reconciles pick the change up instead
+            log.warn("Could not apply change {} from {}: {}", entry.getId(), entry.getOrigin(), e.getMessage());
+        } finally {
+            REPLAYING.remove();
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.mk.docclassifier.service.text;
+
+// Position of a stored chunk in the text, without its data (byte offsets are null on older chunks)
+public record ChunkSpan(int seq, long charStart, int charCount, Long byteStart, Integer byteCount) {
+}
@@ -0,0 +1,157 @@
+package com.mk.docclassifier.service.text;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Extracted text held as Deflate-compressed UTF-8 chunks plus an uncompressed excerpt of its
+ * start. Built incrementally by a {@link Builder}, so the full text never exists as one String.
+ */
+public final class CompressedText {
+
+    private final List<Chunk> chunks;
+    private final long length;
+    private final long byteLength;
+    private final String excerpt;
+
+    private CompressedText(List<Chunk> chunks, long length, long byteLength, String excerpt) {
+        this.chunks = Collections.unmodifiableList(chunks);
+        this.length = length;
+        this.byteLength = byteLength;
+        this.excerpt = excerpt;
+    }
+
+    public List<Chunk> chunks() {
+        return chunks;
+    }
+
+    // In chars
+    public long length() {
+        return length;
+    }
+
+    // UTF-8 encoded size
+    public long byteLength() {
+        return byteLength;
+    }
+
+    public String excerpt() {
+        return excerpt;
+    }
+
+    public long compressedSize() {
+        return chunks.stream().mapToLong(chunk -> chunk.data.length).sum();
+    }
+
+    public static CompressedText of(CharSequence text, int chunkChars, int excerptChars, int level) {
+        Builder builder = new Builder(chunkChars, excerptChars, level);
+        builder.accept(text);
+        return builder.finish();
+    }
+
+    public static String inflate(byte[] data) {
+        return new String(inflateBytes(data), StandardCharsets.UTF_8);
+    }
+
+    // The chunk's UTF-8 bytes
+    public static byte[] inflateBytes(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated text chunk");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt text chunk", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public record Chunk(long charStart, int charCount, long byteStart, int byteCount, byte[] data) {
+    }
+
+    /**
+     * Accepts text in pieces and compresses a chunk each time {@code chunkChars} have
+     * accumulated. Chunk boundaries never split a surrogate pair.
+     */
+    public static final class Builder implements Consumer<CharSequence> {
+
+        private final int chunkChars;
+        private final int excerptChars;
+        private final Deflater deflater;
+        private final StringBuilder pending;
+        private final StringBuilder excerpt = new StringBuilder();
+        private final List<Chunk> chunks = new ArrayList<>();
+        private final byte[] buffer = new byte[8192];
+        private long length;
+        private long byteLength;
+
+        public Builder(int chunkChars, int excerptChars, int level) {
+            this.chunkChars = Math.max(2, chunkChars);
+            this.excerptChars = Math.max(0, excerptChars);
+            this.deflater = new Deflater(level);
+            this.pending = new StringBuilder(Math.min(this.chunkChars, 1 << 16));
+        }
+
+        @Override
+        public void accept(CharSequence text) {
+            int offset = 0;
+            while (offset < text.length()) {
+                int take = Math.min(text.length() - offset, chunkChars - pending.length());
+                pending.append(text, offset, offset + take);
+                offset += take;
+                if (pending.length() >= chunkChars) {
+                    flushChunk();
+                }
+            }
+        }
+
+        public CompressedText finish() {
+            if (!pending.isEmpty()) {
+                flushChunk(pending.length());
+            }
+            deflater.end();
+            return new CompressedText(chunks, length, byteLength, excerpt.toString());
+        }
+
+        private void flushChunk() {
+            // Keep a dangling high surrogate for the next chunk
+            int end = Character.isHighSurrogate(pending.charAt(pending.length() - 1)) ? pending.length() - 1 : pending.length();
+            flushChunk(end);
+        }
+
+        private void flushChunk(int end) {
+            String text = pending.substring(0, end);
+            if (excerpt.length() < excerptChars) {
+                excerpt.append(text, 0, Math.min(text.length(), excerptChars - excerpt.length()));
+            }
+            byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+            deflater.reset();
+            deflater.setInput(utf8);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, text.length() / 3));
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            chunks.add(new Chunk(length, text.length(), byteLength, utf8.length, out.toByteArray()));
+            length += text.length();
+            byteLength += utf8.length;
+            pending.delete(0, end);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.mk.docclassifier.service.text;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves text left in the legacy documents.ocr_text column into the text store, a batch at a time,
+ * then clears the column. Runs before the classifiers train on startup; a no-op once the column
+ * is empty or gone.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentTextMigration {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DocumentTextStore textStore;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void migrateOnStartup() {
+        try {
+            if (!legacyColumnExists()) {
+                return;
+            }
+            long migrated = 0;
+            List<Map<String, Object>> batch;
+            do {
+                batch = jdbcTemplate.queryForList("SELECT id, ocr_text FROM documents "
+                        + "WHERE ocr_text IS NOT NULL ORDER BY id LIMIT " + BATCH_SIZE);
+                for (Map<String, Object> row : batch) {
+                    Long id = ((Number) row.get("id")).longValue();
+                    CompressedText text = textStore.compress(String.valueOf(row.get("ocr_text")));
+                    transactionTemplate.executeWithoutResult(status -> {
+                        textStore.save(id, text);
+                        jdbcTemplate.update("UPDATE documents SET ocr_text = NULL, text_length = ? WHERE id = ?",
+                                text.length(), id);
+                    });
+                }
+                migrated += batch.size();
+            } while (batch.size() == BATCH_SIZE);
+            if (migrated > 0) {
+                log.info("Moved the text of {} documents to the compressed text store", migrated);
+            }
+        } catch (Exception e) {
+            log.error("Could not migrate legacy document text", e);
+        }
+    }
+
+    private boolean legacyColumnExists() throws SQLException {
+        try (Connection connection = jdbcTemplate.getDataSource().getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            // Identifier case differs between databases (H2 upper, PostgreSQL lower)
+            return hasColumn(metaData, "documents", "ocr_text") || hasColumn(metaData, "DOCUMENTS", "OCR_TEXT");
+        }
+    }
+
+    private static boolean hasColumn(DatabaseMetaData metaData, String table, String column) throws SQLException {
+        try (ResultSet columns = metaData.getColumns(null, null, table, column)) {
+            return columns.next();
+        }
+    }
+}
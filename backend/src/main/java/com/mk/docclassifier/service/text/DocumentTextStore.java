@@ -0,0 +1,167 @@
+package com.mk.docclassifier.service.text;
+
+import com.mk.docclassifier.domain.entity.DocumentText;
+import com.mk.docclassifier.domain.entity.DocumentTextChunk;
+import com.mk.docclassifier.repository.DocumentTextChunkRepository;
+import com.mk.docclassifier.repository.DocumentTextRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Extracted document text, kept out of the documents row: a small header with an uncompressed
+ * excerpt (what classification, training and search use) and the full text as Deflate-compressed
+ * chunks, only read when a caller asks for the text itself. Reads go one chunk per query, so a
+ * slow reader never holds a connection or a transaction open.
+ */
+@Service
+public class DocumentTextStore {
+
+    private final DocumentTextRepository textRepository;
+    private final DocumentTextChunkRepository chunkRepository;
+    private final int chunkChars;
+    private final int excerptChars;
+    private final int compressionLevel;
+
+    public DocumentTextStore(DocumentTextRepository textRepository,
+            DocumentTextChunkRepository chunkRepository,
+            @Value("${app.text.chunk-chars:65536}") int chunkChars,
+            @Value("${app.text.excerpt-chars:32768}") int excerptChars,
+            @Value("${app.text.compression-level:6}") int compressionLevel) {
+        this.textRepository = textRepository;
+        this.chunkRepository = chunkRepository;
+        this.chunkChars = chunkChars;
+        this.excerptChars = excerptChars;
+        this.compressionLevel = compressionLevel;
+    }
+
+    // Sink for extractors: compresses the text as it arrives
+    public CompressedText.Builder newText() {
+        return new CompressedText.Builder(chunkChars, excerptChars, compressionLevel);
+    }
+
+    public CompressedText compress(CharSequence text) {
+        return CompressedText.of(text, chunkChars, excerptChars, compressionLevel);
+    }
+
+    // Replaces any text already stored for the document
+    @Transactional
+    public void save(Long documentId, CompressedText text) {
+        delete(documentId);
+        textRepository.save(DocumentText.builder()
+                .documentId(documentId)
+                .charLength(text.length())
+                .byteLength(text.byteLength())
+                .chunkCount(text.chunks().size())
+                .excerpt(text.excerpt())
+                .build());
+        List<DocumentTextChunk> rows = new ArrayList<>(text.chunks().size());
+        int seq = 0;
+        for (CompressedText.Chunk chunk : text.chunks()) {
+            rows.add(DocumentTextChunk.builder()
+                    .documentId(documentId)
+                    .seq(seq++)
+                    .charStart(chunk.charStart())
+                    .charCount(chunk.charCount())
+                    .byteStart(chunk.byteStart())
+                    .byteCount(chunk.byteCount())
+                    .data(chunk.data())
+                    .build());
+        }
+        chunkRepository.saveAll(rows);
+    }
+
+    // Gives a duplicate upload the text of the document it duplicates, without recompressing it
+    @Transactional
+    public void copy(Long fromDocumentId, Long toDocumentId) {
+        DocumentText source = textRepository.findById(fromDocumentId).orElse(null);
+        delete(toDocumentId);
+        if (source == null) {
+            return;
+        }
+        textRepository.save(DocumentText.builder()
+                .documentId(toDocumentId)
+                .charLength(source.getCharLength())
+                .byteLength(source.getByteLength())
+                .chunkCount(source.getChunkCount())
+                .excerpt(source.getExcerpt())
+                .build());
+        try (Stream<DocumentTextChunk> chunks = chunkRepository.streamByDocumentId(fromDocumentId)) {
+            chunks.forEach(chunk -> chunkRepository.save(DocumentTextChunk.builder()
+                    .documentId(toDocumentId)
+                    .seq(chunk.getSeq())
+                    .charStart(chunk.getCharStart())
+                    .charCount(chunk.getCharCount())
+                    .byteStart(chunk.getByteStart())
+                    .byteCount(chunk.getByteCount())
+                    .data(chunk.getData())
+                    .build()));
+        }
+    }
+
+    public Optional<String> excerpt(Long documentId) {
+        return textRepository.findExcerptByDocumentId(documentId);
+    }
+
+    public Optional<DocumentText> header(Long documentId) {
+        return textRepository.findById(documentId);
+    }
+
+    /**
+     * Writes chars [start, end) of the text, inflating only the chunks that overlap the range.
+     * Offsets are UTF-16 code units, as in Java and JavaScript string indices.
+     */
+    public void writeChars(Long documentId, long start, long end, Writer out) throws IOException {
+        for (ChunkSpan span : chunkRepository.findSpansByDocumentId(documentId)) {
+            if (span.charStart() + span.charCount() <= start) {
+                continue;
+            }
+            if (span.charStart() >= end) {
+                break;
+            }
+            String text = CompressedText.inflate(load(documentId, span));
+            int from = (int) Math.max(0, start - span.charStart());
+            int to = (int) Math.min(text.length(), end - span.charStart());
+            out.write(text, from, to - from);
+        }
+    }
+
+    // Writes bytes [start, end) of the UTF-8 encoded text; needs chunks stored with byte offsets
+    public void writeBytes(Long documentId, long start, long end, OutputStream out) throws IOException {
+        for (ChunkSpan span : chunkRepository.findSpansByDocumentId(documentId)) {
+            if (span.byteStart() == null) {
+                throw new IOException("Text of document " + documentId + " has no byte offsets");
+            }
+            if (span.byteStart() + span.byteCount() <= start) {
+                continue;
+            }
+            if (span.byteStart() >= end) {
+                break;
+            }
+            byte[] bytes = CompressedText.inflateBytes(load(documentId, span));
+            int from = (int) Math.max(0, start - span.byteStart());
+            int to = (int) Math.min(bytes.length, end - span.byteStart());
+            out.write(bytes, from, to - from);
+        }
+    }
+
+    private byte[] load(Long documentId, ChunkSpan span) throws IOException {
+        // The text was replaced or deleted while being read
+        return chunkRepository.findData(documentId, span.seq())
+                .orElseThrow(() -> new IOException("Text chunk " + span.seq() + " of document " + documentId + " is gone"));
+    }
+
+    @Transactional
+    public void delete(Long documentId) {
+        chunkRepository.deleteByDocumentId(documentId);
+        textRepository.deleteByDocumentId(documentId);
+    }
+}
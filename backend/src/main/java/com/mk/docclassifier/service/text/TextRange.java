@@ -0,0 +1,83 @@
+package com.mk.docclassifier.service.text;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * One range of a document's text requested through an HTTP Range header, either in chars
+ * (UTF-16 code units) or in bytes of the UTF-8 text. Bounds are resolved against the text's
+ * length: [start, end) out of total.
+ */
+public record TextRange(String unit, long start, long end, long total) {
+
+    public static final String CHARS = "chars";
+    public static final String BYTES = "bytes";
+
+    /**
+     * Empty when the whole text should be sent instead: no header, a malformed or multi-range
+     * header, or a unit the stored text cannot serve. A range outside the text comes back
+     * unsatisfiable.
+     */
+    public static Optional<TextRange> parse(String header, long charLength, Long byteLength) {
+        if (header == null) {
+            return Optional.empty();
+        }
+        int equals = header.indexOf('=');
+        if (equals < 0 || header.indexOf(',') >= 0) {
+            return Optional.empty();
+        }
+        String unit = header.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+        Long total = switch (unit) {
+            case CHARS -> charLength;
+            case BYTES -> byteLength;
+            default -> null;
+        };
+        if (total == null) {
+            return Optional.empty();
+        }
+        String spec = header.substring(equals + 1).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return Optional.empty();
+        }
+        try {
+            if (dash == 0) {
+                // Suffix range: the last n units
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0 || total == 0) {
+                    return Optional.of(unsatisfiable(unit, total));
+                }
+                return Optional.of(new TextRange(unit, Math.max(0, total - suffix), total, total));
+            }
+            long first = Long.parseLong(spec.substring(0, dash));
+            String lastSpec = spec.substring(dash + 1);
+            long last = lastSpec.isEmpty() ? Long.MAX_VALUE - 1 : Long.parseLong(lastSpec);
+            if (first < 0 || last < first) {
+                return Optional.empty();
+            }
+            if (first >= total) {
+                return Optional.of(unsatisfiable(unit, total));
+            }
+            return Optional.of(new TextRange(unit, first, Math.min(last + 1, total), total));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public boolean satisfiable() {
+        return start < end;
+    }
+
+    public long length() {
+        return end - start;
+    }
+
+    // Value of the Content-Range response header
+    public String contentRange() {
+        return satisfiable() ? unit + " " + start + "-" + (end - 1) + "/" + total : unit + " */" + total;
+    }
+
+    private static TextRange unsatisfiable(String unit, long total) {
+        return new TextRange(unit, total, total, total);
+    }
+}
@@ -0,0 +1,64 @@
+package com.mk.docclassifier.service;
+
+import com.mk.docclassifier.domain.entity.Category;
+import com.mk.docclassifier.domain.entity.Tag;
+import com.mk.docclassifier.dto.Label;
+import com.mk.docclassifier.event.CategoryChangedEvent;
+import com.mk.docclassifier.event.TagChangedEvent;
+import com.mk.docclassifier.repository.CategoryRepository;
+import com.mk.docclassifier.repository.TagRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LabelDictionaryTest {
+
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final TagRepository tagRepository = mock(TagRepository.class);
+    private final LabelDictionary labels = new LabelDictionary(categoryRepository, tagRepository);
+
+    @BeforeEach
+    void setUp() {
+        when(categoryRepository.findAll()).thenReturn(List.of(
+                Category.builder().id(3L).name("Invoice").color("#f00").build()));
+        when(tagRepository.findAll()).thenReturn(List.of(Tag.builder().id(7L).name("urgent").build()));
+    }
+
+    @Test
+    void labelsAreLoadedOnceAndReusedUntilAChange() {
+        assertThat(labels.category(3L)).isEqualTo(new Label(3L, "Invoice", "#f00"));
+        assertThat(labels.tag(7L)).isEqualTo(new Label(7L, "urgent", null));
+        assertThat(labels.category(null)).isNull();
+        // Deleted since the row was read: the id is kept, without a name
+        assertThat(labels.category(99L)).isEqualTo(new Label(99L, null, null));
+
+        verify(categoryRepository, times(1)).findAll();
+        verify(tagRepository, times(1)).findAll();
+    }
+
+    @Test
+    void categoryAndTagChangesDropTheLoadedNames() {
+        assertThat(labels.categoryCount()).isEqualTo(1);
+
+        when(categoryRepository.findAll()).thenReturn(List.of(
+                Category.builder().id(3L).name("Invoices").color("#f00").build(),
+                Category.builder().id(4L).name("Contract").build()));
+        labels.onCategoryChanged(new CategoryChangedEvent(4L));
+        assertThat(labels.category(3L).name()).isEqualTo("Invoices");
+        assertThat(labels.categoryCount()).isEqualTo(2);
+
+        when(tagRepository.findAll()).thenReturn(List.of());
+        labels.onTagChanged(new TagChangedEvent(7L));
+        assertThat(labels.tag(7L)).isEqualTo(new Label(7L, null, null));
+        assertThat(labels.tagCount()).isZero();
+
+        verify(categoryRepository, times(3)).findAll();
+    }
+}
@@ -0,0 +1,69 @@
+package com.mk.docclassifier.service;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.domain.entity.PipelineJob;
+import com.mk.docclassifier.domain.entity.PipelineJobStatus;
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.repository.PipelineJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PipelineJobServiceTest {
+
+    private final PipelineJobRepository jobRepository = mock(PipelineJobRepository.class);
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+    private PipelineJobService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PipelineJobService(jobRepository, documentRepository, publisher);
+        ReflectionTestUtils.setField(service, "instanceId", "here");
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "retryBackoffSeconds", 10L);
+    }
+
+    @Test
+    void exhaustedAttemptsMarkTheDocumentAsError() {
+        PipelineJob job = job(3);
+
+        service.fail(1L, "boom");
+
+        assertThat(job.getStatus()).isEqualTo(PipelineJobStatus.FAILED);
+        verify(documentRepository).markFailed(eq(42L), eq(DocumentStatus.ERROR), eq("boom"), any());
+        verify(publisher).publishEvent(new DocumentChangedEvent(42L, DocumentChangedEvent.Change.METADATA));
+    }
+
+    @Test
+    void attemptsLeftPutTheJobBackWithoutTouchingTheDocument() {
+        PipelineJob job = job(1);
+
+        service.fail(1L, "boom");
+
+        assertThat(job.getStatus()).isEqualTo(PipelineJobStatus.PENDING);
+        assertThat(job.getLastError()).isEqualTo("boom");
+        verify(documentRepository, never()).markFailed(anyLong(), any(), any(), any());
+        verify(publisher, never()).publishEvent(any(Object.class));
+    }
+
+    private PipelineJob job(int attempts) {
+        PipelineJob job = PipelineJob.builder().id(1L).documentId(42L).status(PipelineJobStatus.RUNNING)
+                .attempts(attempts).leaseOwner("here").build();
+        when(jobRepository.findById(1L)).thenReturn(Optional.of(job));
+        return job;
+    }
+}
@@ -0,0 +1,112 @@
+package com.mk.docclassifier.service.classifier;
+
+import com.mk.docclassifier.domain.entity.Category;
+import com.mk.docclassifier.repository.CategoryRepository;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ModelRegistryTest {
+
+    private static final Category INVOICE = Category.builder().id(1L).name("Invoice").description("invoice bill").build();
+    private static final Category CONTRACT = Category.builder().id(2L).name("Contract").description("contract terms").build();
+    private static final String LEASE = "lease agreement signed by both parties";
+
+    @TempDir
+    Path modelDir;
+
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private NaiveBayesClassifier classifier;
+    private ModelRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        when(categoryRepository.findAll()).thenReturn(List.of(INVOICE, CONTRACT));
+        classifier = new NaiveBayesClassifier(documentRepository, categoryRepository, mock(DocumentTextStore.class),
+                mock(PlatformTransactionManager.class), meters, 16, 20000, 0.1f, modelDir.toString(), 100);
+        registry = new ModelRegistry(classifier, meters, modelDir.toString(), 10);
+        registry.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.shutdown();
+        classifier.shutdown();
+    }
+
+    @Test
+    void publishedVersionCanBeSwappedBackInAfterARetrain() throws Exception {
+        String published = trainLeaseAs(2L);
+        String retrained = trainLeaseAs(1L);
+        assertThat(classifier.predict(LEASE).categoryId()).isEqualTo(1L);
+
+        registry.activate(published);
+
+        assertThat(classifier.activeModel().version()).isEqualTo(published);
+        assertThat(classifier.predict(LEASE).categoryId()).isEqualTo(2L);
+        assertThat(registry.status().get("active")).isEqualTo(published);
+        assertThat(registry.versions()).containsExactlyInAnyOrder(published, retrained);
+        assertThatThrownBy(() -> registry.activate("../escape")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> registry.activate("missing")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shadowCandidateScoresServedBatchesWithoutChangingThem() throws Exception {
+        String candidate = trainLeaseAs(2L);
+        trainLeaseAs(1L);
+        registry.startShadow(candidate);
+
+        List<Prediction> served = classifier.classify(List.of(LEASE, "invoice bill for March"));
+
+        assertThat(served).extracting(Prediction::categoryId).containsExactly(1L, 1L);
+        assertThat(await(() -> comparisons("agree") + comparisons("disagree") == 2)).isTrue();
+        assertThat(comparisons("disagree")).isEqualTo(1);
+        assertThat(meters.get("classifier.shadow.latency").tag("model", "candidate").timer().count()).isEqualTo(2);
+        assertThat(registry.status().get("shadow")).isEqualTo(candidate);
+
+        // Promoting the candidate ends the comparison
+        registry.activate(candidate);
+        assertThat(registry.status().get("shadow")).isNull();
+    }
+
+    // Retrains with the lease text labeled as the given category and publishes the result
+    private String trainLeaseAs(long categoryId) throws Exception {
+        when(documentRepository.streamTrainingExamples()).thenAnswer(invocation -> Stream.of(
+                new TrainingExample(categoryId, LEASE, null), new TrainingExample(categoryId, LEASE, null),
+                new TrainingExample(categoryId, LEASE, null)));
+        classifier.train();
+        // Version names carry the publish time in milliseconds
+        Thread.sleep(2);
+        return registry.publishActive();
+    }
+
+    private double comparisons(String result) {
+        return meters.get("classifier.shadow.comparisons").tag("result", result).counter().count();
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < waitUntil) {
+            Thread.sleep(20);
+        }
+        return condition.getAsBoolean();
+    }
+}
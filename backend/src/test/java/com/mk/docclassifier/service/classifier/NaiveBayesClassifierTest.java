@@ -0,0 +1,121 @@
+package com.mk.docclassifier.service.classifier;
+
+import com.mk.docclassifier.domain.entity.Category;
+import com.mk.docclassifier.event.DocumentReclassifiedEvent;
+import com.mk.docclassifier.repository.CategoryRepository;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NaiveBayesClassifierTest {
+
+    private static final Category INVOICE = Category.builder().id(1L).name("Invoice").description("invoice bill").build();
+    private static final Category CONTRACT = Category.builder().id(2L).name("Contract").description("contract terms").build();
+    private static final Category PAYSLIP = Category.builder().id(3L).name("Payslip").description("salary payslip").build();
+
+    @TempDir
+    Path modelDir;
+
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private NaiveBayesClassifier classifier;
+
+    @BeforeEach
+    void setUp() {
+        when(categoryRepository.findAll()).thenReturn(List.of(INVOICE, CONTRACT));
+        when(documentRepository.streamTrainingExamples()).thenReturn(Stream.empty());
+        classifier = new NaiveBayesClassifier(documentRepository, categoryRepository, mock(DocumentTextStore.class),
+                mock(PlatformTransactionManager.class), meters, 16, 20000, 0.1f, modelDir.toString(), 100);
+        classifier.train();
+    }
+
+    @AfterEach
+    void tearDown() {
+        classifier.shutdown();
+    }
+
+    @Test
+    void labelForAnUnseenCategoryRetrainsWithoutHoldingUpOtherUpdates() throws InterruptedException {
+        CountDownLatch retrainReading = new CountDownLatch(1);
+        CountDownLatch releaseRetrain = new CountDownLatch(1);
+        when(categoryRepository.findAll()).thenReturn(List.of(INVOICE, CONTRACT, PAYSLIP));
+        when(documentRepository.streamTrainingExamples()).thenAnswer(invocation -> {
+            retrainReading.countDown();
+            releaseRetrain.await(5, TimeUnit.SECONDS);
+            return Stream.of(new TrainingExample(3L, "monthly salary payslip", null));
+        });
+
+        classifier.onReclassified(new DocumentReclassifiedEvent(10L, 3L, null, "monthly salary payslip",
+                null));
+        assertThat(retrainReading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The retrain is stuck reading the database; a correction for a known category still goes through
+        classifier.onReclassified(new DocumentReclassifiedEvent(11L, 2L, null, "lease agreement", null));
+        assertThat(await(() -> applied() == 1)).isTrue();
+        assertThat(classifier.activeModel().indexOf(3L)).isNegative();
+
+        releaseRetrain.countDown();
+        assertThat(await(() -> classifier.activeModel().indexOf(3L) >= 0)).isTrue();
+        assertThat(classifier.predict("salary payslip for March").categoryId()).isEqualTo(3L);
+    }
+
+    @Test
+    void correctionsDuringARetrainAreCarriedOverOnceAndDeletedLabelsForgotten() throws Exception {
+        LocalDateTime read = LocalDateTime.of(2024, 3, 1, 9, 0);
+        CountDownLatch retrainReading = new CountDownLatch(1);
+        CountDownLatch releaseRetrain = new CountDownLatch(1);
+        when(documentRepository.streamTrainingExamples()).thenAnswer(invocation -> {
+            retrainReading.countDown();
+            releaseRetrain.await(5, TimeUnit.SECONDS);
+            return Stream.of(new TrainingExample(1L, "invoice bill for March", read));
+        });
+        NaiveBayesModel before = classifier.activeModel();
+        Thread retrain = Thread.ofPlatform().start(classifier::train);
+        assertThat(retrainReading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The first correction is in what the retrain reads, the second was labeled after it
+        classifier.onReclassified(new DocumentReclassifiedEvent(20L, 1L, null, "invoice bill for March", read));
+        classifier.onReclassified(new DocumentReclassifiedEvent(21L, 2L, null, "lease agreement",
+                read.plusMinutes(1)));
+        assertThat(await(() -> applied() == 2)).isTrue();
+        releaseRetrain.countDown();
+        retrain.join(TimeUnit.SECONDS.toMillis(5));
+
+        // Two category descriptions, the example read and the later correction
+        assertThat(classifier.activeModel()).isNotSameAs(before);
+        assertThat(classifier.activeModel().documentCount()).isEqualTo(4);
+
+        classifier.onReclassified(new DocumentReclassifiedEvent(21L, null, 2L, "lease agreement", LocalDateTime.now()));
+        assertThat(await(() -> classifier.activeModel().documentCount() == 3)).isTrue();
+    }
+
+    private double applied() {
+        return meters.get("classifier.updates").tag("result", "applied").counter().count();
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < waitUntil) {
+            Thread.sleep(20);
+        }
+        return condition.getAsBoolean();
+    }
+}
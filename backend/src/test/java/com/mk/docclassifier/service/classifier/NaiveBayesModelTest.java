@@ -0,0 +1,125 @@
+package com.mk.docclassifier.service.classifier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class NaiveBayesModelTest {
+
+    private static final int[] INVOICE = {1, 2, 3, 3};
+    private static final int[] CONTRACT = {4, 5, 6};
+
+    @Test
+    void forgetUndoesLearn() {
+        NaiveBayesModel model = trained();
+        double[] before = scores(model, INVOICE);
+
+        model.learn(1, INVOICE, INVOICE.length);
+        model.forget(1, INVOICE, INVOICE.length);
+
+        assertThat(model.documentCount()).isEqualTo(2);
+        double[] after = scores(model, INVOICE);
+        assertThat(after[0]).isCloseTo(before[0], within(1e-4));
+        assertThat(after[1]).isCloseTo(before[1], within(1e-4));
+    }
+
+    @Test
+    void relabelingMovesTheExampleInsteadOfCountingItTwice() {
+        NaiveBayesModel model = trained();
+
+        // The invoice text was filed under the second category by hand, then corrected back
+        model.learn(1, INVOICE, INVOICE.length);
+        model.forget(1, INVOICE, INVOICE.length);
+        model.learn(0, INVOICE, INVOICE.length);
+
+        assertThat(model.documentCount()).isEqualTo(3);
+        assertThat(model.score(INVOICE, INVOICE.length, new double[2])).isEqualTo(0);
+    }
+
+    @Test
+    void forgetNeverDropsBelowTheSmoothingFloor() {
+        NaiveBayesModel model = trained();
+
+        model.forget(1, INVOICE, INVOICE.length);
+        model.forget(1, INVOICE, INVOICE.length);
+
+        assertThat(model.documentCount()).isZero();
+        double[] scores = scores(model, INVOICE);
+        assertThat(scores[1]).isFinite();
+    }
+
+    @Test
+    void copyIsUnaffectedByLaterUpdates() {
+        NaiveBayesModel model = trained();
+        NaiveBayesModel copy = model.copy("published");
+        double[] before = scores(copy, CONTRACT);
+
+        model.learn(0, CONTRACT, CONTRACT.length);
+
+        assertThat(copy.version()).isEqualTo("published");
+        assertThat(copy.documentCount()).isEqualTo(2);
+        assertThat(scores(copy, CONTRACT)).containsExactly(before, within(0.0));
+    }
+
+    @Test
+    void saveNewNeverOverwritesAVersion(@TempDir Path dir) throws IOException {
+        Path target = dir.resolve("v1.bin");
+        trained().saveNew(target);
+        long size = Files.size(target);
+
+        NaiveBayesModel other = new NaiveBayesModel("other", new long[] {10, 20, 30}, 8, 0.1f).seal();
+        assertThatThrownBy(() -> other.saveNew(target)).isInstanceOf(FileAlreadyExistsException.class);
+
+        assertThat(Files.size(target)).isEqualTo(size);
+        assertThat(NaiveBayesModel.load(target).version()).isEqualTo("test");
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).containsExactly(target);
+        }
+    }
+
+    @Test
+    void longInDomainTextIsConfidentAndOutOfDomainTextIsNot() {
+        NaiveBayesModel model = trained();
+        int[] invoice = repeat(INVOICE, 50);
+        // Features neither category was trained on, as in a long unrelated document
+        int[] unrelated = repeat(new int[] {0, 7}, 100);
+
+        double[] scores = new double[2];
+        int best = model.score(invoice, invoice.length, scores);
+        assertThat(best).isZero();
+        assertThat(model.confidence(scores, best, invoice.length)).isGreaterThan(0.9);
+
+        best = model.score(unrelated, unrelated.length, scores);
+        assertThat(model.confidence(scores, best, unrelated.length)).isLessThan(0.6);
+    }
+
+    private static int[] repeat(int[] features, int times) {
+        int[] repeated = new int[features.length * times];
+        for (int i = 0; i < times; i++) {
+            System.arraycopy(features, 0, repeated, i * features.length, features.length);
+        }
+        return repeated;
+    }
+
+    private static NaiveBayesModel trained() {
+        NaiveBayesModel model = new NaiveBayesModel("test", new long[] {10, 20}, 8, 0.1f);
+        model.add(0, INVOICE, INVOICE.length);
+        model.add(1, CONTRACT, CONTRACT.length);
+        return model.seal();
+    }
+
+    private static double[] scores(NaiveBayesModel model, int[] features) {
+        double[] scores = new double[model.categoryCount()];
+        model.score(features, features.length, scores);
+        return scores;
+    }
+}
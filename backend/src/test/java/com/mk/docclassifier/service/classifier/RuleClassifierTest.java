@@ -0,0 +1,71 @@
+package com.mk.docclassifier.service.classifier;
+
+import com.mk.docclassifier.domain.entity.Category;
+import com.mk.docclassifier.repository.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RuleClassifierTest {
+
+    @Test
+    void backtrackingPatternIsAbandonedAndKeywordsStillCount() {
+        Category invoices = Category.builder().id(1L).name("Invoices").keywords("invoice").build();
+        Category evil = Category.builder().id(2L).name("Evil").patterns("(a+)+$").build();
+        RuleClassifier classifier = classifier(List.of(invoices, evil));
+
+        String text = "invoice " + "a".repeat(40) + "!";
+        long started = System.nanoTime();
+        Prediction prediction = classifier.classify(List.of(text)).get(0);
+
+        assertThat((System.nanoTime() - started) / 1_000_000).isLessThan(2_000);
+        assertThat(prediction).isNotNull();
+        assertThat(prediction.categoryId()).isEqualTo(1L);
+    }
+
+    @Test
+    void patternsMatchWithinTheBudget() {
+        Category contracts = Category.builder().id(3L).name("Contracts").patterns("agreement\\s+no\\.\\s*\\d+").build();
+        RuleClassifier classifier = classifier(List.of(contracts));
+
+        Prediction prediction = classifier.classify(List.of("Service Agreement No. 42")).get(0);
+
+        assertThat(prediction).isNotNull();
+        assertThat(prediction.categoryId()).isEqualTo(3L);
+    }
+
+    @Test
+    void multiWordKeywordsMatchAcrossLineBreaksAndRepeatedSpaces() {
+        KeywordAutomaton automaton = KeywordAutomaton.build(
+                List.of(KeywordAutomaton.normalize("Invoice  Number"), KeywordAutomaton.normalize("total")),
+                new int[] {0, 1});
+        int[] hits = new int[2];
+
+        int total = automaton.count("Ref: INVOICE\n  number 42\tinvoice\t\tnumber 43, subtotal 10", hits);
+
+        assertThat(total).isEqualTo(2);
+        assertThat(hits).containsExactly(2, 0);
+    }
+
+    @Test
+    void overlongPatternsAreRejected() {
+        assertThatThrownBy(() -> RuleClassifier.validatePatterns(List.of("a".repeat(501))))
+                .isInstanceOf(PatternSyntaxException.class);
+    }
+
+    private static RuleClassifier classifier(List<Category> categories) {
+        CategoryRepository repository = mock(CategoryRepository.class);
+        when(repository.findAll()).thenReturn(categories);
+        RuleClassifier classifier = new RuleClassifier(repository);
+        ReflectionTestUtils.setField(classifier, "patternTimeoutMs", 50L);
+        classifier.rebuild();
+        return classifier;
+    }
+}
@@ -0,0 +1,71 @@
+package com.mk.docclassifier.service.extraction.preprocess;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ImagePreprocessorTest {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final double SKEW_DEGREES = 1.5;
+
+    private final ImagePreprocessor preprocessor = new ImagePreprocessor(true, true, 5, 64);
+
+    @Test
+    void skewedScanComesOutStraightBinaryAndWithoutSpecks() {
+        BufferedImage scan = scan();
+
+        ImagePreprocessor.Page page = preprocessor.process(scan, preprocessor.scalarKernels(), null);
+        BufferedImage prepared = preprocessor.prepare(scan);
+
+        assertThat(page.skewDegrees()).isCloseTo(SKEW_DEGREES, within(0.3));
+        assertThat(prepared.getType()).isEqualTo(BufferedImage.TYPE_BYTE_GRAY);
+        byte[] gray = ((DataBufferByte) prepared.getRaster().getDataBuffer()).getData();
+        for (byte value : gray) {
+            assertThat(value).isIn((byte) 0, (byte) 0xFF);
+        }
+        // The dark speck in the empty top margin is gone
+        assertThat(gray[20 * WIDTH + 20]).isEqualTo((byte) 0xFF);
+    }
+
+    @Test
+    void vectorKernelsMatchTheScalarOnes() {
+        PixelKernels vector = preprocessor.vectorKernels();
+        assumeTrue(vector != null, "jdk.incubator.vector is not available");
+        BufferedImage scan = scan();
+
+        ImagePreprocessor.Page scalarPage = preprocessor.process(scan, preprocessor.scalarKernels(), null);
+        ImagePreprocessor.Page vectorPage = preprocessor.process(scan, vector, null);
+
+        assertThat(vectorPage.threshold()).isEqualTo(scalarPage.threshold());
+        assertThat(vectorPage.skewDegrees()).isEqualTo(scalarPage.skewDegrees());
+        assertThat(vectorPage.ink()).isEqualTo(scalarPage.ink());
+    }
+
+    // Dark bars standing in for text lines, rotated like a page fed in at an angle, plus a speck
+    private static BufferedImage scan() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(new Color(245, 242, 235));
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+            g.rotate(Math.toRadians(SKEW_DEGREES), WIDTH / 2.0, HEIGHT / 2.0);
+            g.setColor(new Color(30, 30, 40));
+            for (int y = 100; y < HEIGHT - 100; y += 40) {
+                g.fillRect(100, y, WIDTH - 200, 12);
+            }
+        } finally {
+            g.dispose();
+        }
+        image.setRGB(20, 20, 0x202020);
+        return image;
+    }
+}
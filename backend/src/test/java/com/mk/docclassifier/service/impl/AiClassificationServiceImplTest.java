@@ -0,0 +1,120 @@
+package com.mk.docclassifier.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mk.docclassifier.dto.Label;
+import com.mk.docclassifier.service.LabelDictionary;
+import com.mk.docclassifier.service.ai.AiStubServer;
+import com.mk.docclassifier.service.classifier.Prediction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AiClassificationServiceImplTest {
+
+    private static final long DEADLINE_MS = 300;
+    private static final List<String> TEXTS = List.of("an invoice for March");
+
+    private AiStubServer stub;
+    private SimpleMeterRegistry meters;
+    private AiClassificationServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = new AiStubServer(new ObjectMapper(), 0, 0, 0);
+        stub.start();
+        LabelDictionary labels = mock(LabelDictionary.class);
+        when(labels.categories()).thenReturn(List.of(new Label(7L, "Invoice", null)));
+        meters = new SimpleMeterRegistry();
+        service = new AiClassificationServiceImpl(labels, new ObjectMapper(), meters,
+                "http://127.0.0.1:" + stub.port() + "/classify", 16, 8000, 4, DEADLINE_MS, 2, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.stop();
+    }
+
+    @Test
+    void answersFromTheBackend() {
+        Prediction prediction = service.classify(TEXTS).get(0);
+
+        assertThat(prediction).isNotNull();
+        assertThat(prediction.categoryId()).isEqualTo(7L);
+        assertThat(calls("success")).isEqualTo(1);
+    }
+
+    @Test
+    void circuitOpensAfterRepeatedFailuresAndClosesAfterAGoodTrial() throws InterruptedException {
+        stub.setFailureRate(1);
+        assertThat(service.classify(TEXTS).get(0)).isNull();
+        assertThat(service.classify(TEXTS).get(0)).isNull();
+        // A call that outlives the deadline is only counted once the exchange is aborted
+        awaitCalls("failure", 2);
+        assertThat(circuitOpen()).isEqualTo(1);
+
+        // Open: the backend is not called at all
+        assertThat(service.classify(TEXTS).get(0)).isNull();
+        assertThat(calls("short_circuited")).isEqualTo(1);
+        assertThat(calls("failure")).isEqualTo(2);
+
+        // Half-open after the cooldown: one failing trial re-opens the circuit
+        Thread.sleep(1_100);
+        assertThat(service.classify(TEXTS).get(0)).isNull();
+        awaitCalls("failure", 3);
+        assertThat(calls("failure")).isEqualTo(3);
+        assertThat(service.classify(TEXTS).get(0)).isNull();
+        assertThat(calls("short_circuited")).isEqualTo(2);
+
+        // A successful trial closes it again
+        stub.setFailureRate(0);
+        Thread.sleep(1_100);
+        assertThat(service.classify(TEXTS).get(0)).isNotNull();
+        assertThat(circuitOpen()).isZero();
+        assertThat(service.classify(TEXTS).get(0)).isNotNull();
+        assertThat(calls("success")).isEqualTo(2);
+    }
+
+    @Test
+    void slowBackendIsAbandonedAtTheDeadlineAndReleasesItsPermit() throws InterruptedException {
+        stub.setLatencyMs(5_000);
+
+        long started = System.nanoTime();
+        assertThat(service.classify(TEXTS).get(0)).isNull();
+        assertThat((System.nanoTime() - started) / 1_000_000).isLessThan(DEADLINE_MS + 1_000);
+
+        // The request is aborted at the deadline, not when the backend finally answers
+        long waitUntil = System.nanoTime() + 2_000_000_000L;
+        while (inFlight() > 0 && System.nanoTime() < waitUntil) {
+            Thread.sleep(20);
+        }
+        assertThat(inFlight()).isZero();
+        assertThat(calls("failure")).isEqualTo(1);
+    }
+
+    private void awaitCalls(String outcome, double expected) throws InterruptedException {
+        long waitUntil = System.nanoTime() + 2_000_000_000L;
+        while (calls(outcome) < expected && System.nanoTime() < waitUntil) {
+            Thread.sleep(20);
+        }
+    }
+
+    private double calls(String outcome) {
+        return meters.get("ai.client.calls").tag("outcome", outcome).counter().count();
+    }
+
+    private double circuitOpen() {
+        return meters.get("ai.client.circuit.open").gauge().value();
+    }
+
+    private double inFlight() {
+        return meters.get("ai.client.in_flight").gauge().value();
+    }
+}
@@ -0,0 +1,116 @@
+package com.mk.docclassifier.service.impl;
+
+import com.mk.docclassifier.domain.entity.Category;
+import com.mk.docclassifier.domain.entity.Document;
+import com.mk.docclassifier.repository.CategoryRepository;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.classifier.ClassifierTier;
+import com.mk.docclassifier.service.classifier.NaiveBayesClassifier;
+import com.mk.docclassifier.service.classifier.Prediction;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClassificationServiceImplTest {
+
+    private static final Category INVOICE = Category.builder().id(1L).name("Invoice")
+            .description("invoice bill payment amount due").build();
+    private static final Category CONTRACT = Category.builder().id(2L).name("Contract")
+            .description("contract agreement between the parties with signed terms and conditions").build();
+
+    @TempDir
+    Path modelDir;
+
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final RecordingTier remote = new RecordingTier(new Prediction(2L, 0.95));
+    private NaiveBayesClassifier naiveBayes;
+    private ClassificationServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        when(categoryRepository.findAll()).thenReturn(List.of(INVOICE, CONTRACT));
+        when(categoryRepository.findAllById(any())).thenReturn(List.of(INVOICE, CONTRACT));
+        DocumentRepository documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.streamTrainingExamples()).thenReturn(Stream.empty());
+
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        // Trained on category names and descriptions only, as on a fresh install
+        naiveBayes = new NaiveBayesClassifier(documentRepository, categoryRepository, mock(DocumentTextStore.class),
+                mock(PlatformTransactionManager.class), meters, 16, 20000, 0.1f, modelDir.toString(), 100);
+        naiveBayes.train();
+        service = new ClassificationServiceImpl(categoryRepository, List.of(naiveBayes, remote),
+                new MockEnvironment(), meters, 0.7);
+    }
+
+    @AfterEach
+    void tearDown() {
+        naiveBayes.shutdown();
+    }
+
+    @Test
+    void unsureNaiveBayesAnswerEscalatesToTheNextTier() {
+        String weather = String.join(" ", Collections.nCopies(40,
+                "the coastal weather report expects strong winds and rain over the northern hills"));
+        Document document = document(weather);
+
+        service.classify(document);
+
+        assertThat(remote.seen).containsExactly(weather);
+        assertThat(document.getCategory()).isEqualTo(CONTRACT);
+        assertThat(document.getConfidence()).isEqualTo(0.95);
+    }
+
+    @Test
+    void confidentNaiveBayesAnswerStopsTheCascade() {
+        Document invoice = document("invoice payment amount due on the bill");
+        Document unrelated = document("minutes of the gardening club meeting about spring planting schedules");
+
+        service.classifyBatch(List.of(invoice, unrelated));
+
+        assertThat(invoice.getCategory()).isEqualTo(INVOICE);
+        assertThat(invoice.getConfidence()).isGreaterThanOrEqualTo(0.7);
+        assertThat(remote.seen).containsExactly(unrelated.getTextExcerpt());
+    }
+
+    private static Document document(String text) {
+        Document document = new Document();
+        document.setTextExcerpt(text);
+        return document;
+    }
+
+    private static final class RecordingTier implements ClassifierTier {
+        private final Prediction answer;
+        private final List<String> seen = new ArrayList<>();
+
+        private RecordingTier(Prediction answer) {
+            this.answer = answer;
+        }
+
+        @Override
+        public String name() {
+            return "remote-ai";
+        }
+
+        @Override
+        public List<Prediction> classify(List<String> texts) {
+            seen.addAll(texts);
+            return Collections.nCopies(texts.size(), answer);
+        }
+    }
+}
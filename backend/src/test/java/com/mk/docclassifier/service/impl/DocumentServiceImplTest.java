@@ -0,0 +1,184 @@
+package com.mk.docclassifier.service.impl;
+
+import com.mk.docclassifier.domain.entity.Document;
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.domain.entity.Role;
+import com.mk.docclassifier.domain.entity.User;
+import com.mk.docclassifier.dto.CursorPage;
+import com.mk.docclassifier.dto.DocumentSummary;
+import com.mk.docclassifier.dto.Label;
+import com.mk.docclassifier.repository.CategoryRepository;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.repository.TagRepository;
+import com.mk.docclassifier.repository.UserRepository;
+import com.mk.docclassifier.service.LabelDictionary;
+import com.mk.docclassifier.service.PageCursor;
+import com.mk.docclassifier.service.PipelineJobService;
+import com.mk.docclassifier.service.StorageService;
+import com.mk.docclassifier.service.StoredFile;
+import com.mk.docclassifier.service.search.DocIdBitmap;
+import com.mk.docclassifier.service.search.DocumentFilterIndex;
+import com.mk.docclassifier.service.search.DocumentSearchIndex;
+import com.mk.docclassifier.service.search.DocumentTagLink;
+import com.mk.docclassifier.service.search.SearchHit;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentServiceImplTest {
+
+    private static final User ADMIN = User.builder().id(1L).role(Role.ADMIN).build();
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final StorageService storageService = mock(StorageService.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final DocumentSearchIndex searchIndex = mock(DocumentSearchIndex.class);
+    private final DocumentFilterIndex filterIndex = mock(DocumentFilterIndex.class);
+    private final LabelDictionary labels = mock(LabelDictionary.class);
+    private DocumentServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new DocumentServiceImpl(documentRepository, storageService, userRepository,
+                mock(PipelineJobService.class), mock(CategoryRepository.class), mock(TagRepository.class),
+                mock(ApplicationEventPublisher.class), mock(DocumentTextStore.class), searchIndex, filterIndex,
+                labels);
+        when(documentRepository.findSummaries(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(DocumentServiceImplTest::summary).toList();
+        });
+    }
+
+    @Test
+    void rankedSlicesResumeAfterTheCursorAcrossTiedScores() {
+        // Relevance order: score descending, ties by id ascending
+        List<SearchHit> ranked = List.of(new SearchHit(7, 3f), new SearchHit(2, 2f), new SearchHit(5, 2f),
+                new SearchHit(9, 2f), new SearchHit(4, 1f));
+        search(ranked);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<DocumentSummary> page = slice(cursor, 2);
+            page.getContent().forEach(document -> seen.add(document.id()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).containsExactly(7L, 2L, 5L, 9L, 4L);
+        // A hit that dropped out since the cursor was issued does not break the seek
+        assertThat(slice(PageCursor.afterHit(2.5f, 1).encode(), 10).getContent())
+                .extracting(DocumentSummary::id).containsExactly(2L, 5L, 9L, 4L);
+    }
+
+    @Test
+    void cursorFromTheOtherOrderingIsRejectedBeforeFacetsAreCounted() {
+        search(List.of(new SearchHit(7, 3f)));
+        String listingCursor = PageCursor.after(summary(7L)).encode();
+
+        assertThatThrownBy(() -> service.searchDocumentSlice("invoice", null, null, null, null, null, true,
+                listingCursor, 10, ADMIN)).isInstanceOf(IllegalArgumentException.class);
+        verify(filterIndex, never()).facets(any());
+    }
+
+    @Test
+    void fallbackSearchReturnsLabeledSummariesAndReportsItsNarrowerScope() {
+        when(filterIndex.match(any())).thenReturn(DocIdBitmap.of(4, 9, 11));
+        when(searchIndex.search(anyString(), any())).thenReturn(Optional.empty());
+        when(documentRepository.findIdsMatching("the", null)).thenReturn(List.of(4L, 9L));
+        when(documentRepository.findSummaries(anyCollection())).thenReturn(List.of(
+                new DocumentSummary(4L, "a.pdf", "application/pdf", 10, DocumentStatus.PROCESSED, 2L, 0.9, null,
+                        LocalDateTime.of(2024, 1, 1, 0, 0), null),
+                new DocumentSummary(9L, "b.pdf", "application/pdf", 10, DocumentStatus.PROCESSED, null, null, null,
+                        LocalDateTime.of(2024, 1, 2, 0, 0), null)));
+        when(documentRepository.findTagLinks(anyCollection())).thenReturn(List.of(new DocumentTagLink(4L, 7L)));
+        when(labels.category(2L)).thenReturn(new Label(2L, "Invoice", "#f00"));
+        when(labels.tag(7L)).thenReturn(new Label(7L, "urgent", null));
+
+        CursorPage<DocumentSummary> page = service.searchDocumentSlice("the", null, null, null, null, null, false, null,
+                10, ADMIN);
+
+        assertThat(service.isFullTextQuery("the")).isFalse();
+        assertThat(page.getContent()).extracting(DocumentSummary::id).containsExactly(9L, 4L);
+        DocumentSummary labeled = page.getContent().get(1);
+        assertThat(labeled.category()).isEqualTo(new Label(2L, "Invoice", "#f00"));
+        assertThat(labeled.tags()).containsExactly(new Label(7L, "urgent", null));
+        assertThat(page.getContent().get(0).category()).isNull();
+    }
+
+    @Test
+    void blobIsKeptOnlyWhileADocumentWithTheSameNameUsesIt() throws IOException {
+        Document pdf = Document.builder().id(1L).filename("abc.pdf").contentHash("abc").build();
+        Document png = Document.builder().id(2L).filename("abc.png").contentHash("abc").build();
+        Document copy = Document.builder().id(3L).filename("abc.pdf").contentHash("abc").build();
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(pdf));
+
+        when(documentRepository.lockByContentHash("abc")).thenReturn(List.of(pdf, png, copy));
+        service.deleteDocument(1L, ADMIN);
+        verify(storageService, never()).delete(anyString());
+
+        // Same bytes uploaded under another extension live in another blob
+        when(documentRepository.lockByContentHash("abc")).thenReturn(List.of(pdf, png));
+        service.deleteDocument(1L, ADMIN);
+        verify(storageService).delete("abc.pdf");
+    }
+
+    @Test
+    void rolledBackUploadDeletesTheBlobItCreated() throws IOException {
+        StoredFile stored = StoredFile.builder().filename("abc.pdf").contentHash("abc").size(3).build();
+        when(storageService.stage(any())).thenReturn(stored);
+        when(storageService.publish(stored)).thenReturn(true);
+        when(storageService.load(anyString())).thenReturn(Path.of("abc.pdf"));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(ADMIN));
+        when(documentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.uploadDocument(new MockMultipartFile("file", "scan.pdf", "application/pdf", new byte[3]), 1L);
+            verify(storageService, never()).delete(anyString());
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(storageService).delete("abc.pdf");
+    }
+
+    private void search(List<SearchHit> ranked) {
+        DocIdBitmap all = new DocIdBitmap();
+        ranked.forEach(hit -> all.add(hit.documentId()));
+        when(filterIndex.match(any())).thenReturn(all);
+        when(searchIndex.search(anyString(), any())).thenReturn(Optional.of(ranked));
+    }
+
+    private CursorPage<DocumentSummary> slice(String cursor, int size) {
+        return service.searchDocumentSlice("invoice", null, null, null, null, null, false, cursor, size, ADMIN);
+    }
+
+    private static DocumentSummary summary(Long id) {
+        return new DocumentSummary(id, "doc-" + id + ".pdf", "application/pdf", 100, DocumentStatus.PROCESSED,
+                (Long) null, null, null, LocalDateTime.of(2024, 1, 1, 0, 0), null);
+    }
+}
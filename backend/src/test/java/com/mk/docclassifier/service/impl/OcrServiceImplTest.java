@@ -0,0 +1,188 @@
+package com.mk.docclassifier.service.impl;
+
+import com.mk.docclassifier.service.extraction.DocxTextExtractor;
+import com.mk.docclassifier.service.extraction.ImageOcrEngine;
+import com.mk.docclassifier.service.extraction.ImageTextExtractor;
+import com.mk.docclassifier.service.extraction.PdfTextExtractor;
+import com.mk.docclassifier.service.extraction.PlainTextExtractor;
+import com.mk.docclassifier.service.extraction.UnreadableContentException;
+import com.mk.docclassifier.service.extraction.preprocess.ImagePreprocessor;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OcrServiceImplTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final ImagePreprocessor preprocessor = new ImagePreprocessor(false, false, 5, 64);
+    private PdfTextExtractor pdf;
+
+    @AfterEach
+    void tearDown() {
+        if (pdf != null) {
+            pdf.shutdown();
+        }
+    }
+
+    @Test
+    void pdfTextLayerIsExtractedInPageOrderAcrossChunks() throws IOException {
+        OcrServiceImpl service = service(null);
+        byte[] file = pdf("first page", "second page", "third page");
+
+        String text = extract(service, file);
+
+        assertThat(text).containsSubsequence("first page", "second page", "third page");
+    }
+
+    @Test
+    void docxBodyTextIsExtracted() throws IOException {
+        String text = extract(service(null), docx("<w:p><w:r><w:t>Invoice</w:t></w:r><w:r><w:t> 42</w:t></w:r></w:p>"));
+
+        assertThat(text).contains("Invoice 42");
+    }
+
+    @Test
+    void plainTextIsDecoded() throws IOException {
+        assertThat(extract(service(null), "Facture n° 12".getBytes(StandardCharsets.UTF_8))).isEqualTo("Facture n° 12");
+    }
+
+    @Test
+    void imageWithoutAnEngineIsUnreadable() {
+        assertThatThrownBy(() -> extract(service(null), png())).isInstanceOf(UnreadableContentException.class)
+                .hasMessageContaining("OCR engine");
+    }
+
+    @Test
+    void imageGoesThroughTheEngine() throws IOException {
+        ImageOcrEngine engine = (image, out) -> out.write("scanned " + image.getWidth() + "x" + image.getHeight());
+
+        assertThat(extract(service(engine), png())).isEqualTo("scanned 40x20");
+    }
+
+    @Test
+    void streamedChannelIsSpooledForRandomAccess() throws IOException {
+        StringBuilder text = new StringBuilder();
+        byte[] file = pdf("first page", "second page");
+
+        service(null).extractText(Channels.newChannel(new ByteArrayInputStream(file)), text::append);
+
+        assertThat(text).containsSubsequence("first page", "second page");
+    }
+
+    @Test
+    void fileChannelIsReadFromItsCurrentPosition() throws IOException {
+        Path file = tempDir.resolve("framed.bin");
+        Files.write(file, "\0\0\0\0Facture n° 12".getBytes(StandardCharsets.UTF_8));
+        StringBuilder text = new StringBuilder();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(4);
+            service(null).extractText(channel, text::append);
+        }
+
+        assertThat(text).hasToString("Facture n° 12");
+    }
+
+    @Test
+    void longTextReachesTheSinkInPieces() throws IOException {
+        String body = "invoice line\n".repeat(2000);
+        List<CharSequence> pieces = new ArrayList<>();
+
+        service(null).extractText(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)), pieces::add);
+
+        assertThat(pieces).hasSizeGreaterThan(1);
+        assertThat(String.join("", pieces)).isEqualTo(body);
+    }
+
+    @Test
+    void unsupportedOrCorruptFilesAreUnreadable() {
+        OcrServiceImpl service = service(null);
+
+        assertThatThrownBy(() -> extract(service, new byte[] {0, 1, 2, 0, 3}))
+                .isInstanceOf(UnreadableContentException.class);
+        assertThatThrownBy(() -> extract(service, "%PDF-1.7 truncated".getBytes(StandardCharsets.US_ASCII)))
+                .isInstanceOf(UnreadableContentException.class);
+    }
+
+    private OcrServiceImpl service(ImageOcrEngine engine) {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<ImageOcrEngine> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(engine);
+        // One page per task, so a three-page file exercises the parallel path
+        pdf = new PdfTextExtractor(provider, preprocessor, 1, 2, 150);
+        return new OcrServiceImpl(List.of(pdf, new DocxTextExtractor(), new ImageTextExtractor(provider, preprocessor),
+                new PlainTextExtractor()));
+    }
+
+    private static String extract(OcrServiceImpl service, byte[] file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        service.extractText(ByteBuffer.wrap(file), text::append);
+        return text.toString();
+    }
+
+    private static byte[] pdf(String... pages) throws IOException {
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            for (String line : pages) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText(line);
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] docx(String paragraphs) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("[Content_Types].xml"));
+            zip.write("<Types/>".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            zip.write(("<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\">"
+                    + "<w:body>" + paragraphs + "</w:body></w:document>").getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] png() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,192 @@
+package com.mk.docclassifier.service.impl;
+
+import com.mk.docclassifier.domain.entity.Document;
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.repository.AuditLogRepository;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.ClassificationService;
+import com.mk.docclassifier.service.OcrService;
+import com.mk.docclassifier.service.SseService;
+import com.mk.docclassifier.service.StorageService;
+import com.mk.docclassifier.service.extraction.UnreadableContentException;
+import com.mk.docclassifier.service.text.CompressedText;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PipelineServiceImplTest {
+
+    @TempDir
+    Path storage;
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final OcrService ocrService = mock(OcrService.class);
+    private final ClassificationService classificationService = mock(ClassificationService.class);
+    private final AuditLogRepository auditLogRepository = mock(AuditLogRepository.class);
+    private final AtomicInteger openTransactions = new AtomicInteger();
+    private PipelineServiceImpl pipeline;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path file = Files.writeString(storage.resolve("blob.txt"), "content");
+        StorageService storageService = mock(StorageService.class);
+        when(storageService.load(anyString())).thenReturn(file);
+        DocumentTextStore textStore = mock(DocumentTextStore.class);
+        when(textStore.newText()).thenAnswer(invocation -> new CompressedText.Builder(1024, 256, 1));
+        when(documentRepository.findWithUserById(anyLong())).thenAnswer(invocation -> Optional.of(
+                Document.builder().id(invocation.getArgument(0)).filename("blob.txt").build()));
+        when(documentRepository.markProcessed(anyLong(), any(), any(), any(), any(), any(), any())).thenReturn(1);
+        doAnswer(invocation -> {
+            Consumer<CharSequence> sink = invocation.getArgument(1);
+            sink.accept("an invoice for March");
+            return null;
+        }).when(ocrService).extractText(any(ReadableByteChannel.class), any());
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            openTransactions.incrementAndGet();
+            return mock(TransactionStatus.class);
+        });
+        doAnswer(invocation -> openTransactions.decrementAndGet()).when(transactionManager).commit(any());
+        doAnswer(invocation -> openTransactions.decrementAndGet()).when(transactionManager).rollback(any());
+
+        pipeline = new PipelineServiceImpl(documentRepository, storageService, ocrService, textStore,
+                classificationService, auditLogRepository, mock(SseService.class),
+                new TransactionTemplate(transactionManager), mock(ApplicationEventPublisher.class),
+                new SyncTaskExecutor(), new SyncTaskExecutor(), new SimpleMeterRegistry(),
+                1, 10, 2, 200, 1000, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    void processedDocumentCompletesTheRun() throws Exception {
+        pipeline.processDocument(1L).get(5, TimeUnit.SECONDS);
+
+        verify(documentRepository).markProcessed(eq(1L), eq(DocumentStatus.PROCESSED), eq(20L), any(), any(), any(),
+                any());
+    }
+
+    @Test
+    void extractionAndClassificationHoldNoTransaction() throws Exception {
+        List<Integer> openDuringWork = new ArrayList<>();
+        doAnswer(invocation -> {
+            openDuringWork.add(openTransactions.get());
+            Consumer<CharSequence> sink = invocation.getArgument(1);
+            sink.accept("an invoice for March");
+            return null;
+        }).when(ocrService).extractText(any(ReadableByteChannel.class), any());
+        doAnswer(invocation -> {
+            openDuringWork.add(openTransactions.get());
+            return null;
+        }).when(classificationService).classifyBatch(any());
+
+        pipeline.processDocument(1L).get(5, TimeUnit.SECONDS);
+
+        assertThat(openDuringWork).containsExactly(0, 0);
+        assertThat(openTransactions).hasValue(0);
+        // Audit entries go out in one batch per stage boundary: start and result
+        verify(auditLogRepository, times(2)).saveAll(any());
+    }
+
+    @Test
+    void transientFailureIsLeftToTheJobQueue() {
+        when(documentRepository.markProcessed(anyLong(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new QueryTimeoutException("Lock wait timeout exceeded"));
+
+        CompletableFuture<Void> run = pipeline.processDocument(1L);
+
+        assertThatThrownBy(() -> run.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(QueryTimeoutException.class);
+        verify(documentRepository, never()).markFailed(anyLong(), any(), any(), any());
+    }
+
+    @Test
+    void unreadableFileFailsTheDocumentForGood() throws Exception {
+        doThrow(new UnreadableContentException("Unsupported file format: channel"))
+                .when(ocrService).extractText(any(ReadableByteChannel.class), any());
+
+        pipeline.processDocument(1L).get(5, TimeUnit.SECONDS);
+
+        verify(documentRepository).markFailed(eq(1L), eq(DocumentStatus.ERROR), eq("Unsupported file format: channel"),
+                any());
+        verify(classificationService, never()).classifyBatch(any());
+    }
+
+    @Test
+    void batchFailureFallsBackToClassifyingEachDocument() throws Exception {
+        doAnswer(invocation -> {
+            List<Document> batch = invocation.getArgument(0);
+            if (batch.stream().anyMatch(document -> document.getId() == 2L)) {
+                throw new QueryTimeoutException("Category lookup timed out");
+            }
+            return null;
+        }).when(classificationService).classifyBatch(any());
+        doAnswer(invocation -> {
+            Document document = invocation.getArgument(0);
+            classificationService.classifyBatch(List.of(document));
+            return null;
+        }).when(classificationService).classify(any());
+
+        // Batches of two, so both runs reach classification together
+        CompletableFuture<Void> good = pipeline.processDocument(1L);
+        CompletableFuture<Void> bad = pipeline.processDocument(2L);
+
+        good.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> bad.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryTimeoutException.class);
+        verify(classificationService).classifyBatch(argThat(batch -> batch.size() == 2));
+        verify(documentRepository).markProcessed(eq(1L), eq(DocumentStatus.PROCESSED), any(), any(), any(), any(), any());
+        verify(documentRepository, never()).markProcessed(eq(2L), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void classificationFailureIsRetriedRatherThanRecorded() {
+        doThrow(new QueryTimeoutException("Category lookup timed out")).when(classificationService).classifyBatch(any());
+
+        CompletableFuture<Void> run = pipeline.processDocument(1L);
+
+        assertThatThrownBy(() -> run.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryTimeoutException.class);
+        assertThat(run).isCompletedExceptionally();
+        verify(documentRepository, never()).markFailed(anyLong(), any(), any(), any());
+    }
+}
@@ -0,0 +1,165 @@
+package com.mk.docclassifier.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocIdBitmapTest {
+
+    // One container covers 65536 ids; past 4096 values it switches from a sorted array to a bitmap
+    private static final int CONTAINER = 1 << 16;
+    private static final int ARRAY_MAX = 4096;
+
+    @Test
+    void arrayContainerBecomesABitmapAndBack() {
+        DocIdBitmap bitmap = new DocIdBitmap();
+        BitSet expected = new BitSet();
+        for (int i = 0; i <= ARRAY_MAX; i++) {
+            bitmap.add(CONTAINER + i * 3L);
+            expected.set(CONTAINER + i * 3);
+        }
+        assertMatches(bitmap, expected);
+
+        // Back under the threshold, then empty: the container goes away with its last id
+        for (int i = 0; i <= ARRAY_MAX; i += 2) {
+            bitmap.remove(CONTAINER + i * 3L);
+            expected.clear(CONTAINER + i * 3);
+        }
+        assertMatches(bitmap, expected);
+        expected.stream().forEach(bitmap::remove);
+        assertThat(bitmap.isEmpty()).isTrue();
+        assertThat(bitmap.toArray()).isEmpty();
+    }
+
+    @Test
+    void addAndRemoveAreIdempotent() {
+        DocIdBitmap bitmap = DocIdBitmap.of(5, 5, 70_000);
+        bitmap.remove(6);
+        bitmap.remove(-1);
+        bitmap.remove(Long.MAX_VALUE);
+
+        assertThat(bitmap.toArray()).containsExactly(5, 70_000);
+        assertThat(bitmap.contains(-1)).isFalse();
+        assertThatThrownBy(() -> bitmap.add(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> bitmap.add(1L << 31)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void setOperationsMatchBitSetAcrossContainerKinds() {
+        Random random = new Random(42);
+        for (int round = 0; round < 60; round++) {
+            BitSet xs = new BitSet();
+            BitSet ys = new BitSet();
+            DocIdBitmap x = randomBitmap(random, xs);
+            DocIdBitmap y = randomBitmap(random, ys);
+
+            assertMatches(x.and(y), op(xs, ys, BitSet::and));
+            assertMatches(x.or(y), op(xs, ys, BitSet::or));
+            assertMatches(x.andNot(y), op(xs, ys, BitSet::andNot));
+            assertThat(x.andCardinality(y)).isEqualTo(op(xs, ys, BitSet::and).cardinality());
+            assertThat(y.andCardinality(x)).isEqualTo(x.andCardinality(y));
+            // Operands are left untouched
+            assertMatches(x, xs);
+            assertMatches(y, ys);
+        }
+    }
+
+    @Test
+    void copyIsIndependent() {
+        DocIdBitmap original = DocIdBitmap.of(1, 2, 3);
+        DocIdBitmap copy = original.copy();
+        copy.add(4);
+        original.remove(1);
+
+        assertThat(original.toArray()).containsExactly(2, 3);
+        assertThat(copy.toArray()).containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void pagesByOffsetInBothDirections() {
+        BitSet expected = new BitSet();
+        DocIdBitmap bitmap = randomBitmap(new Random(7), expected);
+        long[] ascending = expected.stream().asLongStream().toArray();
+
+        for (int offset : new int[] {0, 1, ARRAY_MAX, ascending.length - 3, ascending.length, ascending.length + 5}) {
+            int from = Math.min(offset, ascending.length);
+            int to = Math.min(ascending.length, from + 100);
+            assertThat(bitmap.page(offset, 100, false)).isEqualTo(Arrays.copyOfRange(ascending, from, to));
+            assertThat(bitmap.page(offset, 100, true)).isEqualTo(reversed(ascending, from, to));
+        }
+    }
+
+    @Test
+    void pageAfterContinuesFromAnyId() {
+        Random random = new Random(11);
+        BitSet expected = new BitSet();
+        DocIdBitmap bitmap = randomBitmap(random, expected);
+        long[] ascending = expected.stream().asLongStream().toArray();
+        long last = ascending[ascending.length - 1];
+
+        for (int round = 0; round < 300; round++) {
+            // Ids in the set, between its ids, in missing containers and outside the range
+            long after = switch (round % 4) {
+                case 0 -> ascending[random.nextInt(ascending.length)];
+                case 1 -> random.nextInt((int) last + 10);
+                case 2 -> -1 - random.nextInt(3);
+                default -> last + random.nextInt(3) * CONTAINER;
+            };
+            int limit = 1 + random.nextInt(ARRAY_MAX + 100);
+            assertThat(bitmap.pageAfter(after, limit, false))
+                    .isEqualTo(Arrays.stream(ascending).filter(id -> id > after).limit(limit).toArray());
+            assertThat(bitmap.pageAfter(after, limit, true))
+                    .isEqualTo(Arrays.stream(reversed(ascending, 0, ascending.length))
+                            .filter(id -> id < after).limit(limit).toArray());
+        }
+        assertThat(bitmap.pageAfter(Long.MAX_VALUE, 5, true)).isEqualTo(reversed(ascending, 0, 5));
+        assertThat(bitmap.pageAfter(Long.MAX_VALUE, 5, false)).isEmpty();
+        assertThat(new DocIdBitmap().pageAfter(3, 5, false)).isEmpty();
+    }
+
+    // Sparse (array) and dense (bitmap) containers under a few keys, with gaps between them
+    private static DocIdBitmap randomBitmap(Random random, BitSet expected) {
+        DocIdBitmap bitmap = new DocIdBitmap();
+        for (int key : IntStream.range(0, 6).filter(k -> random.nextInt(3) > 0).toArray()) {
+            int count = random.nextBoolean() ? random.nextInt(ARRAY_MAX) : ARRAY_MAX + random.nextInt(20_000);
+            for (int i = 0; i < count; i++) {
+                int id = key * CONTAINER + random.nextInt(CONTAINER);
+                bitmap.add(id);
+                expected.set(id);
+            }
+        }
+        // At least one id, so pages are never trivially empty
+        bitmap.add(3 * CONTAINER + 17);
+        expected.set(3 * CONTAINER + 17);
+        return bitmap;
+    }
+
+    private static BitSet op(BitSet x, BitSet y, BiConsumer<BitSet, BitSet> operation) {
+        BitSet result = (BitSet) x.clone();
+        operation.accept(result, y);
+        return result;
+    }
+
+    private static void assertMatches(DocIdBitmap bitmap, BitSet expected) {
+        assertThat(bitmap.cardinality()).isEqualTo(expected.cardinality());
+        assertThat(bitmap.isEmpty()).isEqualTo(expected.isEmpty());
+        assertThat(bitmap.toArray()).isEqualTo(expected.stream().asLongStream().toArray());
+        expected.stream().limit(500).forEach(id -> assertThat(bitmap.contains(id)).isTrue());
+        assertThat(bitmap.contains(expected.nextClearBit(0))).isFalse();
+    }
+
+    private static long[] reversed(long[] ascending, int from, int to) {
+        long[] page = new long[to - from];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = ascending[ascending.length - 1 - from - i];
+        }
+        return page;
+    }
+}
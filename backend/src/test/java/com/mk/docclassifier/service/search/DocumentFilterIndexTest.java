@@ -0,0 +1,73 @@
+package com.mk.docclassifier.service.search;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.repository.DocumentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentFilterIndexTest {
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private DocumentFilterIndex index;
+
+    @BeforeEach
+    void setUp() {
+        when(documentRepository.streamAttributes()).thenReturn(Stream.of(
+                new DocumentAttributes(1L, 7L, 3L, DocumentStatus.PROCESSED, 0.9),
+                new DocumentAttributes(2L, 7L, 3L, DocumentStatus.PROCESSED, 0.7),
+                new DocumentAttributes(3L, 7L, 4L, DocumentStatus.PROCESSED, 0.8),
+                new DocumentAttributes(4L, 7L, null, DocumentStatus.ERROR, null),
+                new DocumentAttributes(5L, 8L, 3L, DocumentStatus.PROCESSED, 0.6)));
+        when(documentRepository.streamTagLinks()).thenReturn(Stream.of(
+                new DocumentTagLink(1L, 10L), new DocumentTagLink(1L, 11L), new DocumentTagLink(2L, 10L),
+                new DocumentTagLink(3L, 11L), new DocumentTagLink(5L, 10L)));
+        index = new DocumentFilterIndex(documentRepository, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry());
+        index.rebuild();
+    }
+
+    @Test
+    void facetsCountTheMatchedDocumentsOnly() {
+        DocIdBitmap matched = index.match(new DocumentFilter(7L, null, null, null, List.of(10L, 11L), null));
+
+        assertThat(ids(matched)).containsExactly(1L, 2L, 3L);
+        FacetCounts facets = index.facets(matched);
+        assertThat(facets.categories()).isEqualTo(Map.of(3L, 2, 4L, 1));
+        assertThat(facets.statuses()).isEqualTo(Map.of(DocumentStatus.PROCESSED, 3));
+        assertThat(facets.tags()).isEqualTo(Map.of(10L, 2, 11L, 2));
+    }
+
+    @Test
+    void facetsFollowChangedDocuments() {
+        when(documentRepository.findAttributes(2L)).thenReturn(Optional.of(
+                new DocumentAttributes(2L, 7L, 4L, DocumentStatus.PROCESSED, 0.7)));
+        when(documentRepository.findTagIds(2L)).thenReturn(List.of());
+
+        index.onDocumentChanged(new DocumentChangedEvent(2L, DocumentChangedEvent.Change.METADATA));
+        index.onDocumentChanged(new DocumentChangedEvent(1L, DocumentChangedEvent.Change.DELETED));
+
+        DocIdBitmap matched = index.match(new DocumentFilter(7L, null, DocumentStatus.PROCESSED, null, null, null));
+        assertThat(ids(matched)).containsExactly(2L, 3L);
+        FacetCounts facets = index.facets(matched);
+        assertThat(facets.categories()).isEqualTo(Map.of(4L, 2));
+        assertThat(facets.tags()).isEqualTo(Map.of(11L, 1));
+    }
+
+    private static List<Long> ids(DocIdBitmap bitmap) {
+        return Arrays.stream(bitmap.toArray()).boxed().toList();
+    }
+}
@@ -0,0 +1,148 @@
+package com.mk.docclassifier.service.search;
+
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.repository.DocumentTextRepository;
+import com.mk.docclassifier.service.text.DocumentTextStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentSearchIndexTest {
+
+    private static final Map<Long, IndexedDocument> DOCUMENTS = Map.of(
+            1L, new IndexedDocument(1L, 7L, "facture-mars.pdf"),
+            2L, new IndexedDocument(2L, 7L, "contract.pdf"),
+            3L, new IndexedDocument(3L, 8L, "invoices.pdf"));
+    private static final Map<Long, String> TEXTS = Map.of(
+            1L, "Invoice for March. Invoice total due on receipt.",
+            2L, "Contract terms agreed between the parties; the signed copy and an invoice are attached.",
+            3L, "Monthly payslip");
+
+    @TempDir
+    Path indexDir;
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final DocumentTextRepository textRepository = mock(DocumentTextRepository.class);
+    private final DocumentTextStore textStore = mock(DocumentTextStore.class);
+    private DocumentSearchIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(textRepository.findAllDocumentIds()).thenReturn(List.of(1L, 2L, 3L));
+        when(documentRepository.findIndexedDocument(any()))
+                .thenAnswer(invocation -> Optional.ofNullable(DOCUMENTS.get(invocation.<Long>getArgument(0))));
+        doAnswer(invocation -> {
+            invocation.<Writer>getArgument(3).write(TEXTS.get(invocation.<Long>getArgument(0)));
+            return null;
+        }).when(textStore).writeChars(any(), eq(0L), anyLong(), any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (index != null) {
+            index.shutdown();
+        }
+    }
+
+    @Test
+    void termsAreStemmedAndHitsRankedByRelevance() throws InterruptedException {
+        index = build();
+
+        // "invoices" in the query, the text and the file name all reduce to the same term
+        assertThat(TextAnalyzer.queryTerms("The invoices")).isEqualTo(TextAnalyzer.queryTerms("invoice")).hasSize(1);
+        List<SearchHit> hits = index.search("invoices", null).orElseThrow();
+        assertThat(hits).extracting(SearchHit::documentId).containsExactlyInAnyOrder(1L, 2L, 3L);
+        // Twice in a short text beats once in a longer one
+        assertThat(hits.get(0).documentId()).isEqualTo(1L);
+        assertThat(hits.get(0).score()).isGreaterThan(hits.get(2).score());
+
+        assertThat(index.search("invoice", 8L).orElseThrow()).extracting(SearchHit::documentId).containsExactly(3L);
+        assertThat(index.search("invoice contract", null).orElseThrow()).extracting(SearchHit::documentId)
+                .containsExactly(2L);
+        assertThat(index.search("invoice rocket", null).orElseThrow()).isEmpty();
+        // Only stop words: the index cannot answer and says so
+        assertThat(index.canAnswer("the")).isFalse();
+        assertThat(index.search("the", null)).isEmpty();
+    }
+
+    @Test
+    void deletionsSurviveARestartFromTheCommittedSegments() throws InterruptedException {
+        index = build();
+        index.onDocumentChanged(new DocumentChangedEvent(1L, DocumentChangedEvent.Change.DELETED));
+        assertThat(await(() -> index.search("invoice", null).orElseThrow().size() == 2)).isTrue();
+        index.shutdown();
+
+        // Reopened from the commit file: ready before any reconciliation has run
+        when(textRepository.findAllDocumentIds()).thenReturn(List.of());
+        index = new DocumentSearchIndex(documentRepository, textRepository, textStore, new SimpleMeterRegistry(),
+                true, indexDir.toString(), 2, 10, 1024);
+        index.open();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.search("invoice", null).orElseThrow()).extracting(SearchHit::documentId)
+                .containsExactlyInAnyOrder(2L, 3L);
+    }
+
+    @Test
+    void mergedSegmentsAreReleasedAndTheirFilesDeleted() throws Exception {
+        // One document per segment and a merge factor of two: the first two segments are merged
+        index = new DocumentSearchIndex(documentRepository, textRepository, textStore, new SimpleMeterRegistry(),
+                true, indexDir.toString(), 1, 2, 1024);
+        index.open();
+        index.reconcileOnStartup();
+        assertThat(await(index::isReady)).isTrue();
+
+        assertThat(await(() -> segmentFiles() == 2)).isTrue();
+        assertThat(index.search("invoice", null).orElseThrow()).extracting(SearchHit::documentId)
+                .containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    // Builds the index from the database; two buffered documents per segment, so hits span two segments
+    private DocumentSearchIndex build() throws InterruptedException {
+        DocumentSearchIndex built = new DocumentSearchIndex(documentRepository, textRepository, textStore,
+                new SimpleMeterRegistry(), true, indexDir.toString(), 2, 10, 1024);
+        built.open();
+        built.reconcileOnStartup();
+        assertThat(await(built::isReady)).isTrue();
+        return built;
+    }
+
+    private long segmentFiles() {
+        try (Stream<Path> files = Files.list(indexDir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).count();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < waitUntil) {
+            Thread.sleep(20);
+        }
+        return condition.getAsBoolean();
+    }
+}
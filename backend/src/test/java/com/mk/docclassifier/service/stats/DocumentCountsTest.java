@@ -0,0 +1,64 @@
+package com.mk.docclassifier.service.stats;
+
+import com.mk.docclassifier.domain.entity.Role;
+import com.mk.docclassifier.domain.entity.User;
+import com.mk.docclassifier.repository.DocumentRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentCountsTest {
+
+    private static final User ADMIN = User.builder().id(1L).role(Role.ADMIN).build();
+    private static final User ALICE = User.builder().id(2L).role(Role.USER).build();
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+
+    @Test
+    void oneGroupedQueryPerScopeIsReusedWithinTheTtl() {
+        when(documentRepository.countByCategory(null)).thenReturn(List.of(new LabelCount(3L, 40L), new LabelCount(4L, 2L)));
+        when(documentRepository.countByCategory(2L)).thenReturn(List.of(new LabelCount(3L, 5L)));
+        DocumentCounts counts = new DocumentCounts(documentRepository, 60_000);
+
+        assertThat(counts.byCategory(ADMIN)).isEqualTo(Map.of(3L, 40L, 4L, 2L));
+        assertThat(counts.byCategory(ADMIN)).isEqualTo(Map.of(3L, 40L, 4L, 2L));
+        assertThat(counts.byCategory(ALICE)).isEqualTo(Map.of(3L, 5L));
+
+        verify(documentRepository, times(1)).countByCategory(null);
+        verify(documentRepository, times(1)).countByCategory(2L);
+        verify(documentRepository, never()).countByTag(any());
+    }
+
+    @Test
+    void singleRowIsCountedDirectlyInsteadOfFromTheCache() {
+        when(documentRepository.countByCategory(null)).thenReturn(List.of(new LabelCount(3L, 40L)));
+        when(documentRepository.countByCategoryId(3L)).thenReturn(41L);
+        when(documentRepository.countByCategoryIdAndUserId(3L, 2L)).thenReturn(6L);
+        DocumentCounts counts = new DocumentCounts(documentRepository, 60_000);
+        counts.byCategory(ADMIN);
+
+        assertThat(counts.ofCategory(3L, ADMIN)).isEqualTo(41L);
+        assertThat(counts.ofCategory(3L, ALICE)).isEqualTo(6L);
+        assertThat(counts.ofCategory(3L, null)).isZero();
+    }
+
+    @Test
+    void withoutTtlEveryListingQueries() {
+        when(documentRepository.countByTag(2L)).thenReturn(List.of(new LabelCount(9L, 1L)));
+        DocumentCounts counts = new DocumentCounts(documentRepository, 0);
+
+        counts.byTag(ALICE);
+        assertThat(counts.byTag(ALICE)).isEqualTo(Map.of(9L, 1L));
+
+        verify(documentRepository, times(2)).countByTag(2L);
+    }
+}
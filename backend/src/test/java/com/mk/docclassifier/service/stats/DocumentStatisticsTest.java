@@ -0,0 +1,81 @@
+package com.mk.docclassifier.service.stats;
+
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.event.CountedDocument;
+import com.mk.docclassifier.event.DocumentChangeLoggedEvent;
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.repository.DocumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentStatisticsTest {
+
+    private static final CountedDocument FIRST = new CountedDocument(7L, 3L, DocumentStatus.PROCESSED, 0.8, List.of(5L));
+    private static final CountedDocument SECOND = new CountedDocument(8L, null, DocumentStatus.UPLOADED, null, List.of());
+
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private DocumentStatistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        when(documentRepository.countGroups()).thenReturn(List.of(
+                new DocumentGroupCount(7L, 3L, DocumentStatus.PROCESSED, 1L, 0.8, 1L),
+                new DocumentGroupCount(8L, null, DocumentStatus.UPLOADED, 1L, null, 0L)));
+        when(documentRepository.countTagGroups()).thenReturn(List.of(new TagGroupCount(7L, 5L, 1L)));
+        statistics = new DocumentStatistics(documentRepository, new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        statistics.rebuild();
+    }
+
+    @Test
+    void loggedChangesMoveTheDocumentsContribution() {
+        CountedDocument processed = new CountedDocument(8L, 3L, DocumentStatus.PROCESSED, 0.6, List.of(5L));
+        statistics.onChangeLogged(new DocumentChangeLoggedEvent(2L, DocumentChangedEvent.Change.CONTENT, SECOND,
+                processed));
+        statistics.onChangeLogged(new DocumentChangeLoggedEvent(1L, DocumentChangedEvent.Change.DELETED, FIRST, null));
+
+        StatsSnapshot global = statistics.global();
+        assertThat(global.total()).isEqualTo(1);
+        assertThat(global.statuses()).isEqualTo(Map.of(DocumentStatus.PROCESSED, 1L));
+        assertThat(global.categories()).isEqualTo(Map.of(3L, 1L));
+        assertThat(global.uncategorized()).isZero();
+        assertThat(global.tags()).isEqualTo(Map.of(5L, 1L));
+        assertThat(global.averageConfidence()).isCloseTo(0.6, within(1e-9));
+        assertThat(statistics.forUser(7L)).isEqualTo(StatsSnapshot.EMPTY);
+        assertThat(statistics.forUser(8L).categories()).isEqualTo(Map.of(3L, 1L));
+    }
+
+    @Test
+    void reconcileCorrectsOwnersTheFeedMissedAndSkipsThoseChangedMeanwhile() {
+        // Another instance uploaded a document for owner 7 and processed owner 8's; neither change reached this one
+        when(documentRepository.countGroups()).thenAnswer(invocation -> {
+            statistics.onChangeLogged(new DocumentChangeLoggedEvent(3L, DocumentChangedEvent.Change.METADATA, null,
+                    new CountedDocument(9L, null, DocumentStatus.UPLOADED, null, List.of())));
+            return List.of(
+                    new DocumentGroupCount(7L, 3L, DocumentStatus.PROCESSED, 1L, 0.8, 1L),
+                    new DocumentGroupCount(7L, null, DocumentStatus.UPLOADED, 1L, null, 0L),
+                    new DocumentGroupCount(8L, 4L, DocumentStatus.PROCESSED, 1L, 0.5, 1L));
+        });
+
+        statistics.reconcile();
+
+        assertThat(statistics.forUser(7L).total()).isEqualTo(2);
+        assertThat(statistics.forUser(8L).categories()).isEqualTo(Map.of(4L, 1L));
+        // Changed while the table was read: left as the feed applied it
+        assertThat(statistics.forUser(9L).total()).isEqualTo(1);
+        StatsSnapshot global = statistics.global();
+        assertThat(global.total()).isEqualTo(4);
+        assertThat(global.statuses()).isEqualTo(Map.of(DocumentStatus.PROCESSED, 2L, DocumentStatus.UPLOADED, 2L));
+        assertThat(global.tags()).isEqualTo(Map.of(5L, 1L));
+        assertThat(global.averageConfidence()).isCloseTo(0.65, within(1e-9));
+    }
+}
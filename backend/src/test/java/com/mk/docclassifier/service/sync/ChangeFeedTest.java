@@ -0,0 +1,178 @@
+package com.mk.docclassifier.service.sync;
+
+import com.mk.docclassifier.domain.entity.ChangeLogEntry;
+import com.mk.docclassifier.domain.entity.ChangedEntity;
+import com.mk.docclassifier.domain.entity.DocumentStatus;
+import com.mk.docclassifier.event.CategoryChangedEvent;
+import com.mk.docclassifier.event.CountedDocument;
+import com.mk.docclassifier.event.DocumentChangeLoggedEvent;
+import com.mk.docclassifier.event.DocumentChangedEvent;
+import com.mk.docclassifier.event.DocumentReclassifiedEvent;
+import com.mk.docclassifier.event.TagChangedEvent;
+import com.mk.docclassifier.repository.ChangeLogRepository;
+import com.mk.docclassifier.repository.DocumentRepository;
+import com.mk.docclassifier.service.PipelineJobService;
+import com.mk.docclassifier.service.search.DocumentAttributes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ChangeFeedTest {
+
+    private final ChangeLogRepository repository = mock(ChangeLogRepository.class);
+    private final DocumentRepository documentRepository = mock(DocumentRepository.class);
+    private final ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+    private final PipelineJobService jobs = mock(PipelineJobService.class);
+    private ChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        when(jobs.getInstanceId()).thenReturn("here");
+        when(repository.findMaxId()).thenReturn(0L);
+        feed = newFeed();
+    }
+
+    @Test
+    void changesFromOtherInstancesAreReplayedAndOwnAreSkipped() {
+        when(repository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(
+                entry(1L, ChangedEntity.DOCUMENT, 10L, "CONTENT", "there"),
+                entry(2L, ChangedEntity.DOCUMENT, 11L, "DELETED", "here"),
+                entry(3L, ChangedEntity.CATEGORY, null, null, "there")));
+
+        feed.poll();
+
+        verify(publisher).publishEvent(new DocumentChangedEvent(10L, DocumentChangedEvent.Change.CONTENT));
+        verify(publisher).publishEvent(new CategoryChangedEvent(null));
+        verify(publisher, never()).publishEvent(new DocumentChangedEvent(11L, DocumentChangedEvent.Change.DELETED));
+    }
+
+    @Test
+    void documentChangesAreLoggedWithWhatTheyCountedForAndPublishedAtOnce() {
+        // Read in the writing transaction first, then from the last committed row
+        when(documentRepository.findAttributes(10L)).thenReturn(
+                Optional.of(new DocumentAttributes(10L, 7L, 3L, DocumentStatus.PROCESSED, 0.5)),
+                Optional.of(new DocumentAttributes(10L, 7L, null, DocumentStatus.PROCESSING, null)));
+        when(documentRepository.findTagIds(10L)).thenReturn(List.of(5L, 6L), List.of());
+
+        feed.onDocumentChanged(new DocumentChangedEvent(10L, DocumentChangedEvent.Change.CONTENT));
+
+        CountedDocument before = new CountedDocument(7L, null, DocumentStatus.PROCESSING, null, List.of());
+        CountedDocument after = new CountedDocument(7L, 3L, DocumentStatus.PROCESSED, 0.5, List.of(5L, 6L));
+        verify(repository).save(ChangeLogEntry.builder().entity(ChangedEntity.DOCUMENT).entityId(10L)
+                .changeType("CONTENT").countedBefore("7;;PROCESSING;;").countedAfter("7;3;PROCESSED;0.5;5,6")
+                .origin("here").build());
+        verify(publisher).publishEvent(new DocumentChangeLoggedEvent(10L, DocumentChangedEvent.Change.CONTENT,
+                before, after));
+    }
+
+    @Test
+    void otherInstancesDocumentChangesAreDeliveredInLogOrderWithTheirCounts() {
+        ChangeLogEntry created = entry(1L, ChangedEntity.DOCUMENT, 10L, "CONTENT", "there");
+        created.setCountedAfter("8;;UPLOADED;;");
+        ChangeLogEntry deleted = entry(3L, ChangedEntity.DOCUMENT, 12L, "DELETED", "there");
+        deleted.setCountedBefore("8;4;PROCESSED;0.75;9");
+        when(repository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(
+                created, entry(2L, ChangedEntity.DOCUMENT, 11L, "DELETED", "here"), deleted));
+
+        feed.poll();
+
+        InOrder inOrder = inOrder(publisher);
+        inOrder.verify(publisher).publishEvent(new DocumentChangeLoggedEvent(10L, DocumentChangedEvent.Change.CONTENT,
+                null, new CountedDocument(8L, null, DocumentStatus.UPLOADED, null, List.of())));
+        inOrder.verify(publisher).publishEvent(new DocumentChangeLoggedEvent(12L, DocumentChangedEvent.Change.DELETED,
+                new CountedDocument(8L, 4L, DocumentStatus.PROCESSED, 0.75, List.of(9L)), null));
+        // Own changes were published as they were made
+        verify(publisher, times(4)).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void idsUncommittedAtStartupAreLookedUpUntilTheyCommit() {
+        when(repository.findMaxId()).thenReturn(5L);
+        when(repository.findIdsGreaterThan(0L)).thenReturn(List.of(1L, 2L, 4L, 5L));
+        feed = newFeed();
+        when(repository.findByIdIn(Set.of(3L))).thenReturn(List.of(entry(3L, ChangedEntity.TAG, 6L, null, "there")));
+
+        feed.poll();
+        feed.poll();
+
+        verify(publisher).publishEvent(new TagChangedEvent(6L));
+        verify(repository).findByIdIn(Set.of(3L));
+    }
+
+    @Test
+    void idSkippedByAPollIsReplayedOnceItCommits() {
+        when(repository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(
+                entry(3L, ChangedEntity.TAG, 5L, null, "there")));
+        feed.poll();
+
+        when(repository.findByIdIn(Set.of(1L, 2L))).thenReturn(List.of(entry(2L, ChangedEntity.TAG, 6L, null, "there")));
+        feed.poll();
+        feed.poll();
+
+        verify(publisher).publishEvent(new TagChangedEvent(5L));
+        verify(publisher).publishEvent(new TagChangedEvent(6L));
+        verify(repository).findByIdIn(Set.of(1L));
+    }
+
+    @Test
+    void replayedChangesAreNotRecordedAgain() {
+        doAnswer(invocation -> {
+            feed.onTagChanged(invocation.getArgument(0));
+            return null;
+        }).when(publisher).publishEvent(any(Object.class));
+        when(repository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(
+                entry(1L, ChangedEntity.TAG, 5L, null, "there")));
+
+        feed.poll();
+        verify(repository, never()).save(any());
+
+        feed.onTagChanged(new TagChangedEvent(7L));
+        verify(repository).save(any());
+    }
+
+    @Test
+    void reclassificationsAreRecordedWithoutTextAndReplayedWithBothCategories() {
+        feed.onReclassified(new DocumentReclassifiedEvent(10L, 3L, 2L, "invoice total", null));
+        verify(repository).save(ChangeLogEntry.builder().entity(ChangedEntity.LABEL).entityId(10L).categoryId(3L)
+                .previousCategoryId(2L).origin("here").build());
+
+        ChangeLogEntry replayed = entry(1L, ChangedEntity.LABEL, 11L, null, "there");
+        replayed.setCategoryId(4L);
+        replayed.setCreatedAt(LocalDateTime.of(2024, 3, 1, 9, 30));
+        when(repository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(replayed));
+        feed.poll();
+
+        verify(publisher).publishEvent(new DocumentReclassifiedEvent(11L, 4L, null, null,
+                LocalDateTime.of(2024, 3, 1, 9, 30)));
+    }
+
+    private ChangeFeed newFeed() {
+        ChangeFeed created = new ChangeFeed(repository, documentRepository, jobs, publisher, new SimpleMeterRegistry(),
+                mock(PlatformTransactionManager.class));
+        created.init();
+        return created;
+    }
+
+    private static ChangeLogEntry entry(Long id, ChangedEntity entity, Long entityId, String changeType, String origin) {
+        return ChangeLogEntry.builder().id(id).entity(entity).entityId(entityId).changeType(changeType).origin(origin)
+                .build();
+    }
+}
@@ -0,0 +1,92 @@
+package com.mk.docclassifier.service.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressedTextTest {
+
+    @Test
+    void roundTripsTextFedInUnevenPieces() {
+        String text = "Invoice n° 42 – total 1 250,00 € ".repeat(200);
+        CompressedText.Builder builder = new CompressedText.Builder(1000, 50, Deflater.BEST_SPEED);
+        for (int from = 0; from < text.length(); from += 37) {
+            builder.accept(text.substring(from, Math.min(text.length(), from + 37)));
+        }
+        CompressedText compressed = builder.finish();
+
+        assertThat(compressed.chunks()).hasSizeGreaterThan(1);
+        assertThat(inflateAll(compressed)).isEqualTo(text);
+        assertThat(compressed.length()).isEqualTo(text.length());
+        assertThat(compressed.byteLength()).isEqualTo(text.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(compressed.excerpt()).isEqualTo(text.substring(0, 50));
+        assertThat(compressed.compressedSize()).isLessThan(compressed.byteLength());
+    }
+
+    @Test
+    void chunkOffsetsLineUpInCharsAndBytes() {
+        String text = "αβγδε".repeat(30) + "plain ascii tail";
+        CompressedText compressed = CompressedText.of(text, 16, 0, Deflater.DEFAULT_COMPRESSION);
+
+        long chars = 0;
+        long bytes = 0;
+        for (CompressedText.Chunk chunk : compressed.chunks()) {
+            byte[] utf8 = CompressedText.inflateBytes(chunk.data());
+            assertThat(chunk.charStart()).isEqualTo(chars);
+            assertThat(chunk.byteStart()).isEqualTo(bytes);
+            assertThat(utf8).hasSize(chunk.byteCount());
+            assertThat(new String(utf8, StandardCharsets.UTF_8))
+                    .isEqualTo(text.substring((int) chunk.charStart(), (int) chunk.charStart() + chunk.charCount()));
+            chars += chunk.charCount();
+            bytes += chunk.byteCount();
+        }
+        assertThat(chars).isEqualTo(text.length());
+        assertThat(bytes).isEqualTo(compressed.byteLength());
+    }
+
+    @Test
+    void neverSplitsASurrogatePair() {
+        // Every chunk boundary falls inside an emoji if surrogates are ignored
+        String text = "ab📄".repeat(20);
+        CompressedText compressed = CompressedText.of(text, 3, 0, Deflater.DEFAULT_COMPRESSION);
+
+        for (CompressedText.Chunk chunk : compressed.chunks()) {
+            String piece = CompressedText.inflate(chunk.data());
+            assertThat(piece).doesNotContain("�");
+            assertThat(Character.isHighSurrogate(piece.charAt(piece.length() - 1))).isFalse();
+        }
+        assertThat(inflateAll(compressed)).isEqualTo(text);
+    }
+
+    @Test
+    void emptyTextHasNoChunks() {
+        CompressedText compressed = CompressedText.of("", 100, 10, Deflater.DEFAULT_COMPRESSION);
+
+        assertThat(compressed.chunks()).isEmpty();
+        assertThat(compressed.length()).isZero();
+        assertThat(compressed.byteLength()).isZero();
+        assertThat(compressed.excerpt()).isEmpty();
+    }
+
+    @Test
+    void rejectsCorruptOrTruncatedChunks() {
+        byte[] data = CompressedText.of("some text to compress ".repeat(20), 1000, 0, Deflater.DEFAULT_COMPRESSION)
+                .chunks().get(0).data();
+
+        assertThatThrownBy(() -> CompressedText.inflate(Arrays.copyOf(data, data.length / 2)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> CompressedText.inflate(new byte[] {1, 2, 3, 4}))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static String inflateAll(CompressedText compressed) {
+        StringBuilder text = new StringBuilder();
+        compressed.chunks().forEach(chunk -> text.append(CompressedText.inflate(chunk.data())));
+        return text.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.mk.docclassifier.service.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextRangeTest {
+
+    private static final long CHARS = 10;
+    private static final Long BYTES = 16L;
+
+    @Test
+    void closedCharRange() {
+        TextRange range = parse("chars=2-5");
+
+        assertThat(range).isEqualTo(new TextRange(TextRange.CHARS, 2, 6, CHARS));
+        assertThat(range.length()).isEqualTo(4);
+        assertThat(range.contentRange()).isEqualTo("chars 2-5/10");
+    }
+
+    @Test
+    void byteRangesResolveAgainstTheUtf8Length() {
+        TextRange range = parse("bytes=8-");
+
+        assertThat(range).isEqualTo(new TextRange(TextRange.BYTES, 8, 16, BYTES));
+        assertThat(range.contentRange()).isEqualTo("bytes 8-15/16");
+    }
+
+    @Test
+    void endIsClampedToTheText() {
+        assertThat(parse("chars=4-99")).isEqualTo(new TextRange(TextRange.CHARS, 4, 10, CHARS));
+        assertThat(parse("chars=0-")).isEqualTo(new TextRange(TextRange.CHARS, 0, 10, CHARS));
+    }
+
+    @Test
+    void suffixRanges() {
+        assertThat(parse("chars=-3")).isEqualTo(new TextRange(TextRange.CHARS, 7, 10, CHARS));
+        assertThat(parse("chars=-50")).isEqualTo(new TextRange(TextRange.CHARS, 0, 10, CHARS));
+        assertThat(parse("chars=-0").satisfiable()).isFalse();
+    }
+
+    @Test
+    void rangeStartingPastTheEndIsUnsatisfiable() {
+        TextRange range = parse("bytes=16-20");
+
+        assertThat(range.satisfiable()).isFalse();
+        assertThat(range.contentRange()).isEqualTo("bytes */16");
+        assertThat(TextRange.parse("chars=-1", 0, 0L).orElseThrow().satisfiable()).isFalse();
+    }
+
+    @Test
+    void unitIsCaseInsensitive() {
+        assertThat(parse(" Chars =1-1")).isEqualTo(new TextRange(TextRange.CHARS, 1, 2, CHARS));
+    }
+
+    @Test
+    void wholeTextWhenTheHeaderCannotBeServed() {
+        assertThat(TextRange.parse(null, CHARS, BYTES)).isEmpty();
+        assertThat(TextRange.parse("chars 0-1", CHARS, BYTES)).isEmpty();
+        assertThat(TextRange.parse("chars=0-1,4-5", CHARS, BYTES)).isEmpty();
+        assertThat(TextRange.parse("lines=0-1", CHARS, BYTES)).isEmpty();
+        assertThat(TextRange.parse("chars=5", CHARS, BYTES)).isEmpty();
+        assertThat(TextRange.parse("chars=a-b", CHARS, BYTES)).isEmpty();
+        assertThat(TextRange.parse("chars=5-2", CHARS, BYTES)).isEmpty();
+        // Texts stored before byte offsets were recorded can only be ranged in chars
+        assertThat(TextRange.parse("bytes=0-1", CHARS, null)).isEmpty();
+    }
+
+    private static TextRange parse(String header) {
+        Optional<TextRange> range = TextRange.parse(header, CHARS, BYTES);
+        assertThat(range).isPresent();
+        return range.get();
+    }
+}